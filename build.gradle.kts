@@ -1,6 +1,8 @@
 plugins {
+    `java-test-fixtures`
     alias(libs.plugins.hivemq.extension)
     alias(libs.plugins.defaults)
+    alias(libs.plugins.jmh)
     alias(libs.plugins.oci)
     alias(libs.plugins.spotless)
 }
@@ -52,6 +54,42 @@ dependencies {
     }
 }
 
+// synthetic Sparkplug traffic and SDK stand-ins shared by the tests, the benchmarks and the load tests,
+// see SparkplugFleet and SdkStandIns
+dependencies {
+    testFixturesCompileOnly(libs.jetbrains.annotations)
+    testFixturesApi(libs.tahu)
+    testFixturesApi(libs.hivemq.extensionSdk)
+}
+
+// replays a journal that was captured with sparkplug.capture=true, see CaptureReplay
+val replay: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+dependencies {
+    "replayCompileOnly"(libs.jetbrains.annotations)
+    "replayImplementation"(libs.hivemq.mqttClient)
+}
+tasks.register<JavaExec>("replay") {
+    group = "application"
+    description = "Replays a Sparkplug capture journal against an MQTT broker."
+    classpath = replay.runtimeClasspath
+    mainClass = "com.hivemq.extensions.sparkplug.aware.replay.CaptureReplay"
+}
+
+// microbenchmarks of the interceptor hot paths, run with ./gradlew jmh
+jmh {
+    jmhVersion = libs.versions.jmh
+    // reports the allocation rate and the allocated bytes per operation
+    profilers = listOf("gc")
+}
+dependencies {
+    jmhCompileOnly(libs.jetbrains.annotations)
+    // the benchmarks call the interceptors with the SDK stand-ins of the test fixtures, so no broker is needed
+    jmhImplementation(testFixtures(project(":")))
+}
+
 oci {
     registries {
         dockerHub {
@@ -137,6 +175,28 @@ testing {
                 }
             }
         }
+        // throughput and latency of the interceptors under the load of a simulated fleet, run with ./gradlew loadTest
+        "loadTest"(JvmTestSuite::class) {
+            dependencies {
+                compileOnly(libs.jetbrains.annotations)
+                implementation(testFixtures(project()))
+                implementation(libs.assertj)
+                implementation(libs.jackson)
+                runtimeOnly(libs.logback.classic)
+            }
+            targets.configureEach {
+                testTask {
+                    // the load is sized with Gradle properties, e.g. ./gradlew loadTest -PloadTest.edgeNodes=500
+                    systemProperties(providers.gradlePropertiesPrefixedBy("loadTest.").get())
+                    systemProperty("loadTest.version", project.version.toString())
+                    systemProperty("loadTest.report",
+                            layout.buildDirectory.file("reports/loadTest/report.json").get().asFile.absolutePath)
+                    maxHeapSize = "2g"
+                    // every run is a new measurement
+                    outputs.upToDateWhen { false }
+                }
+            }
+        }
     }
 }
 
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundOutput;
+import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugMessage;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthFingerprints;
+import com.hivemq.extensions.sparkplug.aware.republish.SysTopicRepublisher;
+import com.hivemq.extensions.sparkplug.aware.sdk.SdkStandIns;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathPayloadCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures complete invocations of the PUBLISH interceptors with the {@link SdkStandIns} as inputs and the messages of
+ * an edge node of a {@link SparkplugFleet}.
+ * <p>
+ * The interceptors are wired like in {@link SparkplugAwareMain} with the default configuration and a metric registry.
+ * The edge node is born before the measurement, so the data messages are checked against its sequence numbers and
+ * aliases, and the births are republished to their system topics by a publish service that completes immediately.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptorBenchmark {
+
+    private static final @NotNull String OTHER_TOPIC = "factory/line/machine/temperature";
+    private static final @NotNull String SUBSCRIBER = "subscriber";
+
+    @Param({"10", "100"})
+    public int metrics;
+
+    @Param({"false", "true"})
+    public boolean lastValues;
+
+    private @NotNull SparkplugPublishInboundInterceptor inboundInterceptor;
+    private @NotNull SparkplugPublishOutboundInterceptor outboundInterceptor;
+    private @NotNull PublishInboundInput nbirthInput;
+    private @NotNull PublishInboundOutput nbirthOutput;
+    private @NotNull PublishInboundInput ndataInput;
+    private @NotNull PublishInboundOutput ndataOutput;
+    private @NotNull PublishInboundInput ndeathInput;
+    private @NotNull PublishInboundOutput ndeathOutput;
+    private @NotNull PublishInboundInput otherInput;
+    private @NotNull PublishInboundOutput otherOutput;
+    private @NotNull PublishOutboundInput outboundNdataInput;
+    private @NotNull PublishOutboundOutput outboundNdataOutput;
+    private @NotNull PublishOutboundInput outboundNdeathInput;
+    private @NotNull PublishOutboundOutput outboundNdeathOutput;
+
+    @Setup
+    public void setUp() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spBv1.0",
+                "sparkplug.lastvalues=" + lastValues));
+        final var topicStructureCache = new TopicStructureCache(configuration.getTopicCacheSize());
+        final var ndeathTemplateStore = new NdeathTemplateStore(configuration.getNdeathTemplateSize());
+        final var registry = new SparkplugRegistry(configuration.getSeqValidationEnabled());
+        final var sparkplugMetrics = new SparkplugMetrics(new MetricRegistry());
+        final var jsonLog = new JsonLogPipeline(new PayloadJsonWriter(configuration.getJsonLogFormat()),
+                configuration.getJsonLogQueueSize(),
+                configuration.getJsonLogOverflowPolicy(),
+                configuration.getJsonLogSampleRate(),
+                registry,
+                sparkplugMetrics);
+        final var birthFingerprints = new BirthFingerprints(configuration.getSysTopicDedupMode(),
+                configuration.getSparkplugSystopicMsgexpiry(),
+                configuration.getSysTopicDedupSize());
+        final var republisher = new SysTopicRepublisher(SdkStandIns.publishService(),
+                configuration.getSysTopicInFlightMax(),
+                configuration.getSysTopicQueueSize(),
+                birthFingerprints::invalidate,
+                sparkplugMetrics);
+        final var lastValueStore = configuration.getLastValuesEnabled() ? new LastValueStore() : null;
+        inboundInterceptor = new SparkplugPublishInboundInterceptor(configuration,
+                republisher,
+                birthFingerprints,
+                null,
+                topicStructureCache,
+                ndeathTemplateStore,
+                jsonLog,
+                null,
+                registry,
+                null,
+                lastValueStore,
+                null,
+                sparkplugMetrics,
+                SdkStandIns::publishBuilder);
+        outboundInterceptor = new SparkplugPublishOutboundInterceptor(configuration,
+                topicStructureCache,
+                new NdeathPayloadCache(configuration.getNdeathTimestampBucket()),
+                ndeathTemplateStore,
+                jsonLog,
+                registry,
+                lastValueStore,
+                null,
+                sparkplugMetrics);
+
+        final var edgeNode = SparkplugFleet.builder(42).edgeNodes(1).nodeMetrics(metrics).dataMetrics(metrics).build()
+                .getEdgeNode(0);
+        final var nbirth = edgeNode.nbirth();
+        final var ndata = edgeNode.ndata();
+        final var ndeath = edgeNode.ndeath();
+        final var other = ByteBuffer.wrap(new byte[]{'4', '2'}).asReadOnlyBuffer();
+        nbirthInput = inboundInput(nbirth);
+        nbirthOutput = SdkStandIns.inboundOutput(nbirth.getTopic(), nbirth.getPayload());
+        ndataInput = inboundInput(ndata);
+        ndataOutput = SdkStandIns.inboundOutput(ndata.getTopic(), ndata.getPayload());
+        ndeathInput = inboundInput(ndeath);
+        ndeathOutput = SdkStandIns.inboundOutput(ndeath.getTopic(), ndeath.getPayload());
+        otherInput = SdkStandIns.inboundInput(edgeNode.getClientId(), OTHER_TOPIC, other);
+        otherOutput = SdkStandIns.inboundOutput(OTHER_TOPIC, other);
+        outboundNdataInput = SdkStandIns.outboundInput(SUBSCRIBER, ndata.getTopic(), ndata.getPayload());
+        outboundNdataOutput = SdkStandIns.outboundOutput(ndata.getTopic(), ndata.getPayload());
+        outboundNdeathInput = SdkStandIns.outboundInput(SUBSCRIBER, ndeath.getTopic(), ndeath.getPayload());
+        outboundNdeathOutput = SdkStandIns.outboundOutput(ndeath.getTopic(), ndeath.getPayload());
+
+        inboundInterceptor.onInboundPublish(nbirthInput, nbirthOutput);
+    }
+
+    @Benchmark
+    public void inboundNbirth() {
+        inboundInterceptor.onInboundPublish(nbirthInput, nbirthOutput);
+    }
+
+    @Benchmark
+    public void inboundNdata() {
+        inboundInterceptor.onInboundPublish(ndataInput, ndataOutput);
+    }
+
+    @Benchmark
+    public void inboundNdeath() {
+        inboundInterceptor.onInboundPublish(ndeathInput, ndeathOutput);
+    }
+
+    @Benchmark
+    public void inboundNonSparkplug() {
+        inboundInterceptor.onInboundPublish(otherInput, otherOutput);
+    }
+
+    @Benchmark
+    public void outboundNdata() {
+        outboundInterceptor.onOutboundPublish(outboundNdataInput, outboundNdataOutput);
+    }
+
+    @Benchmark
+    public void outboundNdeath() {
+        outboundInterceptor.onOutboundPublish(outboundNdeathInput, outboundNdeathOutput);
+    }
+
+    private static @NotNull PublishInboundInput inboundInput(final @NotNull SparkplugMessage message) {
+        return SdkStandIns.inboundInput(message.getClientId(), message.getTopic(), message.getPayload());
+    }
+
+    private static @NotNull SparkplugConfiguration createConfiguration(final @NotNull List<String> properties)
+            throws Exception {
+        final var directory = Files.createTempDirectory("sparkplug-benchmark");
+        final var file = directory.resolve("config.properties");
+        try {
+            Files.write(file, properties);
+            final var configuration = new SparkplugConfiguration(directory.toFile(), "config.properties");
+            configuration.readPropertiesFromFile();
+            return configuration;
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+}
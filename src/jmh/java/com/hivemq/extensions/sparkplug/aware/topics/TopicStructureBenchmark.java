@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.topics;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing and validation of Sparkplug and non-Sparkplug topics, with and without the
+ * {@link TopicStructureCache} the interceptors use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopicStructureBenchmark {
+
+    private static final @NotNull String NAMESPACE = "spBv1.0";
+
+    @Param({
+            "spBv1.0/group/NDATA/edgeNode",
+            "spBv1.0/group/DDATA/edgeNode/device",
+            "spBv1.0/group/STATE/scada",
+            "spBv1.0/group/UNKNOWN/edgeNode",
+            "factory/line/machine/temperature"})
+    public @NotNull String topic;
+
+    private final @NotNull TopicStructureCache cache = new TopicStructureCache(1_000);
+
+    @Setup
+    public void setUp() {
+        cache.get(topic);
+    }
+
+    @Benchmark
+    public @NotNull TopicStructure parse() {
+        return new TopicStructure(topic);
+    }
+
+    @Benchmark
+    public boolean parseAndValidate() {
+        return new TopicStructure(topic).isValid(NAMESPACE);
+    }
+
+    @Benchmark
+    public boolean cachedAndValidate() {
+        return cache.get(topic).isValid(NAMESPACE);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of birth payloads with the given number of metrics to JSON, with the Tahu serialization of
+ * {@link PayloadUtil#getPayloadAsJSON(ByteBuffer)} and its pretty printing by {@link PayloadUtil#asJSONFormatted} as
+ * well as with the {@link PayloadJsonWriter} of the JSON log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int metrics;
+
+    @Param({"PRETTY", "NDJSON"})
+    public @NotNull JsonLogFormat format;
+
+    private @NotNull ByteBuffer payload;
+    private @NotNull String json;
+    private @NotNull SparkplugBPayload decoded;
+    private @NotNull PayloadJsonWriter jsonWriter;
+
+    @Setup
+    public void setUp() throws Exception {
+        payload = SparkplugFleet.builder(42).edgeNodes(1).nodeMetrics(metrics).build().getEdgeNode(0).nbirth()
+                .getPayload();
+        json = PayloadUtil.getPayloadAsJSON(payload);
+        final var bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        decoded = new SparkplugBPayloadDecoder().buildFromByteArray(bytes, null);
+        jsonWriter = new PayloadJsonWriter(format);
+    }
+
+    @Benchmark
+    public @NotNull String getPayloadAsJSON() {
+        return PayloadUtil.getPayloadAsJSON(payload);
+    }
+
+    @Benchmark
+    public @NotNull String asJSONFormatted() {
+        return PayloadUtil.asJSONFormatted(json);
+    }
+
+    @Benchmark
+    public @NotNull String payloadJsonWriter() throws IOException {
+        return format == JsonLogFormat.NDJSON ?
+                jsonWriter.toJsonLine("client", "spBv1.0/group/NBIRTH/edgeNode", decoded) :
+                jsonWriter.toJson(decoded);
+    }
+}
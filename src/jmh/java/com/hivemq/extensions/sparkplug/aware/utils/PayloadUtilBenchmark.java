@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressionCodec;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
+import org.eclipse.tahu.util.CompressionAlgorithm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the timestamp rewrite of payloads with a {@code bdSeq} and the given number of metrics, the NBIRTH of an
+ * edge node of a {@link SparkplugFleet}.
+ * <p>
+ * {@link #modifyTimestamp()} rewrites a payload that is compressed with the given algorithm, like the NDEATH of an edge
+ * node that compresses its payloads. {@link #modifyTimestampAndCompress()} rewrites an uncompressed payload and
+ * compresses it with the given algorithm, like an NDEATH with {@code sparkplug.compression=true}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadUtilBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    public int metrics;
+
+    @Param({"NONE", "GZIP", "DEFLATE"})
+    public @NotNull String compression;
+
+    private @Nullable CompressionCodec codec;
+    private @NotNull ByteBuffer uncompressed;
+    private @NotNull ByteBuffer payload;
+
+    @Setup
+    public void setUp() {
+        codec = CompressionCodec.forAlgorithm(compression);
+        final var fleet = SparkplugFleet.builder(42).edgeNodes(1).nodeMetrics(metrics);
+        uncompressed = fleet.build().getEdgeNode(0).nbirth().getPayload();
+        if (codec != null) {
+            // the same seed generates the same birth, compressed by Tahu like on an edge node
+            fleet.compression(CompressionAlgorithm.valueOf(compression));
+        }
+        payload = fleet.build().getEdgeNode(0).nbirth().getPayload();
+    }
+
+    @Benchmark
+    public @NotNull ByteBuffer modifyTimestamp() {
+        return PayloadUtil.modifySparkplugTimestamp(null, payload);
+    }
+
+    @Benchmark
+    public @NotNull ByteBuffer modifyTimestampAndCompress() {
+        return PayloadUtil.modifySparkplugTimestamp(codec, uncompressed);
+    }
+}
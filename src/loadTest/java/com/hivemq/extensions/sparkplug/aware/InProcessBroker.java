@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.hivemq.extension.sdk.api.interceptor.connect.ConnectInboundInterceptor;
+import com.hivemq.extension.sdk.api.interceptor.publish.PublishInboundInterceptor;
+import com.hivemq.extension.sdk.api.interceptor.publish.PublishOutboundInterceptor;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.sdk.SdkStandIns;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A minimal broker that runs in the process of the load test and calls the interceptors of the extension like HiveMQ.
+ * <p>
+ * Only the parts of the message flow that the extension observes are simulated:
+ * <ul>
+ * <li>A CONNECT passes the connect interceptor and the Last Will of the client is kept until it disconnects.</li>
+ * <li>A PUBLISH of a client passes the inbound interceptor on the thread of the client. If its delivery is not
+ * prevented, it is delivered on the same thread to every matching subscription, passing the outbound interceptor once
+ * per subscription.</li>
+ * <li>A PUBLISH of the {@link PublishService}, e.g. the clone of a birth, skips the inbound interceptor and is
+ * delivered on one of the broker threads, its future completes after the delivery.</li>
+ * <li>A client that disconnects without DISCONNECT publishes its Last Will, which skips the inbound interceptor and is
+ * delivered on the thread that closes the connection.</li>
+ * </ul>
+ * QoS flows, sessions, retained messages and shared subscriptions are not simulated.
+ */
+final class InProcessBroker implements AutoCloseable {
+
+    private static final @NotNull ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final @NotNull List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final @NotNull ConcurrentHashMap<String, Will> wills = new ConcurrentHashMap<>();
+    private final @NotNull ExecutorService brokerExecutor;
+    private final @NotNull PublishService publishService;
+    private final @NotNull LongAdder published = new LongAdder();
+    private final @NotNull LongAdder prevented = new LongAdder();
+    private final @NotNull LongAdder delivered = new LongAdder();
+    private final @NotNull LongAdder willsPublished = new LongAdder();
+    private volatile @Nullable ConnectInboundInterceptor connectInterceptor;
+    private volatile @Nullable PublishInboundInterceptor inboundInterceptor;
+    private volatile @Nullable PublishOutboundInterceptor outboundInterceptor;
+
+    /**
+     * @param brokerThreads the number of threads that deliver the publishes of the {@link PublishService}
+     */
+    InProcessBroker(final int brokerThreads) {
+        final var threadNumber = new AtomicInteger();
+        brokerExecutor = Executors.newFixedThreadPool(brokerThreads, runnable -> {
+            final var thread = new Thread(runnable, "in-process-broker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        publishService = SdkStandIns.publishService(this::publishFromService);
+    }
+
+    /**
+     * @return the publish service of the extension, the publishes are delivered to the matching subscriptions
+     */
+    @NotNull PublishService getPublishService() {
+        return publishService;
+    }
+
+    /**
+     * Registers the interceptors of the extension, they are created after the broker because they need its
+     * {@link PublishService}.
+     */
+    void setInterceptors(
+            final @NotNull ConnectInboundInterceptor connectInterceptor,
+            final @NotNull PublishInboundInterceptor inboundInterceptor,
+            final @NotNull PublishOutboundInterceptor outboundInterceptor) {
+        this.connectInterceptor = connectInterceptor;
+        this.inboundInterceptor = inboundInterceptor;
+        this.outboundInterceptor = outboundInterceptor;
+    }
+
+    void subscribe(
+            final @NotNull String clientId,
+            final @NotNull String topicFilter,
+            final @NotNull Subscriber subscriber) {
+        subscriptions.add(new Subscription(clientId, topicFilter, subscriber));
+    }
+
+    /**
+     * @param willTopic   the topic of the Last Will or {@code null} if the client has no Last Will
+     * @param willPayload the payload of the Last Will
+     */
+    void connect(
+            final @NotNull String clientId,
+            final @Nullable String willTopic,
+            final @NotNull ByteBuffer willPayload) {
+        final var connectInterceptor = this.connectInterceptor;
+        if (connectInterceptor != null) {
+            connectInterceptor.onConnect(SdkStandIns.connectInput(clientId, willTopic, willPayload),
+                    SdkStandIns.connectOutput());
+        }
+        if (willTopic != null) {
+            wills.put(clientId, new Will(willTopic, willPayload));
+        } else {
+            wills.remove(clientId);
+        }
+    }
+
+    /**
+     * Publishes a message of a client and delivers it to the matching subscriptions.
+     *
+     * @return {@code false} if the inbound interceptor prevented the delivery
+     */
+    boolean publish(final @NotNull String clientId, final @NotNull String topic, final @NotNull ByteBuffer payload) {
+        final var publishNanos = System.nanoTime();
+        published.increment();
+        final var inboundInterceptor = this.inboundInterceptor;
+        var deliveredPayload = payload;
+        if (inboundInterceptor != null) {
+            final var outcome = new SdkStandIns.Outcome(payload);
+            inboundInterceptor.onInboundPublish(SdkStandIns.inboundInput(clientId, topic, payload),
+                    SdkStandIns.inboundOutput(topic, outcome));
+            if (outcome.isPrevented()) {
+                prevented.increment();
+                return false;
+            }
+            deliveredPayload = outcome.getPayload();
+        }
+        deliver(topic, deliveredPayload, publishNanos);
+        return true;
+    }
+
+    /**
+     * Closes the connection of a client, the Last Will is published if the client did not send a DISCONNECT.
+     *
+     * @return {@code true} if the Last Will was published
+     */
+    boolean disconnect(final @NotNull String clientId, final boolean graceful) {
+        final var will = wills.remove(clientId);
+        if (graceful || will == null) {
+            return false;
+        }
+        willsPublished.increment();
+        deliver(will.topic, will.payload, System.nanoTime());
+        return true;
+    }
+
+    long getPublished() {
+        return published.sum();
+    }
+
+    long getPrevented() {
+        return prevented.sum();
+    }
+
+    long getDelivered() {
+        return delivered.sum();
+    }
+
+    long getWillsPublished() {
+        return willsPublished.sum();
+    }
+
+    @Override
+    public void close() {
+        brokerExecutor.shutdown();
+        try {
+            if (!brokerExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                brokerExecutor.shutdownNow();
+            }
+        } catch (final InterruptedException e) {
+            brokerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private @NotNull CompletableFuture<Void> publishFromService(final @NotNull Publish publish) {
+        final var publishNanos = System.nanoTime();
+        return CompletableFuture.runAsync(() -> deliver(publish.getTopic(),
+                publish.getPayload().orElse(EMPTY_PAYLOAD),
+                publishNanos), brokerExecutor);
+    }
+
+    private void deliver(final @NotNull String topic, final @NotNull ByteBuffer payload, final long publishNanos) {
+        final var outboundInterceptor = this.outboundInterceptor;
+        for (final var subscription : subscriptions) {
+            if (!matches(subscription.topicFilter, topic)) {
+                continue;
+            }
+            // every subscriber reads its own view of the payload, like with the copies of the broker
+            var deliveredPayload = payload.duplicate();
+            if (outboundInterceptor != null) {
+                final var outcome = new SdkStandIns.Outcome(deliveredPayload);
+                outboundInterceptor.onOutboundPublish(SdkStandIns.outboundInput(subscription.clientId,
+                        topic,
+                        deliveredPayload), SdkStandIns.outboundOutput(topic, outcome));
+                if (outcome.isPrevented()) {
+                    prevented.increment();
+                    continue;
+                }
+                deliveredPayload = outcome.getPayload();
+            }
+            delivered.increment();
+            subscription.subscriber.onPublish(topic, deliveredPayload, publishNanos);
+        }
+    }
+
+    /**
+     * Matches a topic against an MQTT topic filter with the wildcards {@code +} and {@code #}. Wildcards at the first
+     * level do not match topics that start with {@code $}.
+     */
+    static boolean matches(final @NotNull String topicFilter, final @NotNull String topic) {
+        if (!topic.isEmpty() && topic.charAt(0) == '$' && !topicFilter.isEmpty() &&
+                (topicFilter.charAt(0) == '+' || topicFilter.charAt(0) == '#')) {
+            return false;
+        }
+        var filterIndex = 0;
+        var topicIndex = 0;
+        while (filterIndex < topicFilter.length()) {
+            final var c = topicFilter.charAt(filterIndex);
+            if (c == '#') {
+                // also matches the parent level, e.g. "a/#" matches "a"
+                return true;
+            }
+            if (c == '+') {
+                while (topicIndex < topic.length() && topic.charAt(topicIndex) != '/') {
+                    topicIndex++;
+                }
+                filterIndex++;
+                continue;
+            }
+            if (topicIndex < topic.length() && topic.charAt(topicIndex) == c) {
+                filterIndex++;
+                topicIndex++;
+                continue;
+            }
+            // "a/#" matches "a": the topic ends where the filter continues with "/#"
+            return topicIndex == topic.length() &&
+                    topicFilter.startsWith("/#", filterIndex) &&
+                    filterIndex + 2 == topicFilter.length();
+        }
+        return topicIndex == topic.length();
+    }
+
+    /**
+     * Receives the publishes of a subscription on the thread that delivers them.
+     */
+    @FunctionalInterface
+    interface Subscriber {
+
+        /**
+         * @param payload      the payload after the outbound interceptor
+         * @param publishNanos the {@link System#nanoTime()} when the broker received the publish
+         */
+        void onPublish(@NotNull String topic, @NotNull ByteBuffer payload, long publishNanos);
+    }
+
+    private static final class Subscription {
+
+        private final @NotNull String clientId;
+        private final @NotNull String topicFilter;
+        private final @NotNull Subscriber subscriber;
+
+        private Subscription(
+                final @NotNull String clientId,
+                final @NotNull String topicFilter,
+                final @NotNull Subscriber subscriber) {
+            this.clientId = clientId;
+            this.topicFilter = topicFilter;
+            this.subscriber = subscriber;
+        }
+    }
+
+    private static final class Will {
+
+        private final @NotNull String topic;
+        private final @NotNull ByteBuffer payload;
+
+        private Will(final @NotNull String topic, final @NotNull ByteBuffer payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InProcessBrokerTest {
+
+    @Test
+    void matches_wildcards() {
+        assertThat(InProcessBroker.matches("spBv1.0/#", "spBv1.0/group/NDATA/node")).isTrue();
+        assertThat(InProcessBroker.matches("spBv1.0/#", "spBv1.0")).isTrue();
+        assertThat(InProcessBroker.matches("spBv1.0/+/NDATA/+", "spBv1.0/group/NDATA/node")).isTrue();
+        assertThat(InProcessBroker.matches("spBv1.0/+/NDATA/+", "spBv1.0/group/NBIRTH/node")).isFalse();
+        assertThat(InProcessBroker.matches("spBv1.0/group", "spBv1.0/groups")).isFalse();
+        assertThat(InProcessBroker.matches("spBv1.0/groups", "spBv1.0/group")).isFalse();
+        assertThat(InProcessBroker.matches("$sparkplug/certificates/#", "$sparkplug/certificates/spBv1.0/g/NBIRTH/n"))
+                .isTrue();
+        assertThat(InProcessBroker.matches("#", "$sparkplug/certificates/spBv1.0/g/NBIRTH/n")).isFalse();
+        assertThat(InProcessBroker.matches("+/certificates/#", "$sparkplug/certificates/spBv1.0")).isFalse();
+    }
+
+    @Test
+    void disconnect_withoutDisconnect_publishesWill() {
+        try (final var broker = new InProcessBroker(1)) {
+            final var topics = new ArrayList<String>();
+            broker.subscribe("subscriber", "spBv1.0/#", (topic, payload, publishNanos) -> topics.add(topic));
+            final var will = ByteBuffer.wrap(new byte[]{1, 2, 3}).asReadOnlyBuffer();
+            broker.connect("node-1", "spBv1.0/group/NDEATH/node-1", will);
+            broker.connect("node-2", "spBv1.0/group/NDEATH/node-2", will);
+
+            assertThat(broker.disconnect("node-1", false)).isTrue();
+            assertThat(broker.disconnect("node-2", true)).isFalse();
+            assertThat(broker.disconnect("node-1", false)).isFalse();
+            assertThat(topics).containsExactly("spBv1.0/group/NDEATH/node-1");
+            assertThat(broker.getWillsPublished()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the heap that the {@link LastValueStore} needs per metric for a {@link SparkplugFleet} of one million
+ * metrics, the figure that the documentation of {@code sparkplug.lastvalues} states.
+ * <p>
+ * The births and one data message per edge node and device are stored, then the retained heap is compared with the
+ * heap before the store was created. Run with {@code ./gradlew loadTest --tests '*LastValueFootprintTest'}, the
+ * result is logged.
+ */
+class LastValueFootprintTest {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(LastValueFootprintTest.class);
+
+    private static final int EDGE_NODES = 1_000;
+    private static final int DEVICES = 9;
+    private static final int METRICS = 100;
+    // the metrics of the births include the bdSeq of every edge node
+    private static final long EXPECTED_METRICS = (long) EDGE_NODES * (DEVICES + 1) * METRICS + EDGE_NODES;
+    private static final long MAX_BYTES_PER_METRIC = 150;
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.MINUTES)
+    void oneMillionMetrics_heapPerMetric() throws Exception {
+        final var fleet = SparkplugFleet.builder(42)
+                .edgeNodes(EDGE_NODES)
+                .devices(DEVICES)
+                .nodeMetrics(METRICS)
+                .deviceMetrics(METRICS)
+                .dataMetrics(METRICS)
+                .build();
+        var nameBytes = 0L;
+        var names = 0L;
+        for (final var edgeNode : fleet.getEdgeNodes()) {
+            for (final var metric : edgeNode.getNodeMetrics()) {
+                nameBytes += metric.getName().getBytes(StandardCharsets.UTF_8).length;
+                names++;
+            }
+        }
+
+        final var before = usedHeap();
+        final var store = new LastValueStore();
+        for (final var edgeNode : fleet.getEdgeNodes()) {
+            for (final var birth : edgeNode.births()) {
+                store.onPublish(new TopicStructure(birth.getTopic()), birth.getPayload(), null);
+            }
+            final var ndata = edgeNode.ndata();
+            store.onPublish(new TopicStructure(ndata.getTopic()), ndata.getPayload(), null);
+            for (final var deviceId : edgeNode.getDeviceIds()) {
+                final var ddata = edgeNode.ddata(deviceId);
+                store.onPublish(new TopicStructure(ddata.getTopic()), ddata.getPayload(), null);
+            }
+        }
+        final var after = usedHeap();
+        // the fleet is part of both measurements
+        Reference.reachabilityFence(fleet);
+
+        final var metricCount = store.getMetricCount();
+        final var bytesPerMetric = (after - before) / metricCount;
+        LOG.info("Last value store: {} metrics with names of {} bytes on average retain {} MB, {} bytes per metric",
+                metricCount,
+                nameBytes / names,
+                (after - before) / (1024 * 1024),
+                bytesPerMetric);
+        assertThat(metricCount).isEqualTo(EXPECTED_METRICS);
+        assertThat(store.getUnresolved()).isZero();
+        assertThat(bytesPerMetric).isPositive().isLessThanOrEqualTo(MAX_BYTES_PER_METRIC);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final var memory = ManagementFactory.getMemoryMXBean();
+        var used = Long.MAX_VALUE;
+        // repeated collections settle the heap, the smallest usage is the retained heap
+        for (var i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.
+ * <p>
+ * Latencies below {@value #SUB_BUCKETS} ns are counted exactly, every larger power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets. A percentile is reported as the upper bound of its bucket, so it is at most
+ * 1/{@value #SUB_BUCKETS} (about 1.6 %) above the exact value. The histogram has a fixed size of about 30 KB, so it can
+ * record any number of latencies from any number of threads without allocating.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final @NotNull AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS);
+    private final @NotNull LongAdder count = new LongAdder();
+    private final @NotNull LongAdder sum = new LongAdder();
+    private final @NotNull LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final @NotNull LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(final long nanos) {
+        final var latency = Math.max(nanos, 0);
+        counts.incrementAndGet(index(latency));
+        count.increment();
+        sum.add(latency);
+        min.accumulate(latency);
+        max.accumulate(latency);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMin() {
+        return getCount() > 0 ? min.get() : 0;
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    double getMean() {
+        final var count = getCount();
+        return count > 0 ? (double) sum.sum() / count : 0;
+    }
+
+    /**
+     * Must not be called while latencies are recorded.
+     *
+     * @param  percentile the percentile between 0 and 100, e.g. {@code 99.9}
+     * @return            the latency in nanoseconds that the given percentage of all latencies does not exceed
+     */
+    long getPercentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        final var count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        final var rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        var cumulated = 0L;
+        for (var index = 0; index < counts.length(); index++) {
+            cumulated += counts.get(index);
+            if (cumulated >= rank) {
+                return Math.min(upperBound(index), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int index(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        // the highest SUB_BUCKET_BITS + 1 bits of the latency select the bucket within its power of two
+        final var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    static long upperBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final var shift = index / SUB_BUCKETS - 1;
+        final var subBucket = (long) (index % SUB_BUCKETS + SUB_BUCKETS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
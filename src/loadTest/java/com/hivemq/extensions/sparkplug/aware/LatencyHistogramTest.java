@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LatencyHistogramTest {
+
+    @Test
+    void index_upperBound_coverAllLatencies() {
+        for (final var nanos : new long[]{0, 1, 63, 64, 65, 127, 128, 129, 1_000, 1_000_000, Long.MAX_VALUE}) {
+            final var index = LatencyHistogram.index(nanos);
+            assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(nanos);
+            assertThat(LatencyHistogram.upperBound(index) - nanos).isLessThanOrEqualTo(nanos / 64);
+            if (index > 0) {
+                assertThat(LatencyHistogram.upperBound(index - 1)).isLessThan(nanos);
+            }
+        }
+    }
+
+    @Test
+    void getPercentile_uniformLatencies_withinOnePercent() {
+        final var histogram = new LatencyHistogram();
+        for (var nanos = 1L; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1_000);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(100_000);
+        assertThat(histogram.getMin()).isEqualTo(1_000);
+        assertThat(histogram.getMax()).isEqualTo(100_000_000);
+        assertThat(histogram.getMean()).isEqualTo(50_000_500.0);
+        assertThat(histogram.getPercentile(50)).isBetween(50_000_000L, 50_800_000L);
+        assertThat(histogram.getPercentile(99)).isBetween(99_000_000L, 100_000_000L);
+        assertThat(histogram.getPercentile(99.9)).isBetween(99_900_000L, 100_000_000L);
+        assertThat(histogram.getPercentile(100)).isEqualTo(100_000_000);
+    }
+
+    @Test
+    void getPercentile_empty_zero() {
+        final var histogram = new LatencyHistogram();
+
+        assertThat(histogram.getPercentile(99)).isZero();
+        assertThat(histogram.getMin()).isZero();
+        assertThat(histogram.getMean()).isZero();
+        assertThatThrownBy(() -> histogram.getPercentile(101)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The machine-readable result of a load test.
+ * <p>
+ * The report is a JSON document with the extension version, the environment, the settings and the configuration of the
+ * run, the throughput and the latency percentiles of every scenario and the counters of the extension. The keys are
+ * stable, so reports of different releases can be compared field by field. Latencies are reported in microseconds.
+ */
+final class LoadTestReport {
+
+    /**
+     * Incremented when a field of the report is renamed or changes its meaning.
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static final @NotNull JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final @Nullable String version;
+    private final @NotNull LoadTestSettings settings;
+    private final @NotNull List<Scenario> scenarios = new ArrayList<>();
+    private final @NotNull Map<String, Number> counters = new LinkedHashMap<>();
+
+    /**
+     * @param version the version of the extension or {@code null} if it is unknown
+     */
+    LoadTestReport(final @Nullable String version, final @NotNull LoadTestSettings settings) {
+        this.version = version;
+        this.settings = settings;
+    }
+
+    void addScenario(final @NotNull Scenario scenario) {
+        scenarios.add(scenario);
+    }
+
+    void addCounter(final @NotNull String name, final @NotNull Number value) {
+        counters.put(name, value);
+    }
+
+    void write(final @NotNull Path file) throws IOException {
+        final var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (final var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             final var generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.useDefaultPrettyPrinter();
+            write(generator);
+        }
+    }
+
+    private void write(final @NotNull JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("formatVersion", FORMAT_VERSION);
+        generator.writeStringField("version", version);
+        generator.writeStringField("timestamp", Instant.now().toString());
+
+        generator.writeObjectFieldStart("environment");
+        generator.writeStringField("java", System.getProperty("java.version"));
+        generator.writeStringField("vm", System.getProperty("java.vm.name"));
+        generator.writeStringField("os", System.getProperty("os.name") + ' ' + System.getProperty("os.version"));
+        generator.writeStringField("arch", System.getProperty("os.arch"));
+        generator.writeNumberField("processors", Runtime.getRuntime().availableProcessors());
+        generator.writeNumberField("maxMemory", Runtime.getRuntime().maxMemory());
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("settings");
+        writeNumbers(generator, settings.toMap());
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("configuration");
+        for (final var property : settings.getConfiguration().entrySet()) {
+            generator.writeStringField(property.getKey(), property.getValue());
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("scenarios");
+        for (final var scenario : scenarios) {
+            writeScenario(generator, scenario);
+        }
+        generator.writeEndObject();
+
+        generator.writeObjectFieldStart("counters");
+        writeNumbers(generator, counters);
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeScenario(final @NotNull JsonGenerator generator, final @NotNull Scenario scenario)
+            throws IOException {
+        final var latencies = scenario.getLatencies();
+        generator.writeObjectFieldStart(scenario.getName());
+        generator.writeNumberField("messages", scenario.getMessages());
+        generator.writeNumberField("deliveries", scenario.getDeliveries());
+        generator.writeNumberField("durationMillis", round(scenario.getDurationNanos() / 1e6));
+        generator.writeNumberField("messagesPerSecond", round(scenario.getMessagesPerSecond()));
+        generator.writeNumberField("deliveriesPerSecond", round(scenario.getDeliveriesPerSecond()));
+        generator.writeObjectFieldStart("latencyMicros");
+        generator.writeNumberField("min", micros(latencies.getMin()));
+        generator.writeNumberField("mean", round(latencies.getMean() / 1e3));
+        for (var i = 0; i < PERCENTILES.length; i++) {
+            generator.writeNumberField(PERCENTILE_NAMES[i], micros(latencies.getPercentile(PERCENTILES[i])));
+        }
+        generator.writeNumberField("max", micros(latencies.getMax()));
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static void writeNumbers(
+            final @NotNull JsonGenerator generator,
+            final @NotNull Map<String, Number> numbers) throws IOException {
+        for (final var number : numbers.entrySet()) {
+            final var value = number.getValue();
+            if (value instanceof Double || value instanceof Float) {
+                generator.writeNumberField(number.getKey(), round(value.doubleValue()));
+            } else {
+                generator.writeNumberField(number.getKey(), value.longValue());
+            }
+        }
+    }
+
+    private static double micros(final long nanos) {
+        return round(nanos / 1e3);
+    }
+
+    private static double round(final double value) {
+        return Math.round(value * 1_000) / 1_000.0;
+    }
+}
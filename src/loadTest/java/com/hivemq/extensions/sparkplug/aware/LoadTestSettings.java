@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The size of a load test, read from the system properties with the prefix {@value #PREFIX}.
+ * <p>
+ * The Gradle task {@code loadTest} passes the Gradle properties with the same prefix, e.g.
+ * {@code ./gradlew loadTest -PloadTest.edgeNodes=500}. Properties with the prefix {@value #CONFIG_PREFIX} are written
+ * into the configuration of the extension, e.g. {@code -PloadTest.config.sparkplug.lastvalues=true}.
+ */
+final class LoadTestSettings {
+
+    static final @NotNull String PREFIX = "loadTest.";
+    static final @NotNull String CONFIG_PREFIX = PREFIX + "config.";
+
+    private final long seed;
+    private final int groups;
+    private final int edgeNodes;
+    private final int devices;
+    private final int metrics;
+    private final int dataMetrics;
+    private final int subscribers;
+    private final int warmupMessages;
+    private final int dataMessages;
+    private final int publisherThreads;
+    private final int brokerThreads;
+    private final @NotNull Map<String, String> configuration;
+
+    private LoadTestSettings(final @NotNull Properties properties) {
+        seed = getLong(properties, "seed", 42);
+        groups = getInt(properties, "groups", 10);
+        edgeNodes = getInt(properties, "edgeNodes", 100);
+        devices = getInt(properties, "devices", 2);
+        metrics = getInt(properties, "metrics", 50);
+        dataMetrics = getInt(properties, "dataMetrics", 5);
+        subscribers = getInt(properties, "subscribers", 4);
+        warmupMessages = getInt(properties, "warmupMessages", 20);
+        dataMessages = getInt(properties, "dataMessages", 100);
+        publisherThreads = getInt(properties,
+                "publisherThreads",
+                Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+        brokerThreads = getInt(properties, "brokerThreads", 2);
+        final var configuration = new LinkedHashMap<String, String>();
+        configuration.put("sparkplug.version", "spBv1.0");
+        for (final var name : properties.stringPropertyNames()) {
+            if (name.startsWith(CONFIG_PREFIX)) {
+                configuration.put(name.substring(CONFIG_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        this.configuration = configuration;
+        if (dataMetrics > metrics) {
+            throw new IllegalArgumentException("Data metrics must not exceed the metrics of an edge node or device");
+        }
+    }
+
+    static @NotNull LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(System.getProperties());
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    int getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the number of edge nodes per group
+     */
+    int getEdgeNodes() {
+        return edgeNodes;
+    }
+
+    /**
+     * @return the number of devices per edge node
+     */
+    int getDevices() {
+        return devices;
+    }
+
+    /**
+     * @return the number of metrics per edge node and per device
+     */
+    int getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of metrics per data message
+     */
+    int getDataMetrics() {
+        return dataMetrics;
+    }
+
+    /**
+     * @return the number of host applications that subscribe to the namespace and to the system topic
+     */
+    int getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * @return the number of data messages per edge node that are published before the measurement
+     */
+    int getWarmupMessages() {
+        return warmupMessages;
+    }
+
+    /**
+     * @return the number of measured data messages per edge node
+     */
+    int getDataMessages() {
+        return dataMessages;
+    }
+
+    int getPublisherThreads() {
+        return publisherThreads;
+    }
+
+    int getBrokerThreads() {
+        return brokerThreads;
+    }
+
+    int getTotalEdgeNodes() {
+        return groups * edgeNodes;
+    }
+
+    /**
+     * @return the lines of the configuration file of the extension
+     */
+    @NotNull List<String> getConfigurationLines() {
+        final var lines = new ArrayList<String>(configuration.size());
+        configuration.forEach((name, value) -> lines.add(name + '=' + value));
+        return lines;
+    }
+
+    @NotNull Map<String, String> getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return the settings in the order of the report
+     */
+    @NotNull Map<String, Number> toMap() {
+        final var settings = new LinkedHashMap<String, Number>();
+        settings.put("seed", seed);
+        settings.put("groups", groups);
+        settings.put("edgeNodes", edgeNodes);
+        settings.put("devices", devices);
+        settings.put("metrics", metrics);
+        settings.put("dataMetrics", dataMetrics);
+        settings.put("subscribers", subscribers);
+        settings.put("warmupMessages", warmupMessages);
+        settings.put("dataMessages", dataMessages);
+        settings.put("publisherThreads", publisherThreads);
+        settings.put("brokerThreads", brokerThreads);
+        return settings;
+    }
+
+    private static long getLong(final @NotNull Properties properties, final @NotNull String name, final long value) {
+        final var property = properties.getProperty(PREFIX + name);
+        if (property == null || property.isBlank()) {
+            return value;
+        }
+        try {
+            return Long.parseLong(property.trim());
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Load test setting '" + PREFIX + name + "' is not a number: " +
+                    property);
+        }
+    }
+
+    private static int getInt(final @NotNull Properties properties, final @NotNull String name, final int value) {
+        final var result = getLong(properties, name, value);
+        if (result < 0 || result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Load test setting '" + PREFIX + name + "' is out of range: " + result);
+        }
+        return (int) result;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurement of one phase of a load test: the published messages, their deliveries to the subscribers, the
+ * latency of every delivery and the duration of the phase.
+ * <p>
+ * The latency of a delivery is measured from the publish of its message, or from the start of the phase if all
+ * messages are caused by one event, e.g. the NDEATH wills of a mass disconnect.
+ */
+final class Scenario {
+
+    private final @NotNull String name;
+    private final boolean fromStart;
+    private final @NotNull LatencyHistogram latencies = new LatencyHistogram();
+    private final @NotNull LongAdder messages = new LongAdder();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * @param fromStart {@code true} to measure the latencies from the start of the phase
+     */
+    Scenario(final @NotNull String name, final boolean fromStart) {
+        this.name = name;
+        this.fromStart = fromStart;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    void published() {
+        messages.increment();
+    }
+
+    void delivered(final long publishNanos) {
+        latencies.record(System.nanoTime() - (fromStart ? startNanos : publishNanos));
+    }
+
+    @NotNull String getName() {
+        return name;
+    }
+
+    long getMessages() {
+        return messages.sum();
+    }
+
+    long getDeliveries() {
+        return latencies.getCount();
+    }
+
+    long getDurationNanos() {
+        return Math.max(endNanos - startNanos, 1);
+    }
+
+    double getMessagesPerSecond() {
+        return getMessages() * 1e9 / getDurationNanos();
+    }
+
+    double getDeliveriesPerSecond() {
+        return getDeliveries() * 1e9 / getDurationNanos();
+    }
+
+    @NotNull LatencyHistogram getLatencies() {
+        return latencies;
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.fleet.EdgeNodeSimulator;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugMessage;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.metrics2topic.Metrics2Topic;
+import com.hivemq.extensions.sparkplug.aware.metrics2topic.Metrics2TopicPublisher;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthFingerprints;
+import com.hivemq.extensions.sparkplug.aware.republish.SysTopicRepublisher;
+import com.hivemq.extensions.sparkplug.aware.sdk.SdkStandIns;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathPayloadCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the interceptors of the extension with a {@link SparkplugFleet} through an {@link InProcessBroker} and
+ * reports the throughput and the latency of the Sparkplug message flows, see {@link LoadTestReport}.
+ * <p>
+ * The interceptors are wired like in {@link SparkplugAwareMain}, the clones of the births are built with the publish
+ * builders of the {@link SdkStandIns}. The subscribers are host applications that subscribe to the namespace and to
+ * the system topic. The test runs three scenarios one after the other:
+ * <ul>
+ * <li>{@code birthRepublish}: all edge nodes connect with their NDEATH as Last Will and publish their NBIRTH and the
+ * DBIRTHs of their devices. The latency is measured from the publish of a birth to the delivery of its clone on the
+ * system topic.</li>
+ * <li>{@code dataPassThrough}: the edge nodes publish NDATA and DDATA messages in rounds, after a warmup that is not
+ * measured. The latency is measured from the publish to the delivery to every subscriber.</li>
+ * <li>{@code ndeathMassDisconnect}: all edge nodes lose their connection at the same time, so the broker publishes
+ * their NDEATH wills. The latency is measured from the start of the mass disconnect to the delivery of every NDEATH
+ * with its rewritten timestamp.</li>
+ * </ul>
+ * The edge nodes are distributed over the publisher threads, every edge node is driven by a single thread, so its
+ * sequence numbers stay in order.
+ */
+class SparkplugLoadTest {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(SparkplugLoadTest.class);
+
+    private static final @NotNull String NAMESPACE = "spBv1.0";
+    private static final @NotNull String REPORT_PROPERTY = LoadTestSettings.PREFIX + "report";
+    private static final @NotNull String VERSION_PROPERTY = LoadTestSettings.PREFIX + "version";
+    private static final @NotNull String DEFAULT_REPORT = "build/reports/loadTest/report.json";
+    private static final long REPUBLISH_TIMEOUT_MILLIS = 60_000;
+
+    @TempDir
+    private @NotNull Path configDirectory;
+
+    private volatile @Nullable Scenario current;
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.MINUTES)
+    void fleet_births_data_and_mass_disconnect() throws Exception {
+        final var settings = LoadTestSettings.fromSystemProperties();
+        final var configuration = createConfiguration(settings);
+        final var sysTopic = configuration.getSparkplugSysTopic();
+        final var fleet = SparkplugFleet.builder(settings.getSeed())
+                .groups(settings.getGroups())
+                .edgeNodes(settings.getEdgeNodes())
+                .devices(settings.getDevices())
+                .nodeMetrics(settings.getMetrics())
+                .deviceMetrics(settings.getMetrics())
+                .dataMetrics(settings.getDataMetrics())
+                .build();
+        final var partitions = partition(fleet.getEdgeNodes(), settings.getPublisherThreads());
+        final var births = new Scenario("birthRepublish", false);
+        final var data = new Scenario("dataPassThrough", false);
+        final var deaths = new Scenario("ndeathMassDisconnect", true);
+        final var birthNanos = new ConcurrentHashMap<String, Long>();
+        final var publishers = Executors.newFixedThreadPool(settings.getPublisherThreads());
+
+        try (final var broker = new InProcessBroker(settings.getBrokerThreads())) {
+            final var topicStructureCache = new TopicStructureCache(configuration.getTopicCacheSize());
+            final var ndeathTemplateStore = new NdeathTemplateStore(configuration.getNdeathTemplateSize());
+            final var registry = new SparkplugRegistry(configuration.getSeqValidationEnabled());
+            final var metrics = new SparkplugMetrics(new MetricRegistry());
+            final var jsonLog = new JsonLogPipeline(new PayloadJsonWriter(configuration.getJsonLogFormat()),
+                    configuration.getJsonLogQueueSize(),
+                    configuration.getJsonLogOverflowPolicy(),
+                    configuration.getJsonLogSampleRate(),
+                    registry,
+                    metrics);
+            final var birthFingerprints = new BirthFingerprints(configuration.getSysTopicDedupMode(),
+                    configuration.getSparkplugSystopicMsgexpiry(),
+                    configuration.getSysTopicDedupSize());
+            final var republisher = new SysTopicRepublisher(broker.getPublishService(),
+                    configuration.getSysTopicInFlightMax(),
+                    configuration.getSysTopicQueueSize(),
+                    birthFingerprints::invalidate,
+                    metrics);
+            final var metrics2Topic = configuration.getMetrics2TopicEnabled() ?
+                    new Metrics2Topic(configuration.getMetrics2TopicPrefix(),
+                            new Metrics2TopicPublisher(broker.getPublishService(),
+                                    configuration.getMetrics2TopicInFlightMax())) :
+                    null;
+            final var lastValues = configuration.getLastValuesEnabled() ? new LastValueStore() : null;
+            broker.setInterceptors(
+                    new SparkplugConnectInboundInterceptor(configuration, topicStructureCache, ndeathTemplateStore),
+                    new SparkplugPublishInboundInterceptor(configuration,
+                            republisher,
+                            birthFingerprints,
+                            null,
+                            topicStructureCache,
+                            ndeathTemplateStore,
+                            jsonLog,
+                            null,
+                            registry,
+                            metrics2Topic,
+                            lastValues,
+                            null,
+                            metrics,
+                            SdkStandIns::publishBuilder),
+                    new SparkplugPublishOutboundInterceptor(configuration,
+                            topicStructureCache,
+                            new NdeathPayloadCache(configuration.getNdeathTimestampBucket()),
+                            ndeathTemplateStore,
+                            jsonLog,
+                            registry,
+                            lastValues,
+                            null,
+                            metrics));
+            for (var i = 0; i < settings.getSubscribers(); i++) {
+                final var clientId = "host-application-" + i;
+                broker.subscribe(clientId, NAMESPACE + "/#", (topic, payload, publishNanos) -> {
+                    final var scenario = current;
+                    if (scenario != null) {
+                        scenario.delivered(publishNanos);
+                    }
+                });
+                broker.subscribe(clientId, sysTopic + "#", (topic, payload, publishNanos) -> {
+                    final var origin = birthNanos.get(topic.substring(sysTopic.length()));
+                    if (origin != null) {
+                        births.delivered(origin);
+                    }
+                });
+            }
+
+            // the births are only measured on the system topic, their pass-through is not part of a scenario
+            births.start();
+            runOnPublishers(publishers, partitions, edgeNodes -> {
+                for (final var edgeNode : edgeNodes) {
+                    final var will = edgeNode.ndeath();
+                    broker.connect(edgeNode.getClientId(), will.getTopic(), will.getPayload());
+                    for (final var birth : edgeNode.births()) {
+                        birthNanos.put(birth.getTopic(), System.nanoTime());
+                        births.published();
+                        broker.publish(birth.getClientId(), birth.getTopic(), birth.getPayload());
+                    }
+                }
+            });
+            awaitRepublished(republisher, births, settings.getSubscribers());
+            births.stop();
+
+            runOnPublishers(publishers,
+                    partitions,
+                    edgeNodes -> publishData(broker, edgeNodes, settings.getWarmupMessages(), null));
+            current = data;
+            data.start();
+            runOnPublishers(publishers,
+                    partitions,
+                    edgeNodes -> publishData(broker, edgeNodes, settings.getDataMessages(), data));
+            data.stop();
+
+            current = deaths;
+            deaths.start();
+            runOnPublishers(publishers, partitions, edgeNodes -> {
+                for (final var edgeNode : edgeNodes) {
+                    if (broker.disconnect(edgeNode.getClientId(), false)) {
+                        deaths.published();
+                    }
+                }
+            });
+            deaths.stop();
+            current = null;
+            jsonLog.stop();
+
+            final var report = new LoadTestReport(System.getProperty(VERSION_PROPERTY), settings);
+            for (final var scenario : List.of(births, data, deaths)) {
+                report.addScenario(scenario);
+                log(scenario);
+            }
+            report.addCounter("brokerPublished", broker.getPublished());
+            report.addCounter("brokerDelivered", broker.getDelivered());
+            report.addCounter("brokerPrevented", broker.getPrevented());
+            report.addCounter("brokerWillsPublished", broker.getWillsPublished());
+            report.addCounter("sysTopicPublished", republisher.getPublished());
+            report.addCounter("sysTopicFailed", republisher.getFailed());
+            report.addCounter("sysTopicCoalesced", republisher.getCoalesced());
+            report.addCounter("sysTopicRejected", republisher.getRejected());
+            report.addCounter("sysTopicAverageLatencyMillis", republisher.getAverageLatencyMillis());
+            report.addCounter("sysTopicMaxLatencyMillis", republisher.getMaxLatencyMillis());
+            report.addCounter("registryEdgeNodes", registry.getEdgeNodeCount());
+            report.addCounter("registryDevices", registry.getDeviceCount());
+            report.addCounter("sequenceGaps", registry.getGaps());
+            report.addCounter("sequenceDuplicates", registry.getDuplicates());
+            report.addCounter("sequenceOutOfOrder", registry.getOutOfOrder());
+            report.addCounter("staleDeaths", registry.getStaleDeaths());
+            report.addCounter("topicCacheHits", topicStructureCache.getHits());
+            report.addCounter("topicCacheMisses", topicStructureCache.getMisses());
+            report.addCounter("ndeathTemplateHits", ndeathTemplateStore.getHits());
+            report.addCounter("ndeathTemplateMisses", ndeathTemplateStore.getMisses());
+            final var reportFile = Path.of(System.getProperty(REPORT_PROPERTY, DEFAULT_REPORT));
+            report.write(reportFile);
+            LOG.info("Load test report written to '{}'", reportFile.toAbsolutePath());
+
+            final var subscribers = settings.getSubscribers();
+            assertThat(republisher.getFailed()).isZero();
+            assertThat(republisher.getPublished() +
+                    republisher.getCoalesced() +
+                    republisher.getRejected()).isEqualTo(births.getMessages());
+            assertThat(births.getDeliveries()).isEqualTo(republisher.getPublished() * subscribers);
+            assertThat(data.getMessages()).isEqualTo((long) fleet.getEdgeNodes().size() * settings.getDataMessages());
+            assertThat(data.getDeliveries()).isEqualTo(data.getMessages() * subscribers);
+            assertThat(deaths.getMessages()).isEqualTo(fleet.getEdgeNodes().size());
+            assertThat(deaths.getDeliveries()).isEqualTo(deaths.getMessages() * subscribers);
+            assertThat(registry.getGaps()).isZero();
+            assertThat(registry.getDuplicates()).isZero();
+            assertThat(registry.getOutOfOrder()).isZero();
+        } finally {
+            publishers.shutdownNow();
+        }
+    }
+
+    /**
+     * Publishes the given number of data messages per edge node in rounds, so the edge nodes of a thread take turns.
+     * Every round publishes either the NDATA of the edge node or the DDATA of one of its devices.
+     */
+    private static void publishData(
+            final @NotNull InProcessBroker broker,
+            final @NotNull List<EdgeNodeSimulator> edgeNodes,
+            final int messages,
+            final @Nullable Scenario scenario) {
+        for (var round = 0; round < messages; round++) {
+            for (final var edgeNode : edgeNodes) {
+                final var deviceIds = edgeNode.getDeviceIds();
+                final var source = round % (deviceIds.size() + 1);
+                final SparkplugMessage message =
+                        source == 0 ? edgeNode.ndata() : edgeNode.ddata(deviceIds.get(source - 1));
+                if (scenario != null) {
+                    scenario.published();
+                }
+                broker.publish(message.getClientId(), message.getTopic(), message.getPayload());
+            }
+        }
+    }
+
+    private static void awaitRepublished(
+            final @NotNull SysTopicRepublisher republisher,
+            final @NotNull Scenario births,
+            final int subscribers) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPUBLISH_TIMEOUT_MILLIS);
+        while (System.nanoTime() < deadline) {
+            final var completed = republisher.getPublished() +
+                    republisher.getFailed() +
+                    republisher.getCoalesced() +
+                    republisher.getRejected();
+            if (completed >= births.getMessages() &&
+                    births.getDeliveries() >= republisher.getPublished() * subscribers) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+        LOG.warn("Births were not republished within {} ms, {} queued, {} in flight",
+                REPUBLISH_TIMEOUT_MILLIS,
+                republisher.getQueued(),
+                republisher.getInFlight());
+    }
+
+    /**
+     * Runs the task once per partition on the publisher threads, all tasks are released at the same time.
+     */
+    private static void runOnPublishers(
+            final @NotNull ExecutorService publishers,
+            final @NotNull List<List<EdgeNodeSimulator>> partitions,
+            final @NotNull Consumer<List<EdgeNodeSimulator>> task) throws Exception {
+        final var ready = new CountDownLatch(partitions.size());
+        final var go = new CountDownLatch(1);
+        final var futures = new ArrayList<Future<?>>(partitions.size());
+        for (final var partition : partitions) {
+            futures.add(publishers.submit(() -> {
+                ready.countDown();
+                go.await();
+                task.accept(partition);
+                return null;
+            }));
+        }
+        ready.await();
+        go.countDown();
+        for (final var future : futures) {
+            future.get();
+        }
+    }
+
+    private static @NotNull List<List<EdgeNodeSimulator>> partition(
+            final @NotNull List<EdgeNodeSimulator> edgeNodes,
+            final int threads) {
+        final var partitions = new ArrayList<List<EdgeNodeSimulator>>(threads);
+        for (var i = 0; i < Math.min(threads, edgeNodes.size()); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (var i = 0; i < edgeNodes.size(); i++) {
+            partitions.get(i % partitions.size()).add(edgeNodes.get(i));
+        }
+        return partitions;
+    }
+
+    private @NotNull SparkplugConfiguration createConfiguration(final @NotNull LoadTestSettings settings)
+            throws Exception {
+        Files.write(configDirectory.resolve("config.properties"), settings.getConfigurationLines());
+        final var configuration = new SparkplugConfiguration(configDirectory.toFile(), "config.properties");
+        assertThat(configuration.readPropertiesFromFile()).isTrue();
+        return configuration;
+    }
+
+    private static void log(final @NotNull Scenario scenario) {
+        final var latencies = scenario.getLatencies();
+        LOG.info("{}: {} messages, {} deliveries in {} ms, {} messages/s, {} deliveries/s, " +
+                        "latency p50 {} us, p99 {} us, p999 {} us, max {} us",
+                scenario.getName(),
+                scenario.getMessages(),
+                scenario.getDeliveries(),
+                TimeUnit.NANOSECONDS.toMillis(scenario.getDurationNanos()),
+                Math.round(scenario.getMessagesPerSecond()),
+                Math.round(scenario.getDeliveriesPerSecond()),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getPercentile(50)),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getPercentile(99)),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getPercentile(99.9)),
+                TimeUnit.NANOSECONDS.toMicros(latencies.getMax()));
+    }
+}
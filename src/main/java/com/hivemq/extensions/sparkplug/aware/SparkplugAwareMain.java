@@ -22,12 +22,41 @@ import com.hivemq.extension.sdk.api.parameter.ExtensionStartOutput;
 import com.hivemq.extension.sdk.api.parameter.ExtensionStopInput;
 import com.hivemq.extension.sdk.api.parameter.ExtensionStopOutput;
 import com.hivemq.extension.sdk.api.services.Services;
+import com.hivemq.extension.sdk.api.services.builder.Builders;
+import com.hivemq.extensions.sparkplug.aware.async.AsyncPublishProcessor;
+import com.hivemq.extensions.sparkplug.aware.async.ClientTaskExecutor;
+import com.hivemq.extensions.sparkplug.aware.capture.CaptureJournal;
 import com.hivemq.extensions.sparkplug.aware.configuration.ConfigResolver;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueDelivery;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.metrics2topic.Metrics2Topic;
+import com.hivemq.extensions.sparkplug.aware.metrics2topic.Metrics2TopicPublisher;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthFingerprints;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshotDelivery;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshots;
+import com.hivemq.extensions.sparkplug.aware.republish.DedupMode;
+import com.hivemq.extensions.sparkplug.aware.republish.SysTopicRepublisher;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathPayloadCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Main entry point for the HiveMQ Sparkplug Aware Extension.
  * <p>
@@ -40,6 +69,10 @@ import org.slf4j.LoggerFactory;
  * <li>Forwarding NBIRTH and DBIRTH messages to system topics with retained flag</li>
  * <li>Updating timestamps in NDEATH messages to reflect actual disconnection time</li>
  * <li>Preserving retained flag behavior for Sparkplug system topic subscriptions</li>
+ * <li>Optionally delivering the births to new system topic subscribers from memory</li>
+ * <li>Registering its metrics in the metric registry of HiveMQ, see {@link SparkplugMetrics}</li>
+ * <li>Optionally processing the expensive messages off the interceptor threads, see
+ * {@link AsyncPublishProcessor}</li>
  * </ul>
  *
  * @author David Sondermann
@@ -52,6 +85,12 @@ public class SparkplugAwareMain implements ExtensionMain {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(SparkplugAwareMain.class);
 
+    private @Nullable JsonLogPipeline jsonLog;
+    private @Nullable CaptureJournal captureJournal;
+    private @Nullable BirthSnapshotDelivery snapshotDelivery;
+    private @Nullable ExecutorService asyncExecutorService;
+    private @Nullable SparkplugMetrics metrics;
+
     @Override
     public void extensionStart(
             final @NotNull ExtensionStartInput extensionStartInput,
@@ -71,7 +110,7 @@ public class SparkplugAwareMain implements ExtensionMain {
                 return;
             }
 
-            addPublishModifier(configuration);
+            addPublishModifier(configuration, extensionHomeFolder);
 
             final var extensionInformation = extensionStartInput.getExtensionInformation();
             LOG.info("Started {}:{}", extensionInformation.getName(), extensionInformation.getVersion());
@@ -90,6 +129,22 @@ public class SparkplugAwareMain implements ExtensionMain {
     public void extensionStop(
             final @NotNull ExtensionStopInput extensionStopInput,
             final @NotNull ExtensionStopOutput extensionStopOutput) {
+        if (asyncExecutorService != null) {
+            // the pending messages are processed, their outputs must be resumed
+            asyncExecutorService.shutdown();
+        }
+        if (jsonLog != null) {
+            jsonLog.stop();
+        }
+        if (snapshotDelivery != null) {
+            snapshotDelivery.stop();
+        }
+        if (captureJournal != null) {
+            captureJournal.close();
+        }
+        if (metrics != null) {
+            metrics.remove();
+        }
         final var extensionInformation = extensionStopInput.getExtensionInformation();
         LOG.info("Stopped {}:{}", extensionInformation.getName(), extensionInformation.getVersion());
     }
@@ -97,7 +152,11 @@ public class SparkplugAwareMain implements ExtensionMain {
     private boolean configurationValidated(final @NotNull SparkplugConfiguration configuration) {
         try {
             final var isValid = configuration.readPropertiesFromFile();
-            configuration.getSparkplugVersion();
+            final var policies = configuration.getNamespacePolicies();
+            configuration.getNamespaceTrie();
+            for (final var policy : policies) {
+                LOG.debug("Sparkplug namespace: {}", policy);
+            }
             configuration.getSparkplugSysTopic();
             return isValid;
         } catch (final Exception any) {
@@ -106,17 +165,223 @@ public class SparkplugAwareMain implements ExtensionMain {
         }
     }
 
-    private void addPublishModifier(final @NotNull SparkplugConfiguration configuration) {
+    private void addPublishModifier(
+            final @NotNull SparkplugConfiguration configuration,
+            final @NotNull File extensionHomeFolder) {
         final var initializerRegistry = Services.initializerRegistry();
-        final var sparkplugPublishInboundInterceptor =
-                new SparkplugPublishInboundInterceptor(configuration, Services.publishService());
-        final var sparkplugPublishOutboundInterceptor = new SparkplugPublishOutboundInterceptor(configuration);
-        final var sparkplugSubscribeInterceptor = new SparkplugSubscribeInterceptor(configuration);
+        final var metrics = new SparkplugMetrics(Services.metricRegistry());
+        this.metrics = metrics;
+        final var topicStructureCache = new TopicStructureCache(configuration.getTopicCacheSize());
+        metrics.gauge("topic-cache.hits", topicStructureCache::getHits);
+        metrics.gauge("topic-cache.misses", topicStructureCache::getMisses);
+        metrics.gauge("topic-cache.size", topicStructureCache::size);
+        final var ndeathPayloadCache = new NdeathPayloadCache(configuration.getNdeathTimestampBucket());
+        metrics.gauge("ndeath.payload-cache.hits", ndeathPayloadCache::getHits);
+        metrics.gauge("ndeath.payload-cache.misses", ndeathPayloadCache::getMisses);
+        final var ndeathTemplateStore = new NdeathTemplateStore(configuration.getNdeathTemplateSize());
+        metrics.gauge("ndeath.templates.hits", ndeathTemplateStore::getHits);
+        metrics.gauge("ndeath.templates.misses", ndeathTemplateStore::getMisses);
+        metrics.gauge("ndeath.templates.size", ndeathTemplateStore::size);
+        final var registry = new SparkplugRegistry(configuration.getSeqValidationEnabled());
+        metrics.gauge("registry.groups", registry::getGroupCount);
+        metrics.gauge("registry.edge-nodes", registry::getEdgeNodeCount);
+        metrics.gauge("registry.devices", registry::getDeviceCount);
+        metrics.gauge("registry.seq.gaps", registry::getGaps);
+        metrics.gauge("registry.seq.duplicates", registry::getDuplicates);
+        metrics.gauge("registry.seq.out-of-order", registry::getOutOfOrder);
+        metrics.gauge("registry.ndeath.stale", registry::getStaleDeaths);
+        final var jsonLog = new JsonLogPipeline(new PayloadJsonWriter(configuration.getJsonLogFormat()),
+                configuration.getJsonLogQueueSize(),
+                configuration.getJsonLogOverflowPolicy(),
+                configuration.getJsonLogSampleRate(),
+                registry,
+                metrics);
+        metrics.gauge("json-log.written", jsonLog::getWritten);
+        metrics.gauge("json-log.dropped", jsonLog::getDropped);
+        metrics.gauge("json-log.queued", jsonLog::getQueued);
+        this.jsonLog = jsonLog;
+        final var captureJournal = createCaptureJournal(configuration, extensionHomeFolder);
+        if (captureJournal != null) {
+            metrics.gauge("capture.captured", captureJournal::getCaptured);
+            metrics.gauge("capture.dropped", captureJournal::getDropped);
+        }
+        this.captureJournal = captureJournal;
+        final var birthFingerprints = new BirthFingerprints(configuration.getSysTopicDedupMode(),
+                configuration.getSparkplugSystopicMsgexpiry(),
+                configuration.getSysTopicDedupSize());
+        if (birthFingerprints.getMode() != DedupMode.OFF) {
+            metrics.gauge("systopic.dedup.skipped", birthFingerprints::getSkipped);
+            metrics.gauge("systopic.dedup.downgraded", birthFingerprints::getDowngraded);
+            metrics.gauge("systopic.dedup.size", birthFingerprints::size);
+        }
+        final var republisher = new SysTopicRepublisher(Services.publishService(),
+                configuration.getSysTopicInFlightMax(),
+                configuration.getSysTopicQueueSize(),
+                birthFingerprints::invalidate,
+                metrics);
+        metrics.gauge("systopic.publish.coalesced", republisher::getCoalesced);
+        metrics.gauge("systopic.publish.queued", republisher::getQueued);
+        metrics.gauge("systopic.publish.in-flight", republisher::getInFlight);
+        final var birthSnapshots = configuration.getSysTopicSnapshotEnabled() ?
+                new BirthSnapshots(configuration.getSysTopicSnapshotSize()) :
+                null;
+        final var snapshotDelivery =
+                birthSnapshots != null ? startSnapshotDelivery(configuration, birthSnapshots) : null;
+        if (birthSnapshots != null && snapshotDelivery != null) {
+            metrics.gauge("systopic.snapshot.size", birthSnapshots::size);
+            metrics.gauge("systopic.snapshot.delivered", snapshotDelivery::getDelivered);
+            metrics.gauge("systopic.snapshot.failed", snapshotDelivery::getFailed);
+            metrics.gauge("systopic.snapshot.cancelled", snapshotDelivery::getCancelled);
+            metrics.gauge("systopic.snapshot.active", snapshotDelivery::getActive);
+        }
+        this.snapshotDelivery = snapshotDelivery;
+        final var metrics2Topic = configuration.getMetrics2TopicEnabled() ?
+                new Metrics2Topic(configuration.getMetrics2TopicPrefix(),
+                        new Metrics2TopicPublisher(Services.publishService(),
+                                configuration.getMetrics2TopicInFlightMax())) :
+                null;
+        if (metrics2Topic != null) {
+            final var publisher = metrics2Topic.getPublisher();
+            metrics.gauge("metrics2topic.published", publisher::getPublished);
+            metrics.gauge("metrics2topic.failed", publisher::getFailed);
+            metrics.gauge("metrics2topic.dropped", publisher::getDropped);
+            metrics.gauge("metrics2topic.in-flight", publisher::getInFlight);
+            metrics.gauge("metrics2topic.unresolved", metrics2Topic::getUnresolved);
+        }
+        final var lastValues = configuration.getLastValuesEnabled() ? new LastValueStore() : null;
+        final var asyncProcessor = createAsyncProcessor(configuration, metrics);
+        final var sparkplugConnectInboundInterceptor =
+                new SparkplugConnectInboundInterceptor(configuration, topicStructureCache, ndeathTemplateStore);
+        final var sparkplugPublishInboundInterceptor = new SparkplugPublishInboundInterceptor(configuration,
+                republisher,
+                birthFingerprints,
+                birthSnapshots,
+                topicStructureCache,
+                ndeathTemplateStore,
+                jsonLog,
+                captureJournal,
+                registry,
+                metrics2Topic,
+                lastValues,
+                asyncProcessor,
+                metrics);
+        final var sparkplugPublishOutboundInterceptor = new SparkplugPublishOutboundInterceptor(configuration,
+                topicStructureCache,
+                ndeathPayloadCache,
+                ndeathTemplateStore,
+                jsonLog,
+                registry,
+                lastValues,
+                asyncProcessor,
+                metrics);
+        final var lastValueDelivery = lastValues != null ?
+                new LastValueDelivery(Services.publishService(),
+                        lastValues,
+                        configuration.getLastValuesTopic(),
+                        Builders::publish,
+                        Services.extensionExecutorService()) :
+                null;
+        if (lastValues != null && lastValueDelivery != null) {
+            metrics.gauge("lastvalues.metrics", lastValues::getMetricCount);
+            metrics.gauge("lastvalues.updates", lastValues::getUpdates);
+            metrics.gauge("lastvalues.unresolved", lastValues::getUnresolved);
+            metrics.gauge("lastvalues.delivered", lastValueDelivery::getDelivered);
+            metrics.gauge("lastvalues.failed", lastValueDelivery::getFailed);
+        }
+        final var sparkplugSubscribeInterceptor =
+                new SparkplugSubscribeInterceptor(configuration, snapshotDelivery, lastValueDelivery, metrics);
 
+        Services.interceptorRegistry()
+                .setConnectInboundInterceptorProvider(providerInput -> sparkplugConnectInboundInterceptor);
         initializerRegistry.setClientInitializer((initializerInput, clientContext) -> {
             clientContext.addPublishInboundInterceptor(sparkplugPublishInboundInterceptor);
             clientContext.addPublishOutboundInterceptor(sparkplugPublishOutboundInterceptor);
             clientContext.addSubscribeInboundInterceptor(sparkplugSubscribeInterceptor);
         });
     }
+
+    private static @NotNull BirthSnapshotDelivery startSnapshotDelivery(
+            final @NotNull SparkplugConfiguration configuration,
+            final @NotNull BirthSnapshots birthSnapshots) {
+        final var sysTopics = new LinkedHashSet<String>();
+        for (final var policy : configuration.getNamespacePolicies()) {
+            sysTopics.add(policy.getSysTopic());
+        }
+        // the births that were retained before the start are only read once, new births are stored by the interceptor
+        Services.retainedMessageStore().iterateAllRetainedMessages((context, retained) -> {
+            for (final var sysTopic : sysTopics) {
+                if (retained.getTopic().startsWith(sysTopic)) {
+                    birthSnapshots.load(retained.getTopic(), Builders.publish().fromPublish(retained).build());
+                    return;
+                }
+            }
+        }).whenComplete((aVoid, throwable) -> {
+            if (throwable == null) {
+                birthSnapshots.setLoaded();
+                LOG.info("Loaded {} retained births, new sysTopic subscribers receive the births from memory",
+                        birthSnapshots.size());
+            } else {
+                LOG.warn("Could not load the retained births, births are delivered from the retained message store",
+                        throwable);
+            }
+        });
+        final var snapshotDelivery = new BirthSnapshotDelivery(Services.publishService(),
+                birthSnapshots,
+                Builders::publish,
+                configuration.getSysTopicSnapshotBatchSize(),
+                configuration.getSysTopicSnapshotTick());
+        snapshotDelivery.start(Services.extensionExecutorService());
+        return snapshotDelivery;
+    }
+
+    private @Nullable AsyncPublishProcessor createAsyncProcessor(
+            final @NotNull SparkplugConfiguration configuration,
+            final @NotNull SparkplugMetrics metrics) {
+        if (!configuration.getAsyncEnabled()) {
+            return null;
+        }
+        final var threads = configuration.getAsyncThreads();
+        final ClientTaskExecutor executor;
+        if (threads > 0) {
+            final var threadCount = new AtomicInteger();
+            final var executorService = Executors.newFixedThreadPool(threads, runnable -> {
+                final var thread = new Thread(runnable, "sparkplug-async-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.asyncExecutorService = executorService;
+            executor = new ClientTaskExecutor(executorService);
+        } else {
+            executor = new ClientTaskExecutor(Services.extensionExecutorService());
+        }
+        metrics.gauge("interceptor.async.executed", executor::getExecuted);
+        metrics.gauge("interceptor.async.rejected", executor::getRejected);
+        metrics.gauge("interceptor.async.pending-clients", executor::getPendingClients);
+        final var timeout = configuration.getAsyncTimeout();
+        final var fallback = configuration.getAsyncTimeoutFallback();
+        LOG.info("Processing expensive Sparkplug messages async on {}, timeout {} ms with fallback {}",
+                threads > 0 ? threads + " threads" : "the extension executor",
+                timeout,
+                fallback);
+        return new AsyncPublishProcessor(executor, Duration.ofMillis(timeout), fallback, metrics);
+    }
+
+    private static @Nullable CaptureJournal createCaptureJournal(
+            final @NotNull SparkplugConfiguration configuration,
+            final @NotNull File extensionHomeFolder) {
+        if (!configuration.getCaptureEnabled()) {
+            return null;
+        }
+        final var directory = extensionHomeFolder.toPath().resolve(configuration.getCaptureDirectory());
+        try {
+            final var captureJournal = new CaptureJournal(directory,
+                    configuration.getCaptureSegmentSize(),
+                    configuration.getCaptureSegmentsMax());
+            LOG.info("Capturing Sparkplug traffic into '{}'", directory);
+            return captureJournal;
+        } catch (final IOException e) {
+            LOG.error("Could not open capture journal in '{}', capture is disabled: {}", directory, e.getMessage());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.hivemq.extension.sdk.api.interceptor.connect.ConnectInboundInterceptor;
+import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundInput;
+import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundOutput;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.configuration.NamespacePolicy;
+import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import com.hivemq.extensions.sparkplug.aware.topics.NamespaceTrie;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplate;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Interceptor for CONNECT packets that prepares the NDEATH Last Will and Testament of Sparkplug edge nodes.
+ * <p>
+ * The will payload is validated when the edge node connects and stored as an {@link NdeathTemplate}. When the NDEATH is
+ * delivered later, for example during a mass disconnect, the publish interceptors only need to copy the template and
+ * write the new timestamp. Invalid NDEATH wills are reported at CONNECT time.
+ */
+public class SparkplugConnectInboundInterceptor implements ConnectInboundInterceptor {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(SparkplugConnectInboundInterceptor.class);
+
+    private final @NotNull NamespaceTrie<NamespacePolicy> namespaces;
+    private final @NotNull TopicStructureCache topicStructureCache;
+    private final @NotNull NdeathTemplateStore ndeathTemplateStore;
+
+    public SparkplugConnectInboundInterceptor(
+            final @NotNull SparkplugConfiguration configuration,
+            final @NotNull TopicStructureCache topicStructureCache,
+            final @NotNull NdeathTemplateStore ndeathTemplateStore) {
+        this.namespaces = configuration.getNamespaceTrie();
+        this.topicStructureCache = topicStructureCache;
+        this.ndeathTemplateStore = ndeathTemplateStore;
+    }
+
+    @Override
+    public void onConnect(
+            final @NotNull ConnectInboundInput connectInboundInput,
+            final @NotNull ConnectInboundOutput connectInboundOutput) {
+        final var willPublish = connectInboundInput.getConnectPacket().getWillPublish();
+        if (willPublish.isEmpty()) {
+            return;
+        }
+        final var topic = willPublish.get().getTopic();
+        final var policy = namespaces.match(topic);
+        if (policy == null) {
+            // skip it is not a Sparkplug will
+            return;
+        }
+        final var topicStructure = topicStructureCache.get(topic);
+        if (!topicStructure.isValid(policy.getNamespace()) || topicStructure.getMessageType() != MessageType.NDEATH) {
+            return;
+        }
+        final var clientId = connectInboundInput.getClientInformation().getClientId();
+        final var payload = willPublish.get().getPayload();
+        if (payload.isEmpty()) {
+            ndeathTemplateStore.remove(topic);
+            LOG.warn("No payload present in the NDEATH will of client '{}' on topic '{}'", clientId, topic);
+            return;
+        }
+        if (policy.isCompression()) {
+            // the compressed NDEATH is re-encoded on delivery, there is nothing to prepare
+            return;
+        }
+        try {
+            if (CompressedEnvelope.parse(payload.get()) != null) {
+                // the will is already compressed, the NDEATH is re-encoded on delivery
+                ndeathTemplateStore.remove(topic);
+                return;
+            }
+            ndeathTemplateStore.put(topic, NdeathTemplate.of(payload.get()));
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Prepared NDEATH will of client '{}' on topic '{}'", clientId, topic);
+            }
+        } catch (final IllegalArgumentException e) {
+            ndeathTemplateStore.remove(topic);
+            LOG.warn("Invalid NDEATH will of client '{}' on topic '{}': {}", clientId, topic, e.getMessage());
+        }
+    }
+}
@@ -20,19 +20,41 @@ import com.hivemq.extension.sdk.api.interceptor.publish.PublishInboundIntercepto
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
 import com.hivemq.extension.sdk.api.packets.general.Qos;
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
 import com.hivemq.extension.sdk.api.services.builder.Builders;
 import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
-import com.hivemq.extension.sdk.api.services.publish.Publish;
-import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.async.AsyncPublishProcessor;
+import com.hivemq.extensions.sparkplug.aware.capture.CaptureJournal;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.configuration.NamespacePolicy;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.metrics2topic.Metrics2Topic;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import com.hivemq.extensions.sparkplug.aware.registry.SequenceCheck;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.registry.StaleDeathPolicy;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthFingerprints;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshots;
+import com.hivemq.extensions.sparkplug.aware.republish.SysTopicRepublisher;
 import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import com.hivemq.extensions.sparkplug.aware.topics.NamespaceTrie;
 import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.SequenceNumbers;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.logFormattedPayload;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.modifySparkplugTimestamp;
 
 /**
@@ -40,42 +62,121 @@ import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.modifySpar
  * <p>
  * This interceptor performs the following operations:
  * <ul>
- * <li>Forwards each incoming NBIRTH and DBIRTH message to a corresponding system topic with retained flag</li>
+ * <li>Forwards each incoming NBIRTH and DBIRTH message to a corresponding system topic with retained flag, see
+ * {@link SysTopicRepublisher}, unchanged births are optionally skipped, see {@link BirthFingerprints}, and the
+ * retained births are optionally kept in memory for new subscribers, see {@link BirthSnapshots}</li>
  * <li>Updates timestamps in NDEATH messages to reflect actual disconnection time</li>
+ * <li>Delivers, flags or drops NDEATH messages of a previous session of the edge node, see
+ * {@link StaleDeathPolicy}</li>
+ * <li>Tracks the online state of edge nodes and devices in the {@link SparkplugRegistry} and validates the sequence
+ * numbers of their messages, the alias tables of the births are kept with the online edge nodes and devices</li>
  * <li>Optionally logs formatted payload data when JSON logging is enabled</li>
+ * <li>Optionally captures the raw Sparkplug traffic into a {@link CaptureJournal}</li>
+ * <li>Optionally publishes every metric of NDATA and DDATA messages to a topic of its own, see
+ * {@link Metrics2Topic}</li>
+ * <li>Optionally keeps the last known value of every metric, see {@link LastValueStore}</li>
  * </ul>
+ * If an {@link AsyncPublishProcessor} is given, the expensive messages are processed off the interceptor thread with
+ * an async output: the births, the NDEATH messages and the data messages that are decoded for the last values, the
+ * metrics2topic publishes or a synchronous JSON log. Cheap messages are processed on the interceptor thread, unless a
+ * message of the same client is still pending, so the messages of a client are always processed in order.
+ * <p>
+ * A compressed payload is decompressed once, see {@link CompressedEnvelope#decode}, the registry, the alias tables,
+ * the metrics2topic publishes and the last values all read the decoded payload.
+ * <p>
+ * The Sparkplug messages are counted per message type and timed in the {@link SparkplugMetrics}.
  *
  * @since 4.3.1
  */
 public class SparkplugPublishInboundInterceptor implements PublishInboundInterceptor {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(SparkplugPublishInboundInterceptor.class);
+    private static final @NotNull ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0).asReadOnlyBuffer();
 
-    private final @NotNull PublishService publishService;
-    private final @NotNull PublishBuilder publishBuilder;
-    private final @NotNull String sparkplugVersion;
-    private final @NotNull String sysTopic;
-    private final boolean useCompression;
-    private final boolean jsonLogEnabled;
+    private final @NotNull SysTopicRepublisher republisher;
+    private final @NotNull BirthFingerprints birthFingerprints;
+    private final @Nullable BirthSnapshots birthSnapshots;
+    private final @NotNull TopicStructureCache topicStructureCache;
+    private final @NotNull NdeathTemplateStore ndeathTemplateStore;
+    private final @NotNull ThreadLocal<PublishBuilder> publishBuilders;
+    private final @NotNull ConcurrentHashMap<String, String> sysTopics = new ConcurrentHashMap<>();
+    private final int maxSysTopics;
+    private final @NotNull NamespaceTrie<NamespacePolicy> namespaces;
+    private final @NotNull JsonLogPipeline jsonLog;
+    private final @Nullable CaptureJournal captureJournal;
+    private final @NotNull SparkplugRegistry registry;
+    private final @NotNull StaleDeathPolicy staleDeathPolicy;
+    private final boolean aliasResolution;
+    private final @Nullable Metrics2Topic metrics2Topic;
+    private final @Nullable LastValueStore lastValues;
+    private final @Nullable AsyncPublishProcessor asyncProcessor;
+    private final @NotNull SparkplugMetrics metrics;
     private final @NotNull Long messageExpiry;
 
     public SparkplugPublishInboundInterceptor(
             final @NotNull SparkplugConfiguration configuration,
-            final @NotNull PublishService publishService) {
-        this(configuration, publishService, Builders.publish());
+            final @NotNull SysTopicRepublisher republisher,
+            final @NotNull BirthFingerprints birthFingerprints,
+            final @Nullable BirthSnapshots birthSnapshots,
+            final @NotNull TopicStructureCache topicStructureCache,
+            final @NotNull NdeathTemplateStore ndeathTemplateStore,
+            final @NotNull JsonLogPipeline jsonLog,
+            final @Nullable CaptureJournal captureJournal,
+            final @NotNull SparkplugRegistry registry,
+            final @Nullable Metrics2Topic metrics2Topic,
+            final @Nullable LastValueStore lastValues,
+            final @Nullable AsyncPublishProcessor asyncProcessor,
+            final @NotNull SparkplugMetrics metrics) {
+        this(configuration,
+                republisher,
+                birthFingerprints,
+                birthSnapshots,
+                topicStructureCache,
+                ndeathTemplateStore,
+                jsonLog,
+                captureJournal,
+                registry,
+                metrics2Topic,
+                lastValues,
+                asyncProcessor,
+                metrics,
+                Builders::publish);
     }
 
     @VisibleForTesting
     SparkplugPublishInboundInterceptor(
             final @NotNull SparkplugConfiguration configuration,
-            final @NotNull PublishService publishService,
-            final @NotNull PublishBuilder publishBuilder) {
-        this.sparkplugVersion = configuration.getSparkplugVersion();
-        this.sysTopic = configuration.getSparkplugSysTopic();
-        this.useCompression = configuration.getCompression();
-        this.jsonLogEnabled = configuration.getJsonLogEnabled();
-        this.publishService = publishService;
-        this.publishBuilder = publishBuilder;
+            final @NotNull SysTopicRepublisher republisher,
+            final @NotNull BirthFingerprints birthFingerprints,
+            final @Nullable BirthSnapshots birthSnapshots,
+            final @NotNull TopicStructureCache topicStructureCache,
+            final @NotNull NdeathTemplateStore ndeathTemplateStore,
+            final @NotNull JsonLogPipeline jsonLog,
+            final @Nullable CaptureJournal captureJournal,
+            final @NotNull SparkplugRegistry registry,
+            final @Nullable Metrics2Topic metrics2Topic,
+            final @Nullable LastValueStore lastValues,
+            final @Nullable AsyncPublishProcessor asyncProcessor,
+            final @NotNull SparkplugMetrics metrics,
+            final @NotNull Supplier<PublishBuilder> publishBuilderFactory) {
+        this.namespaces = configuration.getNamespaceTrie();
+        this.jsonLog = jsonLog;
+        this.captureJournal = captureJournal;
+        this.registry = registry;
+        this.metrics2Topic = metrics2Topic;
+        this.lastValues = lastValues;
+        this.asyncProcessor = asyncProcessor;
+        this.metrics = metrics;
+        this.staleDeathPolicy = configuration.getStaleDeathPolicy();
+        this.aliasResolution = configuration.getAliasResolutionEnabled();
+        this.republisher = republisher;
+        this.birthFingerprints = birthFingerprints;
+        this.birthSnapshots = birthSnapshots;
+        this.topicStructureCache = topicStructureCache;
+        this.ndeathTemplateStore = ndeathTemplateStore;
+        // the builders are mutable, so every broker thread reuses its own builder
+        this.publishBuilders = ThreadLocal.withInitial(publishBuilderFactory);
+        this.maxSysTopics = configuration.getTopicCacheSize();
         this.messageExpiry = configuration.getSparkplugSystopicMsgexpiry();
     }
 
@@ -86,26 +187,114 @@ public class SparkplugPublishInboundInterceptor implements PublishInboundInterce
         final var clientId = publishInboundInput.getClientInformation().getClientId();
         final var publishPacket = publishInboundInput.getPublishPacket();
         final var origin = publishPacket.getTopic();
-        final var topicStructure = new TopicStructure(origin);
         if (LOG.isTraceEnabled()) {
             LOG.trace("INBOUND PUBLISH at '{}' from '{}'", origin, clientId);
         }
-        if (!topicStructure.isValid(sparkplugVersion)) {
+        final var policy = namespaces.match(origin);
+        if (policy == null) {
+            // skip it is not a Sparkplug publish, no need to parse the topic
+            return;
+        }
+        if (captureJournal != null) {
+            // capture the original payload before the NDEATH timestamp is modified, in the order of arrival
+            captureJournal.append(System.currentTimeMillis(),
+                    clientId,
+                    origin,
+                    publishPacket.getPayload().orElse(EMPTY_PAYLOAD));
+        }
+        final var topicStructure = topicStructureCache.get(origin);
+        final var asyncProcessor = this.asyncProcessor;
+        if (asyncProcessor != null &&
+                (isExpensive(topicStructure, policy) || asyncProcessor.hasPending(clientId))) {
+            asyncProcessor.process(clientId,
+                    publishInboundOutput,
+                    output -> onSparkplugPublish(clientId, publishPacket, origin, policy, topicStructure, output));
+        } else {
+            onSparkplugPublish(clientId, publishPacket, origin, policy, topicStructure, publishInboundOutput);
+        }
+    }
+
+    private boolean isExpensive(final @NotNull TopicStructure topicStructure, final @NotNull NamespacePolicy policy) {
+        if (!topicStructure.isValid(policy.getNamespace())) {
+            return false;
+        }
+        final var jsonLogged = policy.isJsonLogEnabled() && jsonLog.isSynchronous();
+        switch (topicStructure.getMessageType()) {
+            case NBIRTH:
+            case DBIRTH:
+            case NDEATH:
+                return true;
+            case NDATA:
+            case DDATA:
+                return jsonLogged || metrics2Topic != null || lastValues != null;
+            default:
+                return jsonLogged;
+        }
+    }
+
+    private void onSparkplugPublish(
+            final @NotNull String clientId,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull String origin,
+            final @NotNull NamespacePolicy policy,
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull PublishInboundOutput publishInboundOutput) {
+        final var start = System.nanoTime();
+        try {
+            onSparkplugMessage(clientId, publishPacket, origin, policy, topicStructure, publishInboundOutput);
+        } finally {
+            metrics.inboundPublishTime(System.nanoTime() - start);
+        }
+    }
+
+    private void onSparkplugMessage(
+            final @NotNull String clientId,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull String origin,
+            final @NotNull NamespacePolicy policy,
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull PublishInboundOutput publishInboundOutput) {
+        if (!topicStructure.isValid(policy.getNamespace())) {
             // skip it is not a Sparkplug publish
+            metrics.inboundMessage(MessageType.UNKNOWN);
             return;
         }
+        metrics.inboundMessage(topicStructure.getMessageType());
+        final var payload = decode(publishPacket);
+        final var aliases = readAliases(topicStructure, payload);
+        final var current = updateRegistry(topicStructure, payload, aliasResolution ? aliases : null);
+        if (metrics2Topic != null && current) {
+            metrics2Topic.onPublish(topicStructure, publishPacket, payload);
+        }
+        if (lastValues != null && current) {
+            lastValues.onPublish(topicStructure, payload, aliases);
+        }
         if (topicStructure.getMessageType() == MessageType.NBIRTH ||
                 topicStructure.getMessageType() == MessageType.DBIRTH) {
             // it is a Sparkplug publish
+            final var sysTopic = policy.getSysTopic();
             try {
                 // build the PUBLISH
-                publishBuilder.fromPublish(publishPacket);
-                publishBuilder.topic(sysTopic + origin);
-                publishBuilder.qos(Qos.AT_LEAST_ONCE);
-                publishBuilder.retain(true);
-                publishBuilder.messageExpiryInterval(messageExpiry);
-                final var clone = publishBuilder.build();
-                publishToSysTopic(origin, clone);
+                final var cloneTopic = getSysTopic(sysTopic, origin);
+                final var action =
+                        birthFingerprints.check(cloneTopic, publishPacket.getPayload().orElse(EMPTY_PAYLOAD));
+                if (action == BirthFingerprints.Action.SKIP) {
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("Skip unchanged birth from '{}' to '{}'", origin, cloneTopic);
+                    }
+                } else {
+                    final var publishBuilder = publishBuilders.get();
+                    publishBuilder.fromPublish(publishPacket);
+                    publishBuilder.topic(cloneTopic);
+                    publishBuilder.qos(Qos.AT_LEAST_ONCE);
+                    publishBuilder.retain(action == BirthFingerprints.Action.PUBLISH);
+                    publishBuilder.messageExpiryInterval(messageExpiry);
+                    final var clone = publishBuilder.build();
+                    if (birthSnapshots != null && action == BirthFingerprints.Action.PUBLISH) {
+                        birthSnapshots.put(cloneTopic, clone);
+                    }
+                    republisher.submit(cloneTopic, clone, topicStructure.getMessageType());
+                }
             } catch (final Exception all) {
                 LOG.error("Publish to sysTopic {} failed: {}", sysTopic, all.getMessage());
             }
@@ -113,13 +302,26 @@ public class SparkplugPublishInboundInterceptor implements PublishInboundInterce
             final var modifiablePublishPacket = publishInboundOutput.getPublishPacket();
             if (modifiablePublishPacket.getPayload().isPresent()) {
                 final var byteBuffer = modifiablePublishPacket.getPayload().get();
+                if (!current &&
+                        staleDeathPolicy != StaleDeathPolicy.DELIVER &&
+                        handleStaleDeath(topicStructure, publishInboundOutput)) {
+                    return;
+                }
                 try {
-                    final var newDeath = modifySparkplugTimestamp(useCompression, byteBuffer);
+                    final var rewriteStart = System.nanoTime();
+                    var newDeath = policy.isCompression() ?
+                            null :
+                            ndeathTemplateStore.modifySparkplugTimestamp(origin, byteBuffer);
+                    if (newDeath == null) {
+                        newDeath = modifySparkplugTimestamp(policy.getCompression(), byteBuffer);
+                    }
+                    metrics.ndeathRewriteTime(System.nanoTime() - rewriteStart);
                     modifiablePublishPacket.setPayload(newDeath);
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Modify timestamp of NDEATH message from: {}", origin);
                     }
                 } catch (final Exception all) {
+                    metrics.ndeathRewriteFailed();
                     LOG.error("Modify NDEATH message from {} failed: {}", origin, all.getMessage());
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Original exception", all);
@@ -129,22 +331,138 @@ public class SparkplugPublishInboundInterceptor implements PublishInboundInterce
                 LOG.warn("No payload present in the Sparkplug message");
             }
         }
-        if (jsonLogEnabled) {
-            logFormattedPayload(clientId, origin, publishPacket, topicStructure);
+        if (policy.isJsonLogEnabled()) {
+            jsonLog.log(clientId, origin, publishPacket, topicStructure);
+        }
+    }
+
+    /**
+     * @return {@code true} if the stale NDEATH is dropped
+     */
+    private boolean handleStaleDeath(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull PublishInboundOutput publishInboundOutput) {
+        final var groupId = topicStructure.getGroupId();
+        final var edgeNodeId = topicStructure.getEonId();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("NDEATH of '{}/{}' is stale, {}", groupId, edgeNodeId, staleDeathPolicy);
+        }
+        if (staleDeathPolicy == StaleDeathPolicy.DROP) {
+            publishInboundOutput.preventPublishDelivery();
+            return true;
         }
+        final var edgeNode = edgeNodeId != null ? registry.getEdgeNode(groupId, edgeNodeId) : null;
+        publishInboundOutput.getPublishPacket()
+                .getUserProperties()
+                .addUserProperty(StaleDeathPolicy.STALE_USER_PROPERTY,
+                        String.valueOf(edgeNode != null ? edgeNode.getBdSeq() : SparkplugRegistry.UNKNOWN));
+        return false;
     }
 
-    private void publishToSysTopic(final @NotNull String origin, final @NotNull Publish publish) {
-        // asynchronously sent PUBLISH
-        final var future = publishService.publish(publish);
-        future.whenComplete((aVoid, throwable) -> {
-            if (throwable == null) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("Published CLONE Msg from '{}' to '{}'", origin, sysTopic + origin);
+    /**
+     * @return {@code false} if the message is a stale NDEATH of a previous session of the edge node
+     */
+    private boolean updateRegistry(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull ByteBuffer payload,
+            final @Nullable AliasTable aliases) {
+        final var groupId = topicStructure.getGroupId();
+        final var edgeNodeId = topicStructure.getEonId();
+        final var deviceId = topicStructure.getDeviceId();
+        if (edgeNodeId == null) {
+            return true;
+        }
+        switch (topicStructure.getMessageType()) {
+            case NBIRTH:
+                registry.onNodeBirth(groupId,
+                        edgeNodeId,
+                        SequenceNumbers.readBdSeq(payload),
+                        SequenceNumbers.readSeq(payload),
+                        System.currentTimeMillis(),
+                        aliases);
+                break;
+            case NDEATH:
+                final var bdSeq = SequenceNumbers.readBdSeq(payload);
+                registry.onNodeDeath(groupId, edgeNodeId, bdSeq, System.currentTimeMillis());
+                return !registry.isStaleDeath(groupId, edgeNodeId, bdSeq);
+            case DBIRTH:
+                if (deviceId == null) {
+                    break;
                 }
-            } else {
-                LOG.error("Publish to sysTopic '{}' failed", sysTopic + origin, throwable.fillInStackTrace());
+                registry.onDeviceBirth(groupId,
+                        edgeNodeId,
+                        deviceId,
+                        SequenceNumbers.readSeq(payload),
+                        System.currentTimeMillis(),
+                        aliases);
+                break;
+            case DDEATH:
+                if (deviceId == null) {
+                    break;
+                }
+                registry.onDeviceDeath(groupId,
+                        edgeNodeId,
+                        deviceId,
+                        SequenceNumbers.readSeq(payload),
+                        System.currentTimeMillis());
+                break;
+            case NDATA:
+            case DDATA:
+                if (registry.isSeqValidation()) {
+                    final var seq = SequenceNumbers.readSeq(payload);
+                    final var check = registry.onSeq(groupId, edgeNodeId, seq);
+                    if (check != SequenceCheck.IN_ORDER && check != SequenceCheck.UNCHECKED && LOG.isDebugEnabled()) {
+                        LOG.debug("Sequence number {} of '{}/{}' is {}", seq, groupId, edgeNodeId, check);
+                    }
+                }
+                break;
+            default:
+        }
+        return true;
+    }
+
+    private @Nullable AliasTable readAliases(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull ByteBuffer payload) {
+        final var messageType = topicStructure.getMessageType();
+        if ((messageType != MessageType.NBIRTH && messageType != MessageType.DBIRTH) ||
+                (!aliasResolution && lastValues == null)) {
+            return null;
+        }
+        try {
+            return AliasTable.fromBirth(payload);
+        } catch (final IllegalArgumentException e) {
+            LOG.debug("Failed to read the aliases of the birth of '{}/{}': {}",
+                    topicStructure.getGroupId(),
+                    topicStructure.getEonId(),
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private static @NotNull ByteBuffer decode(final @NotNull PublishPacket publishPacket) {
+        final var payload = publishPacket.getPayload().orElse(EMPTY_PAYLOAD);
+        try {
+            return CompressedEnvelope.decode(payload);
+        } catch (final IllegalArgumentException e) {
+            LOG.debug("Failed to decode the payload of '{}': {}", publishPacket.getTopic(), e.getMessage());
+            return EMPTY_PAYLOAD;
+        }
+    }
+
+    private @NotNull String getSysTopic(final @NotNull String sysTopic, final @NotNull String origin) {
+        final var cached = sysTopics.get(origin);
+        if (cached != null) {
+            return cached;
+        }
+        final var topic = sysTopic + origin;
+        if (maxSysTopics > 0) {
+            if (sysTopics.size() >= maxSysTopics) {
+                // births are rare compared to data messages, so a full reset is cheaper than an eviction order
+                sysTopics.clear();
             }
-        });
+            sysTopics.put(origin, topic);
+        }
+        return topic;
     }
 }
@@ -19,21 +19,50 @@ package com.hivemq.extensions.sparkplug.aware;
 import com.hivemq.extension.sdk.api.interceptor.publish.PublishOutboundInterceptor;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundInput;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundOutput;
+import com.hivemq.extensions.sparkplug.aware.async.AsyncPublishProcessor;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.configuration.NamespacePolicy;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.registry.StaleDeathPolicy;
 import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import com.hivemq.extensions.sparkplug.aware.topics.NamespaceTrie;
 import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathPayloadCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.SequenceNumbers;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.logFormattedPayload;
-import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.modifySparkplugTimestamp;
+import java.nio.ByteBuffer;
 
 /**
  * Interceptor for outbound PUBLISH packets that updates timestamps in Sparkplug NDEATH messages.
  * <p>
  * This interceptor modifies the timestamp of NDEATH messages that were originally stored as Last Will and Testament
- * (LWT) messages, ensuring the timestamp reflects the actual disconnection time when the message is published.
+ * (LWT) messages, ensuring the timestamp reflects the actual disconnection time when the message is published. The
+ * NDEATH is created from the template that was prepared when the edge node connected, see
+ * {@link NdeathTemplateStore}. Otherwise the rewritten payload is shared between all subscribers that receive the
+ * NDEATH within the same time bucket, see {@link NdeathPayloadCache}.
+ * <p>
+ * The Last Will NDEATH does not pass the inbound interceptors, so the edge node is marked offline in the
+ * {@link SparkplugRegistry} and its values are removed from the {@link LastValueStore} when the NDEATH is delivered.
+ * The registry ignores the repeated deaths of further subscribers. An NDEATH of a previous session of the edge node,
+ * e.g. the Last Will of a connection that was replaced by a new one, is delivered, flagged or dropped according to the
+ * {@link StaleDeathPolicy}. A published NDEATH that was already flagged by the inbound interceptor is not flagged
+ * again.
+ * <p>
+ * If an {@link AsyncPublishProcessor} is given, the NDEATH messages are processed off the interceptor thread with an
+ * async output. The other messages of a subscriber are only processed async while a message of the subscriber is
+ * still pending, so they keep their order.
+ * <p>
+ * The outbound Sparkplug messages are counted per message type and timed in the {@link SparkplugMetrics}.
  *
  * @author David Sondermann
  * @since  4.3.1
@@ -42,14 +71,37 @@ public class SparkplugPublishOutboundInterceptor implements PublishOutboundInter
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(SparkplugPublishOutboundInterceptor.class);
 
-    private final @NotNull String sparkplugVersion;
-    private final boolean useCompression;
-    private final boolean jsonLogEnabled;
+    private final @NotNull TopicStructureCache topicStructureCache;
+    private final @NotNull NdeathPayloadCache ndeathPayloadCache;
+    private final @NotNull NdeathTemplateStore ndeathTemplateStore;
+    private final @NotNull NamespaceTrie<NamespacePolicy> namespaces;
+    private final @NotNull JsonLogPipeline jsonLog;
+    private final @NotNull SparkplugRegistry registry;
+    private final @Nullable LastValueStore lastValues;
+    private final @Nullable AsyncPublishProcessor asyncProcessor;
+    private final @NotNull SparkplugMetrics metrics;
+    private final @NotNull StaleDeathPolicy staleDeathPolicy;
 
-    public SparkplugPublishOutboundInterceptor(final @NotNull SparkplugConfiguration configuration) {
-        this.sparkplugVersion = configuration.getSparkplugVersion();
-        this.useCompression = configuration.getCompression();
-        this.jsonLogEnabled = configuration.getJsonLogEnabled();
+    public SparkplugPublishOutboundInterceptor(
+            final @NotNull SparkplugConfiguration configuration,
+            final @NotNull TopicStructureCache topicStructureCache,
+            final @NotNull NdeathPayloadCache ndeathPayloadCache,
+            final @NotNull NdeathTemplateStore ndeathTemplateStore,
+            final @NotNull JsonLogPipeline jsonLog,
+            final @NotNull SparkplugRegistry registry,
+            final @Nullable LastValueStore lastValues,
+            final @Nullable AsyncPublishProcessor asyncProcessor,
+            final @NotNull SparkplugMetrics metrics) {
+        this.topicStructureCache = topicStructureCache;
+        this.ndeathPayloadCache = ndeathPayloadCache;
+        this.ndeathTemplateStore = ndeathTemplateStore;
+        this.namespaces = configuration.getNamespaceTrie();
+        this.jsonLog = jsonLog;
+        this.registry = registry;
+        this.lastValues = lastValues;
+        this.asyncProcessor = asyncProcessor;
+        this.metrics = metrics;
+        this.staleDeathPolicy = configuration.getStaleDeathPolicy();
     }
 
     @Override
@@ -61,24 +113,98 @@ public class SparkplugPublishOutboundInterceptor implements PublishOutboundInter
         if (LOG.isTraceEnabled()) {
             LOG.trace("OUTBOUND PUBLISH at: {} to: {} ", topic, clientId);
         }
-        final var topicStructure = new TopicStructure(topic);
-        if (!topicStructure.isValid(sparkplugVersion)) {
+        final var policy = namespaces.match(topic);
+        if (policy == null) {
+            // skip it is not a Sparkplug publish, no need to parse the topic
+            return;
+        }
+        final var topicStructure = topicStructureCache.get(topic);
+        final var asyncProcessor = this.asyncProcessor;
+        if (asyncProcessor != null &&
+                ((topicStructure.getMessageType() == MessageType.NDEATH &&
+                        topicStructure.isValid(policy.getNamespace())) || asyncProcessor.hasPending(clientId))) {
+            asyncProcessor.process(clientId,
+                    publishOutboundOutput,
+                    output -> onSparkplugPublish(clientId, topic, policy, topicStructure, output));
+        } else {
+            onSparkplugPublish(clientId, topic, policy, topicStructure, publishOutboundOutput);
+        }
+    }
+
+    private void onSparkplugPublish(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull NamespacePolicy policy,
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull PublishOutboundOutput publishOutboundOutput) {
+        final var start = System.nanoTime();
+        try {
+            onSparkplugMessage(clientId, topic, policy, topicStructure, publishOutboundOutput);
+        } finally {
+            metrics.outboundPublishTime(System.nanoTime() - start);
+        }
+    }
+
+    private void onSparkplugMessage(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull NamespacePolicy policy,
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull PublishOutboundOutput publishOutboundOutput) {
+        if (!topicStructure.isValid(policy.getNamespace())) {
             // skip it is not a Sparkplug publish
+            metrics.outboundMessage(MessageType.UNKNOWN);
             return;
         }
+        metrics.outboundMessage(topicStructure.getMessageType());
         if (topicStructure.getMessageType() == MessageType.NDEATH) {
             final var publishPacket = publishOutboundOutput.getPublishPacket();
             if (publishPacket.getPayload().isPresent()) {
                 try {
-                    final var newDeath = modifySparkplugTimestamp(useCompression, publishPacket.getPayload().get());
+                    final var payload = publishPacket.getPayload().get();
+                    final var groupId = topicStructure.getGroupId();
+                    final var edgeNodeId = topicStructure.getEonId();
+                    final var bdSeq = readBdSeq(payload);
+                    if (registry.onNodeDeath(groupId, edgeNodeId, bdSeq, System.currentTimeMillis()) &&
+                            lastValues != null) {
+                        lastValues.onNodeDeath(groupId, edgeNodeId);
+                    }
+                    if (staleDeathPolicy != StaleDeathPolicy.DELIVER &&
+                            registry.isStaleDeath(groupId, edgeNodeId, bdSeq)) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("NDEATH with bdSeq {} at '{}' is stale, {}", bdSeq, topic, staleDeathPolicy);
+                        }
+                        if (staleDeathPolicy == StaleDeathPolicy.DROP) {
+                            publishOutboundOutput.preventPublishDelivery();
+                            return;
+                        }
+                        // a published NDEATH was already flagged by the inbound interceptor
+                        final var userProperties = publishPacket.getUserProperties();
+                        if (userProperties.getFirst(StaleDeathPolicy.STALE_USER_PROPERTY).isEmpty()) {
+                            final var edgeNode = registry.getEdgeNode(groupId, edgeNodeId);
+                            userProperties.addUserProperty(StaleDeathPolicy.STALE_USER_PROPERTY,
+                                    String.valueOf(edgeNode != null ?
+                                            edgeNode.getBdSeq() :
+                                            SparkplugRegistry.UNKNOWN));
+                        }
+                    }
+                    final var rewriteStart = System.nanoTime();
+                    var newDeath = policy.isCompression() ?
+                            null :
+                            ndeathTemplateStore.modifySparkplugTimestamp(topic, payload);
+                    if (newDeath == null) {
+                        newDeath = ndeathPayloadCache.modifySparkplugTimestamp(policy.getCompression(), payload);
+                    }
+                    metrics.ndeathRewriteTime(System.nanoTime() - rewriteStart);
                     publishPacket.setPayload(newDeath);
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Modify timestamp of NDEATH message from '{}'", topic);
                     }
-                    if (jsonLogEnabled) {
-                        logFormattedPayload(clientId, topic, publishPacket, topicStructure);
+                    if (policy.isJsonLogEnabled()) {
+                        jsonLog.log(clientId, topic, publishPacket, topicStructure);
                     }
                 } catch (final Exception all) {
+                    metrics.ndeathRewriteFailed();
                     LOG.error("Modify NDEATH message from '{}' failed: {}", topic, all.getMessage());
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Original exception", all);
@@ -89,4 +215,12 @@ public class SparkplugPublishOutboundInterceptor implements PublishOutboundInter
             }
         }
     }
+
+    private static long readBdSeq(final @NotNull ByteBuffer payload) {
+        try {
+            return SequenceNumbers.readBdSeq(CompressedEnvelope.decode(payload));
+        } catch (final IllegalArgumentException e) {
+            return SequenceNumbers.UNKNOWN;
+        }
+    }
 }
@@ -19,11 +19,18 @@ package com.hivemq.extensions.sparkplug.aware;
 import com.hivemq.extension.sdk.api.interceptor.subscribe.SubscribeInboundInterceptor;
 import com.hivemq.extension.sdk.api.interceptor.subscribe.parameter.SubscribeInboundInput;
 import com.hivemq.extension.sdk.api.interceptor.subscribe.parameter.SubscribeInboundOutput;
+import com.hivemq.extension.sdk.api.packets.subscribe.RetainHandling;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueDelivery;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshotDelivery;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashSet;
+
 /**
  * Interceptor for SUBSCRIBE packets that modifies subscription behavior for Sparkplug system topics.
  * <p>
@@ -35,6 +42,13 @@ import org.slf4j.LoggerFactory;
  * <p>
  * This interceptor modifies subscriptions to Sparkplug system topics so that the retained flag is preserved as
  * published, ensuring consistent behavior regardless of subscriber presence.
+ * <p>
+ * With a {@link BirthSnapshotDelivery}, the births of a new system topic subscription are delivered from memory in
+ * paced batches and the retained messages of the broker are not sent. Subscriptions that only want the retained
+ * messages if they are new and subscriptions that do not want them at all are left to the broker.
+ * <p>
+ * With a {@link LastValueDelivery}, a subscription to the topic of the last known values is answered with the current
+ * values of the matching edge nodes and devices.
  *
  * @author David Sondermann
  * @since  4.3.1
@@ -43,24 +57,63 @@ public class SparkplugSubscribeInterceptor implements SubscribeInboundIntercepto
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(SparkplugSubscribeInterceptor.class);
 
-    private final @NotNull String sysTopic;
+    private final @NotNull String @NotNull [] sysTopics;
+    private final @Nullable BirthSnapshotDelivery snapshotDelivery;
+    private final @Nullable LastValueDelivery lastValueDelivery;
+    private final @NotNull SparkplugMetrics metrics;
 
     public SparkplugSubscribeInterceptor(final @NotNull SparkplugConfiguration configuration) {
-        this.sysTopic = configuration.getSparkplugSysTopic();
+        this(configuration, null, null, SparkplugMetrics.unregistered());
+    }
+
+    public SparkplugSubscribeInterceptor(
+            final @NotNull SparkplugConfiguration configuration,
+            final @Nullable BirthSnapshotDelivery snapshotDelivery,
+            final @Nullable LastValueDelivery lastValueDelivery,
+            final @NotNull SparkplugMetrics metrics) {
+        this.snapshotDelivery = snapshotDelivery;
+        this.lastValueDelivery = lastValueDelivery;
+        this.metrics = metrics;
+        final var sysTopics = new LinkedHashSet<String>();
+        for (final var policy : configuration.getNamespacePolicies()) {
+            sysTopics.add(policy.getSysTopic());
+        }
+        this.sysTopics = sysTopics.toArray(new String[0]);
     }
 
     @Override
     public void onInboundSubscribe(
             final @NotNull SubscribeInboundInput subscribeInboundInput,
             final @NotNull SubscribeInboundOutput subscribeInboundOutput) {
+        final var start = System.nanoTime();
         final var clientID = subscribeInboundInput.getClientInformation().getClientId();
         for (final var subscription : subscribeInboundOutput.getSubscribePacket().getSubscriptions()) {
-            if (subscription.getTopicFilter().startsWith(this.sysTopic)) {
+            if (isSysTopicFilter(subscription.getTopicFilter())) {
                 LOG.debug("Modify Subscribe - to have retained as published {} from Client {}",
                         subscription.getTopicFilter(),
                         clientID);
                 subscription.setRetainAsPublished(true);
+                final var fromSnapshots = snapshotDelivery != null &&
+                        subscription.getRetainHandling() == RetainHandling.SEND &&
+                        snapshotDelivery.deliver(clientID, subscription.getTopicFilter());
+                if (fromSnapshots) {
+                    subscription.setRetainHandling(RetainHandling.DO_NOT_SEND);
+                }
+                metrics.sysTopicSubscription(fromSnapshots);
+            } else if (lastValueDelivery != null &&
+                    lastValueDelivery.deliver(clientID, subscription.getTopicFilter())) {
+                LOG.debug("Deliver the last known values of {} to Client {}", subscription.getTopicFilter(), clientID);
+            }
+        }
+        metrics.subscribeTime(System.nanoTime() - start);
+    }
+
+    private boolean isSysTopicFilter(final @NotNull String topicFilter) {
+        for (final var sysTopic : sysTopics) {
+            if (topicFilter.startsWith(sysTopic)) {
+                return true;
             }
         }
+        return false;
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.async;
+
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.SimpleAsyncOutput;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Processes the Sparkplug messages of the publish interceptors off the interceptor threads.
+ * <p>
+ * The interceptor output is made async with the configured timeout and fallback, the processing is handed to a
+ * {@link ClientTaskExecutor}, so the messages of a client are processed in the order they were intercepted, and the
+ * output is resumed afterwards. If the timeout expires first, HiveMQ continues with the fallback and changes to the
+ * output have no effect anymore. With {@link TimeoutFallback#SUCCESS} the message was delivered unchanged, so it is
+ * still processed to keep the state of the extension, e.g. the registry and the system topics, in line with the
+ * delivered messages. With {@link TimeoutFallback#FAILURE} the message was not delivered and is not processed.
+ */
+public class AsyncPublishProcessor {
+
+    private final @NotNull ClientTaskExecutor executor;
+    private final @NotNull Duration timeout;
+    private final @NotNull TimeoutFallback fallback;
+    private final @NotNull SparkplugMetrics metrics;
+
+    /**
+     * @param executor the executor of the processing
+     * @param timeout  the time after which HiveMQ continues with the fallback
+     * @param fallback the handling of a message whose timeout expired
+     * @param metrics  the metrics of the async processing time and timeouts
+     */
+    public AsyncPublishProcessor(
+            final @NotNull ClientTaskExecutor executor,
+            final @NotNull Duration timeout,
+            final @NotNull TimeoutFallback fallback,
+            final @NotNull SparkplugMetrics metrics) {
+        this.executor = executor;
+        this.timeout = timeout;
+        this.fallback = fallback;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the given output async and processes it after all messages of the client that are still pending.
+     *
+     * @param clientId   the MQTT client ID whose order of processing is kept
+     * @param output     the interceptor output
+     * @param processing the processing of the message, which gets the output
+     * @param <T>        the type of the interceptor output
+     */
+    public <T> void process(
+            final @NotNull String clientId,
+            final @NotNull SimpleAsyncOutput<T> output,
+            final @NotNull Consumer<T> processing) {
+        final var async = output.async(timeout, fallback);
+        final var start = System.nanoTime();
+        executor.execute(clientId, () -> {
+            try {
+                if (async.getStatus() != Async.Status.CANCELED || fallback == TimeoutFallback.SUCCESS) {
+                    processing.accept(async.getOutput());
+                }
+            } finally {
+                if (async.getStatus() == Async.Status.CANCELED) {
+                    metrics.asyncTimeout();
+                } else {
+                    async.resume();
+                }
+                metrics.asyncTime(System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Returns whether a message of the client is still processed. Further messages of the client must be processed by
+     * {@link #process(String, SimpleAsyncOutput, Consumer)} as well to keep their order, even if they are cheap.
+     *
+     * @param  clientId the MQTT client ID
+     * @return          {@code true} if a message of the client is pending
+     */
+    public boolean hasPending(final @NotNull String clientId) {
+        return executor.hasPending(clientId);
+    }
+
+    public @NotNull ClientTaskExecutor getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.async;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on a shared executor, one at a time per client and in the order they were submitted.
+ * <p>
+ * Every client with tasks has a queue of its own, only the queue is handed to the executor. After each task the queue
+ * is handed to the executor again, so a client with many tasks does not keep a thread from the tasks of the other
+ * clients. An empty queue is removed, so the memory does not grow with the number of idle clients.
+ * <p>
+ * If the executor rejects a queue, e.g. because it is shut down, the tasks of the queue run on the calling thread.
+ */
+public class ClientTaskExecutor {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(ClientTaskExecutor.class);
+
+    private final @NotNull Executor executor;
+    private final @NotNull ConcurrentHashMap<String, TaskQueue> queues = new ConcurrentHashMap<>();
+    private final @NotNull LongAdder executed = new LongAdder();
+    private final @NotNull LongAdder rejected = new LongAdder();
+
+    /**
+     * @param executor the executor the tasks run on
+     */
+    public ClientTaskExecutor(final @NotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the given task after all tasks that were submitted for the same client before.
+     *
+     * @param clientId the MQTT client ID the task belongs to
+     * @param task     the task
+     */
+    public void execute(final @NotNull String clientId, final @NotNull Runnable task) {
+        while (true) {
+            final var queue = queues.computeIfAbsent(clientId, TaskQueue::new);
+            final var offer = queue.offer(task);
+            if (offer == Offer.SCHEDULE) {
+                schedule(queue);
+                return;
+            }
+            if (offer == Offer.QUEUED) {
+                return;
+            }
+            // the queue was emptied and is about to be removed, the task goes to a new queue
+            queues.remove(clientId, queue);
+        }
+    }
+
+    /**
+     * @param  clientId the MQTT client ID
+     * @return          {@code true} if a task of the client is queued or running
+     */
+    public boolean hasPending(final @NotNull String clientId) {
+        return queues.containsKey(clientId);
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getPendingClients() {
+        return queues.size();
+    }
+
+    private void schedule(final @NotNull TaskQueue queue) {
+        try {
+            executor.execute(() -> drain(queue, false));
+        } catch (final RejectedExecutionException e) {
+            rejected.increment();
+            drain(queue, true);
+        }
+    }
+
+    private void drain(final @NotNull TaskQueue queue, final boolean inline) {
+        do {
+            final var task = queue.poll();
+            if (task != null) {
+                try {
+                    task.run();
+                } catch (final RuntimeException e) {
+                    LOG.error("Async task of client '{}' failed: {}", queue.clientId, e.getMessage());
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Original exception", e);
+                    }
+                }
+                executed.increment();
+            }
+            if (queue.closeIfEmpty()) {
+                queues.remove(queue.clientId, queue);
+                return;
+            }
+        } while (inline);
+        schedule(queue);
+    }
+
+    private enum Offer {
+        QUEUED,
+        SCHEDULE,
+        CLOSED
+    }
+
+    private static final class TaskQueue {
+
+        private final @NotNull String clientId;
+        private final @NotNull ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean closed;
+
+        private TaskQueue(final @NotNull String clientId) {
+            this.clientId = clientId;
+        }
+
+        private synchronized @NotNull Offer offer(final @NotNull Runnable task) {
+            if (closed) {
+                return Offer.CLOSED;
+            }
+            tasks.add(task);
+            if (scheduled) {
+                return Offer.QUEUED;
+            }
+            scheduled = true;
+            return Offer.SCHEDULE;
+        }
+
+        private synchronized @Nullable Runnable poll() {
+            return tasks.poll();
+        }
+
+        private synchronized boolean closeIfEmpty() {
+            closed = tasks.isEmpty();
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only journal of the raw Sparkplug traffic of the broker, used to reproduce performance problems with real
+ * payloads, see {@link CaptureJournalReader}.
+ * <p>
+ * The journal is split into memory-mapped segment files of a fixed size. Each segment starts with the
+ * {@link #MAGIC} number followed by the records:
+ * <pre>
+ * int    length of the record after this field
+ * long   timestamp in milliseconds since the epoch
+ * short  length of the client ID, followed by the UTF-8 encoded client ID
+ * short  length of the topic, followed by the UTF-8 encoded topic
+ * byte[] payload, the remaining bytes of the record
+ * </pre>
+ * The length of a record is written after its content, a length of {@code 0} marks the end of a segment. When a record
+ * does not fit into the current segment, the journal switches to the next segment, the oldest segments are deleted so
+ * that at most the configured number of segments is kept, besides the next segment that is prepared in advance. A new
+ * journal never appends to existing segments, it continues with the next segment number.
+ * <p>
+ * The file system is never accessed by an append: the next segment is created and mapped in advance by a background
+ * thread, which also writes the full segment to the storage device, releases its mapping and deletes the old segments.
+ * A record that does not fit into the current segment while the next segment is not ready yet is dropped.
+ * <p>
+ * This class is thread-safe, appends are serialized.
+ */
+public class CaptureJournal implements Closeable {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(CaptureJournal.class);
+
+    public static final int MAGIC = 0x53504A31;
+    public static final @NotNull String SEGMENT_SUFFIX = ".spj";
+
+    static final int SEGMENT_HEADER_SIZE = 4;
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 2 + 2;
+    static final int MIN_SEGMENT_SIZE = 4096;
+
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+    private static final @Nullable MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final @NotNull Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final @NotNull Executor executor;
+    private final @Nullable ExecutorService ownExecutor;
+    private final @NotNull ArrayDeque<Path> segments = new ArrayDeque<>();
+    private final @NotNull LongAdder captured = new LongAdder();
+    private final @NotNull LongAdder dropped = new LongAdder();
+    private @NotNull Segment segment;
+    private @NotNull CompletableFuture<Segment> spare;
+    private @NotNull CompletableFuture<Void> retired = CompletableFuture.completedFuture(null);
+    private long nextSegmentNumber;
+    private boolean closed;
+
+    /**
+     * @param  directory   the directory of the segment files, created if it does not exist
+     * @param  segmentSize the size of a segment file in bytes
+     * @param  maxSegments the maximum number of segment files that are kept
+     * @throws IOException if the directory can not be created or read or the first segment can not be created
+     */
+    public CaptureJournal(final @NotNull Path directory, final int segmentSize, final int maxSegments)
+            throws IOException {
+        this(directory, segmentSize, maxSegments, Executors.newSingleThreadExecutor(runnable -> {
+            final var thread = new Thread(runnable, "sparkplug-capture-segments");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param executor the executor of the segment files, e.g. a direct executor for deterministic tests
+     */
+    @VisibleForTesting
+    CaptureJournal(
+            final @NotNull Path directory,
+            final int segmentSize,
+            final int maxSegments,
+            final @NotNull Executor executor) throws IOException {
+        this(directory, segmentSize, maxSegments, executor, false);
+    }
+
+    private CaptureJournal(
+            final @NotNull Path directory,
+            final int segmentSize,
+            final int maxSegments,
+            final @NotNull Executor executor,
+            final boolean ownExecutor) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Size of a capture segment must be at least " + MIN_SEGMENT_SIZE);
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("Maximum number of capture segments must be positive");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor ? (ExecutorService) executor : null;
+        Files.createDirectories(directory);
+        for (final var existing : CaptureJournalReader.segments(directory)) {
+            segments.add(existing);
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(existing) + 1);
+        }
+        // the first segment is created right away, so the first records are not dropped
+        segment = createSegment(nextSegmentPath());
+        segments.add(segment.path);
+        deleteExpired(expiredSegments());
+        spare = prepareSpare();
+    }
+
+    /**
+     * Appends a record to the journal. Records that are larger than a segment, that do not fit into the current
+     * segment while the next segment is not ready or that are appended after {@link #close()} are dropped.
+     *
+     * @param  timestamp the time in milliseconds since the epoch at which the PUBLISH was received
+     * @param  clientId  the MQTT client ID that published the message
+     * @param  topic     the topic of the PUBLISH
+     * @param  payload   the payload of the PUBLISH, its position and limit are not modified
+     * @return           {@code true} if the record was appended
+     */
+    public boolean append(
+            final long timestamp,
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        final var clientIdBytes = clientId.getBytes(StandardCharsets.UTF_8);
+        final var topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        final var recordSize =
+                (long) RECORD_HEADER_SIZE + clientIdBytes.length + topicBytes.length + payload.remaining();
+        if (clientIdBytes.length > MAX_STRING_LENGTH ||
+                topicBytes.length > MAX_STRING_LENGTH ||
+                recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            dropped.increment();
+            return false;
+        }
+        synchronized (this) {
+            if (closed) {
+                dropped.increment();
+                return false;
+            }
+            var buffer = segment.buffer;
+            if (buffer.remaining() < recordSize) {
+                if (!roll()) {
+                    dropped.increment();
+                    return false;
+                }
+                buffer = segment.buffer;
+            }
+            final var start = buffer.position();
+            buffer.position(start + 4);
+            buffer.putLong(timestamp);
+            buffer.putShort((short) clientIdBytes.length);
+            buffer.put(clientIdBytes);
+            buffer.putShort((short) topicBytes.length);
+            buffer.put(topicBytes);
+            buffer.put(payload.duplicate());
+            // the length is written last, so a reader never sees an incomplete record
+            buffer.putInt(start, (int) recordSize - 4);
+        }
+        captured.increment();
+        return true;
+    }
+
+    /**
+     * Writes the records of the current segment to the storage device.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Waits for the background work on the segment files, writes the current segment to the storage device, releases
+     * the mappings and deletes the next segment that was not used.
+     */
+    @Override
+    public void close() {
+        final CompletableFuture<Segment> spare;
+        final CompletableFuture<Void> retired;
+        final Segment segment;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            spare = this.spare;
+            retired = this.retired;
+            segment = this.segment;
+        }
+        // the appends are closed, the background work is finished without holding the lock
+        retired.exceptionally(throwable -> null).join();
+        final var unused = spare.exceptionally(throwable -> null).join();
+        if (unused != null) {
+            unmap(unused.buffer);
+            deleteExpired(List.of(unused.path));
+        }
+        segment.buffer.force();
+        unmap(segment.buffer);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Switches to the next segment if it is ready and hands the full segment and the expired segments to the
+     * background thread.
+     *
+     * @return {@code false} if the next segment is not ready yet or could not be created
+     */
+    private boolean roll() {
+        final var spare = this.spare;
+        if (!spare.isDone()) {
+            return false;
+        }
+        final Segment next;
+        try {
+            next = spare.join();
+        } catch (final CompletionException e) {
+            LOG.warn("Could not create the next capture segment in '{}': {}", directory, e.getCause().getMessage());
+            this.spare = prepareSpare();
+            return false;
+        }
+        final var full = segment;
+        segment = next;
+        segments.add(next.path);
+        final var expired = expiredSegments();
+        this.spare = prepareSpare();
+        retired = retired.thenRunAsync(() -> retire(full, expired), executor);
+        return true;
+    }
+
+    private void retire(final @NotNull Segment full, final @NotNull List<Path> expired) {
+        try {
+            full.buffer.force();
+        } catch (final UncheckedIOException e) {
+            LOG.warn("Could not write capture segment '{}': {}", full.path, e.getMessage());
+        }
+        unmap(full.buffer);
+        deleteExpired(expired);
+    }
+
+    private @NotNull CompletableFuture<Segment> prepareSpare() {
+        final var path = nextSegmentPath();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return createSegment(path);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private @NotNull Path nextSegmentPath() {
+        return directory.resolve(String.format("%019d%s", nextSegmentNumber++, SEGMENT_SUFFIX));
+    }
+
+    private @NotNull List<Path> expiredSegments() {
+        final var expired = new ArrayList<Path>();
+        while (segments.size() > maxSegments) {
+            expired.add(segments.poll());
+        }
+        return expired;
+    }
+
+    private @NotNull Segment createSegment(final @NotNull Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final var channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putInt(MAGIC);
+        return new Segment(path, buffer);
+    }
+
+    private void deleteExpired(final @NotNull List<Path> expired) {
+        for (final var path : expired) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (final IOException e) {
+                LOG.warn("Could not delete capture segment '{}': {}", path, e.getMessage());
+            }
+        }
+    }
+
+    static long segmentNumber(final @NotNull Path segment) {
+        final var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Releases the mapping of a segment right away instead of when its buffer is garbage collected, so the address
+     * space and the file of a deleted segment are freed. The buffer must not be accessed afterwards.
+     */
+    private static void unmap(final @NotNull MappedByteBuffer buffer) {
+        final var invokeCleaner = INVOKE_CLEANER;
+        if (invokeCleaner == null) {
+            return;
+        }
+        try {
+            invokeCleaner.invokeExact((ByteBuffer) buffer);
+        } catch (final Throwable e) {
+            LOG.debug("Could not release the mapping of a capture segment: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return {@code sun.misc.Unsafe#invokeCleaner} bound to the unsafe instance or {@code null} if the JDK does not
+     *         provide it, the mappings are then released by the garbage collector
+     */
+    private static @Nullable MethodHandle findInvokeCleaner() {
+        try {
+            final var unsafeClass = Class.forName("sun.misc.Unsafe");
+            final var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("Mappings of capture segments are released by the garbage collector: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Segment {
+
+        private final @NotNull Path path;
+        private final @NotNull MappedByteBuffer buffer;
+
+        private Segment(final @NotNull Path path, final @NotNull MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the records of a {@link CaptureJournal} in the order in which they were appended.
+ * <p>
+ * The segments are memory-mapped read-only, the payloads of the returned records are views of the mapped segments and
+ * are not copied. A segment whose last record is incomplete, e.g. because the broker stopped while writing, ends after
+ * the last complete record. Segments with an unknown format are rejected with an {@link IOException}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class CaptureJournalReader {
+
+    private final @NotNull ArrayDeque<Path> remaining;
+    private @Nullable ByteBuffer segment;
+
+    /**
+     * @param  directory   the directory of the segment files
+     * @throws IOException if the directory can not be read
+     */
+    public CaptureJournalReader(final @NotNull Path directory) throws IOException {
+        this.remaining = new ArrayDeque<>(segments(directory));
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return             the next record or {@code null} if all records are read
+     * @throws IOException if a segment can not be read
+     */
+    public @Nullable CaptureRecord next() throws IOException {
+        while (true) {
+            final var segment = this.segment;
+            if (segment != null) {
+                final var record = read(segment);
+                if (record != null) {
+                    return record;
+                }
+            }
+            final var path = remaining.poll();
+            if (path == null) {
+                this.segment = null;
+                return null;
+            }
+            this.segment = map(path);
+        }
+    }
+
+    /**
+     * Lists the segment files of a journal directory in the order in which they were written.
+     *
+     * @param  directory   the directory of the segment files
+     * @return             the segment files, empty if the directory does not exist
+     * @throws IOException if the directory can not be read
+     */
+    public static @NotNull List<Path> segments(final @NotNull Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (final var files = Files.list(directory)) {
+            return files.filter(CaptureJournalReader::isSegment)
+                    .sorted(Comparator.comparingLong(CaptureJournal::segmentNumber))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static @Nullable CaptureRecord read(final @NotNull ByteBuffer segment) {
+        if (segment.remaining() < CaptureJournal.RECORD_HEADER_SIZE) {
+            return null;
+        }
+        final var length = segment.getInt(segment.position());
+        if (length < CaptureJournal.RECORD_HEADER_SIZE - 4 || length > segment.remaining() - 4) {
+            // end of the segment or incomplete record
+            return null;
+        }
+        final var end = segment.position() + 4 + length;
+        segment.position(segment.position() + 4);
+        final var timestamp = segment.getLong();
+        final var clientId = readString(segment, end);
+        final var topic = readString(segment, end);
+        if (clientId == null || topic == null) {
+            return null;
+        }
+        final var payload = segment.slice();
+        payload.limit(end - segment.position());
+        segment.position(end);
+        return new CaptureRecord(timestamp, clientId, topic, payload.asReadOnlyBuffer());
+    }
+
+    private static @Nullable String readString(final @NotNull ByteBuffer segment, final int end) {
+        if (end - segment.position() < 2) {
+            return null;
+        }
+        final var length = segment.getShort() & 0xFFFF;
+        if (length > end - segment.position()) {
+            return null;
+        }
+        final var bytes = new byte[length];
+        segment.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static @NotNull ByteBuffer map(final @NotNull Path path) throws IOException {
+        final ByteBuffer segment;
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (segment.remaining() < CaptureJournal.SEGMENT_HEADER_SIZE || segment.getInt() != CaptureJournal.MAGIC) {
+            throw new IOException("File '" + path + "' is not a Sparkplug capture segment");
+        }
+        return segment;
+    }
+
+    private static boolean isSegment(final @NotNull Path path) {
+        final var name = path.getFileName().toString();
+        final var digits = name.length() - CaptureJournal.SEGMENT_SUFFIX.length();
+        if (!name.endsWith(CaptureJournal.SEGMENT_SUFFIX) || digits < 1 || digits > 19) {
+            return false;
+        }
+        for (var i = 0; i < digits; i++) {
+            final var c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return Files.isRegularFile(path);
+    }
+}
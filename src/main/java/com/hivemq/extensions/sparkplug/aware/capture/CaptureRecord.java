@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.capture;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A single PUBLISH that was captured by the {@link CaptureJournal}.
+ */
+public final class CaptureRecord {
+
+    private final long timestamp;
+    private final @NotNull String clientId;
+    private final @NotNull String topic;
+    private final @NotNull ByteBuffer payload;
+
+    public CaptureRecord(
+            final long timestamp,
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        this.timestamp = timestamp;
+        this.clientId = clientId;
+        this.topic = topic;
+        this.payload = payload;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch at which the PUBLISH was received by the broker
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public @NotNull String getClientId() {
+        return clientId;
+    }
+
+    public @NotNull String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the raw payload as read-only buffer, empty if the PUBLISH had no payload
+     */
+    public @NotNull ByteBuffer getPayload() {
+        return payload.duplicate();
+    }
+}
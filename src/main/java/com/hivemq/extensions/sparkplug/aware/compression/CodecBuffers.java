@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-thread state of the compression codecs.
+ * <p>
+ * The {@link Deflater} and {@link Inflater} instances hold native memory, so they are reused for every message of a
+ * thread instead of being created and ended per message. The output buffers grow with the payloads, but are replaced
+ * by small buffers again before the next use if a large payload grew them beyond {@link #MAX_RETAINED_CAPACITY}.
+ */
+final class CodecBuffers {
+
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    // the maximum size of an MQTT packet, a larger payload can't be published anyway
+    private static final int MAX_DECOMPRESSED_SIZE = 268_435_455;
+
+    private static final @NotNull ThreadLocal<CodecBuffers> BUFFERS = ThreadLocal.withInitial(CodecBuffers::new);
+
+    final @NotNull Deflater rawDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    final @NotNull Deflater zlibDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, false);
+    final @NotNull Inflater rawInflater = new Inflater(true);
+    final @NotNull Inflater zlibInflater = new Inflater(false);
+    final @NotNull CRC32 crc32 = new CRC32();
+
+    private byte @NotNull [] compressed = new byte[INITIAL_CAPACITY];
+    private byte @NotNull [] decompressed = new byte[INITIAL_CAPACITY];
+    private int unusedInput;
+
+    private CodecBuffers() {
+    }
+
+    static @NotNull CodecBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * Compresses the remaining bytes of the input into the compression buffer.
+     *
+     * @param  deflater the deflater to use
+     * @param  input    the uncompressed bytes, the position is not modified
+     * @param  offset   the number of bytes to leave free at the start of the buffer, e.g. for a header
+     * @param  reserve  the number of bytes to leave free after the compressed bytes, e.g. for a trailer
+     * @return          the index after the last compressed byte
+     */
+    int deflate(
+            final @NotNull Deflater deflater,
+            final @NotNull ByteBuffer input,
+            final int offset,
+            final int reserve) {
+        if (compressed.length > MAX_RETAINED_CAPACITY) {
+            compressed = new byte[INITIAL_CAPACITY];
+        }
+        try {
+            deflater.setInput(input.duplicate());
+            deflater.finish();
+            var length = offset;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            if (compressed.length - length < reserve) {
+                compressed = Arrays.copyOf(compressed, length + reserve);
+            }
+            return length;
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Decompresses the input into the decompression buffer.
+     *
+     * @param  inflater                 the inflater to use
+     * @param  input                    the buffer with the compressed bytes, the position is not modified
+     * @param  position                 the absolute index of the first compressed byte
+     * @param  limit                    the absolute index after the last compressed byte
+     * @return                          the number of decompressed bytes, the number of unused input bytes is written
+     *                                  to {@link #getUnusedInput()}
+     * @throws IllegalArgumentException if the input is not valid compressed data
+     */
+    int inflate(
+            final @NotNull Inflater inflater,
+            final @NotNull ByteBuffer input,
+            final int position,
+            final int limit) {
+        if (decompressed.length > MAX_RETAINED_CAPACITY) {
+            decompressed = new byte[INITIAL_CAPACITY];
+        }
+        try {
+            inflater.setInput(input.duplicate().limit(limit).position(position));
+            var length = 0;
+            while (!inflater.finished()) {
+                if (length == decompressed.length) {
+                    if (length >= MAX_DECOMPRESSED_SIZE) {
+                        throw new IllegalArgumentException("Decompressed payload exceeds " + MAX_DECOMPRESSED_SIZE +
+                                " bytes");
+                    }
+                    decompressed = Arrays.copyOf(decompressed, (int) Math.min(length * 2L, MAX_DECOMPRESSED_SIZE));
+                }
+                final var inflated = inflater.inflate(decompressed, length, decompressed.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed payload");
+                }
+                length += inflated;
+            }
+            unusedInput = inflater.getRemaining();
+            return length;
+        } catch (final DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed payload: " + e.getMessage(), e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    int getUnusedInput() {
+        return unusedInput;
+    }
+
+    byte @NotNull [] getCompressed() {
+        return compressed;
+    }
+
+    byte @NotNull [] getDecompressed() {
+        return decompressed;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import com.hivemq.extensions.sparkplug.aware.utils.WireReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compressed Sparkplug B payload in the format of Eclipse Tahu.
+ * <p>
+ * A compressed payload is a Sparkplug B payload with the UUID {@value #UUID}, the compressed original payload as body
+ * and a String metric {@code algorithm} that names the compression algorithm. If the metric is missing, the algorithm
+ * is DEFLATE. The envelope is read and written on the protobuf wire level.
+ */
+public final class CompressedEnvelope {
+
+    public static final @NotNull String UUID = "SPBV1.0_COMPRESSED";
+
+    private static final byte @NotNull [] UUID_BYTES = UUID.getBytes(StandardCharsets.UTF_8);
+    private static final byte @NotNull [] ALGORITHM_METRIC_BYTES = "algorithm".getBytes(StandardCharsets.UTF_8);
+
+    private static final int PAYLOAD_TIMESTAMP = 1;
+    private static final int PAYLOAD_METRICS = 2;
+    private static final int PAYLOAD_UUID = 4;
+    private static final int PAYLOAD_BODY = 5;
+    private static final int METRIC_NAME = 1;
+    private static final int METRIC_DATATYPE = 4;
+    private static final int METRIC_STRING_VALUE = 15;
+    private static final int DATATYPE_STRING = 12;
+
+    private final @NotNull CompressionCodec codec;
+    private final @NotNull ByteBuffer body;
+
+    private CompressedEnvelope(final @NotNull CompressionCodec codec, final @NotNull ByteBuffer body) {
+        this.codec = codec;
+        this.body = body;
+    }
+
+    /**
+     * Reads the envelope of a compressed Sparkplug B payload.
+     * <p>
+     * Payloads that are not compressed are detected with a single pass over the top-level fields, no field is decoded.
+     * The position of the buffer is not modified.
+     *
+     * @param  payload                  the encoded Sparkplug B payload
+     * @return                          the envelope or {@code null} if the payload is not compressed
+     * @throws IllegalArgumentException if the payload is not valid protobuf or uses an unsupported algorithm
+     */
+    public static @Nullable CompressedEnvelope parse(final @NotNull ByteBuffer payload) {
+        var compressed = false;
+        var bodyStart = -1;
+        var bodyEnd = -1;
+        final var reader = new WireReader(payload);
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            final var field = tag >>> 3;
+            if ((field == PAYLOAD_UUID || field == PAYLOAD_BODY) && (tag & 7) == WireReader.WIRETYPE_LENGTH_DELIMITED) {
+                final var length = reader.readLength();
+                if (field == PAYLOAD_UUID) {
+                    compressed = equalBytes(payload, reader.position(), length, UUID_BYTES);
+                } else {
+                    bodyStart = reader.position();
+                    bodyEnd = bodyStart + length;
+                }
+                reader.skipBytes(length);
+            } else {
+                reader.skipField(tag & 7);
+            }
+        }
+        if (!compressed) {
+            return null;
+        }
+        if (bodyStart < 0) {
+            throw new IllegalArgumentException("Compressed Sparkplug payload without body");
+        }
+        final var algorithm = readAlgorithm(payload);
+        final var codec = CompressionCodec.forAlgorithm(algorithm);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unsupported Sparkplug compression algorithm '" + algorithm + "'");
+        }
+        return new CompressedEnvelope(codec, payload.duplicate().limit(bodyEnd).position(bodyStart).slice());
+    }
+
+    /**
+     * Decodes a Sparkplug B payload that may be compressed. Every consumer of a message works on the decoded payload,
+     * so a compressed payload is decompressed once.
+     *
+     * @param  payload                  the encoded Sparkplug B payload, the position is not modified
+     * @return                          the payload itself if it is not compressed, otherwise the decompressed payload
+     *                                  that is only valid until the next decompression on the same thread
+     * @throws IllegalArgumentException if the payload is not valid protobuf, uses an unsupported algorithm or the body
+     *                                  is not valid compressed data
+     */
+    public static @NotNull ByteBuffer decode(final @NotNull ByteBuffer payload) {
+        final var envelope = parse(payload);
+        if (envelope == null) {
+            return payload;
+        }
+        return envelope.codec.decompress(envelope.body);
+    }
+
+    /**
+     * Writes a compressed Sparkplug B payload.
+     *
+     * @param  codec     the codec the body was compressed with
+     * @param  timestamp the timestamp of the envelope in milliseconds since epoch
+     * @param  body      the compressed payload, the position is not modified
+     * @return           a new heap byte buffer containing the compressed Sparkplug B payload
+     */
+    public static @NotNull ByteBuffer encode(
+            final @NotNull CompressionCodec codec,
+            final long timestamp,
+            final @NotNull ByteBuffer body) {
+        final var algorithm = codec.getAlgorithm().getBytes(StandardCharsets.UTF_8);
+        final var metricLength = fieldSize(ALGORITHM_METRIC_BYTES.length) + 1 + 1 + fieldSize(algorithm.length);
+        final var length = 1 +
+                WireReader.varintSize(timestamp) +
+                fieldSize(metricLength) +
+                fieldSize(UUID_BYTES.length) +
+                fieldSize(body.remaining());
+        final var envelope = ByteBuffer.allocate(length);
+        envelope.put(tag(PAYLOAD_TIMESTAMP, WireReader.WIRETYPE_VARINT));
+        WireReader.writeVarint(envelope, timestamp);
+        envelope.put(tag(PAYLOAD_METRICS, WireReader.WIRETYPE_LENGTH_DELIMITED));
+        WireReader.writeVarint(envelope, metricLength);
+        putBytes(envelope, METRIC_NAME, ALGORITHM_METRIC_BYTES);
+        envelope.put(tag(METRIC_DATATYPE, WireReader.WIRETYPE_VARINT));
+        envelope.put((byte) DATATYPE_STRING);
+        putBytes(envelope, METRIC_STRING_VALUE, algorithm);
+        putBytes(envelope, PAYLOAD_UUID, UUID_BYTES);
+        envelope.put(tag(PAYLOAD_BODY, WireReader.WIRETYPE_LENGTH_DELIMITED));
+        WireReader.writeVarint(envelope, body.remaining());
+        envelope.put(body.duplicate());
+        return envelope.flip();
+    }
+
+    public @NotNull CompressionCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return the compressed body, a view of the parsed payload
+     */
+    public @NotNull ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    private static @NotNull String readAlgorithm(final @NotNull ByteBuffer payload) {
+        final var reader = new WireReader(payload);
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            if (tag >>> 3 == PAYLOAD_METRICS && (tag & 7) == WireReader.WIRETYPE_LENGTH_DELIMITED) {
+                final var length = reader.readLength();
+                final var algorithm = readAlgorithmMetric(payload, reader.position(), reader.position() + length);
+                if (algorithm != null) {
+                    return algorithm;
+                }
+                reader.skipBytes(length);
+            } else {
+                reader.skipField(tag & 7);
+            }
+        }
+        return DeflateCodec.ALGORITHM;
+    }
+
+    private static @Nullable String readAlgorithmMetric(
+            final @NotNull ByteBuffer payload,
+            final int position,
+            final int limit) {
+        var algorithmMetric = false;
+        String value = null;
+        final var reader = new WireReader(payload, position, limit);
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            final var field = tag >>> 3;
+            if ((field == METRIC_NAME || field == METRIC_STRING_VALUE) &&
+                    (tag & 7) == WireReader.WIRETYPE_LENGTH_DELIMITED) {
+                final var length = reader.readLength();
+                if (field == METRIC_NAME) {
+                    algorithmMetric = equalBytes(payload, reader.position(), length, ALGORITHM_METRIC_BYTES);
+                } else {
+                    final var bytes = new byte[length];
+                    payload.duplicate().position(reader.position()).get(bytes);
+                    value = new String(bytes, StandardCharsets.UTF_8);
+                }
+                reader.skipBytes(length);
+            } else {
+                reader.skipField(tag & 7);
+            }
+        }
+        return algorithmMetric ? value : null;
+    }
+
+    private static boolean equalBytes(
+            final @NotNull ByteBuffer buffer,
+            final int position,
+            final int length,
+            final byte @NotNull [] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (var i = 0; i < length; i++) {
+            if (buffer.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int fieldSize(final int length) {
+        return 1 + WireReader.varintSize(length) + length;
+    }
+
+    private static byte tag(final int field, final int wireType) {
+        return (byte) (field << 3 | wireType);
+    }
+
+    private static void putBytes(final @NotNull ByteBuffer buffer, final int field, final byte @NotNull [] bytes) {
+        buffer.put(tag(field, WireReader.WIRETYPE_LENGTH_DELIMITED));
+        WireReader.writeVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compression algorithm for the body of a compressed Sparkplug B payload, see {@link CompressedEnvelope}.
+ * <p>
+ * Implementations are stateless and thread-safe. They use per-thread {@link java.util.zip.Deflater} and
+ * {@link java.util.zip.Inflater} instances and per-thread output buffers, so no streams or buffers are allocated for
+ * every message. As a consequence the returned buffers are only valid until the next call of the same method on the
+ * same thread and must be copied if they are kept.
+ */
+public interface CompressionCodec {
+
+    /**
+     * Returns the codec for the given algorithm name, as used in the {@code algorithm} metric of compressed payloads.
+     *
+     * @param  algorithm the algorithm name, case-insensitive
+     * @return           the codec or {@code null} if the algorithm is not supported
+     */
+    static @Nullable CompressionCodec forAlgorithm(final @NotNull String algorithm) {
+        if (GzipCodec.ALGORITHM.equalsIgnoreCase(algorithm)) {
+            return GzipCodec.INSTANCE;
+        }
+        if (DeflateCodec.ALGORITHM.equalsIgnoreCase(algorithm)) {
+            return DeflateCodec.INSTANCE;
+        }
+        return null;
+    }
+
+    /**
+     * @return the algorithm name as written to the {@code algorithm} metric of compressed payloads
+     */
+    @NotNull String getAlgorithm();
+
+    /**
+     * Compresses the remaining bytes of the given buffer. The position of the buffer is not modified.
+     *
+     * @param  input the uncompressed bytes
+     * @return       the compressed bytes, only valid until the next call on the same thread
+     */
+    @NotNull ByteBuffer compress(@NotNull ByteBuffer input);
+
+    /**
+     * Decompresses the remaining bytes of the given buffer. The position of the buffer is not modified.
+     *
+     * @param  input                    the compressed bytes
+     * @return                          the decompressed bytes, only valid until the next call on the same thread
+     * @throws IllegalArgumentException if the input is not valid compressed data
+     */
+    @NotNull ByteBuffer decompress(@NotNull ByteBuffer input);
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * DEFLATE codec as used by Eclipse Tahu.
+ * <p>
+ * Tahu uses the default {@link java.util.zip.Deflater} and {@link java.util.zip.Inflater} for this algorithm, so the
+ * compressed data is DEFLATE with the zlib wrapper (RFC 1950).
+ */
+public final class DeflateCodec implements CompressionCodec {
+
+    static final @NotNull String ALGORITHM = "DEFLATE";
+    static final @NotNull DeflateCodec INSTANCE = new DeflateCodec();
+
+    private DeflateCodec() {
+    }
+
+    @Override
+    public @NotNull String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public @NotNull ByteBuffer compress(final @NotNull ByteBuffer input) {
+        final var buffers = CodecBuffers.get();
+        final var length = buffers.deflate(buffers.zlibDeflater, input, 0, 0);
+        return ByteBuffer.wrap(buffers.getCompressed(), 0, length);
+    }
+
+    @Override
+    public @NotNull ByteBuffer decompress(final @NotNull ByteBuffer input) {
+        final var buffers = CodecBuffers.get();
+        final var length = buffers.inflate(buffers.zlibInflater, input, input.position(), input.limit());
+        return ByteBuffer.wrap(buffers.getDecompressed(), 0, length);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return ALGORITHM;
+    }
+}
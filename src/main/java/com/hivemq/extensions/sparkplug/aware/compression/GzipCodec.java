@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * GZIP codec (RFC 1952) on top of a raw {@link java.util.zip.Deflater}.
+ * <p>
+ * The GZIP header and trailer are written and checked directly, so the codec does not need the stream based
+ * {@link java.util.zip.GZIPOutputStream} and {@link java.util.zip.GZIPInputStream}. Only a single GZIP member is read,
+ * which is what Eclipse Tahu and this codec write.
+ */
+public final class GzipCodec implements CompressionCodec {
+
+    static final @NotNull String ALGORITHM = "GZIP";
+    static final @NotNull GzipCodec INSTANCE = new GzipCodec();
+
+    private static final int MAGIC = 0x8b1f;
+    private static final int METHOD_DEFLATE = 8;
+    private static final byte @NotNull [] HEADER = {
+            (byte) MAGIC, (byte) (MAGIC >> 8), METHOD_DEFLATE, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int TRAILER_LENGTH = 8;
+
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private GzipCodec() {
+    }
+
+    @Override
+    public @NotNull String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public @NotNull ByteBuffer compress(final @NotNull ByteBuffer input) {
+        final var buffers = CodecBuffers.get();
+        buffers.crc32.reset();
+        buffers.crc32.update(input.duplicate());
+        final var length = buffers.deflate(buffers.rawDeflater, input, HEADER.length, TRAILER_LENGTH);
+        final var output = ByteBuffer.wrap(buffers.getCompressed(), 0, length + TRAILER_LENGTH);
+        output.put(HEADER);
+        output.position(length);
+        output.putInt(Integer.reverseBytes((int) buffers.crc32.getValue()));
+        output.putInt(Integer.reverseBytes(input.remaining()));
+        return output.flip();
+    }
+
+    @Override
+    public @NotNull ByteBuffer decompress(final @NotNull ByteBuffer input) {
+        final var limit = input.limit();
+        final var start = skipHeader(input, input.position(), limit);
+        final var buffers = CodecBuffers.get();
+        final var length = buffers.inflate(buffers.rawInflater, input, start, limit);
+        final var trailer = limit - buffers.getUnusedInput();
+        if (limit - trailer < TRAILER_LENGTH) {
+            throw new IllegalArgumentException("Truncated GZIP trailer");
+        }
+        final var output = ByteBuffer.wrap(buffers.getDecompressed(), 0, length);
+        buffers.crc32.reset();
+        buffers.crc32.update(output.duplicate());
+        if (Integer.reverseBytes(input.getInt(trailer)) != (int) buffers.crc32.getValue()) {
+            throw new IllegalArgumentException("Invalid GZIP checksum");
+        }
+        if (Integer.reverseBytes(input.getInt(trailer + 4)) != length) {
+            throw new IllegalArgumentException("Invalid GZIP length");
+        }
+        return output;
+    }
+
+    private static int skipHeader(final @NotNull ByteBuffer input, final int position, final int limit) {
+        if (limit - position < HEADER.length ||
+                readUnsignedShort(input, position) != MAGIC ||
+                input.get(position + 2) != METHOD_DEFLATE) {
+            throw new IllegalArgumentException("Invalid GZIP header");
+        }
+        final var flags = input.get(position + 3);
+        var index = position + HEADER.length;
+        if ((flags & FLAG_EXTRA) != 0) {
+            checkRemaining(index, 2, limit);
+            index += 2 + readUnsignedShort(input, index);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            index = skipZeroTerminated(input, index, limit);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            index = skipZeroTerminated(input, index, limit);
+        }
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            index += 2;
+        }
+        checkRemaining(index, 0, limit);
+        return index;
+    }
+
+    private static int readUnsignedShort(final @NotNull ByteBuffer input, final int index) {
+        return (input.get(index) & 0xFF) | (input.get(index + 1) & 0xFF) << 8;
+    }
+
+    private static int skipZeroTerminated(final @NotNull ByteBuffer input, int index, final int limit) {
+        while (index < limit) {
+            if (input.get(index++) == 0) {
+                return index;
+            }
+        }
+        throw new IllegalArgumentException("Invalid GZIP header");
+    }
+
+    private static void checkRemaining(final int index, final int length, final int limit) {
+        if (index + length > limit) {
+            throw new IllegalArgumentException("Invalid GZIP header");
+        }
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return ALGORITHM;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.configuration;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressionCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable handling policy of a single configured Sparkplug namespace.
+ * <p>
+ * Each namespace listed in {@code sparkplug.version} gets its own policy. The values default to the global properties
+ * and can be overridden per namespace with {@code sparkplug.namespace.<namespace>.<property>}, e.g.
+ * {@code sparkplug.namespace.spAv1.0.systopic}.
+ */
+public class NamespacePolicy {
+
+    private final @NotNull String namespace;
+    private final @NotNull String sysTopic;
+    private final @Nullable CompressionCodec compression;
+    private final boolean jsonLogEnabled;
+
+    public NamespacePolicy(
+            final @NotNull String namespace,
+            final @NotNull String sysTopic,
+            final @Nullable CompressionCodec compression,
+            final boolean jsonLogEnabled) {
+        this.namespace = namespace;
+        this.sysTopic = sysTopic;
+        this.compression = compression;
+        this.jsonLogEnabled = jsonLogEnabled;
+    }
+
+    public @NotNull String getNamespace() {
+        return namespace;
+    }
+
+    public @NotNull String getSysTopic() {
+        return sysTopic;
+    }
+
+    public boolean isCompression() {
+        return compression != null;
+    }
+
+    /**
+     * @return the codec to compress uncompressed payloads with, or {@code null} if compression is disabled
+     */
+    public @Nullable CompressionCodec getCompression() {
+        return compression;
+    }
+
+    public boolean isJsonLogEnabled() {
+        return jsonLogEnabled;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "NamespacePolicy{" + "namespace='" + namespace + "', sysTopic='" + sysTopic + "', compression=" +
+                compression + ", jsonLogEnabled=" + jsonLogEnabled + "}";
+    }
+}
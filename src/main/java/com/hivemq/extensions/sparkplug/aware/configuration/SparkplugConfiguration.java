@@ -16,11 +16,20 @@
 
 package com.hivemq.extensions.sparkplug.aware.configuration;
 
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressionCodec;
+import com.hivemq.extensions.sparkplug.aware.log.OverflowPolicy;
+import com.hivemq.extensions.sparkplug.aware.registry.StaleDeathPolicy;
+import com.hivemq.extensions.sparkplug.aware.republish.DedupMode;
+import com.hivemq.extensions.sparkplug.aware.topics.NamespaceTrie;
+import com.hivemq.extensions.sparkplug.aware.utils.JsonLogFormat;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 
@@ -41,13 +50,94 @@ public class SparkplugConfiguration extends PropertiesReader {
 
     private static final @NotNull String SPARKPLUG_COMPRESSION = "sparkplug.compression";
     private static final @NotNull String SPARKPLUG_COMPRESSION_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_COMPRESSION_ALGORITHM = "sparkplug.compression.algorithm";
+    private static final @NotNull String SPARKPLUG_COMPRESSION_ALGORITHM_DEFAULT = "GZIP";
 
     private static final @NotNull String SPARKPLUG_JSON_LOG_ENABLED = "sparkplug.json.log";
     private static final @NotNull String SPARKPLUG_JSON_LOG_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_JSON_LOG_FORMAT = "sparkplug.json.log.format";
+    private static final @NotNull String SPARKPLUG_JSON_LOG_FORMAT_DEFAULT = "pretty";
+    private static final @NotNull String SPARKPLUG_JSON_LOG_QUEUE_SIZE = "sparkplug.json.log.queue.size";
+    private static final long SPARKPLUG_JSON_LOG_QUEUE_SIZE_DEFAULT = 8192L;
+    private static final @NotNull String SPARKPLUG_JSON_LOG_OVERFLOW = "sparkplug.json.log.overflow";
+    private static final @NotNull String SPARKPLUG_JSON_LOG_OVERFLOW_DEFAULT = "drop-newest";
+    private static final @NotNull String SPARKPLUG_JSON_LOG_SAMPLE_RATE = "sparkplug.json.log.sample.rate";
+    private static final long SPARKPLUG_JSON_LOG_SAMPLE_RATE_DEFAULT = 10L;
 
     private static final @NotNull String SPARKPLUG_SYSTOPIC_MSGEXPIRY = "sparkplug.systopic.msgExpiry";
     private static final @NotNull Long SPARKPLUG_SYSTOPIC_MSGEXPIRY_DEFAULT = 4294967296L;
 
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_INFLIGHT_MAX = "sparkplug.systopic.inflight.max";
+    private static final long SPARKPLUG_SYSTOPIC_INFLIGHT_MAX_DEFAULT = 1_000L;
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_QUEUE_SIZE = "sparkplug.systopic.queue.size";
+    private static final long SPARKPLUG_SYSTOPIC_QUEUE_SIZE_DEFAULT = 100_000L;
+
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_DEDUP = "sparkplug.systopic.dedup";
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_DEDUP_DEFAULT = "off";
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_DEDUP_SIZE = "sparkplug.systopic.dedup.size";
+    private static final long SPARKPLUG_SYSTOPIC_DEDUP_SIZE_DEFAULT = 100_000L;
+
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_SNAPSHOT = "sparkplug.systopic.snapshot";
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_SNAPSHOT_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_SNAPSHOT_SIZE = "sparkplug.systopic.snapshot.size";
+    private static final long SPARKPLUG_SYSTOPIC_SNAPSHOT_SIZE_DEFAULT = 100_000L;
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_SNAPSHOT_BATCH_SIZE =
+            "sparkplug.systopic.snapshot.batch.size";
+    private static final long SPARKPLUG_SYSTOPIC_SNAPSHOT_BATCH_SIZE_DEFAULT = 1_000L;
+    private static final @NotNull String SPARKPLUG_SYSTOPIC_SNAPSHOT_TICK = "sparkplug.systopic.snapshot.tick";
+    private static final long SPARKPLUG_SYSTOPIC_SNAPSHOT_TICK_DEFAULT = 10L;
+
+    private static final @NotNull String SPARKPLUG_NDEATH_TIMESTAMP_BUCKET = "sparkplug.ndeath.timestamp.bucket";
+    private static final long SPARKPLUG_NDEATH_TIMESTAMP_BUCKET_DEFAULT = 10L;
+    private static final @NotNull String SPARKPLUG_NDEATH_TEMPLATE_SIZE = "sparkplug.ndeath.template.size";
+    private static final long SPARKPLUG_NDEATH_TEMPLATE_SIZE_DEFAULT = 100_000L;
+
+    private static final @NotNull String SPARKPLUG_NDEATH_STALE = "sparkplug.ndeath.stale";
+    private static final @NotNull String SPARKPLUG_NDEATH_STALE_DEFAULT = "deliver";
+
+    private static final @NotNull String SPARKPLUG_SEQ_VALIDATION = "sparkplug.seq.validation";
+    private static final @NotNull String SPARKPLUG_SEQ_VALIDATION_DEFAULT = "true";
+
+    private static final @NotNull String SPARKPLUG_ALIAS_RESOLUTION = "sparkplug.alias.resolution";
+    private static final @NotNull String SPARKPLUG_ALIAS_RESOLUTION_DEFAULT = "true";
+
+    private static final @NotNull String SPARKPLUG_LASTVALUES = "sparkplug.lastvalues";
+    private static final @NotNull String SPARKPLUG_LASTVALUES_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_LASTVALUES_TOPIC = "sparkplug.lastvalues.topic";
+    private static final @NotNull String SPARKPLUG_LASTVALUES_TOPIC_DEFAULT = "$sparkplug/lastvalues/";
+
+    private static final @NotNull String SPARKPLUG_METRICS2TOPIC = "sparkplug.metrics2topic";
+    private static final @NotNull String SPARKPLUG_METRICS2TOPIC_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_METRICS2TOPIC_PREFIX = "sparkplug.metrics2topic.prefix";
+    private static final @NotNull String SPARKPLUG_METRICS2TOPIC_PREFIX_DEFAULT = "$sparkplug/metrics/";
+    private static final @NotNull String SPARKPLUG_METRICS2TOPIC_INFLIGHT_MAX =
+            "sparkplug.metrics2topic.inflight.max";
+    private static final long SPARKPLUG_METRICS2TOPIC_INFLIGHT_MAX_DEFAULT = 10_000L;
+
+    private static final @NotNull String SPARKPLUG_NAMESPACE_PREFIX = "sparkplug.namespace.";
+
+    private static final @NotNull String SPARKPLUG_TOPIC_CACHE_SIZE = "sparkplug.topic.cache.size";
+    private static final long SPARKPLUG_TOPIC_CACHE_SIZE_DEFAULT = 100_000L;
+
+    private static final @NotNull String SPARKPLUG_CAPTURE_ENABLED = "sparkplug.capture";
+    private static final @NotNull String SPARKPLUG_CAPTURE_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_CAPTURE_DIR = "sparkplug.capture.dir";
+    private static final @NotNull String SPARKPLUG_CAPTURE_DIR_DEFAULT = "capture";
+    private static final @NotNull String SPARKPLUG_CAPTURE_SEGMENT_SIZE = "sparkplug.capture.segment.size";
+    private static final long SPARKPLUG_CAPTURE_SEGMENT_SIZE_DEFAULT = 64L * 1024 * 1024;
+    private static final long SPARKPLUG_CAPTURE_SEGMENT_SIZE_MIN = 4096L;
+    private static final @NotNull String SPARKPLUG_CAPTURE_SEGMENTS_MAX = "sparkplug.capture.segments.max";
+    private static final long SPARKPLUG_CAPTURE_SEGMENTS_MAX_DEFAULT = 16L;
+
+    private static final @NotNull String SPARKPLUG_ASYNC_ENABLED = "sparkplug.async";
+    private static final @NotNull String SPARKPLUG_ASYNC_DEFAULT = "false";
+    private static final @NotNull String SPARKPLUG_ASYNC_TIMEOUT = "sparkplug.async.timeout";
+    private static final long SPARKPLUG_ASYNC_TIMEOUT_DEFAULT = 10_000L;
+    private static final @NotNull String SPARKPLUG_ASYNC_FALLBACK = "sparkplug.async.fallback";
+    private static final @NotNull String SPARKPLUG_ASYNC_FALLBACK_DEFAULT = "success";
+    private static final @NotNull String SPARKPLUG_ASYNC_THREADS = "sparkplug.async.threads";
+    private static final long SPARKPLUG_ASYNC_THREADS_DEFAULT = 0L;
+
     public SparkplugConfiguration(final @NotNull File configFilePath, final @NotNull String filename) {
         super(configFilePath, filename);
     }
@@ -56,6 +146,103 @@ public class SparkplugConfiguration extends PropertiesReader {
         return validateLongProperty(SPARKPLUG_SYSTOPIC_MSGEXPIRY, SPARKPLUG_SYSTOPIC_MSGEXPIRY_DEFAULT, true, false);
     }
 
+    /**
+     * Returns the maximum number of births that are published to their system topics at the same time.
+     *
+     * @return the maximum number of in-flight sysTopic publishes
+     */
+    public @NotNull Integer getSysTopicInFlightMax() {
+        return validateIntProperty(SPARKPLUG_SYSTOPIC_INFLIGHT_MAX,
+                SPARKPLUG_SYSTOPIC_INFLIGHT_MAX_DEFAULT,
+                false,
+                false);
+    }
+
+    /**
+     * Returns the maximum number of system topics with a birth that waits to be published, births of further system
+     * topics are rejected.
+     *
+     * @return the maximum number of queued sysTopic publishes
+     */
+    public @NotNull Integer getSysTopicQueueSize() {
+        return validateIntProperty(SPARKPLUG_SYSTOPIC_QUEUE_SIZE, SPARKPLUG_SYSTOPIC_QUEUE_SIZE_DEFAULT, false, false);
+    }
+
+    /**
+     * Returns the handling of births whose certificate did not change since the last birth on the same system topic.
+     *
+     * @return the dedup mode, {@link DedupMode#OFF} if the configured mode is not supported
+     */
+    public @NotNull DedupMode getSysTopicDedupMode() {
+        final var value = validateStringProperty(SPARKPLUG_SYSTOPIC_DEDUP, SPARKPLUG_SYSTOPIC_DEDUP_DEFAULT);
+        final var mode = DedupMode.fromString(value);
+        if (mode == null) {
+            LOG.warn("Value for the property '{}' is not a supported mode, original value {}. Using default: {}",
+                    SPARKPLUG_SYSTOPIC_DEDUP,
+                    value,
+                    SPARKPLUG_SYSTOPIC_DEDUP_DEFAULT);
+            return DedupMode.OFF;
+        }
+        return mode;
+    }
+
+    /**
+     * Returns the maximum number of system topics whose birth fingerprints are remembered for the dedup, the least
+     * recently published system topic is forgotten when the maximum is exceeded.
+     *
+     * @return the maximum number of birth fingerprints
+     */
+    public @NotNull Integer getSysTopicDedupSize() {
+        return validateIntProperty(SPARKPLUG_SYSTOPIC_DEDUP_SIZE, SPARKPLUG_SYSTOPIC_DEDUP_SIZE_DEFAULT, false, false);
+    }
+
+    /**
+     * Returns whether new subscribers of the system topics receive the births from memory instead of the retained
+     * message store.
+     *
+     * @return {@code true} if the births are delivered from memory
+     */
+    public @NotNull Boolean getSysTopicSnapshotEnabled() {
+        return validateBooleanProperty(SPARKPLUG_SYSTOPIC_SNAPSHOT, SPARKPLUG_SYSTOPIC_SNAPSHOT_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of system topics whose births are kept in memory, with more system topics the births
+     * are delivered from the retained message store again.
+     *
+     * @return the maximum number of birth snapshots
+     */
+    public @NotNull Integer getSysTopicSnapshotSize() {
+        return validateIntProperty(SPARKPLUG_SYSTOPIC_SNAPSHOT_SIZE,
+                SPARKPLUG_SYSTOPIC_SNAPSHOT_SIZE_DEFAULT,
+                false,
+                false);
+    }
+
+    /**
+     * Returns the maximum number of births that are delivered to new subscribers per tick.
+     *
+     * @return the batch size of the birth snapshot delivery
+     */
+    public @NotNull Integer getSysTopicSnapshotBatchSize() {
+        return validateIntProperty(SPARKPLUG_SYSTOPIC_SNAPSHOT_BATCH_SIZE,
+                SPARKPLUG_SYSTOPIC_SNAPSHOT_BATCH_SIZE_DEFAULT,
+                false,
+                false);
+    }
+
+    /**
+     * Returns the interval between two batches of the birth snapshot delivery.
+     *
+     * @return the tick in milliseconds
+     */
+    public @NotNull Long getSysTopicSnapshotTick() {
+        return validateLongProperty(SPARKPLUG_SYSTOPIC_SNAPSHOT_TICK,
+                SPARKPLUG_SYSTOPIC_SNAPSHOT_TICK_DEFAULT,
+                false,
+                false);
+    }
+
     public @NotNull String getSparkplugSysTopic() {
         return validateStringProperty(SPARKPLUG_SYSTOPIC, SPARKPLUG_SYSTOPIC_DEFAULT);
     }
@@ -64,10 +251,300 @@ public class SparkplugConfiguration extends PropertiesReader {
         return validateBooleanProperty(SPARKPLUG_COMPRESSION, SPARKPLUG_COMPRESSION_DEFAULT);
     }
 
+    /**
+     * Returns the codec that is used to compress uncompressed NDEATH payloads if compression is enabled. Compressed
+     * payloads always keep their original algorithm.
+     *
+     * @return the compression codec, GZIP if the configured algorithm is not supported
+     */
+    public @NotNull CompressionCodec getCompressionAlgorithm() {
+        return validateCompressionAlgorithm(SPARKPLUG_COMPRESSION_ALGORITHM,
+                validateStringProperty(SPARKPLUG_COMPRESSION_ALGORITHM, SPARKPLUG_COMPRESSION_ALGORITHM_DEFAULT));
+    }
+
     public @NotNull Boolean getJsonLogEnabled() {
         return validateBooleanProperty(SPARKPLUG_JSON_LOG_ENABLED, SPARKPLUG_JSON_LOG_DEFAULT);
     }
 
+    /**
+     * Returns the format of the JSON payload log, either indented JSON for humans or NDJSON for machines.
+     *
+     * @return the JSON log format, {@link JsonLogFormat#PRETTY} if the configured format is not supported
+     */
+    public @NotNull JsonLogFormat getJsonLogFormat() {
+        final var value = validateStringProperty(SPARKPLUG_JSON_LOG_FORMAT, SPARKPLUG_JSON_LOG_FORMAT_DEFAULT);
+        final var format = JsonLogFormat.fromString(value);
+        if (format == null) {
+            LOG.warn("Value for the property '{}' is not a supported format, original value {}. Using default: {}",
+                    SPARKPLUG_JSON_LOG_FORMAT,
+                    value,
+                    SPARKPLUG_JSON_LOG_FORMAT_DEFAULT);
+            return JsonLogFormat.PRETTY;
+        }
+        return format;
+    }
+
+    /**
+     * Returns the maximum number of JSON log records that are queued for the asynchronous log writer. A value of
+     * {@code 0} logs the payloads synchronously on the interceptor thread.
+     *
+     * @return the JSON log queue size
+     */
+    public @NotNull Integer getJsonLogQueueSize() {
+        return validateIntProperty(SPARKPLUG_JSON_LOG_QUEUE_SIZE, SPARKPLUG_JSON_LOG_QUEUE_SIZE_DEFAULT, true, false);
+    }
+
+    /**
+     * Returns the behavior of the JSON log when its queue is full.
+     *
+     * @return the overflow policy, {@link OverflowPolicy#DROP_NEWEST} if the configured policy is not supported
+     */
+    public @NotNull OverflowPolicy getJsonLogOverflowPolicy() {
+        final var value = validateStringProperty(SPARKPLUG_JSON_LOG_OVERFLOW, SPARKPLUG_JSON_LOG_OVERFLOW_DEFAULT);
+        final var policy = OverflowPolicy.fromString(value);
+        if (policy == null) {
+            LOG.warn("Value for the property '{}' is not a supported policy, original value {}. Using default: {}",
+                    SPARKPLUG_JSON_LOG_OVERFLOW,
+                    value,
+                    SPARKPLUG_JSON_LOG_OVERFLOW_DEFAULT);
+            return OverflowPolicy.DROP_NEWEST;
+        }
+        return policy;
+    }
+
+    /**
+     * Returns the n of the 1-in-n sampling per edge node that is applied when the JSON log queue is full and the
+     * overflow policy is {@link OverflowPolicy#SAMPLE}.
+     *
+     * @return the JSON log sample rate
+     */
+    public @NotNull Integer getJsonLogSampleRate() {
+        return validateIntProperty(SPARKPLUG_JSON_LOG_SAMPLE_RATE,
+                SPARKPLUG_JSON_LOG_SAMPLE_RATE_DEFAULT,
+                false,
+                false);
+    }
+
+    /**
+     * Returns the size of the time bucket in milliseconds within which all subscribers of an NDEATH share the same
+     * rewritten payload and timestamp. A value of {@code 0} rewrites the payload for every subscriber.
+     *
+     * @return the NDEATH timestamp bucket size in milliseconds
+     */
+    public @NotNull Long getNdeathTimestampBucket() {
+        return validateLongProperty(SPARKPLUG_NDEATH_TIMESTAMP_BUCKET,
+                SPARKPLUG_NDEATH_TIMESTAMP_BUCKET_DEFAULT,
+                true,
+                false);
+    }
+
+    /**
+     * Returns the maximum number of edge nodes whose NDEATH will is prepared when they connect, the template of the
+     * least recently connected or delivered NDEATH topic is removed when the maximum is exceeded.
+     *
+     * @return the maximum number of NDEATH templates
+     */
+    public @NotNull Integer getNdeathTemplateSize() {
+        return validateIntProperty(SPARKPLUG_NDEATH_TEMPLATE_SIZE,
+                SPARKPLUG_NDEATH_TEMPLATE_SIZE_DEFAULT,
+                false,
+                false);
+    }
+
+    public @NotNull Integer getTopicCacheSize() {
+        return validateIntProperty(SPARKPLUG_TOPIC_CACHE_SIZE, SPARKPLUG_TOPIC_CACHE_SIZE_DEFAULT, true, false);
+    }
+
+    /**
+     * Returns how an NDEATH is handled whose {@code bdSeq} does not match the last NBIRTH of the edge node.
+     *
+     * @return the policy, {@link StaleDeathPolicy#DELIVER} if the configured policy is not supported
+     */
+    public @NotNull StaleDeathPolicy getStaleDeathPolicy() {
+        final var value = validateStringProperty(SPARKPLUG_NDEATH_STALE, SPARKPLUG_NDEATH_STALE_DEFAULT);
+        final var policy = StaleDeathPolicy.fromString(value);
+        if (policy == null) {
+            LOG.warn("Value for the property '{}' is not a supported policy, original value {}. Using default: {}",
+                    SPARKPLUG_NDEATH_STALE,
+                    value,
+                    SPARKPLUG_NDEATH_STALE_DEFAULT);
+            return StaleDeathPolicy.DELIVER;
+        }
+        return policy;
+    }
+
+    /**
+     * Returns whether the sequence numbers of the Sparkplug messages are validated per edge node, so gaps, duplicates
+     * and messages that arrived out of order are counted.
+     *
+     * @return {@code true} if the sequence numbers are validated
+     */
+    public @NotNull Boolean getSeqValidationEnabled() {
+        return validateBooleanProperty(SPARKPLUG_SEQ_VALIDATION, SPARKPLUG_SEQ_VALIDATION_DEFAULT);
+    }
+
+    /**
+     * Returns whether the alias tables of the births are tracked to resolve the metric names and datatypes of NDATA
+     * and DDATA messages.
+     *
+     * @return {@code true} if the aliases are resolved
+     */
+    public @NotNull Boolean getAliasResolutionEnabled() {
+        return validateBooleanProperty(SPARKPLUG_ALIAS_RESOLUTION, SPARKPLUG_ALIAS_RESOLUTION_DEFAULT);
+    }
+
+    /**
+     * Returns whether the last known value of every metric of the online edge nodes and devices is kept.
+     *
+     * @return {@code true} if the last known values are kept
+     */
+    public @NotNull Boolean getLastValuesEnabled() {
+        return validateBooleanProperty(SPARKPLUG_LASTVALUES, SPARKPLUG_LASTVALUES_DEFAULT);
+    }
+
+    /**
+     * Returns the topic prefix under which host applications subscribe to read the last known values, followed by
+     * {@code group_id/edge_node_id[/device_id]}.
+     *
+     * @return the topic prefix of the last known values
+     */
+    public @NotNull String getLastValuesTopic() {
+        return validateStringProperty(SPARKPLUG_LASTVALUES_TOPIC, SPARKPLUG_LASTVALUES_TOPIC_DEFAULT);
+    }
+
+    /**
+     * Returns whether every metric of an NDATA or DDATA message is published to a topic of its own.
+     *
+     * @return {@code true} if the metrics are published to their own topics
+     */
+    public @NotNull Boolean getMetrics2TopicEnabled() {
+        return validateBooleanProperty(SPARKPLUG_METRICS2TOPIC, SPARKPLUG_METRICS2TOPIC_DEFAULT);
+    }
+
+    /**
+     * Returns the prefix of the topics of the metrics that are published with {@link #getMetrics2TopicEnabled()}.
+     *
+     * @return the topic prefix of the metrics
+     */
+    public @NotNull String getMetrics2TopicPrefix() {
+        return validateStringProperty(SPARKPLUG_METRICS2TOPIC_PREFIX, SPARKPLUG_METRICS2TOPIC_PREFIX_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of metric publishes that are in flight at the same time, further data messages are
+     * not published to the metric topics.
+     *
+     * @return the maximum number of in-flight metric publishes
+     */
+    public @NotNull Integer getMetrics2TopicInFlightMax() {
+        return validateIntProperty(SPARKPLUG_METRICS2TOPIC_INFLIGHT_MAX,
+                SPARKPLUG_METRICS2TOPIC_INFLIGHT_MAX_DEFAULT,
+                false,
+                false);
+    }
+
+    /**
+     * Returns whether the raw Sparkplug traffic is captured into a journal that can be replayed later.
+     *
+     * @return {@code true} if the capture is enabled
+     */
+    public @NotNull Boolean getCaptureEnabled() {
+        return validateBooleanProperty(SPARKPLUG_CAPTURE_ENABLED, SPARKPLUG_CAPTURE_DEFAULT);
+    }
+
+    /**
+     * Returns the directory of the capture journal, a relative directory is resolved against the extension home
+     * folder.
+     *
+     * @return the capture directory
+     */
+    public @NotNull String getCaptureDirectory() {
+        return validateStringProperty(SPARKPLUG_CAPTURE_DIR, SPARKPLUG_CAPTURE_DIR_DEFAULT);
+    }
+
+    /**
+     * Returns the size in bytes of a segment file of the capture journal.
+     *
+     * @return the capture segment size, at least 4096 bytes
+     */
+    public @NotNull Integer getCaptureSegmentSize() {
+        final var segmentSize = validateIntProperty(SPARKPLUG_CAPTURE_SEGMENT_SIZE,
+                SPARKPLUG_CAPTURE_SEGMENT_SIZE_DEFAULT,
+                false,
+                false);
+        if (segmentSize < SPARKPLUG_CAPTURE_SEGMENT_SIZE_MIN) {
+            LOG.warn("Value for the property '{}' must be at least {}, original value {}. Using default: {}",
+                    SPARKPLUG_CAPTURE_SEGMENT_SIZE,
+                    SPARKPLUG_CAPTURE_SEGMENT_SIZE_MIN,
+                    segmentSize,
+                    SPARKPLUG_CAPTURE_SEGMENT_SIZE_DEFAULT);
+            return (int) SPARKPLUG_CAPTURE_SEGMENT_SIZE_DEFAULT;
+        }
+        return segmentSize;
+    }
+
+    /**
+     * Returns the maximum number of segment files of the capture journal, the oldest segments are deleted when a new
+     * segment exceeds this number.
+     *
+     * @return the maximum number of capture segments
+     */
+    public @NotNull Integer getCaptureSegmentsMax() {
+        return validateIntProperty(SPARKPLUG_CAPTURE_SEGMENTS_MAX,
+                SPARKPLUG_CAPTURE_SEGMENTS_MAX_DEFAULT,
+                false,
+                false);
+    }
+
+    /**
+     * Returns whether the expensive processing of Sparkplug messages, e.g. the births and the NDEATH rewrite, is moved
+     * from the interceptor threads to an executor with async interceptor outputs.
+     *
+     * @return {@code true} if the async processing is enabled
+     */
+    public @NotNull Boolean getAsyncEnabled() {
+        return validateBooleanProperty(SPARKPLUG_ASYNC_ENABLED, SPARKPLUG_ASYNC_DEFAULT);
+    }
+
+    /**
+     * Returns the time in milliseconds after which an async interceptor output is resumed with the configured
+     * {@link #getAsyncTimeoutFallback() fallback}, even if its message was not processed yet.
+     *
+     * @return the async timeout in milliseconds
+     */
+    public @NotNull Long getAsyncTimeout() {
+        return validateLongProperty(SPARKPLUG_ASYNC_TIMEOUT, SPARKPLUG_ASYNC_TIMEOUT_DEFAULT, false, false);
+    }
+
+    /**
+     * Returns whether a message whose async interceptor output timed out is delivered unchanged or not delivered.
+     *
+     * @return the fallback, {@link TimeoutFallback#SUCCESS} if the configured fallback is not supported
+     */
+    public @NotNull TimeoutFallback getAsyncTimeoutFallback() {
+        final var value = validateStringProperty(SPARKPLUG_ASYNC_FALLBACK, SPARKPLUG_ASYNC_FALLBACK_DEFAULT);
+        for (final var fallback : TimeoutFallback.values()) {
+            if (fallback.name().equalsIgnoreCase(value.trim())) {
+                return fallback;
+            }
+        }
+        LOG.warn("Value for the property '{}' is not a supported fallback, original value {}. Using default: {}",
+                SPARKPLUG_ASYNC_FALLBACK,
+                value,
+                SPARKPLUG_ASYNC_FALLBACK_DEFAULT);
+        return TimeoutFallback.SUCCESS;
+    }
+
+    /**
+     * Returns the number of threads of the executor of the async processing. A value of {@code 0} uses the executor
+     * service of the extension that HiveMQ provides.
+     *
+     * @return the number of async threads
+     */
+    public @NotNull Integer getAsyncThreads() {
+        return validateIntProperty(SPARKPLUG_ASYNC_THREADS, SPARKPLUG_ASYNC_THREADS_DEFAULT, true, false);
+    }
+
     private Boolean validateBooleanProperty(final @NotNull String key, final @NotNull String defaultValue) {
         Objects.requireNonNull(key, "Key to fetch property must not be null");
         Objects.requireNonNull(defaultValue, "Default value for property must not be null");
@@ -78,7 +555,31 @@ public class SparkplugConfiguration extends PropertiesReader {
             }
             return Boolean.parseBoolean(defaultValue);
         }
-        return Boolean.parseBoolean(value);
+        final var trimmed = value.trim();
+        if (!"true".equalsIgnoreCase(trimmed) && !"false".equalsIgnoreCase(trimmed)) {
+            LOG.warn("Value for the property '{}' is not a boolean, original value {}. Using default: {}",
+                    key,
+                    value,
+                    defaultValue);
+            return Boolean.parseBoolean(defaultValue);
+        }
+        return Boolean.parseBoolean(trimmed);
+    }
+
+    private @NotNull CompressionCodec validateCompressionAlgorithm(
+            final @NotNull String key,
+            final @NotNull String algorithm) {
+        final var codec = CompressionCodec.forAlgorithm(algorithm.trim());
+        if (codec == null) {
+            LOG.warn(
+                    "Value for the property '{}' is not a supported compression algorithm, original value {}. " +
+                            "Using default: {}",
+                    key,
+                    algorithm,
+                    SPARKPLUG_COMPRESSION_ALGORITHM_DEFAULT);
+            return Objects.requireNonNull(CompressionCodec.forAlgorithm(SPARKPLUG_COMPRESSION_ALGORITHM_DEFAULT));
+        }
+        return codec;
     }
 
     /**
@@ -112,7 +613,6 @@ public class SparkplugConfiguration extends PropertiesReader {
      * @param  negativeAllowed use <b>true</b> is property can be negative int
      * @return                 the actual value of the property if it is set and valid, else the <b>defaultValue</b>
      */
-    @SuppressWarnings("SameParameterValue")
     private long validateLongProperty(
             final @NotNull String key,
             final long defaultValue,
@@ -145,7 +645,104 @@ public class SparkplugConfiguration extends PropertiesReader {
         return valueAsLong;
     }
 
+    /**
+     * Fetch property with given <b>key</b> like {@link #validateLongProperty(String, long, boolean, boolean)}, but
+     * additionally checks that the value fits into an int.
+     *
+     * @param  key             Key of the property
+     * @param  defaultValue    Default value as fallback, if property has no value
+     * @param  zeroAllowed     use <b>true</b> if property can be zero
+     * @param  negativeAllowed use <b>true</b> is property can be negative int
+     * @return                 the actual value of the property if it is set and valid, else the <b>defaultValue</b>
+     */
+    private int validateIntProperty(
+            final @NotNull String key,
+            final long defaultValue,
+            final boolean zeroAllowed,
+            final boolean negativeAllowed) {
+        final var valueAsLong = validateLongProperty(key, defaultValue, zeroAllowed, negativeAllowed);
+        if (valueAsLong > Integer.MAX_VALUE || valueAsLong < Integer.MIN_VALUE) {
+            LOG.warn("Value for the property '{}' is out of range, original value {}. Using default: {}",
+                    key,
+                    valueAsLong,
+                    defaultValue);
+            return (int) defaultValue;
+        }
+        return (int) valueAsLong;
+    }
+
     public @NotNull String getSparkplugVersion() {
         return validateStringProperty(SPARKPLUG_VERSION, SPARKPLUG_VERSION_DEFAULT);
     }
+
+    /**
+     * Returns the configured Sparkplug namespaces. Multiple namespaces can be configured as a comma separated list in
+     * {@code sparkplug.version}, e.g. {@code spAv1.0,spBv1.0}.
+     *
+     * @return the configured namespaces in configuration order
+     */
+    public @NotNull List<String> getSparkplugVersions() {
+        final var versions = new ArrayList<String>();
+        for (final var version : getSparkplugVersion().split(",")) {
+            final var trimmed = version.trim();
+            if (!trimmed.isEmpty()) {
+                versions.add(trimmed);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the handling policy of every configured Sparkplug namespace.
+     * <p>
+     * The global {@code sparkplug.systopic}, {@code sparkplug.compression}, {@code sparkplug.compression.algorithm} and
+     * {@code sparkplug.json.log} properties can be overridden per namespace by prefixing them with
+     * {@code sparkplug.namespace.<namespace>.}, e.g. {@code sparkplug.namespace.spAv1.0.compression=true}.
+     *
+     * @return the namespace policies in configuration order
+     */
+    public @NotNull List<NamespacePolicy> getNamespacePolicies() {
+        final var sysTopic = getSparkplugSysTopic();
+        final var compression = getCompression();
+        final var algorithm = getCompressionAlgorithm();
+        final var jsonLogEnabled = getJsonLogEnabled();
+        final var policies = new ArrayList<NamespacePolicy>();
+        for (final var namespace : getSparkplugVersions()) {
+            final var prefix = SPARKPLUG_NAMESPACE_PREFIX + namespace + ".";
+            final var namespaceSysTopic = getProperty(prefix + "systopic");
+            final var namespaceAlgorithm = getProperty(prefix + "compression.algorithm");
+            // an override that is not set falls back to the global property without a warning
+            final var compressionEnabled = getProperty(prefix + "compression") != null ?
+                    validateBooleanProperty(prefix + "compression", String.valueOf(compression)) :
+                    compression;
+            final var jsonLog = getProperty(prefix + "json.log") != null ?
+                    validateBooleanProperty(prefix + "json.log", String.valueOf(jsonLogEnabled)) :
+                    jsonLogEnabled;
+            final var codec = namespaceAlgorithm != null ?
+                    validateCompressionAlgorithm(prefix + "compression.algorithm", namespaceAlgorithm) :
+                    algorithm;
+            policies.add(new NamespacePolicy(namespace,
+                    namespaceSysTopic != null ? namespaceSysTopic : sysTopic,
+                    compressionEnabled ? codec : null,
+                    jsonLog));
+        }
+        return policies;
+    }
+
+    /**
+     * Compiles the namespace policies into a {@link NamespaceTrie} that classifies topics by their first level.
+     *
+     * @return                          the trie of all configured namespaces
+     * @throws IllegalArgumentException if no namespace is configured, a namespace is invalid or configured twice
+     */
+    public @NotNull NamespaceTrie<NamespacePolicy> getNamespaceTrie() {
+        final var trie = new NamespaceTrie<NamespacePolicy>();
+        for (final var policy : getNamespacePolicies()) {
+            trie.put(policy.getNamespace(), policy);
+        }
+        if (trie.size() == 0) {
+            throw new IllegalArgumentException("No Sparkplug namespace configured in '" + SPARKPLUG_VERSION + "'");
+        }
+        return trie;
+    }
 }
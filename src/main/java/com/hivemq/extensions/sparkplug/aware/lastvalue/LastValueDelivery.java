@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import com.hivemq.extension.sdk.api.packets.general.Qos;
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extension.sdk.api.services.publish.PublishToClientResult;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshotDelivery;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the last known values of the {@link LastValueStore} to the host applications that subscribe to them.
+ * <p>
+ * A subscription to {@code <topic>group_id/edge_node_id[/device_id]}, wildcards included, is answered with one
+ * Sparkplug B payload per matching online edge node and device with {@link PublishService#publishToClient}. The
+ * payload holds the current value, datatype and timestamp of every metric, see {@link LastValues#encode(long)}. The
+ * values are read when they are published, so a host application reads the current values by subscribing again.
+ * The broker adds the subscription after the SUBSCRIBE interceptors ran, the values are published after a short
+ * delay.
+ */
+public class LastValueDelivery {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(LastValueDelivery.class);
+
+    @VisibleForTesting
+    static final long DELAY_MILLIS = 100;
+
+    private final @NotNull PublishService publishService;
+    private final @NotNull LastValueStore store;
+    private final @NotNull String topic;
+    private final @NotNull Supplier<PublishBuilder> publishBuilderFactory;
+    private final @NotNull ScheduledExecutorService scheduler;
+    private final @NotNull LongAdder delivered = new LongAdder();
+    private final @NotNull LongAdder failed = new LongAdder();
+
+    /**
+     * @param publishService        the service that publishes the values to the subscribers
+     * @param store                 the last known values
+     * @param topic                 the topic prefix of the last known values
+     * @param publishBuilderFactory creates the builders of the publishes
+     * @param scheduler             the executor that publishes the values
+     */
+    public LastValueDelivery(
+            final @NotNull PublishService publishService,
+            final @NotNull LastValueStore store,
+            final @NotNull String topic,
+            final @NotNull Supplier<PublishBuilder> publishBuilderFactory,
+            final @NotNull ScheduledExecutorService scheduler) {
+        this.publishService = publishService;
+        this.store = store;
+        this.topic = topic;
+        this.publishBuilderFactory = publishBuilderFactory;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Publishes the last known values that match the topic filter of a new subscription to the subscriber.
+     *
+     * @param  clientId    the client ID of the subscriber
+     * @param  topicFilter the topic filter of the subscription
+     * @return             {@code false} if the topic filter does not subscribe to the last known values
+     */
+    public boolean deliver(final @NotNull String clientId, final @NotNull String topicFilter) {
+        if (!topicFilter.startsWith(topic)) {
+            return false;
+        }
+        scheduler.schedule(() -> {
+            try {
+                publish(clientId, topicFilter);
+            } catch (final RuntimeException e) {
+                LOG.error("Delivery of the last known values of '{}' to '{}' failed", topicFilter, clientId, e);
+            }
+        }, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @VisibleForTesting
+    void publish(final @NotNull String clientId, final @NotNull String topicFilter) {
+        final var timestamp = System.currentTimeMillis();
+        for (final var groupId : store.getGroupIds()) {
+            for (final var edgeNodeId : store.getEdgeNodeIds(groupId)) {
+                final var edgeNodeTopic = topic + groupId + '/' + edgeNodeId;
+                if (BirthSnapshotDelivery.matches(topicFilter, edgeNodeTopic)) {
+                    publish(clientId, edgeNodeTopic, store.get(groupId, edgeNodeId, null), timestamp);
+                }
+                for (final var deviceId : store.getDeviceIds(groupId, edgeNodeId)) {
+                    final var deviceTopic = edgeNodeTopic + '/' + deviceId;
+                    if (BirthSnapshotDelivery.matches(topicFilter, deviceTopic)) {
+                        publish(clientId, deviceTopic, store.get(groupId, edgeNodeId, deviceId), timestamp);
+                    }
+                }
+            }
+        }
+    }
+
+    private void publish(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @Nullable LastValues values,
+            final long timestamp) {
+        if (values == null) {
+            // went offline in the meantime or only its devices are online
+            return;
+        }
+        final var publish = publishBuilderFactory.get()
+                .topic(topic)
+                .qos(Qos.AT_LEAST_ONCE)
+                .payload(values.encode(timestamp))
+                .build();
+        try {
+            publishService.publishToClient(publish, clientId)
+                    .whenComplete((result, throwable) -> complete(clientId, topic, result, throwable));
+        } catch (final RuntimeException e) {
+            complete(clientId, topic, null, e);
+        }
+    }
+
+    private void complete(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @Nullable PublishToClientResult result,
+            final @Nullable Throwable throwable) {
+        if (throwable == null && result == PublishToClientResult.SUCCESSFUL) {
+            delivered.increment();
+            return;
+        }
+        failed.increment();
+        LOG.debug("Delivery of the last known values of '{}' to '{}' failed: {}",
+                topic,
+                clientId,
+                throwable != null ? throwable.getMessage() : result);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store of the last known value of every metric of the online edge nodes and devices, so host applications can read
+ * the current values without requesting a rebirth.
+ * <p>
+ * An NBIRTH or DBIRTH lays out the {@link MetricValues} of the edge node or device and stores the values of the birth,
+ * NDATA and DDATA messages update them. A rebirth replaces the values, a death removes them, so the store only holds
+ * the online edge nodes and devices. Numeric values are kept in primitive columns, neither Tahu metrics nor boxed
+ * values are created. With the {@link AliasTable} of the birth, a metric with a name of 20 characters costs about 130
+ * bytes of heap, one million metrics need about 130 MB, as measured by the {@code LastValueFootprintTest} of the load
+ * tests.
+ * <p>
+ * {@link #get(String, String, String)} returns a consistent {@link LastValues} snapshot without blocking the writers.
+ * The online edge nodes and devices are listed by {@link #getGroupIds()}, {@link #getEdgeNodeIds(String)} and
+ * {@link #getDeviceIds(String, String)}, the {@link LastValueDelivery} publishes the snapshots to host applications.
+ */
+public class LastValueStore {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(LastValueStore.class);
+
+    private final @NotNull ConcurrentHashMap<String, ConcurrentHashMap<String, EdgeNodeValues>> groups =
+            new ConcurrentHashMap<>();
+    private final @NotNull AtomicLong metricCount = new AtomicLong();
+    private final @NotNull LongAdder updates = new LongAdder();
+    private final @NotNull LongAdder unresolved = new LongAdder();
+
+    /**
+     * Processes a Sparkplug message: births lay out and store the values, data messages update them and deaths remove
+     * them.
+     *
+     * @param topicStructure the parsed Sparkplug topic of the message
+     * @param payload        the decoded Sparkplug B payload of the message, see {@link CompressedEnvelope#decode}, the
+     *                       position is not modified
+     * @param aliases        the alias table of a birth if it was already read from the payload or {@code null}
+     */
+    public void onPublish(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull ByteBuffer payload,
+            final @Nullable AliasTable aliases) {
+        final var edgeNodeId = topicStructure.getEonId();
+        if (edgeNodeId == null) {
+            return;
+        }
+        final var groupId = topicStructure.getGroupId();
+        final var deviceId = topicStructure.getDeviceId();
+        try {
+            switch (topicStructure.getMessageType()) {
+                case NBIRTH:
+                    onNodeBirth(groupId, edgeNodeId, payload, aliases);
+                    break;
+                case DBIRTH:
+                    if (deviceId != null) {
+                        onDeviceBirth(groupId, edgeNodeId, deviceId, payload, aliases);
+                    }
+                    break;
+                case NDEATH:
+                    onNodeDeath(groupId, edgeNodeId);
+                    break;
+                case DDEATH:
+                    if (deviceId != null) {
+                        onDeviceDeath(groupId, edgeNodeId, deviceId);
+                    }
+                    break;
+                case NDATA:
+                case DDATA:
+                    final var values = getValues(groupId, edgeNodeId, deviceId);
+                    if (values == null) {
+                        unresolved.increment();
+                        return;
+                    }
+                    apply(values, payload);
+                    break;
+                default:
+            }
+        } catch (final IllegalArgumentException e) {
+            LOG.debug("Failed to read the metric values of '{}/{}': {}", groupId, edgeNodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the values of the edge node and its devices, e.g. when its Last Will NDEATH is delivered.
+     *
+     * @param groupId    the group ID
+     * @param edgeNodeId the edge node ID
+     */
+    public void onNodeDeath(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var edgeNodes = groups.get(groupId);
+        if (edgeNodes != null) {
+            release(edgeNodes.remove(edgeNodeId));
+        }
+    }
+
+    /**
+     * Returns a snapshot of the last values of an edge node or device.
+     *
+     * @param  groupId    the group ID
+     * @param  edgeNodeId the edge node ID
+     * @param  deviceId   the device ID or {@code null} for the edge node itself
+     * @return            the snapshot or {@code null} if the edge node or device is offline or unknown
+     */
+    public @Nullable LastValues get(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @Nullable String deviceId) {
+        final var values = getValues(groupId, edgeNodeId, deviceId);
+        return values != null ? values.snapshot() : null;
+    }
+
+    /**
+     * @return a weakly consistent view of the IDs of the groups with online edge nodes or devices
+     */
+    public @NotNull Set<String> getGroupIds() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    /**
+     * @param  groupId the group ID
+     * @return         a weakly consistent view of the IDs of the edge nodes of the group with values
+     */
+    public @NotNull Set<String> getEdgeNodeIds(final @NotNull String groupId) {
+        final var edgeNodes = groups.get(groupId);
+        return edgeNodes != null ? Collections.unmodifiableSet(edgeNodes.keySet()) : Set.of();
+    }
+
+    /**
+     * @param  groupId    the group ID
+     * @param  edgeNodeId the edge node ID
+     * @return            a weakly consistent view of the IDs of the online devices of the edge node
+     */
+    public @NotNull Set<String> getDeviceIds(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        return edgeNode != null ? Collections.unmodifiableSet(edgeNode.devices.keySet()) : Set.of();
+    }
+
+    /**
+     * @return the number of metrics of the online edge nodes and devices
+     */
+    public long getMetricCount() {
+        return metricCount.get();
+    }
+
+    /**
+     * @return the number of births and data messages whose values were stored
+     */
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    /**
+     * @return the number of metric values that were not stored, because their data message or metric was not part of
+     *         a known birth
+     */
+    public long getUnresolved() {
+        return unresolved.sum();
+    }
+
+    private void onNodeBirth(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull ByteBuffer birth,
+            final @Nullable AliasTable aliases) {
+        final var values = createValues(birth, aliases);
+        // the devices are only online until the next NBIRTH
+        release(groups.computeIfAbsent(groupId, id -> new ConcurrentHashMap<>())
+                .put(edgeNodeId, new EdgeNodeValues(values)));
+        metricCount.addAndGet(values.getMetrics().size());
+    }
+
+    private void onDeviceBirth(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId,
+            final @NotNull ByteBuffer birth,
+            final @Nullable AliasTable aliases) {
+        final var values = createValues(birth, aliases);
+        final var previous = groups.computeIfAbsent(groupId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(edgeNodeId, id -> new EdgeNodeValues(null)).devices.put(deviceId, values);
+        metricCount.addAndGet(values.getMetrics().size() - (previous != null ? previous.getMetrics().size() : 0));
+    }
+
+    private void onDeviceDeath(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        final var values = edgeNode != null ? edgeNode.devices.remove(deviceId) : null;
+        if (values != null) {
+            metricCount.addAndGet(-values.getMetrics().size());
+        }
+    }
+
+    private @NotNull MetricValues createValues(final @NotNull ByteBuffer birth, final @Nullable AliasTable aliases) {
+        final var values = new MetricValues(aliases != null ? aliases : AliasTable.fromBirth(birth));
+        apply(values, birth);
+        return values;
+    }
+
+    private void apply(final @NotNull MetricValues values, final @NotNull ByteBuffer payload) {
+        final var missing = values.apply(payload);
+        if (missing > 0) {
+            unresolved.add(missing);
+        }
+        updates.increment();
+    }
+
+    private void release(final @Nullable EdgeNodeValues edgeNode) {
+        if (edgeNode == null) {
+            return;
+        }
+        var released = edgeNode.node != null ? edgeNode.node.getMetrics().size() : 0L;
+        for (final var device : edgeNode.devices.values()) {
+            released += device.getMetrics().size();
+        }
+        metricCount.addAndGet(-released);
+    }
+
+    private @Nullable EdgeNodeValues getEdgeNode(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var edgeNodes = groups.get(groupId);
+        return edgeNodes != null ? edgeNodes.get(edgeNodeId) : null;
+    }
+
+    private @Nullable MetricValues getValues(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @Nullable String deviceId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        if (edgeNode == null) {
+            return null;
+        }
+        return deviceId != null ? edgeNode.devices.get(deviceId) : edgeNode.node;
+    }
+
+    private static final class EdgeNodeValues {
+
+        private final @Nullable MetricValues node;
+        private final @NotNull ConcurrentHashMap<String, MetricValues> devices = new ConcurrentHashMap<>();
+
+        private EdgeNodeValues(final @Nullable MetricValues node) {
+            this.node = node;
+        }
+    }
+}
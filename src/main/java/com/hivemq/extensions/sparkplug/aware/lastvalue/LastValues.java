@@ -0,0 +1,290 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import com.hivemq.extensions.sparkplug.aware.utils.WireReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_FIXED32;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_FIXED64;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_LENGTH_DELIMITED;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_VARINT;
+
+/**
+ * Immutable snapshot of the last known values of the metrics of an edge node or device.
+ * <p>
+ * The metrics are addressed by their index in the {@link AliasTable} of the birth, see {@link #indexOf(String)}. The
+ * value of a metric is read with the getter of its {@link ValueType}, numeric values are returned as primitives. A
+ * numeric value is only meaningful if {@link #hasValue(int)} is {@code true}.
+ * <p>
+ * {@link #encode(long)} writes the snapshot as a Sparkplug B payload, as it is published to the host applications
+ * that subscribe to the last known values.
+ */
+public final class LastValues {
+
+    private static final byte TIMESTAMP_TAG = 1 << 3 | WIRETYPE_VARINT;
+    private static final byte METRICS_TAG = 2 << 3 | WIRETYPE_LENGTH_DELIMITED;
+    private static final byte METRIC_NAME_TAG = 1 << 3 | WIRETYPE_LENGTH_DELIMITED;
+    private static final byte METRIC_TIMESTAMP_TAG = 3 << 3 | WIRETYPE_VARINT;
+    private static final byte METRIC_DATATYPE_TAG = 4 << 3 | WIRETYPE_VARINT;
+    private static final byte METRIC_IS_NULL_TAG = 7 << 3 | WIRETYPE_VARINT;
+    private static final byte METRIC_INT_VALUE_TAG = 10 << 3 | WIRETYPE_VARINT;
+    private static final byte METRIC_LONG_VALUE_TAG = 11 << 3 | WIRETYPE_VARINT;
+    private static final byte METRIC_FLOAT_VALUE_TAG = 12 << 3 | WIRETYPE_FIXED32;
+    private static final byte METRIC_DOUBLE_VALUE_TAG = 13 << 3 | WIRETYPE_FIXED64;
+    private static final byte METRIC_BOOLEAN_VALUE_TAG = 14 << 3 | WIRETYPE_VARINT;
+    private static final byte METRIC_STRING_VALUE_TAG = 15 << 3 | WIRETYPE_LENGTH_DELIMITED;
+
+    private final @NotNull AliasTable metrics;
+    private final byte @NotNull [] valueTypes;
+    private final int @NotNull [] columns;
+    private final long @NotNull [] longs;
+    private final double @NotNull [] doubles;
+    private final @Nullable String @NotNull [] strings;
+    private final long @NotNull [] timestamps;
+    private final byte @NotNull [] states;
+
+    LastValues(
+            final @NotNull AliasTable metrics,
+            final byte @NotNull [] valueTypes,
+            final int @NotNull [] columns,
+            final long @NotNull [] longs,
+            final double @NotNull [] doubles,
+            final @Nullable String @NotNull [] strings,
+            final long @NotNull [] timestamps,
+            final byte @NotNull [] states) {
+        this.metrics = metrics;
+        this.valueTypes = valueTypes;
+        this.columns = columns;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.strings = strings;
+        this.timestamps = timestamps;
+        this.states = states;
+    }
+
+    public int size() {
+        return metrics.size();
+    }
+
+    /**
+     * @return the index of the metric with the given name or {@code -1}
+     */
+    public int indexOf(final @NotNull String name) {
+        return metrics.indexOfName(name);
+    }
+
+    public @NotNull String getName(final int index) {
+        return metrics.getName(index);
+    }
+
+    /**
+     * @return the Sparkplug datatype of the metric in the birth
+     */
+    public int getDataType(final int index) {
+        return metrics.getDataType(index);
+    }
+
+    public @NotNull ValueType getValueType(final int index) {
+        return ValueType.ofOrdinal(valueTypes[index]);
+    }
+
+    /**
+     * @return {@code true} if a value of the metric was received and the value was not null
+     */
+    public boolean hasValue(final int index) {
+        return states[index] == MetricValues.VALUE;
+    }
+
+    /**
+     * @return {@code true} if the last value of the metric was explicitly null
+     */
+    public boolean isNull(final int index) {
+        return states[index] == MetricValues.NULL_VALUE;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch of the last value, {@code 0} if no value was received
+     */
+    public long getTimestamp(final int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @return                       the value of a {@link ValueType#LONG} metric
+     * @throws IllegalStateException if the metric has another value type
+     */
+    public long getLong(final int index) {
+        checkValueType(index, ValueType.LONG);
+        return longs[columns[index]];
+    }
+
+    /**
+     * @return                       the value of a {@link ValueType#DOUBLE} metric or the value of a
+     *                               {@link ValueType#LONG} metric converted to {@code double}
+     * @throws IllegalStateException if the metric has another value type
+     */
+    public double getDouble(final int index) {
+        if (getValueType(index) == ValueType.LONG) {
+            return longs[columns[index]];
+        }
+        checkValueType(index, ValueType.DOUBLE);
+        return doubles[columns[index]];
+    }
+
+    /**
+     * @return                       the value of a {@link ValueType#STRING} metric or {@code null} if it has no
+     *                               value
+     * @throws IllegalStateException if the metric has another value type
+     */
+    public @Nullable String getString(final int index) {
+        checkValueType(index, ValueType.STRING);
+        return hasValue(index) ? strings[columns[index]] : null;
+    }
+
+    /**
+     * Writes the metrics that have a value or an explicit null value as a Sparkplug B payload. Every metric carries its
+     * name, datatype and the timestamp of its value, metrics that never received a value are left out.
+     *
+     * @param  timestamp the timestamp of the payload in milliseconds since the epoch
+     * @return           the encoded (uncompressed) payload
+     */
+    public @NotNull ByteBuffer encode(final long timestamp) {
+        final var size = size();
+        final var stringValues = new byte[size][];
+        final var metricLengths = new int[size];
+        var length = 1 + WireReader.varintSize(timestamp);
+        for (var i = 0; i < size; i++) {
+            if (states[i] == MetricValues.NO_VALUE) {
+                continue;
+            }
+            final var nameLength = metrics.getNameLength(i);
+            var metricLength = 1 + WireReader.varintSize(nameLength) + nameLength;
+            metricLength += 1 + WireReader.varintSize(timestamps[i]);
+            metricLength += 1 + WireReader.varintSize(getDataType(i));
+            if (states[i] == MetricValues.NULL_VALUE) {
+                metricLength += 2;
+            } else if (getValueType(i) == ValueType.STRING) {
+                final var string = strings[columns[i]];
+                stringValues[i] = string != null ? string.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                metricLength += 1 + WireReader.varintSize(stringValues[i].length) + stringValues[i].length;
+            } else {
+                metricLength += 1 + valueLength(i);
+            }
+            metricLengths[i] = metricLength;
+            length += 1 + WireReader.varintSize(metricLength) + metricLength;
+        }
+        final var out = ByteBuffer.allocate(length);
+        out.put(TIMESTAMP_TAG);
+        WireReader.writeVarint(out, timestamp);
+        for (var i = 0; i < size; i++) {
+            if (states[i] == MetricValues.NO_VALUE) {
+                continue;
+            }
+            out.put(METRICS_TAG);
+            WireReader.writeVarint(out, metricLengths[i]);
+            out.put(METRIC_NAME_TAG);
+            WireReader.writeVarint(out, metrics.getNameLength(i));
+            metrics.putName(i, out);
+            out.put(METRIC_TIMESTAMP_TAG);
+            WireReader.writeVarint(out, timestamps[i]);
+            out.put(METRIC_DATATYPE_TAG);
+            WireReader.writeVarint(out, getDataType(i));
+            if (states[i] == MetricValues.NULL_VALUE) {
+                out.put(METRIC_IS_NULL_TAG);
+                out.put((byte) 1);
+            } else if (stringValues[i] != null) {
+                out.put(METRIC_STRING_VALUE_TAG);
+                WireReader.writeVarint(out, stringValues[i].length);
+                out.put(stringValues[i]);
+            } else {
+                putValue(i, out);
+            }
+        }
+        return out.flip();
+    }
+
+    private int valueLength(final int index) {
+        switch (getDataType(index)) {
+            case 9: // Float
+                return 4;
+            case 10: // Double
+                return 8;
+            default:
+                return WireReader.varintSize(wireValue(index));
+        }
+    }
+
+    private void putValue(final int index, final @NotNull ByteBuffer out) {
+        switch (getDataType(index)) {
+            case 9: // Float
+                out.put(METRIC_FLOAT_VALUE_TAG);
+                // protobuf fixed-width values are little-endian
+                out.putInt(Integer.reverseBytes(Float.floatToRawIntBits((float) doubles[columns[index]])));
+                return;
+            case 10: // Double
+                out.put(METRIC_DOUBLE_VALUE_TAG);
+                out.putLong(Long.reverseBytes(Double.doubleToRawLongBits(doubles[columns[index]])));
+                return;
+            case 4: // Int64
+            case 8: // UInt64
+            case 13: // DateTime
+                out.put(METRIC_LONG_VALUE_TAG);
+                break;
+            case 11: // Boolean
+                out.put(METRIC_BOOLEAN_VALUE_TAG);
+                break;
+            default:
+                out.put(METRIC_INT_VALUE_TAG);
+        }
+        WireReader.writeVarint(out, wireValue(index));
+    }
+
+    /**
+     * @return the value of a {@link ValueType#LONG} metric as it is encoded, the 32-bit integers as {@code uint32}
+     */
+    private long wireValue(final int index) {
+        final var value = longs[columns[index]];
+        switch (getDataType(index)) {
+            case 1: // Int8
+            case 2: // Int16
+            case 3: // Int32
+            case 5: // UInt8
+            case 6: // UInt16
+            case 7: // UInt32
+                return value & 0xFFFF_FFFFL;
+            default:
+                return value;
+        }
+    }
+
+    private void checkValueType(final int index, final @NotNull ValueType valueType) {
+        if (getValueType(index) != valueType) {
+            throw new IllegalStateException("Metric '" + getName(index) + "' has the value type " +
+                    getValueType(index) + ", not " + valueType);
+        }
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "LastValues{" + "size=" + size() + "}";
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import com.hivemq.extensions.sparkplug.aware.utils.WireReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_FIXED32;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_FIXED64;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_LENGTH_DELIMITED;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_VARINT;
+
+/**
+ * The last values of the metrics of one edge node or device, laid out in columns by the {@link AliasTable} of its
+ * birth.
+ * <p>
+ * Every metric has a slot in the column of its {@link ValueType}: a {@code long[]} for integers, booleans and date
+ * times, a {@code double[]} for floats and doubles and a {@code String[]} for strings. The timestamps are a
+ * {@code long[]} for all metrics, so together with its type, column index and state a numeric value costs 22 bytes
+ * without boxing. A message is read from the protobuf wire into a per-thread scratch buffer first and then written
+ * under the write lock of a {@link StampedLock}, so the values of a message become visible together. Snapshots are
+ * copied under an optimistic read, they never block a writer.
+ */
+final class MetricValues {
+
+    static final byte NO_VALUE = 0;
+    static final byte VALUE = 1;
+    static final byte NULL_VALUE = 2;
+
+    private static final int PAYLOAD_TIMESTAMP_FIELD = 1;
+    private static final int PAYLOAD_METRICS_FIELD = 2;
+    private static final int METRIC_NAME_FIELD = 1;
+    private static final int METRIC_ALIAS_FIELD = 2;
+    private static final int METRIC_TIMESTAMP_FIELD = 3;
+    private static final int METRIC_IS_NULL_FIELD = 7;
+    private static final int METRIC_INT_VALUE_FIELD = 10;
+    private static final int METRIC_LONG_VALUE_FIELD = 11;
+    private static final int METRIC_FLOAT_VALUE_FIELD = 12;
+    private static final int METRIC_DOUBLE_VALUE_FIELD = 13;
+    private static final int METRIC_BOOLEAN_VALUE_FIELD = 14;
+    private static final int METRIC_STRING_VALUE_FIELD = 15;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 3;
+    private static final int NO_WIRE_VALUE = 0;
+    private static final int INTEGER_WIRE_VALUE = 1;
+    private static final int FLOATING_WIRE_VALUE = 2;
+    private static final int STRING_WIRE_VALUE = 3;
+    // scratch buffers that grew larger are not kept for the next message
+    private static final int MAX_RETAINED_UPDATES = 4096;
+
+    private static final @NotNull ThreadLocal<Updates> UPDATES = ThreadLocal.withInitial(Updates::new);
+
+    private final @NotNull AliasTable metrics;
+    private final byte @NotNull [] valueTypes;
+    // index of the metric in the column of its value type
+    private final int @NotNull [] columns;
+    private final long @NotNull [] longs;
+    private final double @NotNull [] doubles;
+    private final @Nullable String @NotNull [] strings;
+    private final long @NotNull [] timestamps;
+    private final byte @NotNull [] states;
+    private final @NotNull StampedLock lock = new StampedLock();
+
+    MetricValues(final @NotNull AliasTable metrics) {
+        this.metrics = metrics;
+        final var size = metrics.size();
+        this.valueTypes = new byte[size];
+        this.columns = new int[size];
+        var longCount = 0;
+        var doubleCount = 0;
+        var stringCount = 0;
+        for (var i = 0; i < size; i++) {
+            final var valueType = ValueType.ofDataType(metrics.getDataType(i));
+            valueTypes[i] = (byte) valueType.ordinal();
+            switch (valueType) {
+                case LONG:
+                    columns[i] = longCount++;
+                    break;
+                case DOUBLE:
+                    columns[i] = doubleCount++;
+                    break;
+                case STRING:
+                    columns[i] = stringCount++;
+                    break;
+                default:
+                    columns[i] = -1;
+            }
+        }
+        this.longs = new long[longCount];
+        this.doubles = new double[doubleCount];
+        this.strings = new String[stringCount];
+        this.timestamps = new long[size];
+        this.states = new byte[size];
+    }
+
+    @NotNull AliasTable getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reads the metric values of a birth or data message and stores them together.
+     *
+     * @param  payload                  the decoded (uncompressed) Sparkplug B payload, the position is not modified
+     * @return                          the number of metrics that were not found in the birth
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    int apply(final @NotNull ByteBuffer payload) {
+        final var updates = UPDATES.get().reset();
+        // the timestamp of the payload is the timestamp of the metrics without a timestamp of their own
+        var payloadTimestamp = 0L;
+        final var reader = new WireReader(payload);
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            if (tag >>> 3 == PAYLOAD_TIMESTAMP_FIELD && (tag & 7) == WIRETYPE_VARINT) {
+                payloadTimestamp = reader.readVarint();
+            } else {
+                reader.skipField(tag & 7);
+            }
+        }
+        var unresolved = 0;
+        try {
+            final var metricReader = new WireReader(payload);
+            while (metricReader.hasRemaining()) {
+                final var tag = metricReader.readTag();
+                if (tag >>> 3 != PAYLOAD_METRICS_FIELD || (tag & 7) != WIRETYPE_LENGTH_DELIMITED) {
+                    metricReader.skipField(tag & 7);
+                    continue;
+                }
+                final var length = metricReader.readLength();
+                final var start = metricReader.position();
+                metricReader.skipBytes(length);
+                if (!readMetric(payload, start, start + length, payloadTimestamp, updates)) {
+                    unresolved++;
+                }
+            }
+            write(updates);
+        } finally {
+            updates.clearStrings();
+        }
+        return unresolved;
+    }
+
+    private void write(final @NotNull Updates updates) {
+        final var stamp = lock.writeLock();
+        try {
+            for (var i = 0; i < updates.size; i++) {
+                final var index = updates.indices[i];
+                final var column = columns[index];
+                timestamps[index] = updates.timestamps[i];
+                states[index] = updates.states[i];
+                if (updates.states[i] != VALUE) {
+                    continue;
+                }
+                switch (ValueType.ofOrdinal(valueTypes[index])) {
+                    case LONG:
+                        longs[column] = updates.values[i];
+                        break;
+                    case DOUBLE:
+                        doubles[column] = Double.longBitsToDouble(updates.values[i]);
+                        break;
+                    case STRING:
+                        strings[column] = updates.strings[i];
+                        break;
+                    default:
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return a consistent copy of the last values, taken without blocking the writers unless they keep invalidating
+     *         the copy
+     */
+    @NotNull LastValues snapshot() {
+        for (var attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            final var stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                continue;
+            }
+            final var snapshot = copy();
+            if (lock.validate(stamp)) {
+                return snapshot;
+            }
+        }
+        final var stamp = lock.readLock();
+        try {
+            return copy();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private @NotNull LastValues copy() {
+        return new LastValues(metrics,
+                valueTypes,
+                columns,
+                longs.clone(),
+                doubles.clone(),
+                strings.clone(),
+                timestamps.clone(),
+                states.clone());
+    }
+
+    /**
+     * @return {@code false} if the metric is not part of the birth
+     */
+    private boolean readMetric(
+            final @NotNull ByteBuffer payload,
+            final int start,
+            final int end,
+            final long payloadTimestamp,
+            final @NotNull Updates updates) {
+        var index = -1;
+        var alias = -1L;
+        var timestamp = payloadTimestamp;
+        var isNull = false;
+        var wireValue = NO_WIRE_VALUE;
+        var value = 0L;
+        var stringStart = -1;
+        var stringLength = 0;
+        final var reader = new WireReader(payload, start, end);
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            final var field = tag >>> 3;
+            final var wireType = tag & 7;
+            if (field == METRIC_NAME_FIELD && wireType == WIRETYPE_LENGTH_DELIMITED) {
+                final var length = reader.readLength();
+                index = metrics.indexOfName(payload, reader.position(), length);
+                if (index < 0) {
+                    return false;
+                }
+                reader.skipBytes(length);
+            } else if (field == METRIC_ALIAS_FIELD && wireType == WIRETYPE_VARINT) {
+                alias = reader.readVarint();
+            } else if (field == METRIC_TIMESTAMP_FIELD && wireType == WIRETYPE_VARINT) {
+                timestamp = reader.readVarint();
+            } else if (field == METRIC_IS_NULL_FIELD && wireType == WIRETYPE_VARINT) {
+                isNull = reader.readVarint() != 0;
+            } else if ((field == METRIC_INT_VALUE_FIELD ||
+                    field == METRIC_LONG_VALUE_FIELD ||
+                    field == METRIC_BOOLEAN_VALUE_FIELD) && wireType == WIRETYPE_VARINT) {
+                value = reader.readVarint();
+                wireValue = INTEGER_WIRE_VALUE;
+            } else if (field == METRIC_FLOAT_VALUE_FIELD && wireType == WIRETYPE_FIXED32) {
+                value = Double.doubleToRawLongBits(Float.intBitsToFloat(reader.readFixed32()));
+                wireValue = FLOATING_WIRE_VALUE;
+            } else if (field == METRIC_DOUBLE_VALUE_FIELD && wireType == WIRETYPE_FIXED64) {
+                value = reader.readFixed64();
+                wireValue = FLOATING_WIRE_VALUE;
+            } else if (field == METRIC_STRING_VALUE_FIELD && wireType == WIRETYPE_LENGTH_DELIMITED) {
+                stringLength = reader.readLength();
+                stringStart = reader.position();
+                reader.skipBytes(stringLength);
+                wireValue = STRING_WIRE_VALUE;
+            } else {
+                reader.skipField(wireType);
+            }
+        }
+        if (index < 0) {
+            index = alias >= 0 ? metrics.indexOf(alias) : -1;
+            if (index < 0) {
+                return false;
+            }
+        }
+        final var valueType = ValueType.ofOrdinal(valueTypes[index]);
+        if (isNull) {
+            updates.add(index, timestamp, NULL_VALUE, 0, null);
+        } else if (valueType == ValueType.LONG && wireValue == INTEGER_WIRE_VALUE) {
+            updates.add(index, timestamp, VALUE, toLong(metrics.getDataType(index), value), null);
+        } else if (valueType == ValueType.DOUBLE && wireValue == FLOATING_WIRE_VALUE) {
+            updates.add(index, timestamp, VALUE, value, null);
+        } else if (valueType == ValueType.STRING && wireValue == STRING_WIRE_VALUE) {
+            final var bytes = new byte[stringLength];
+            payload.duplicate().position(stringStart).get(bytes);
+            updates.add(index, timestamp, VALUE, 0, new String(bytes, StandardCharsets.UTF_8));
+        } else {
+            // e.g. a data set or template or a value that does not match the datatype of the birth
+            updates.add(index, timestamp, NO_VALUE, 0, null);
+        }
+        return true;
+    }
+
+    /**
+     * Sign-extends the 32-bit encoded signed integers and masks the unsigned ones. Doubles are passed as raw bits.
+     */
+    private static long toLong(final int dataType, final long value) {
+        switch (dataType) {
+            case 1: // Int8
+                return (byte) value;
+            case 2: // Int16
+                return (short) value;
+            case 3: // Int32
+                return (int) value;
+            case 5: // UInt8
+            case 6: // UInt16
+            case 7: // UInt32
+                return value & 0xFFFF_FFFFL;
+            case 11: // Boolean
+                return value != 0 ? 1 : 0;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Per-thread scratch buffer of the values of one message, so reading a message does not allocate.
+     */
+    private static final class Updates {
+
+        private int size;
+        private int @NotNull [] indices = new int[64];
+        private long @NotNull [] timestamps = new long[64];
+        private long @NotNull [] values = new long[64];
+        private byte @NotNull [] states = new byte[64];
+        private @Nullable String @NotNull [] strings = new String[64];
+
+        @NotNull Updates reset() {
+            if (indices.length > MAX_RETAINED_UPDATES) {
+                indices = new int[64];
+                timestamps = new long[64];
+                values = new long[64];
+                states = new byte[64];
+                strings = new String[64];
+            }
+            size = 0;
+            return this;
+        }
+
+        void add(
+                final int index,
+                final long timestamp,
+                final byte state,
+                final long value,
+                final @Nullable String string) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+                strings = Arrays.copyOf(strings, size * 2);
+            }
+            indices[size] = index;
+            timestamps[size] = timestamp;
+            values[size] = value;
+            states[size] = state;
+            strings[size] = string;
+            size++;
+        }
+
+        void clearStrings() {
+            // the strings belong to the columns now, the scratch buffer must not keep them alive
+            Arrays.fill(strings, 0, size, null);
+        }
+    }
+}
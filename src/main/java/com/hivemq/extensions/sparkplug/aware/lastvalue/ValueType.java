@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The column in which the last value of a metric is stored, derived from the Sparkplug datatype of its birth.
+ */
+public enum ValueType {
+
+    /**
+     * Integers, booleans ({@code 0} or {@code 1}) and date times (milliseconds since the epoch). Unsigned 64-bit
+     * integers keep their bits.
+     */
+    LONG,
+    /**
+     * Floats and doubles.
+     */
+    DOUBLE,
+    /**
+     * Strings, texts and UUIDs.
+     */
+    STRING,
+    /**
+     * Data sets, bytes, files, templates and unknown datatypes, their values are not stored.
+     */
+    UNSUPPORTED;
+
+    private static final @NotNull ValueType @NotNull [] VALUES = values();
+
+    static @NotNull ValueType ofOrdinal(final int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * @param  dataType the Sparkplug datatype of a metric
+     * @return          the value type of the datatype
+     */
+    public static @NotNull ValueType ofDataType(final int dataType) {
+        switch (dataType) {
+            case 1: // Int8
+            case 2: // Int16
+            case 3: // Int32
+            case 4: // Int64
+            case 5: // UInt8
+            case 6: // UInt16
+            case 7: // UInt32
+            case 8: // UInt64
+            case 11: // Boolean
+            case 13: // DateTime
+                return LONG;
+            case 9: // Float
+            case 10: // Double
+                return DOUBLE;
+            case 12: // String
+            case 14: // Text
+            case 15: // UUID
+                return STRING;
+            default:
+                return UNSUPPORTED;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.log;
+
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves the JSON payload log off the interceptor threads.
+ * <p>
+ * The interceptors only put a record with the client ID, topic and a reference to the read-only payload into a bounded
+ * lock-free {@link MpmcRingBuffer}. A dedicated daemon thread decodes the payloads, writes the JSON and hands it to the
+ * {@code com.hivemq.extensions.sparkplug.jsonLog} logger. A slow log appender therefore never blocks MQTT processing,
+ * instead records are dropped according to the configured {@link OverflowPolicy} when the queue is full.
+ * <p>
+ * A queue size of {@code 0} disables the pipeline, the payloads are then logged synchronously on the interceptor
+ * thread. The writer thread is started with the first record and stopped by {@link #stop()}. While the queue is empty
+ * the writer is parked, the next record unparks it.
+ * <p>
+ * If a {@link SparkplugRegistry} is given, the alias table of the current birth is attached to the records of NDATA and
+ * DDATA messages, so their metrics are logged with the names and datatypes of their aliases.
+ */
+public class JsonLogPipeline {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(JsonLogPipeline.class);
+
+    private static final long STOP_TIMEOUT_MILLIS = 5_000;
+    private static final int MAX_OFFER_ATTEMPTS = 8;
+    private static final int MAX_SAMPLED_EDGE_NODES = 100_000;
+
+    private final @NotNull PayloadJsonWriter jsonWriter;
+    private final @Nullable MpmcRingBuffer<Record> queue;
+    private final @NotNull OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final @NotNull ThreadFactory threadFactory;
+    private final @Nullable SparkplugRegistry registry;
+    private final @NotNull SparkplugMetrics metrics;
+    private final @NotNull ConcurrentHashMap<String, AtomicLong> edgeNodeCounters = new ConcurrentHashMap<>();
+    private final @NotNull LongAdder written = new LongAdder();
+    private final @NotNull LongAdder dropped = new LongAdder();
+    private final @NotNull AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running = true;
+    private volatile @Nullable Thread writerThread;
+    private volatile boolean writerIdle;
+
+    /**
+     * @param jsonWriter     the writer for the configured JSON log format
+     * @param queueSize      the maximum number of queued records, rounded up to the next power of two, or {@code 0} to
+     *                       log synchronously
+     * @param overflowPolicy the behavior when the queue is full
+     * @param sampleRate     the n of the 1-in-n sampling of {@link OverflowPolicy#SAMPLE}
+     */
+    public JsonLogPipeline(
+            final @NotNull PayloadJsonWriter jsonWriter,
+            final int queueSize,
+            final @NotNull OverflowPolicy overflowPolicy,
+            final int sampleRate) {
+        this(jsonWriter, queueSize, overflowPolicy, sampleRate, null, SparkplugMetrics.unregistered());
+    }
+
+    /**
+     * @param jsonWriter     the writer for the configured JSON log format
+     * @param queueSize      the maximum number of queued records, rounded up to the next power of two, or {@code 0} to
+     *                       log synchronously
+     * @param overflowPolicy the behavior when the queue is full
+     * @param sampleRate     the n of the 1-in-n sampling of {@link OverflowPolicy#SAMPLE}
+     * @param registry       the registry to resolve the aliases of data messages or {@code null}
+     * @param metrics        the metrics of the JSON encoding time
+     */
+    public JsonLogPipeline(
+            final @NotNull PayloadJsonWriter jsonWriter,
+            final int queueSize,
+            final @NotNull OverflowPolicy overflowPolicy,
+            final int sampleRate,
+            final @Nullable SparkplugRegistry registry,
+            final @NotNull SparkplugMetrics metrics) {
+        this(jsonWriter, queueSize, overflowPolicy, sampleRate, registry, metrics, runnable -> {
+            final var thread = new Thread(runnable, "sparkplug-json-log-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @VisibleForTesting
+    JsonLogPipeline(
+            final @NotNull PayloadJsonWriter jsonWriter,
+            final int queueSize,
+            final @NotNull OverflowPolicy overflowPolicy,
+            final int sampleRate,
+            final @Nullable SparkplugRegistry registry,
+            final @NotNull SparkplugMetrics metrics,
+            final @NotNull ThreadFactory threadFactory) {
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("Size of the JSON log queue must not be negative");
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate of the JSON log must be positive");
+        }
+        this.jsonWriter = jsonWriter;
+        this.queue = queueSize > 0 ? new MpmcRingBuffer<>(queueSize) : null;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Logs the payload of the given PUBLISH packet as JSON. STATE messages and PUBLISH packets without payload are not
+     * logged.
+     *
+     * @param clientId       the MQTT client ID that published the message
+     * @param origin         the original topic on which the message was published
+     * @param publishPacket  the PUBLISH packet containing the Sparkplug payload
+     * @param topicStructure the parsed Sparkplug topic structure
+     */
+    public void log(
+            final @NotNull String clientId,
+            final @NotNull String origin,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull TopicStructure topicStructure) {
+        final var payload = publishPacket.getPayload();
+        if (payload.isEmpty() ||
+                topicStructure.getMessageType() == MessageType.STATE ||
+                !PayloadUtil.isJsonLogEnabled()) {
+            return;
+        }
+        final var aliases = getAliases(topicStructure);
+        final var queue = this.queue;
+        if (queue == null) {
+            write(clientId, origin, payload.get(), aliases);
+            return;
+        }
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            startWriter(queue);
+        }
+        final var record = new Record(clientId, origin, payload.get(), aliases);
+        if (queue.offer(record)) {
+            wakeWriter();
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                offerDroppingOldest(queue, record);
+                break;
+            case SAMPLE:
+                if (isSampled(topicStructure)) {
+                    offerDroppingOldest(queue, record);
+                } else {
+                    dropped.increment();
+                }
+                break;
+            default:
+                dropped.increment();
+        }
+    }
+
+    /**
+     * Stops the writer thread after the queued records are written, waiting at most {@value #STOP_TIMEOUT_MILLIS} ms.
+     * Records that are logged after this call are dropped.
+     */
+    public void stop() {
+        running = false;
+        final var thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            LOG.warn("JSON log writer did not finish within {} ms, {} records are not written",
+                    STOP_TIMEOUT_MILLIS,
+                    getQueued());
+        }
+    }
+
+    /**
+     * @return {@code true} if the payloads are logged on the calling thread
+     */
+    public boolean isSynchronous() {
+        return queue == null;
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getQueued() {
+        final var queue = this.queue;
+        return queue != null ? queue.size() : 0;
+    }
+
+    private @Nullable AliasTable getAliases(final @NotNull TopicStructure topicStructure) {
+        final var registry = this.registry;
+        final var edgeNodeId = topicStructure.getEonId();
+        if (registry == null || edgeNodeId == null) {
+            return null;
+        }
+        final var messageType = topicStructure.getMessageType();
+        if (messageType != MessageType.NDATA && messageType != MessageType.DDATA) {
+            return null;
+        }
+        // the table is immutable, so the record keeps the aliases of the birth that preceded the message
+        return registry.getAliases(topicStructure.getGroupId(), edgeNodeId, topicStructure.getDeviceId());
+    }
+
+    private void startWriter(final @NotNull MpmcRingBuffer<Record> queue) {
+        final var thread = threadFactory.newThread(() -> drain(queue));
+        writerThread = thread;
+        thread.start();
+    }
+
+    private void drain(final @NotNull MpmcRingBuffer<Record> queue) {
+        while (true) {
+            var record = queue.poll();
+            if (record == null) {
+                if (!running) {
+                    return;
+                }
+                writerIdle = true;
+                // a record that is offered after the flag is set unparks the writer, so it is polled here or after
+                record = queue.poll();
+                if (record == null && running) {
+                    LockSupport.park(this);
+                }
+                writerIdle = false;
+                if (record == null) {
+                    continue;
+                }
+            }
+            try {
+                write(record.clientId, record.topic, record.payload, record.aliases);
+            } catch (final RuntimeException e) {
+                dropped.increment();
+                LOG.debug("Failed to write JSON log record", e);
+            }
+        }
+    }
+
+    private void write(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload,
+            final @Nullable AliasTable aliases) {
+        final var start = System.nanoTime();
+        PayloadUtil.logFormattedPayload(jsonWriter, clientId, topic, payload, aliases);
+        metrics.jsonLogEncodeTime(System.nanoTime() - start);
+        written.increment();
+    }
+
+    private void offerDroppingOldest(final @NotNull MpmcRingBuffer<Record> queue, final @NotNull Record record) {
+        for (var attempt = 0; attempt < MAX_OFFER_ATTEMPTS; attempt++) {
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+            if (queue.offer(record)) {
+                wakeWriter();
+                return;
+            }
+        }
+        dropped.increment();
+    }
+
+    private void wakeWriter() {
+        // the writer is only unparked when it waits, a busy writer costs the producers a volatile read
+        if (writerIdle) {
+            final var thread = writerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private boolean isSampled(final @NotNull TopicStructure topicStructure) {
+        if (edgeNodeCounters.size() > MAX_SAMPLED_EDGE_NODES) {
+            edgeNodeCounters.clear();
+        }
+        final var edgeNode = topicStructure.getGroupId() + '/' + topicStructure.getEonId();
+        final var counter = edgeNodeCounters.computeIfAbsent(edgeNode, key -> new AtomicLong());
+        return counter.getAndIncrement() % sampleRate == 0;
+    }
+
+    private static final class Record {
+
+        private final @NotNull String clientId;
+        private final @NotNull String topic;
+        private final @NotNull ByteBuffer payload;
+        private final @Nullable AliasTable aliases;
+
+        private Record(
+                final @NotNull String clientId,
+                final @NotNull String topic,
+                final @NotNull ByteBuffer payload,
+                final @Nullable AliasTable aliases) {
+            this.clientId = clientId;
+            this.topic = topic;
+            this.payload = payload;
+            this.aliases = aliases;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue after Dmitry Vyukov's array based design.
+ * <p>
+ * Every slot carries a sequence number that tells producers and consumers whether the slot is free for the current lap
+ * of the ring. Producers and consumers only contend on a single CAS of their position counter, a full queue rejects an
+ * element instead of blocking.
+ *
+ * @param <E> the type of the elements
+ */
+final class MpmcRingBuffer<E> {
+
+    private final int mask;
+    private final @NotNull AtomicLongArray sequences;
+    private final @NotNull AtomicReferenceArray<E> elements;
+    private final @NotNull AtomicLong enqueuePosition = new AtomicLong();
+    private final @NotNull AtomicLong dequeuePosition = new AtomicLong();
+
+    /**
+     * @param capacity the minimum capacity, rounded up to the next power of two
+     */
+    MpmcRingBuffer(final int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity of the ring buffer must be between 1 and 2^30");
+        }
+        final var size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.elements = new AtomicReferenceArray<>(size);
+        for (var i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if the queue is not full.
+     *
+     * @param  element the element
+     * @return         {@code true} if the element was added, {@code false} if the queue is full
+     */
+    boolean offer(final @NotNull E element) {
+        var position = enqueuePosition.get();
+        while (true) {
+            final var index = (int) (position & mask);
+            final var difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    // publishes the element to consumers
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                // the slot still holds an element of the previous lap
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element or {@code null} if the queue is empty
+     */
+    @Nullable E poll() {
+        var position = dequeuePosition.get();
+        while (true) {
+            final var index = (int) (position & mask);
+            final var difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    final var element = elements.get(index);
+                    elements.set(index, null);
+                    // releases the slot for the next lap of producers
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                // the slot was not published yet
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * @return the approximate number of elements, exact only if there are no concurrent modifications
+     */
+    int size() {
+        final var size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, mask + 1L));
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Behavior of the {@link JsonLogPipeline} when its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The new record is dropped.
+     */
+    DROP_NEWEST("drop-newest"),
+
+    /**
+     * The oldest queued record is dropped to make room for the new record.
+     */
+    DROP_OLDEST("drop-oldest"),
+
+    /**
+     * Only every n-th record of each edge node replaces the oldest queued record, all other records are dropped. Every
+     * edge node stays visible in the log, even if a few edge nodes produce most of the traffic.
+     */
+    SAMPLE("sample");
+
+    private final @NotNull String value;
+
+    OverflowPolicy(final @NotNull String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the policy with the given configuration value.
+     *
+     * @param  value the configuration value, e.g. {@code drop-newest}, case-insensitive
+     * @return       the policy or {@code null} if there is no policy with the given value
+     */
+    public static @Nullable OverflowPolicy fromString(final @NotNull String value) {
+        for (final var policy : values()) {
+            if (policy.value.equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of the extension, registered in the metric registry of HiveMQ under the prefix {@value #PREFIX}.
+ * <p>
+ * The names are fixed, the only variable part is the Sparkplug message type, so the number of metrics does not grow
+ * with the number of clients, edge nodes or topics:
+ * <ul>
+ * <li>{@code messages.inbound.<type>} and {@code messages.outbound.<type>} count the Sparkplug messages per message
+ * type, messages with a topic in a Sparkplug namespace that is not valid are counted as {@code unknown}</li>
+ * <li>{@code interceptor.publish-inbound.time} and {@code interceptor.publish-outbound.time} time the publish
+ * interceptors for the messages with a topic in a Sparkplug namespace, {@code interceptor.subscribe.time} times the
+ * subscribe interceptor</li>
+ * <li>{@code subscriptions.systopic} counts the system topic subscriptions, {@code subscriptions.systopic.snapshot}
+ * those that were served from the birth snapshots</li>
+ * <li>{@code ndeath.rewrite.time} times the rewrite of the NDEATH timestamp, {@code ndeath.rewrite.failed} counts
+ * the NDEATH messages that could not be rewritten</li>
+ * <li>{@code systopic.publish.time} times the publishes of the births to their system topics from the submission to
+ * the completion, {@code systopic.publish.failed} and {@code systopic.publish.rejected} count the births that were
+ * not published</li>
+ * <li>{@code json-log.encode.time} times the encoding of a payload into the JSON log</li>
+ * <li>{@code interceptor.async.time} times the messages that were processed on the async executor from the hand-off
+ * to the resume of the interceptor output, {@code interceptor.async.timeout} counts those whose output timed out
+ * before they were processed</li>
+ * </ul>
+ * The statistics that the components of the extension count themselves are registered as gauges with
+ * {@link #gauge(String, LongSupplier)}, e.g. the dropped entries of the JSON log or the sequence gaps of the
+ * registry, see the README for their names.
+ */
+public class SparkplugMetrics {
+
+    public static final @NotNull String PREFIX = "com.hivemq.extensions.sparkplug";
+
+    private static final @NotNull MessageType @NotNull [] MESSAGE_TYPES = MessageType.values();
+
+    private final @NotNull MetricRegistry metricRegistry;
+    private final @NotNull Counter @NotNull [] inboundMessages;
+    private final @NotNull Counter @NotNull [] outboundMessages;
+    private final @NotNull Timer inboundPublishTime;
+    private final @NotNull Timer outboundPublishTime;
+    private final @NotNull Timer subscribeTime;
+    private final @NotNull Counter sysTopicSubscriptions;
+    private final @NotNull Counter snapshotSubscriptions;
+    private final @NotNull Timer ndeathRewriteTime;
+    private final @NotNull Counter ndeathRewriteFailed;
+    private final @NotNull Timer sysTopicPublishTime;
+    private final @NotNull Counter sysTopicPublishFailed;
+    private final @NotNull Counter sysTopicPublishRejected;
+    private final @NotNull Timer jsonLogEncodeTime;
+    private final @NotNull Timer asyncTime;
+    private final @NotNull Counter asyncTimeouts;
+
+    /**
+     * @param metricRegistry the registry the metrics are registered in
+     */
+    public SparkplugMetrics(final @NotNull MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        this.inboundMessages = new Counter[MESSAGE_TYPES.length];
+        this.outboundMessages = new Counter[MESSAGE_TYPES.length];
+        for (final var messageType : MESSAGE_TYPES) {
+            final var type = messageType.name().toLowerCase(Locale.ROOT);
+            inboundMessages[messageType.ordinal()] = metricRegistry.counter(name("messages.inbound." + type));
+            outboundMessages[messageType.ordinal()] = metricRegistry.counter(name("messages.outbound." + type));
+        }
+        this.inboundPublishTime = metricRegistry.timer(name("interceptor.publish-inbound.time"));
+        this.outboundPublishTime = metricRegistry.timer(name("interceptor.publish-outbound.time"));
+        this.subscribeTime = metricRegistry.timer(name("interceptor.subscribe.time"));
+        this.sysTopicSubscriptions = metricRegistry.counter(name("subscriptions.systopic"));
+        this.snapshotSubscriptions = metricRegistry.counter(name("subscriptions.systopic.snapshot"));
+        this.ndeathRewriteTime = metricRegistry.timer(name("ndeath.rewrite.time"));
+        this.ndeathRewriteFailed = metricRegistry.counter(name("ndeath.rewrite.failed"));
+        this.sysTopicPublishTime = metricRegistry.timer(name("systopic.publish.time"));
+        this.sysTopicPublishFailed = metricRegistry.counter(name("systopic.publish.failed"));
+        this.sysTopicPublishRejected = metricRegistry.counter(name("systopic.publish.rejected"));
+        this.jsonLogEncodeTime = metricRegistry.timer(name("json-log.encode.time"));
+        this.asyncTime = metricRegistry.timer(name("interceptor.async.time"));
+        this.asyncTimeouts = metricRegistry.counter(name("interceptor.async.timeout"));
+    }
+
+    /**
+     * @return metrics that are not registered in the metric registry of HiveMQ
+     */
+    public static @NotNull SparkplugMetrics unregistered() {
+        return new SparkplugMetrics(new MetricRegistry());
+    }
+
+    /**
+     * Removes the metrics from the metric registry, which outlives the extension if it is disabled at runtime.
+     */
+    public void remove() {
+        metricRegistry.removeMatching(MetricFilter.startsWith(PREFIX + '.'));
+    }
+
+    /**
+     * Registers a gauge that reads a statistic of a component of the extension.
+     *
+     * @param name  the fixed name of the gauge without the prefix
+     * @param value the current value of the statistic
+     */
+    public void gauge(final @NotNull String name, final @NotNull LongSupplier value) {
+        metricRegistry.register(name(name), (Gauge<Long>) value::getAsLong);
+    }
+
+    public void inboundMessage(final @NotNull MessageType messageType) {
+        inboundMessages[messageType.ordinal()].inc();
+    }
+
+    public void outboundMessage(final @NotNull MessageType messageType) {
+        outboundMessages[messageType.ordinal()].inc();
+    }
+
+    public void inboundPublishTime(final long nanos) {
+        inboundPublishTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void outboundPublishTime(final long nanos) {
+        outboundPublishTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void subscribeTime(final long nanos) {
+        subscribeTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sysTopicSubscription(final boolean servedFromSnapshots) {
+        sysTopicSubscriptions.inc();
+        if (servedFromSnapshots) {
+            snapshotSubscriptions.inc();
+        }
+    }
+
+    public void ndeathRewriteTime(final long nanos) {
+        ndeathRewriteTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void ndeathRewriteFailed() {
+        ndeathRewriteFailed.inc();
+    }
+
+    public void sysTopicPublishTime(final long nanos) {
+        sysTopicPublishTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sysTopicPublishFailed() {
+        sysTopicPublishFailed.inc();
+    }
+
+    public void sysTopicPublishRejected() {
+        sysTopicPublishRejected.inc();
+    }
+
+    public void jsonLogEncodeTime(final long nanos) {
+        jsonLogEncodeTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void asyncTime(final long nanos) {
+        asyncTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void asyncTimeout() {
+        asyncTimeouts.inc();
+    }
+
+    private static @NotNull String name(final @NotNull String name) {
+        return PREFIX + '.' + name;
+    }
+}
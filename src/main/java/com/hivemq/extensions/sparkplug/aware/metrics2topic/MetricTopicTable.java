@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.metrics2topic;
+
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable table of the metrics that an edge node or device declared in its last NBIRTH or DBIRTH, with the topic
+ * of every metric.
+ * <p>
+ * The topics are created once per birth, so the metrics of data messages are mapped to their topics without creating
+ * strings. Metrics are looked up by alias or by the UTF-8 bytes of their name in the {@link AliasTable} of the birth.
+ */
+final class MetricTopicTable {
+
+    private final @NotNull AliasTable aliases;
+    private final @Nullable String @NotNull [] topics;
+
+    MetricTopicTable(final @NotNull String baseTopic, final @NotNull AliasTable aliases) {
+        this.aliases = aliases;
+        this.topics = new String[aliases.size()];
+        for (var i = 0; i < topics.length; i++) {
+            final var name = new byte[aliases.getNameLength(i)];
+            aliases.putName(i, ByteBuffer.wrap(name));
+            topics[i] = toTopic(baseTopic, name);
+        }
+    }
+
+    /**
+     * Creates the table from the metrics of a birth.
+     *
+     * @param  baseTopic                the topic prefix of the edge node or device, ending with {@code /}
+     * @param  birth                    the decoded (uncompressed) Sparkplug B payload of the birth
+     * @return                          the table
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    static @NotNull MetricTopicTable fromBirth(final @NotNull String baseTopic, final @NotNull ByteBuffer birth) {
+        return new MetricTopicTable(baseTopic, AliasTable.fromBirth(birth));
+    }
+
+    /**
+     * @return the index of the metric with the given alias or {@code -1}
+     */
+    int indexOfAlias(final long alias) {
+        return aliases.indexOf(alias);
+    }
+
+    /**
+     * @return the index of the metric whose name equals the given bytes of the buffer or {@code -1}
+     */
+    int indexOfName(final @NotNull ByteBuffer buffer, final int start, final int length) {
+        return aliases.indexOfName(buffer, start, length);
+    }
+
+    @NotNull AliasTable aliases() {
+        return aliases;
+    }
+
+    /**
+     * @return the topic of the metric or {@code null} if its name is not a valid topic level
+     */
+    @Nullable String topic(final int index) {
+        return topics[index];
+    }
+
+    int size() {
+        return topics.length;
+    }
+
+    private static @Nullable String toTopic(final @NotNull String baseTopic, final byte @NotNull [] name) {
+        if (name.length == 0) {
+            return null;
+        }
+        for (var i = 0; i < name.length; i++) {
+            // wildcards and the null character are not allowed in topic names
+            if (name[i] == '+' || name[i] == '#' || name[i] == 0) {
+                return null;
+            }
+        }
+        return (baseTopic + new String(name, StandardCharsets.UTF_8)).intern();
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.metrics2topic;
+
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extension.sdk.api.services.builder.Builders;
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.utils.WireReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_LENGTH_DELIMITED;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_VARINT;
+
+/**
+ * Publishes every metric of an NDATA or DDATA message to a topic of its own.
+ * <p>
+ * The topic of a metric is {@code <prefix><namespace>/<group_id>/<edge_node_id>/[<device_id>/]<metric name>}. The
+ * payload is a Sparkplug B payload with the timestamp and sequence number of the data message and the single metric,
+ * with its name instead of its alias. The metric itself is copied on the protobuf wire level, so its value is never
+ * decoded. Data messages usually leave out the datatype of their metrics, the subscribers of a metric topic never
+ * receive the birth, so the datatype of the birth is added to the metric.
+ * <p>
+ * The metrics that an edge node or device declares in its NBIRTH or DBIRTH are collected in a
+ * {@link MetricTopicTable} together with their topics. Data messages that only carry aliases are resolved through this
+ * table, a rebirth replaces the table and a death removes it. Metrics that were not declared in the birth and data
+ * messages of edge nodes and devices without a known birth are not published.
+ */
+public class Metrics2Topic {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(Metrics2Topic.class);
+
+    private static final int PAYLOAD_TIMESTAMP_FIELD = 1;
+    private static final int PAYLOAD_METRICS_FIELD = 2;
+    private static final int PAYLOAD_SEQ_FIELD = 3;
+    private static final int METRIC_NAME_FIELD = 1;
+    private static final int METRIC_ALIAS_FIELD = 2;
+    private static final int METRIC_DATATYPE_FIELD = 4;
+    private static final byte TIMESTAMP_TAG = PAYLOAD_TIMESTAMP_FIELD << 3 | WIRETYPE_VARINT;
+    private static final byte METRICS_TAG = PAYLOAD_METRICS_FIELD << 3 | WIRETYPE_LENGTH_DELIMITED;
+    private static final byte SEQ_TAG = PAYLOAD_SEQ_FIELD << 3 | WIRETYPE_VARINT;
+    private static final byte NAME_TAG = METRIC_NAME_FIELD << 3 | WIRETYPE_LENGTH_DELIMITED;
+    private static final byte DATATYPE_TAG = METRIC_DATATYPE_FIELD << 3 | WIRETYPE_VARINT;
+
+    private final @NotNull String prefix;
+    private final @NotNull Metrics2TopicPublisher publisher;
+    private final @NotNull ThreadLocal<PublishBuilder> publishBuilders;
+    private final @NotNull ThreadLocal<ArrayList<Publish>> batches = ThreadLocal.withInitial(ArrayList::new);
+    private final @NotNull ConcurrentHashMap<String, ConcurrentHashMap<String, EdgeNodeTopics>> groups =
+            new ConcurrentHashMap<>();
+    private final @NotNull LongAdder unresolved = new LongAdder();
+
+    /**
+     * @param prefix    the topic prefix of the metrics, e.g. {@code $sparkplug/metrics/}
+     * @param publisher the publisher of the metrics
+     */
+    public Metrics2Topic(final @NotNull String prefix, final @NotNull Metrics2TopicPublisher publisher) {
+        this(prefix, publisher, Builders::publish);
+    }
+
+    @VisibleForTesting
+    Metrics2Topic(
+            final @NotNull String prefix,
+            final @NotNull Metrics2TopicPublisher publisher,
+            final @NotNull Supplier<PublishBuilder> publishBuilderFactory) {
+        this.prefix = prefix;
+        this.publisher = publisher;
+        // the builders are mutable, so every broker thread reuses its own builder
+        this.publishBuilders = ThreadLocal.withInitial(publishBuilderFactory);
+    }
+
+    /**
+     * Processes a Sparkplug message: births and deaths maintain the metric tables, the metrics of data messages are
+     * published to their topics.
+     *
+     * @param topicStructure the parsed Sparkplug topic of the message
+     * @param publishPacket  the PUBLISH packet of the message
+     * @param payload        the decoded Sparkplug B payload of the message, see {@link CompressedEnvelope#decode}, the
+     *                       position is not modified
+     */
+    public void onPublish(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull ByteBuffer payload) {
+        final var edgeNodeId = topicStructure.getEonId();
+        if (edgeNodeId == null) {
+            return;
+        }
+        final var groupId = topicStructure.getGroupId();
+        final var deviceId = topicStructure.getDeviceId();
+        switch (topicStructure.getMessageType()) {
+            case NBIRTH:
+                onNodeBirth(topicStructure, groupId, edgeNodeId, publishPacket, payload);
+                break;
+            case DBIRTH:
+                if (deviceId != null) {
+                    onDeviceBirth(topicStructure, groupId, edgeNodeId, deviceId, publishPacket, payload);
+                }
+                break;
+            case NDEATH:
+                onNodeDeath(groupId, edgeNodeId);
+                break;
+            case DDEATH:
+                if (deviceId != null) {
+                    onDeviceDeath(groupId, edgeNodeId, deviceId);
+                }
+                break;
+            case NDATA:
+                publishMetrics(getNodeTable(groupId, edgeNodeId), publishPacket, payload);
+                break;
+            case DDATA:
+                publishMetrics(deviceId != null ? getDeviceTable(groupId, edgeNodeId, deviceId) : null,
+                        publishPacket,
+                        payload);
+                break;
+            default:
+        }
+    }
+
+    /**
+     * @return the number of metrics that were not published, because their alias, name or data message was unknown
+     *         or their name is not a valid topic level
+     */
+    public long getUnresolved() {
+        return unresolved.sum();
+    }
+
+    public @NotNull Metrics2TopicPublisher getPublisher() {
+        return publisher;
+    }
+
+    private void onNodeBirth(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull ByteBuffer payload) {
+        final var baseTopic = prefix + topicStructure.getNamespace() + '/' + groupId + '/' + edgeNodeId + '/';
+        final var table = createTable(baseTopic, publishPacket, payload);
+        // the aliases of the devices are only valid until the next NBIRTH
+        groups.computeIfAbsent(groupId, id -> new ConcurrentHashMap<>()).put(edgeNodeId, new EdgeNodeTopics(table));
+    }
+
+    private void onDeviceBirth(
+            final @NotNull TopicStructure topicStructure,
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull ByteBuffer payload) {
+        final var baseTopic =
+                prefix + topicStructure.getNamespace() + '/' + groupId + '/' + edgeNodeId + '/' + deviceId + '/';
+        final var table = createTable(baseTopic, publishPacket, payload);
+        if (table == null) {
+            return;
+        }
+        groups.computeIfAbsent(groupId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(edgeNodeId, id -> new EdgeNodeTopics(null)).devices.put(deviceId, table);
+    }
+
+    private void onNodeDeath(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var edgeNodes = groups.get(groupId);
+        if (edgeNodes != null) {
+            edgeNodes.remove(edgeNodeId);
+        }
+    }
+
+    private void onDeviceDeath(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        if (edgeNode != null) {
+            edgeNode.devices.remove(deviceId);
+        }
+    }
+
+    private static @Nullable MetricTopicTable createTable(
+            final @NotNull String baseTopic,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull ByteBuffer payload) {
+        if (!payload.hasRemaining()) {
+            return null;
+        }
+        try {
+            return MetricTopicTable.fromBirth(baseTopic, payload);
+        } catch (final IllegalArgumentException e) {
+            LOG.debug("Failed to read the metrics of the birth at '{}': {}", publishPacket.getTopic(), e.getMessage());
+            return null;
+        }
+    }
+
+    private @Nullable EdgeNodeTopics getEdgeNode(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var edgeNodes = groups.get(groupId);
+        return edgeNodes != null ? edgeNodes.get(edgeNodeId) : null;
+    }
+
+    private @Nullable MetricTopicTable getNodeTable(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        return edgeNode != null ? edgeNode.node : null;
+    }
+
+    private @Nullable MetricTopicTable getDeviceTable(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        return edgeNode != null ? edgeNode.devices.get(deviceId) : null;
+    }
+
+    private void publishMetrics(
+            final @Nullable MetricTopicTable table,
+            final @NotNull PublishPacket publishPacket,
+            final @NotNull ByteBuffer payload) {
+        if (!payload.hasRemaining()) {
+            return;
+        }
+        if (table == null) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Skip metrics of '{}' without birth", publishPacket.getTopic());
+            }
+            unresolved.increment();
+            return;
+        }
+        final var batch = batches.get();
+        try {
+            // the timestamp and seq usually follow the metrics, so they are read in a first pass
+            var timestamp = -1L;
+            var seq = -1L;
+            final var reader = new WireReader(payload);
+            while (reader.hasRemaining()) {
+                final var tag = reader.readTag();
+                if (tag == TIMESTAMP_TAG) {
+                    timestamp = reader.readVarint();
+                } else if (tag == SEQ_TAG) {
+                    seq = reader.readVarint();
+                } else {
+                    reader.skipField(tag & 7);
+                }
+            }
+            final var publishBuilder = publishBuilders.get();
+            publishBuilder.fromPublish(publishPacket);
+            final var metrics = new WireReader(payload);
+            while (metrics.hasRemaining()) {
+                final var tag = metrics.readTag();
+                if (tag == METRICS_TAG) {
+                    final var length = metrics.readLength();
+                    final var start = metrics.position();
+                    metrics.skipBytes(length);
+                    final var publish =
+                            createPublish(publishBuilder, table, payload, start, start + length, timestamp, seq);
+                    if (publish != null) {
+                        batch.add(publish);
+                    } else {
+                        unresolved.increment();
+                    }
+                } else {
+                    metrics.skipField(tag & 7);
+                }
+            }
+            publisher.publish(batch);
+        } catch (final IllegalArgumentException e) {
+            LOG.debug("Failed to read the metrics at '{}': {}", publishPacket.getTopic(), e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private static @Nullable Publish createPublish(
+            final @NotNull PublishBuilder publishBuilder,
+            final @NotNull MetricTopicTable table,
+            final @NotNull ByteBuffer payload,
+            final int start,
+            final int end,
+            final long timestamp,
+            final long seq) {
+        var nameStart = -1;
+        var nameLength = 0;
+        var alias = -1L;
+        var hasDataType = false;
+        var otherLength = 0;
+        final var reader = new WireReader(payload, start, end);
+        while (reader.hasRemaining()) {
+            final var fieldStart = reader.position();
+            final var tag = reader.readTag();
+            if (tag == NAME_TAG) {
+                nameLength = reader.readLength();
+                nameStart = reader.position();
+                reader.skipBytes(nameLength);
+            } else if (tag >>> 3 == METRIC_ALIAS_FIELD && (tag & 7) == WIRETYPE_VARINT) {
+                alias = reader.readVarint();
+            } else {
+                hasDataType |= tag == DATATYPE_TAG;
+                reader.skipField(tag & 7);
+                otherLength += reader.position() - fieldStart;
+            }
+        }
+        // metrics that were not declared in the birth are not published, so no topics are created per message
+        final int index;
+        if (nameStart >= 0) {
+            index = table.indexOfName(payload, nameStart, nameLength);
+        } else if (alias >= 0) {
+            index = table.indexOfAlias(alias);
+        } else {
+            return null;
+        }
+        if (index < 0) {
+            return null;
+        }
+        final var topic = table.topic(index);
+        if (topic == null) {
+            return null;
+        }
+        nameLength = table.aliases().getNameLength(index);
+        final var dataType = hasDataType ? AliasTable.UNKNOWN_DATATYPE : table.aliases().getDataType(index);
+        var metricLength = 1 + WireReader.varintSize(nameLength) + nameLength + otherLength;
+        if (dataType != AliasTable.UNKNOWN_DATATYPE) {
+            metricLength += 1 + WireReader.varintSize(dataType);
+        }
+        final var length = (timestamp >= 0 ? 1 + WireReader.varintSize(timestamp) : 0) +
+                1 +
+                WireReader.varintSize(metricLength) +
+                metricLength +
+                (seq >= 0 ? 1 + WireReader.varintSize(seq) : 0);
+        final var out = ByteBuffer.allocate(length);
+        if (timestamp >= 0) {
+            out.put(TIMESTAMP_TAG);
+            WireReader.writeVarint(out, timestamp);
+        }
+        out.put(METRICS_TAG);
+        WireReader.writeVarint(out, metricLength);
+        out.put(NAME_TAG);
+        WireReader.writeVarint(out, nameLength);
+        table.aliases().putName(index, out);
+        if (dataType != AliasTable.UNKNOWN_DATATYPE) {
+            out.put(DATATYPE_TAG);
+            WireReader.writeVarint(out, dataType);
+        }
+        // copy all fields except the name and alias
+        final var fields = new WireReader(payload, start, end);
+        while (fields.hasRemaining()) {
+            final var fieldStart = fields.position();
+            final var tag = fields.readTag();
+            fields.skipField(tag & 7);
+            if (tag != NAME_TAG && !(tag >>> 3 == METRIC_ALIAS_FIELD && (tag & 7) == WIRETYPE_VARINT)) {
+                copy(payload, fieldStart, fields.position(), out);
+            }
+        }
+        if (seq >= 0) {
+            out.put(SEQ_TAG);
+            WireReader.writeVarint(out, seq);
+        }
+        return publishBuilder.topic(topic).payload(out.flip()).build();
+    }
+
+    private static void copy(
+            final @NotNull ByteBuffer source,
+            final int start,
+            final int end,
+            final @NotNull ByteBuffer target) {
+        if (source.hasArray()) {
+            target.put(source.array(), source.arrayOffset() + start, end - start);
+        } else {
+            for (var i = start; i < end; i++) {
+                target.put(source.get(i));
+            }
+        }
+    }
+
+    private static final class EdgeNodeTopics {
+
+        private final @Nullable MetricTopicTable node;
+        private final @NotNull ConcurrentHashMap<String, MetricTopicTable> devices = new ConcurrentHashMap<>();
+
+        private EdgeNodeTopics(final @Nullable MetricTopicTable node) {
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.metrics2topic;
+
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands the per-metric publishes of a data message to the {@link PublishService} as one batch.
+ * <p>
+ * The in-flight limit is reserved once per batch instead of once per publish. If a batch does not fit into the
+ * configured number of in-flight publishes, the complete batch is dropped, so the fan-out never queues up on the
+ * interceptor threads and subscribers never receive a partial data message.
+ */
+public class Metrics2TopicPublisher {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(Metrics2TopicPublisher.class);
+
+    private final @NotNull PublishService publishService;
+    private final int maxInFlight;
+    private final @NotNull AtomicInteger inFlight = new AtomicInteger();
+    private final @NotNull LongAdder published = new LongAdder();
+    private final @NotNull LongAdder failed = new LongAdder();
+    private final @NotNull LongAdder dropped = new LongAdder();
+
+    /**
+     * @param publishService the service that publishes the metrics
+     * @param maxInFlight    the maximum number of publishes that are not completed yet
+     */
+    public Metrics2TopicPublisher(final @NotNull PublishService publishService, final int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum number of in-flight metric publishes must be positive");
+        }
+        this.publishService = publishService;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Publishes the given batch, the list can be reused by the caller after this method returns.
+     *
+     * @param  batch the publishes of the metrics of one data message
+     * @return       {@code false} if the batch was dropped because too many publishes are in flight
+     */
+    public boolean publish(final @NotNull List<Publish> batch) {
+        final var size = batch.size();
+        if (size == 0) {
+            return true;
+        }
+        while (true) {
+            final var current = inFlight.get();
+            // a batch larger than the limit is accepted when nothing is in flight, so it is not dropped forever
+            if (current > 0 && current + size > maxInFlight) {
+                dropped.add(size);
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Dropped {} metric publishes, {} publishes are in flight", size, current);
+                }
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + size)) {
+                break;
+            }
+        }
+        for (var i = 0; i < size; i++) {
+            publishService.publish(batch.get(i)).whenComplete((result, throwable) -> {
+                inFlight.decrementAndGet();
+                if (throwable == null) {
+                    published.increment();
+                } else {
+                    failed.increment();
+                    LOG.debug("Publish of metric failed: {}", throwable.getMessage());
+                }
+            });
+        }
+        return true;
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.utils.WireReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_LENGTH_DELIMITED;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_VARINT;
+
+/**
+ * Immutable table of the metrics that an edge node or device declared in its last NBIRTH or DBIRTH, used to resolve
+ * the metrics of data messages that only carry an alias or their name.
+ * <p>
+ * Every named metric of the birth has an index with its name and Sparkplug datatype. Aliases are looked up in an
+ * open-addressing table with primitive {@code long} keys, names by the UTF-8 bytes directly from a payload, so a lookup
+ * neither boxes the alias nor allocates. The names are kept as UTF-8 bytes, a {@link String} is only created for the
+ * metrics whose name is requested. A table costs about 80 bytes per metric with a name of 16 characters.
+ */
+public final class AliasTable {
+
+    /**
+     * The datatype of a metric whose birth did not declare a datatype.
+     */
+    public static final int UNKNOWN_DATATYPE = 0;
+
+    private static final int PAYLOAD_METRICS_FIELD = 2;
+    private static final int METRIC_NAME_FIELD = 1;
+    private static final int METRIC_ALIAS_FIELD = 2;
+    private static final int METRIC_DATATYPE_FIELD = 4;
+
+    private final byte @NotNull [] @NotNull [] names;
+    // created on first use, racing threads create equal strings
+    private final @Nullable String @NotNull [] nameStrings;
+    private final int @NotNull [] dataTypes;
+    private final long @NotNull [] aliasKeys;
+    // index of the metric + 1, 0 marks an empty slot
+    private final int @NotNull [] aliasSlots;
+    private final int @NotNull [] nameSlots;
+
+    private AliasTable(
+            final byte @NotNull [] @NotNull [] names,
+            final int @NotNull [] dataTypes,
+            final long @NotNull [] aliases,
+            final boolean @NotNull [] hasAlias) {
+        this.names = names;
+        this.nameStrings = new String[names.length];
+        this.dataTypes = dataTypes;
+        var capacity = 4;
+        while (capacity < names.length * 2) {
+            capacity <<= 1;
+        }
+        this.aliasKeys = new long[capacity];
+        this.aliasSlots = new int[capacity];
+        this.nameSlots = new int[capacity];
+        final var mask = capacity - 1;
+        for (var i = 0; i < names.length; i++) {
+            var slot = hash(names[i]) & mask;
+            while (nameSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            nameSlots[slot] = i + 1;
+            if (!hasAlias[i]) {
+                continue;
+            }
+            slot = mix(aliases[i]) & mask;
+            while (aliasSlots[slot] != 0 && aliasKeys[slot] != aliases[i]) {
+                slot = (slot + 1) & mask;
+            }
+            if (aliasSlots[slot] == 0) {
+                // the first metric wins if a birth declares an alias twice
+                aliasKeys[slot] = aliases[i];
+                aliasSlots[slot] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Creates the table from the metrics of a birth. Metrics without a name are ignored.
+     *
+     * @param  birth                    the decoded (uncompressed) Sparkplug B payload of the birth, see
+     *                                  {@link CompressedEnvelope#decode}, the position is not modified
+     * @return                          the table
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public static @NotNull AliasTable fromBirth(final @NotNull ByteBuffer birth) {
+        var names = new byte[16][];
+        var dataTypes = new int[16];
+        var aliases = new long[16];
+        var hasAlias = new boolean[16];
+        var size = 0;
+        final var reader = new WireReader(birth);
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            if (tag >>> 3 != PAYLOAD_METRICS_FIELD || (tag & 7) != WIRETYPE_LENGTH_DELIMITED) {
+                reader.skipField(tag & 7);
+                continue;
+            }
+            final var length = reader.readLength();
+            final var metric = new WireReader(birth, reader.position(), reader.position() + length);
+            reader.skipBytes(length);
+            byte[] name = null;
+            var dataType = UNKNOWN_DATATYPE;
+            var alias = 0L;
+            var aliased = false;
+            while (metric.hasRemaining()) {
+                final var metricTag = metric.readTag();
+                final var field = metricTag >>> 3;
+                if (field == METRIC_NAME_FIELD && (metricTag & 7) == WIRETYPE_LENGTH_DELIMITED) {
+                    final var nameLength = metric.readLength();
+                    name = new byte[nameLength];
+                    birth.duplicate().position(metric.position()).get(name);
+                    metric.skipBytes(nameLength);
+                } else if (field == METRIC_ALIAS_FIELD && (metricTag & 7) == WIRETYPE_VARINT) {
+                    alias = metric.readVarint();
+                    aliased = true;
+                } else if (field == METRIC_DATATYPE_FIELD && (metricTag & 7) == WIRETYPE_VARINT) {
+                    dataType = (int) metric.readVarint();
+                } else {
+                    metric.skipField(metricTag & 7);
+                }
+            }
+            if (name == null) {
+                continue;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                dataTypes = Arrays.copyOf(dataTypes, size * 2);
+                aliases = Arrays.copyOf(aliases, size * 2);
+                hasAlias = Arrays.copyOf(hasAlias, size * 2);
+            }
+            names[size] = name;
+            dataTypes[size] = dataType;
+            aliases[size] = alias;
+            hasAlias[size] = aliased;
+            size++;
+        }
+        return new AliasTable(Arrays.copyOf(names, size), Arrays.copyOf(dataTypes, size), aliases, hasAlias);
+    }
+
+    /**
+     * @return the index of the metric with the given alias or {@code -1}
+     */
+    public int indexOf(final long alias) {
+        final var mask = aliasSlots.length - 1;
+        var slot = mix(alias) & mask;
+        while (aliasSlots[slot] != 0) {
+            if (aliasKeys[slot] == alias) {
+                return aliasSlots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the metric whose name equals the given UTF-8 bytes of the buffer or {@code -1}
+     */
+    public int indexOfName(final @NotNull ByteBuffer buffer, final int start, final int length) {
+        final var mask = nameSlots.length - 1;
+        var h = 1;
+        for (var i = start; i < start + length; i++) {
+            h = 31 * h + buffer.get(i);
+        }
+        var slot = mix(h) & mask;
+        while (nameSlots[slot] != 0) {
+            final var name = names[nameSlots[slot] - 1];
+            if (name.length == length && equalBytes(name, buffer, start)) {
+                return nameSlots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the metric with the given name or {@code -1}
+     */
+    public int indexOfName(final @NotNull String name) {
+        final var bytes = name.getBytes(StandardCharsets.UTF_8);
+        return indexOfName(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    public @NotNull String getName(final int index) {
+        final var cached = nameStrings[index];
+        if (cached != null) {
+            return cached;
+        }
+        final var name = new String(names[index], StandardCharsets.UTF_8);
+        nameStrings[index] = name;
+        return name;
+    }
+
+    /**
+     * @return the length of the UTF-8 encoded name of the metric
+     */
+    public int getNameLength(final int index) {
+        return names[index].length;
+    }
+
+    /**
+     * Writes the UTF-8 encoded name of the metric into the buffer.
+     */
+    public void putName(final int index, final @NotNull ByteBuffer out) {
+        out.put(names[index]);
+    }
+
+    /**
+     * @return the Sparkplug datatype of the metric or {@link #UNKNOWN_DATATYPE}
+     */
+    public int getDataType(final int index) {
+        return dataTypes[index];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    private static int mix(final long key) {
+        final var h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int hash(final byte @NotNull [] bytes) {
+        var h = 1;
+        for (final var b : bytes) {
+            h = 31 * h + b;
+        }
+        return mix(h);
+    }
+
+    private static boolean equalBytes(final byte @NotNull [] bytes, final @NotNull ByteBuffer buffer, final int start) {
+        for (var i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "AliasTable{" + "size=" + names.length + "}";
+    }
+}
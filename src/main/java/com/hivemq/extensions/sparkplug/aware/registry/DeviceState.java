@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * State of a Sparkplug device in the {@link SparkplugRegistry}.
+ * <p>
+ * The getters are safe to call from any thread, the state is only modified by the registry. The {@link AliasTable} of
+ * the last DBIRTH is only kept while the device is online.
+ */
+public final class DeviceState {
+
+    private final @NotNull String deviceId;
+    private volatile long lastBirth;
+    private volatile long lastDeath;
+    private volatile @Nullable AliasTable aliases;
+    private volatile boolean online;
+
+    DeviceState(final @NotNull String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public @NotNull String getDeviceId() {
+        return deviceId;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch of the last DBIRTH, {@code 0} if no DBIRTH was received
+     */
+    public long getLastBirth() {
+        return lastBirth;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch at which the device went offline, {@code 0} if it was never
+     *         offline
+     */
+    public long getLastDeath() {
+        return lastDeath;
+    }
+
+    /**
+     * @return the alias table of the current DBIRTH or {@code null} if the device is offline or its aliases are not
+     *         tracked
+     */
+    public @Nullable AliasTable getAliases() {
+        return aliases;
+    }
+
+    synchronized void birth(final long timestamp, final @Nullable AliasTable aliases) {
+        lastBirth = timestamp;
+        this.aliases = aliases;
+        online = true;
+    }
+
+    synchronized void death(final long timestamp) {
+        if (online) {
+            lastDeath = timestamp;
+            online = false;
+        }
+        aliases = null;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "DeviceState{" + "deviceId='" + deviceId + "', online=" + online + "}";
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * State of a Sparkplug edge node and its devices in the {@link SparkplugRegistry}.
+ * <p>
+ * The getters are safe to call from any thread, the state is only modified by the registry. The map of the devices is
+ * created with the first DBIRTH, so edge nodes without devices do not pay for it.
+ * <p>
+ * The last sequence number is a single {@code int} that is validated and advanced with a compare-and-set, so the
+ * validation of the sequence numbers of data messages does not lock.
+ * <p>
+ * The {@link AliasTable} of the last NBIRTH is only kept while the edge node is online, so the memory of the alias
+ * tables is bounded by the online edge nodes and devices, not by the edge nodes that were ever seen.
+ */
+public final class EdgeNodeState {
+
+    private static final int NO_SEQ = -1;
+    private static final int SEQ_MASK = 0xFF;
+    private static final int SEQ_HALF_RANGE = 128;
+    private static final @NotNull AtomicIntegerFieldUpdater<EdgeNodeState> LAST_SEQ =
+            AtomicIntegerFieldUpdater.newUpdater(EdgeNodeState.class, "lastSeq");
+
+    private final @NotNull String groupId;
+    private final @NotNull String edgeNodeId;
+    private volatile @Nullable ConcurrentHashMap<String, DeviceState> devices;
+    private volatile @Nullable AliasTable aliases;
+    private volatile long lastBirth;
+    private volatile long lastDeath;
+    private volatile long bdSeq = SparkplugRegistry.UNKNOWN;
+    private long staleBdSeq = SparkplugRegistry.UNKNOWN;
+    private volatile int lastSeq = NO_SEQ;
+    private volatile boolean online;
+
+    EdgeNodeState(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        this.groupId = groupId;
+        this.edgeNodeId = edgeNodeId;
+    }
+
+    public @NotNull String getGroupId() {
+        return groupId;
+    }
+
+    public @NotNull String getEdgeNodeId() {
+        return edgeNodeId;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch of the last NBIRTH, {@code 0} if no NBIRTH was received
+     */
+    public long getLastBirth() {
+        return lastBirth;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch at which the edge node went offline, {@code 0} if it was never
+     *         offline
+     */
+    public long getLastDeath() {
+        return lastDeath;
+    }
+
+    /**
+     * @return the birth/death sequence number of the last NBIRTH or {@link SparkplugRegistry#UNKNOWN}
+     */
+    public long getBdSeq() {
+        return bdSeq;
+    }
+
+    /**
+     * @return the last sequence number of the edge node or {@link SparkplugRegistry#UNKNOWN}
+     */
+    public long getLastSeq() {
+        final var lastSeq = this.lastSeq;
+        return lastSeq != NO_SEQ ? lastSeq : SparkplugRegistry.UNKNOWN;
+    }
+
+    /**
+     * @return the alias table of the current NBIRTH or {@code null} if the edge node is offline or its aliases are not
+     *         tracked
+     */
+    public @Nullable AliasTable getAliases() {
+        return aliases;
+    }
+
+    public @Nullable DeviceState getDevice(final @NotNull String deviceId) {
+        final var devices = this.devices;
+        return devices != null ? devices.get(deviceId) : null;
+    }
+
+    /**
+     * @return an unmodifiable live view of the devices of the edge node
+     */
+    public @NotNull Collection<DeviceState> getDevices() {
+        final var devices = this.devices;
+        return devices != null ? Collections.unmodifiableCollection(devices.values()) : Collections.emptyList();
+    }
+
+    synchronized void birth(
+            final long timestamp,
+            final long bdSeq,
+            final long seq,
+            final @Nullable AliasTable aliases) {
+        this.lastBirth = timestamp;
+        this.aliases = aliases;
+        this.bdSeq = bdSeq;
+        this.lastSeq = isValidSeq(seq) ? (int) seq : NO_SEQ;
+        this.online = true;
+        // the devices of the previous session are offline until their next DBIRTH
+        devicesDeath(timestamp);
+    }
+
+    synchronized boolean death(final long timestamp, final long bdSeq) {
+        if (!online || (bdSeq != SparkplugRegistry.UNKNOWN && this.bdSeq != SparkplugRegistry.UNKNOWN &&
+                bdSeq != this.bdSeq)) {
+            return false;
+        }
+        this.lastDeath = timestamp;
+        this.online = false;
+        this.aliases = null;
+        devicesDeath(timestamp);
+        return true;
+    }
+
+    /**
+     * Remembers the {@code bdSeq} of a stale NDEATH. The Last Will NDEATH is seen once per subscriber, so an NDEATH
+     * with the same {@code bdSeq} as the last stale one is a further delivery of the same NDEATH.
+     *
+     * @return {@code true} if the stale NDEATH was not seen before
+     */
+    synchronized boolean staleDeath(final long bdSeq) {
+        if (staleBdSeq == bdSeq) {
+            return false;
+        }
+        staleBdSeq = bdSeq;
+        return true;
+    }
+
+    void seq(final long seq) {
+        if (isValidSeq(seq)) {
+            this.lastSeq = (int) seq;
+        }
+    }
+
+    /**
+     * Validates the sequence number against the last sequence number and advances the last sequence number unless the
+     * message is a duplicate or arrived out of order.
+     * <p>
+     * The sequence numbers wrap from {@code 255} to {@code 0}. A sequence number up to {@code 127} ahead of the
+     * expected one is a gap, anything behind it is a late message.
+     */
+    @NotNull SequenceCheck checkSeq(final long seq) {
+        if (!isValidSeq(seq)) {
+            return SequenceCheck.UNCHECKED;
+        }
+        final var next = (int) seq;
+        while (true) {
+            final var last = lastSeq;
+            final SequenceCheck check;
+            if (last == NO_SEQ) {
+                check = SequenceCheck.UNCHECKED;
+            } else if (next == last) {
+                return SequenceCheck.DUPLICATE;
+            } else {
+                final var ahead = (next - last - 1) & SEQ_MASK;
+                if (ahead >= SEQ_HALF_RANGE) {
+                    return SequenceCheck.OUT_OF_ORDER;
+                }
+                check = ahead == 0 ? SequenceCheck.IN_ORDER : SequenceCheck.GAP;
+            }
+            if (LAST_SEQ.compareAndSet(this, last, next)) {
+                return check;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the device was not known before
+     */
+    boolean deviceBirth(final @NotNull String deviceId, final long timestamp, final @Nullable AliasTable aliases) {
+        var devices = this.devices;
+        if (devices == null) {
+            synchronized (this) {
+                devices = this.devices;
+                if (devices == null) {
+                    devices = new ConcurrentHashMap<>(4);
+                    this.devices = devices;
+                }
+            }
+        }
+        final var created = new boolean[1];
+        final var device = devices.computeIfAbsent(deviceId, id -> {
+            created[0] = true;
+            return new DeviceState(id);
+        });
+        device.birth(timestamp, aliases);
+        return created[0];
+    }
+
+    void deviceDeath(final @NotNull String deviceId, final long timestamp) {
+        final var device = getDevice(deviceId);
+        if (device != null) {
+            device.death(timestamp);
+        }
+    }
+
+    private void devicesDeath(final long timestamp) {
+        final var devices = this.devices;
+        if (devices != null) {
+            for (final var device : devices.values()) {
+                device.death(timestamp);
+            }
+        }
+    }
+
+    private static boolean isValidSeq(final long seq) {
+        return seq >= 0 && seq <= SEQ_MASK;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "EdgeNodeState{" + "groupId='" + groupId + "', edgeNodeId='" + edgeNodeId + "', online=" + online +
+                ", bdSeq=" + bdSeq + ", lastSeq=" + lastSeq + "}";
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * State of a Sparkplug group in the {@link SparkplugRegistry}: its edge nodes and the sequence number violations of
+ * all its edge nodes.
+ */
+public final class GroupState {
+
+    private final @NotNull String groupId;
+    private final @NotNull ConcurrentHashMap<String, EdgeNodeState> edgeNodes = new ConcurrentHashMap<>();
+    private final @NotNull LongAdder gaps = new LongAdder();
+    private final @NotNull LongAdder duplicates = new LongAdder();
+    private final @NotNull LongAdder outOfOrder = new LongAdder();
+
+    GroupState(final @NotNull String groupId) {
+        this.groupId = groupId;
+    }
+
+    public @NotNull String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * @return an unmodifiable live view of the edge nodes of the group
+     */
+    public @NotNull Collection<EdgeNodeState> getEdgeNodes() {
+        return Collections.unmodifiableCollection(edgeNodes.values());
+    }
+
+    /**
+     * @return the number of messages that followed missing sequence numbers
+     */
+    public long getGaps() {
+        return gaps.sum();
+    }
+
+    /**
+     * @return the number of messages that repeated the last sequence number
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return the number of messages that arrived after a message with a newer sequence number
+     */
+    public long getOutOfOrder() {
+        return outOfOrder.sum();
+    }
+
+    @NotNull ConcurrentHashMap<String, EdgeNodeState> edgeNodes() {
+        return edgeNodes;
+    }
+
+    void count(final @NotNull SequenceCheck check) {
+        switch (check) {
+            case GAP:
+                gaps.increment();
+                break;
+            case DUPLICATE:
+                duplicates.increment();
+                break;
+            case OUT_OF_ORDER:
+                outOfOrder.increment();
+                break;
+            default:
+        }
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "GroupState{" + "groupId='" + groupId + "', edgeNodes=" + edgeNodes.size() + ", gaps=" + gaps.sum() +
+                ", duplicates=" + duplicates.sum() + ", outOfOrder=" + outOfOrder.sum() + "}";
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+/**
+ * Result of the validation of the sequence number {@code seq} of a Sparkplug message against the last sequence number
+ * of its edge node, see {@link SparkplugRegistry#onSeq(String, String, long)}.
+ */
+public enum SequenceCheck {
+
+    /**
+     * The sequence number is the successor of the last sequence number.
+     */
+    IN_ORDER,
+    /**
+     * At least one sequence number between the last and this sequence number is missing.
+     */
+    GAP,
+    /**
+     * The sequence number equals the last sequence number.
+     */
+    DUPLICATE,
+    /**
+     * The sequence number is older than the last sequence number, the message arrived late.
+     */
+    OUT_OF_ORDER,
+    /**
+     * The sequence number was not validated, because the edge node is unknown, the message has no valid sequence
+     * number or the validation is disabled.
+     */
+    UNCHECKED
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import com.hivemq.extensions.sparkplug.aware.utils.SequenceNumbers;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent in-memory registry of the Sparkplug topology seen by the broker: groups, their edge nodes and the devices
+ * of the edge nodes.
+ * <p>
+ * The interceptors update the registry on NBIRTH, DBIRTH, NDEATH and DDEATH messages with the online state, the time
+ * of the last birth, the {@code bdSeq} of the edge node and its last sequence number. Lookups of a group, edge node or
+ * device are O(1) hash lookups, the edge nodes of a group and the devices of an edge node are iterated as live views
+ * without copying.
+ * <p>
+ * The registry keeps compact records instead of payloads. With compressed object pointers, an edge node costs about
+ * 180 bytes and a device about 140 bytes including the map entries and an ID of 16 characters. One million devices
+ * therefore need about 140 MB of heap. Entries are never removed, an edge node or device that went offline stays in the
+ * registry with its last state.
+ * <p>
+ * An NDEATH is only applied if its {@code bdSeq} matches the {@code bdSeq} of the last NBIRTH of the edge node, so a
+ * late NDEATH of a previous session does not mark a reconnected edge node offline. Unknown sequence numbers are
+ * {@link #UNKNOWN}.
+ * <p>
+ * The sequence numbers of DBIRTH, DDEATH and data messages are validated against the last sequence number of the edge
+ * node, gaps, duplicates and messages that arrived out of order are counted per group, see {@link GroupState}.
+ * <p>
+ * The births optionally carry the {@link AliasTable} of their metrics, so any component can resolve the aliases of
+ * data messages with {@link #getAliases(String, String, String)}. A table is replaced by the next birth and released
+ * by the death of the edge node or device.
+ */
+public class SparkplugRegistry {
+
+    public static final long UNKNOWN = SequenceNumbers.UNKNOWN;
+
+    private final @NotNull ConcurrentHashMap<String, GroupState> groups = new ConcurrentHashMap<>();
+    private final @NotNull AtomicInteger edgeNodeCount = new AtomicInteger();
+    private final @NotNull AtomicInteger deviceCount = new AtomicInteger();
+    private final @NotNull LongAdder staleDeaths = new LongAdder();
+    private final boolean seqValidation;
+
+    public SparkplugRegistry() {
+        this(true);
+    }
+
+    /**
+     * @param seqValidation whether the sequence numbers are validated, otherwise the last sequence number is only
+     *                      tracked
+     */
+    public SparkplugRegistry(final boolean seqValidation) {
+        this.seqValidation = seqValidation;
+    }
+
+    public void onNodeBirth(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final long bdSeq,
+            final long seq,
+            final long timestamp) {
+        onNodeBirth(groupId, edgeNodeId, bdSeq, seq, timestamp, null);
+    }
+
+    /**
+     * Marks the edge node online. The devices of the edge node are offline until their next DBIRTH.
+     *
+     * @param groupId    the group ID
+     * @param edgeNodeId the edge node ID
+     * @param bdSeq      the {@code bdSeq} of the NBIRTH
+     * @param seq        the sequence number of the NBIRTH
+     * @param timestamp  the time in milliseconds since the epoch at which the NBIRTH was received
+     * @param aliases    the alias table of the NBIRTH or {@code null} if the aliases are not tracked
+     */
+    public void onNodeBirth(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final long bdSeq,
+            final long seq,
+            final long timestamp,
+            final @Nullable AliasTable aliases) {
+        getOrCreateEdgeNode(getOrCreateGroup(groupId), edgeNodeId).birth(timestamp, bdSeq, seq, aliases);
+    }
+
+    /**
+     * Marks the edge node and all of its devices offline if the {@code bdSeq} matches the last NBIRTH. A stale NDEATH
+     * with another {@code bdSeq} is counted, see {@link #getStaleDeaths()}. The NDEATH may be passed once per
+     * subscriber, the edge node is only marked offline once and a stale NDEATH is only counted once.
+     *
+     * @param  groupId    the group ID
+     * @param  edgeNodeId the edge node ID
+     * @param  bdSeq      the {@code bdSeq} of the NDEATH
+     * @param  timestamp  the time in milliseconds since the epoch at which the NDEATH was received
+     * @return            {@code true} if the edge node was online and is now offline
+     */
+    public boolean onNodeDeath(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final long bdSeq,
+            final long timestamp) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        if (edgeNode == null) {
+            return false;
+        }
+        if (isStale(edgeNode, bdSeq)) {
+            if (edgeNode.staleDeath(bdSeq)) {
+                staleDeaths.increment();
+            }
+            return false;
+        }
+        return edgeNode.death(timestamp, bdSeq);
+    }
+
+    /**
+     * Returns whether an NDEATH belongs to a previous session of the edge node, because its {@code bdSeq} does not
+     * match the {@code bdSeq} of the last NBIRTH. An NDEATH of an unknown edge node or without {@code bdSeq} is never
+     * stale.
+     *
+     * @param  groupId    the group ID
+     * @param  edgeNodeId the edge node ID
+     * @param  bdSeq      the {@code bdSeq} of the NDEATH
+     * @return            {@code true} if the NDEATH is stale
+     */
+    public boolean isStaleDeath(final @NotNull String groupId, final @NotNull String edgeNodeId, final long bdSeq) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        return edgeNode != null && isStale(edgeNode, bdSeq);
+    }
+
+    public void onDeviceBirth(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId,
+            final long seq,
+            final long timestamp) {
+        onDeviceBirth(groupId, edgeNodeId, deviceId, seq, timestamp, null);
+    }
+
+    /**
+     * Marks the device online.
+     *
+     * @param groupId    the group ID
+     * @param edgeNodeId the edge node ID
+     * @param deviceId   the device ID
+     * @param seq        the sequence number of the DBIRTH
+     * @param timestamp  the time in milliseconds since the epoch at which the DBIRTH was received
+     * @param aliases    the alias table of the DBIRTH or {@code null} if the aliases are not tracked
+     */
+    public void onDeviceBirth(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId,
+            final long seq,
+            final long timestamp,
+            final @Nullable AliasTable aliases) {
+        final var group = getOrCreateGroup(groupId);
+        final var edgeNode = getOrCreateEdgeNode(group, edgeNodeId);
+        updateSeq(group, edgeNode, seq);
+        if (edgeNode.deviceBirth(deviceId, timestamp, aliases)) {
+            deviceCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks the device offline.
+     *
+     * @param groupId    the group ID
+     * @param edgeNodeId the edge node ID
+     * @param deviceId   the device ID
+     * @param seq        the sequence number of the DDEATH
+     * @param timestamp  the time in milliseconds since the epoch at which the DDEATH was received
+     */
+    public void onDeviceDeath(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId,
+            final long seq,
+            final long timestamp) {
+        final var group = groups.get(groupId);
+        final var edgeNode = group != null ? group.edgeNodes().get(edgeNodeId) : null;
+        if (edgeNode != null) {
+            updateSeq(group, edgeNode, seq);
+            edgeNode.deviceDeath(deviceId, timestamp);
+        }
+    }
+
+    /**
+     * Validates the sequence number of an NDATA or DDATA message. Messages of unknown edge nodes are not validated.
+     *
+     * @param  groupId    the group ID
+     * @param  edgeNodeId the edge node ID
+     * @param  seq        the sequence number of the message
+     * @return            the result of the validation
+     */
+    public @NotNull SequenceCheck onSeq(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final long seq) {
+        if (!seqValidation) {
+            return SequenceCheck.UNCHECKED;
+        }
+        final var group = groups.get(groupId);
+        final var edgeNode = group != null ? group.edgeNodes().get(edgeNodeId) : null;
+        if (edgeNode == null) {
+            return SequenceCheck.UNCHECKED;
+        }
+        final var check = edgeNode.checkSeq(seq);
+        group.count(check);
+        return check;
+    }
+
+    public boolean isSeqValidation() {
+        return seqValidation;
+    }
+
+    public @Nullable EdgeNodeState getEdgeNode(final @NotNull String groupId, final @NotNull String edgeNodeId) {
+        final var group = groups.get(groupId);
+        return group != null ? group.edgeNodes().get(edgeNodeId) : null;
+    }
+
+    public @Nullable DeviceState getDevice(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull String deviceId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        return edgeNode != null ? edgeNode.getDevice(deviceId) : null;
+    }
+
+    /**
+     * Returns the alias table of the current birth of an edge node or device.
+     *
+     * @param  groupId    the group ID
+     * @param  edgeNodeId the edge node ID
+     * @param  deviceId   the device ID or {@code null} for the edge node itself
+     * @return            the alias table or {@code null} if the edge node or device is offline or unknown
+     */
+    public @Nullable AliasTable getAliases(
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @Nullable String deviceId) {
+        final var edgeNode = getEdgeNode(groupId, edgeNodeId);
+        if (edgeNode == null) {
+            return null;
+        }
+        if (deviceId == null) {
+            return edgeNode.getAliases();
+        }
+        final var device = edgeNode.getDevice(deviceId);
+        return device != null ? device.getAliases() : null;
+    }
+
+    /**
+     * @return an unmodifiable live view of the known group IDs
+     */
+    public @NotNull Set<String> getGroupIds() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    public @Nullable GroupState getGroup(final @NotNull String groupId) {
+        return groups.get(groupId);
+    }
+
+    /**
+     * @return an unmodifiable live view of the known groups
+     */
+    public @NotNull Collection<GroupState> getGroups() {
+        return Collections.unmodifiableCollection(groups.values());
+    }
+
+    /**
+     * @param  groupId the group ID
+     * @return         an unmodifiable live view of the edge nodes of the group
+     */
+    public @NotNull Collection<EdgeNodeState> getEdgeNodes(final @NotNull String groupId) {
+        final var group = groups.get(groupId);
+        return group != null ? group.getEdgeNodes() : Collections.emptyList();
+    }
+
+    public int getGroupCount() {
+        return groups.size();
+    }
+
+    public int getEdgeNodeCount() {
+        return edgeNodeCount.get();
+    }
+
+    public int getDeviceCount() {
+        return deviceCount.get();
+    }
+
+    /**
+     * @return the number of stale NDEATH messages, a Last Will is counted once for every subscriber it is delivered to
+     */
+    public long getStaleDeaths() {
+        return staleDeaths.sum();
+    }
+
+    public long getGaps() {
+        return groups.values().stream().mapToLong(GroupState::getGaps).sum();
+    }
+
+    public long getDuplicates() {
+        return groups.values().stream().mapToLong(GroupState::getDuplicates).sum();
+    }
+
+    public long getOutOfOrder() {
+        return groups.values().stream().mapToLong(GroupState::getOutOfOrder).sum();
+    }
+
+    private static boolean isStale(final @NotNull EdgeNodeState edgeNode, final long bdSeq) {
+        final var currentBdSeq = edgeNode.getBdSeq();
+        return bdSeq != UNKNOWN && currentBdSeq != UNKNOWN && currentBdSeq != bdSeq;
+    }
+
+    private void updateSeq(final @NotNull GroupState group, final @NotNull EdgeNodeState edgeNode, final long seq) {
+        if (seqValidation) {
+            group.count(edgeNode.checkSeq(seq));
+        } else {
+            edgeNode.seq(seq);
+        }
+    }
+
+    private @NotNull GroupState getOrCreateGroup(final @NotNull String groupId) {
+        final var group = groups.get(groupId);
+        return group != null ? group : groups.computeIfAbsent(groupId, GroupState::new);
+    }
+
+    private @NotNull EdgeNodeState getOrCreateEdgeNode(
+            final @NotNull GroupState group,
+            final @NotNull String edgeNodeId) {
+        final var edgeNodes = group.edgeNodes();
+        final var existing = edgeNodes.get(edgeNodeId);
+        if (existing != null) {
+            return existing;
+        }
+        final var created = new boolean[1];
+        final var edgeNode = edgeNodes.computeIfAbsent(edgeNodeId, id -> {
+            created[0] = true;
+            return new EdgeNodeState(group.getGroupId(), id);
+        });
+        if (created[0]) {
+            edgeNodeCount.incrementAndGet();
+        }
+        return edgeNode;
+    }
+}
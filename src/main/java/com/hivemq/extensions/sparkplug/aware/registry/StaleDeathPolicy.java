@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Handling of an NDEATH whose {@code bdSeq} does not match the {@code bdSeq} of the last NBIRTH of the edge node, see
+ * {@link SparkplugRegistry#isStaleDeath(String, String, long)}. Such an NDEATH belongs to a previous session of an
+ * edge node that already reconnected, typically the Last Will of the old connection.
+ */
+public enum StaleDeathPolicy {
+
+    /**
+     * The stale NDEATH is delivered unchanged.
+     */
+    DELIVER("deliver"),
+
+    /**
+     * The stale NDEATH is delivered with the user property {@value #STALE_USER_PROPERTY}, whose value is the
+     * {@code bdSeq} of the current session of the edge node.
+     */
+    FLAG("flag"),
+
+    /**
+     * The stale NDEATH is not delivered.
+     */
+    DROP("drop");
+
+    public static final @NotNull String STALE_USER_PROPERTY = "sparkplug-stale-ndeath";
+
+    private final @NotNull String value;
+
+    StaleDeathPolicy(final @NotNull String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the policy with the given configuration value.
+     *
+     * @param  value the configuration value, e.g. {@code drop}, case-insensitive
+     * @return       the policy or {@code null} if there is no policy with the given value
+     */
+    public static @Nullable StaleDeathPolicy fromString(final @NotNull String value) {
+        for (final var policy : values()) {
+            if (policy.value.equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return value;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.hivemq.extensions.sparkplug.aware.utils.BirthFingerprint;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the {@link BirthFingerprint} of the last birth that was published to each system topic, so births whose
+ * certificate did not change can be skipped or published without the retain flag, see {@link DedupMode}.
+ * <p>
+ * A retained birth expires with the message expiry of the system topic. An unchanged birth is therefore published
+ * again when half of the message expiry elapsed since the last published birth. A fingerprint is forgotten when the
+ * publish of its birth failed, see {@link #invalidate(String)}.
+ * <p>
+ * The number of remembered system topics is bounded, when the bound is exceeded the fingerprint of the system topic
+ * whose birth was checked least recently is forgotten. Only births are checked, so the fingerprints are kept in an
+ * access-ordered map under a lock.
+ */
+public class BirthFingerprints {
+
+    /**
+     * The action for a birth.
+     */
+    public enum Action {
+        PUBLISH,
+        PUBLISH_NOT_RETAINED,
+        SKIP
+    }
+
+    private final @NotNull DedupMode mode;
+    private final long refreshMillis;
+    private final @NotNull LongSupplier clock;
+    private final @NotNull LinkedHashMap<String, Published> published;
+    private final @NotNull LongAdder skipped = new LongAdder();
+    private final @NotNull LongAdder downgraded = new LongAdder();
+
+    /**
+     * @param mode                 the handling of unchanged births
+     * @param messageExpirySeconds the message expiry of the births on the system topics
+     * @param maxSize              the maximum number of remembered system topics
+     */
+    public BirthFingerprints(final @NotNull DedupMode mode, final long messageExpirySeconds, final int maxSize) {
+        this(mode, messageExpirySeconds, maxSize, System::currentTimeMillis);
+    }
+
+    @VisibleForTesting
+    BirthFingerprints(
+            final @NotNull DedupMode mode,
+            final long messageExpirySeconds,
+            final int maxSize,
+            final @NotNull LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum number of birth fingerprints must be positive");
+        }
+        this.mode = mode;
+        this.refreshMillis = Math.min(messageExpirySeconds, Long.MAX_VALUE / 1_000) * 1_000 / 2;
+        this.clock = clock;
+        this.published = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final @NotNull Map.Entry<String, Published> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Decides how the birth with the given payload is published to the given system topic and remembers its
+     * fingerprint if it is published as retained message.
+     *
+     * @param  topic   the system topic of the birth
+     * @param  payload the encoded Sparkplug B payload of the birth, its position is not modified
+     * @return         the action for the birth
+     */
+    public @NotNull Action check(final @NotNull String topic, final @NotNull ByteBuffer payload) {
+        if (mode == DedupMode.OFF) {
+            return Action.PUBLISH;
+        }
+        final var fingerprint = BirthFingerprint.of(payload);
+        final var now = clock.getAsLong();
+        synchronized (published) {
+            final var previous = published.get(topic);
+            if (previous != null &&
+                    previous.fingerprint == fingerprint &&
+                    now - previous.publishedAt < refreshMillis) {
+                if (mode == DedupMode.SKIP) {
+                    skipped.increment();
+                    return Action.SKIP;
+                }
+                downgraded.increment();
+                return Action.PUBLISH_NOT_RETAINED;
+            }
+            published.put(topic, new Published(fingerprint, now));
+        }
+        return Action.PUBLISH;
+    }
+
+    /**
+     * Forgets the fingerprint of the given system topic, the next birth is published as retained message.
+     *
+     * @param topic the system topic
+     */
+    public void invalidate(final @NotNull String topic) {
+        synchronized (published) {
+            published.remove(topic);
+        }
+    }
+
+    public @NotNull DedupMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of unchanged births that were not published
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return the number of unchanged births that were published without the retain flag
+     */
+    public long getDowngraded() {
+        return downgraded.sum();
+    }
+
+    public int size() {
+        synchronized (published) {
+            return published.size();
+        }
+    }
+
+    private static final class Published {
+
+        private final long fingerprint;
+        private final long publishedAt;
+
+        private Published(final long fingerprint, final long publishedAt) {
+            this.fingerprint = fingerprint;
+            this.publishedAt = publishedAt;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extension.sdk.api.services.publish.PublishToClientResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Delivers the {@link BirthSnapshots} that match the system topic filter of a new subscription to the subscriber, in
+ * place of the retained messages of the broker.
+ * <p>
+ * The births are delivered in topic order with {@link PublishService#publishToClient}, paced by a tick: every tick at
+ * most the configured batch size of births is handed to the broker, and never more than a batch is in flight. Several
+ * subscriptions are served round-robin, so a historian that subscribes to all system topics does not delay the births
+ * of a host application that only subscribes to one group. A subscription is served from the second tick after it was
+ * registered, so the broker has added the subscription before the first birth is delivered. Its delivery is cancelled
+ * if the client unsubscribed or disconnected in the meantime.
+ * <p>
+ * The subscriber receives the births that are stored after its delivery started live, so they are skipped. A birth that
+ * is replaced while it is delivered may reach the subscriber after its replacement, then the replacement is delivered
+ * again. The births are delivered with their remaining message expiry, and expired births are dropped on the ticks.
+ */
+public class BirthSnapshotDelivery {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(BirthSnapshotDelivery.class);
+
+    private final @NotNull PublishService publishService;
+    private final @NotNull BirthSnapshots snapshots;
+    private final @NotNull Supplier<PublishBuilder> publishBuilders;
+    private final int batchSize;
+    private final long tickMillis;
+    private final @NotNull ConcurrentLinkedQueue<Delivery> deliveries = new ConcurrentLinkedQueue<>();
+    private final @NotNull AtomicInteger inFlight = new AtomicInteger();
+    private final @NotNull AtomicInteger active = new AtomicInteger();
+    private final @NotNull LongAdder delivered = new LongAdder();
+    private final @NotNull LongAdder failed = new LongAdder();
+    private final @NotNull LongAdder cancelled = new LongAdder();
+    private volatile long ticks;
+    private @Nullable ScheduledFuture<?> ticker;
+
+    /**
+     * @param publishService  the service that delivers the births to the subscribers
+     * @param snapshots       the births of the system topics
+     * @param publishBuilders the factory of the builders of the births with their remaining message expiry
+     * @param batchSize       the maximum number of births that are delivered per tick and in flight
+     * @param tickMillis      the interval between two batches in milliseconds
+     */
+    public BirthSnapshotDelivery(
+            final @NotNull PublishService publishService,
+            final @NotNull BirthSnapshots snapshots,
+            final @NotNull Supplier<PublishBuilder> publishBuilders,
+            final int batchSize,
+            final long tickMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size of the birth snapshot delivery must be positive");
+        }
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick of the birth snapshot delivery must be positive");
+        }
+        this.publishService = publishService;
+        this.snapshots = snapshots;
+        this.publishBuilders = publishBuilders;
+        this.batchSize = batchSize;
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * Starts the ticks that deliver the births.
+     *
+     * @param scheduler the executor of the ticks
+     */
+    public synchronized void start(final @NotNull ScheduledExecutorService scheduler) {
+        if (ticker == null) {
+            ticker = scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    tick();
+                } catch (final RuntimeException e) {
+                    // an exception would cancel the ticks
+                    LOG.error("Delivery of the birth snapshots failed", e);
+                }
+            }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the ticks, births that were not delivered yet are not delivered anymore.
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+        deliveries.clear();
+        active.set(0);
+    }
+
+    /**
+     * Registers the delivery of the births that match the topic filter of a new subscription.
+     *
+     * @param  clientId    the client ID of the subscriber
+     * @param  topicFilter the system topic filter of the subscription
+     * @return             {@code false} if the births are not completely available from memory, the subscriber has to
+     *                     receive the retained messages of the broker then
+     */
+    public boolean deliver(final @NotNull String clientId, final @NotNull String topicFilter) {
+        if (!snapshots.isComplete()) {
+            return false;
+        }
+        active.incrementAndGet();
+        deliveries.offer(new Delivery(clientId, topicFilter, ticks + 1));
+        return true;
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    /**
+     * @return the number of subscriptions whose births are not completely delivered yet
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    @VisibleForTesting
+    void tick() {
+        final var tick = ++ticks;
+        snapshots.expire();
+        var budget = batchSize - inFlight.get();
+        // every delivery is visited at most once per tick, unfinished deliveries are queued again at the end
+        for (var remaining = deliveries.size(); remaining > 0 && budget > 0; remaining--) {
+            final var delivery = deliveries.poll();
+            if (delivery == null) {
+                break;
+            }
+            if (delivery.startTick < tick) {
+                budget -= deliverBatch(delivery, budget);
+            }
+            if (delivery.isDone()) {
+                active.decrementAndGet();
+            } else {
+                deliveries.offer(delivery);
+            }
+        }
+    }
+
+    private int deliverBatch(final @NotNull Delivery delivery, final int budget) {
+        var sent = 0;
+        if (delivery.sequence < 0) {
+            // the broker has added the subscription, later births reach the subscriber live
+            delivery.sequence = snapshots.getSequence();
+        }
+        final var births = delivery.cursor == null ?
+                snapshots.withPrefix(delivery.prefix) :
+                snapshots.withPrefix(delivery.prefix).tailMap(delivery.cursor, false);
+        for (final var entry : births.entrySet()) {
+            if (sent == budget || delivery.cancelled) {
+                return sent;
+            }
+            final var topic = entry.getKey();
+            delivery.cursor = topic;
+            final var snapshot = entry.getValue();
+            if (snapshot.getSequence() > delivery.sequence || !matches(delivery.topicFilter, topic)) {
+                continue;
+            }
+            if (publish(delivery, topic, snapshot)) {
+                sent++;
+            }
+        }
+        delivery.finished = true;
+        return sent;
+    }
+
+    /**
+     * @return {@code false} if the birth has expired
+     */
+    private boolean publish(
+            final @NotNull Delivery delivery,
+            final @NotNull String topic,
+            final @NotNull BirthSnapshots.Snapshot snapshot) {
+        var birth = snapshot.getBirth();
+        if (birth.getMessageExpiryInterval().isPresent()) {
+            final var remainingExpiry = snapshots.getRemainingExpiry(snapshot);
+            if (remainingExpiry == 0) {
+                return false;
+            }
+            // the broker would start the message expiry of the stored birth again
+            birth = publishBuilders.get().fromPublish(birth).messageExpiryInterval(remainingExpiry).build();
+        }
+        inFlight.incrementAndGet();
+        try {
+            publishService.publishToClient(birth, delivery.clientId)
+                    .whenComplete((result, throwable) -> complete(delivery, topic, snapshot, result, throwable));
+        } catch (final RuntimeException e) {
+            complete(delivery, topic, snapshot, null, e);
+        }
+        return true;
+    }
+
+    private void complete(
+            final @NotNull Delivery delivery,
+            final @NotNull String topic,
+            final @NotNull BirthSnapshots.Snapshot snapshot,
+            final @Nullable PublishToClientResult result,
+            final @Nullable Throwable throwable) {
+        inFlight.decrementAndGet();
+        if (throwable != null) {
+            failed.increment();
+            LOG.debug("Delivery of a birth snapshot to '{}' failed: {}", delivery.clientId, throwable.getMessage());
+        } else if (result == PublishToClientResult.SUCCESSFUL) {
+            delivered.increment();
+            final var current = snapshots.get(topic);
+            if (current != null && current.getSequence() > snapshot.getSequence() && !delivery.cancelled) {
+                // the live delivery of the newer birth may have overtaken this one
+                publish(delivery, topic, current);
+            }
+        } else if (!delivery.cancelled) {
+            delivery.cancelled = true;
+            cancelled.increment();
+            LOG.debug("Delivery of the birth snapshots of '{}' to '{}' cancelled, {}",
+                    delivery.topicFilter,
+                    delivery.clientId,
+                    result);
+        }
+    }
+
+    /**
+     * @return {@code true} if the topic matches the MQTT topic filter with its single-level and multi-level wildcards
+     */
+    public static boolean matches(final @NotNull String topicFilter, final @NotNull String topic) {
+        var f = 0;
+        var t = 0;
+        while (f < topicFilter.length()) {
+            final var c = topicFilter.charAt(f);
+            if (c == '#') {
+                return true;
+            }
+            if (c == '+') {
+                while (t < topic.length() && topic.charAt(t) != '/') {
+                    t++;
+                }
+                f++;
+                continue;
+            }
+            if (t == topic.length()) {
+                // "a/#" also matches the parent level "a"
+                return c == '/' && topicFilter.startsWith("#", f + 1);
+            }
+            if (c != topic.charAt(t)) {
+                return false;
+            }
+            f++;
+            t++;
+        }
+        return t == topic.length();
+    }
+
+    private static @NotNull String literalPrefix(final @NotNull String topicFilter) {
+        for (var i = 0; i < topicFilter.length(); i++) {
+            final var c = topicFilter.charAt(i);
+            if (c == '+' || c == '#') {
+                return topicFilter.substring(0, i);
+            }
+        }
+        return topicFilter;
+    }
+
+    private static final class Delivery {
+
+        private final @NotNull String clientId;
+        private final @NotNull String topicFilter;
+        // the births are scanned from the part of the topic filter before its first wildcard on
+        private final @NotNull String prefix;
+        private final long startTick;
+        private @Nullable String cursor;
+        // the sequence number of the last birth stored before the delivery started, -1 before it started
+        private long sequence = -1;
+        private boolean finished;
+        private volatile boolean cancelled;
+
+        private Delivery(final @NotNull String clientId, final @NotNull String topicFilter, final long startTick) {
+            this.clientId = clientId;
+            this.topicFilter = topicFilter;
+            this.prefix = literalPrefix(topicFilter);
+            this.startTick = startTick;
+        }
+
+        private boolean isDone() {
+            return finished || cancelled;
+        }
+    }
+}
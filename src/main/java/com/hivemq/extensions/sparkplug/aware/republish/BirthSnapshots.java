@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory copy of the retained births on the system topics, sorted by topic, so they can be delivered to new
+ * subscribers by the {@link BirthSnapshotDelivery} instead of the retained message store.
+ * <p>
+ * The births that were retained before the extension started are loaded once from the retained message store, until
+ * then and after more than the configured number of system topics were seen the snapshots are not complete and new
+ * subscribers are served by the retained message store.
+ * <p>
+ * Like the retained messages, a birth is dropped once its message expiry has passed. Every stored birth gets the next
+ * sequence number, so a delivery can tell the births that were stored after it started.
+ */
+public class BirthSnapshots {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(BirthSnapshots.class);
+
+    private final int maxSize;
+    private final @NotNull LongSupplier clock;
+    private final @NotNull ConcurrentSkipListMap<String, Snapshot> births = new ConcurrentSkipListMap<>();
+    private final @NotNull AtomicInteger size = new AtomicInteger();
+    private final @NotNull AtomicLong sequence = new AtomicLong();
+    private final @NotNull AtomicLong nextExpiry = new AtomicLong(Long.MAX_VALUE);
+    private final @NotNull AtomicBoolean overflowed = new AtomicBoolean();
+    private volatile boolean loaded;
+
+    /**
+     * @param maxSize the maximum number of system topics with a birth
+     */
+    public BirthSnapshots(final int maxSize) {
+        this(maxSize, System::currentTimeMillis);
+    }
+
+    @VisibleForTesting
+    BirthSnapshots(final int maxSize, final @NotNull LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum number of birth snapshots must be positive");
+        }
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Stores the birth that was published with the retain flag to its system topic.
+     *
+     * @param topic the system topic
+     * @param birth the retained birth
+     */
+    public void put(final @NotNull String topic, final @NotNull Publish birth) {
+        final var snapshot = snapshot(birth);
+        if (births.replace(topic, snapshot) == null) {
+            add(topic, snapshot, true);
+        }
+    }
+
+    /**
+     * Stores a birth that was read from the retained message store, unless a newer birth of the system topic was
+     * already stored.
+     *
+     * @param topic the system topic
+     * @param birth the retained birth, its message expiry is the remaining one
+     */
+    public void load(final @NotNull String topic, final @NotNull Publish birth) {
+        if (!births.containsKey(topic)) {
+            add(topic, snapshot(birth), false);
+        }
+    }
+
+    /**
+     * Marks the births of the retained message store as loaded.
+     */
+    public void setLoaded() {
+        loaded = true;
+    }
+
+    /**
+     * @return {@code true} if every retained birth is available from memory
+     */
+    public boolean isComplete() {
+        return loaded && !overflowed.get();
+    }
+
+    /**
+     * @param  prefix the common prefix of the system topics
+     * @return        a weakly consistent view of the births whose system topic starts with the prefix, in topic order
+     */
+    public @NotNull NavigableMap<String, Snapshot> withPrefix(final @NotNull String prefix) {
+        return births.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * @param  topic the system topic
+     * @return       the current birth of the system topic, {@code null} if there is none
+     */
+    public @Nullable Snapshot get(final @NotNull String topic) {
+        return births.get(topic);
+    }
+
+    /**
+     * @return the sequence number of the last stored birth
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * @param  snapshot a stored birth
+     * @return          the remaining message expiry of the birth in seconds, {@code 0} once it has expired
+     */
+    public long getRemainingExpiry(final @NotNull Snapshot snapshot) {
+        final var remainingMillis = snapshot.expiresAt - clock.getAsLong();
+        return remainingMillis <= 0 ? 0 : (remainingMillis + 999) / 1_000;
+    }
+
+    /**
+     * Drops the births whose message expiry has passed.
+     */
+    public void expire() {
+        final var now = clock.getAsLong();
+        if (now < nextExpiry.get()) {
+            return;
+        }
+        nextExpiry.set(Long.MAX_VALUE);
+        for (final var entry : births.entrySet()) {
+            final var snapshot = entry.getValue();
+            if (snapshot.expiresAt > now) {
+                nextExpiry.accumulateAndGet(snapshot.expiresAt, Math::min);
+            } else if (births.remove(entry.getKey(), snapshot)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private @NotNull Snapshot snapshot(final @NotNull Publish birth) {
+        final var expiresAt = birth.getMessageExpiryInterval()
+                .map(seconds -> clock.getAsLong() + Math.min(seconds, Long.MAX_VALUE / 2_000) * 1_000)
+                .orElse(Long.MAX_VALUE);
+        nextExpiry.accumulateAndGet(expiresAt, Math::min);
+        return new Snapshot(birth, sequence.incrementAndGet(), expiresAt);
+    }
+
+    private void add(final @NotNull String topic, final @NotNull Snapshot snapshot, final boolean replace) {
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            if (overflowed.compareAndSet(false, true)) {
+                LOG.warn("More than {} sysTopics with a birth, births are delivered from the retained message store",
+                        maxSize);
+            }
+            return;
+        }
+        if (births.putIfAbsent(topic, snapshot) != null) {
+            // another thread stored the system topic first
+            size.decrementAndGet();
+            if (replace) {
+                births.put(topic, snapshot);
+            }
+        }
+    }
+
+    /**
+     * A retained birth with the sequence number and the time at which it was stored.
+     */
+    public static final class Snapshot {
+
+        private final @NotNull Publish birth;
+        private final long sequence;
+        private final long expiresAt;
+
+        private Snapshot(final @NotNull Publish birth, final long sequence, final long expiresAt) {
+            this.birth = birth;
+            this.sequence = sequence;
+            this.expiresAt = expiresAt;
+        }
+
+        public @NotNull Publish getBirth() {
+            return birth;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Handling of a birth whose certificate did not change since the last birth that was published to the system topic,
+ * see {@link BirthFingerprints}.
+ */
+public enum DedupMode {
+
+    /**
+     * Every birth is published to the system topic as retained message.
+     */
+    OFF("off"),
+
+    /**
+     * An unchanged birth is not published to the system topic.
+     */
+    SKIP("skip"),
+
+    /**
+     * An unchanged birth is published to the system topic without the retain flag. Subscribers of the system topic
+     * receive the birth, but the retained message is not written again.
+     */
+    LIVE("live");
+
+    private final @NotNull String value;
+
+    DedupMode(final @NotNull String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the mode with the given configuration value.
+     *
+     * @param  value the configuration value, e.g. {@code skip}, case-insensitive
+     * @return       the mode or {@code null} if there is no mode with the given value
+     */
+    public static @Nullable DedupMode fromString(final @NotNull String value) {
+        for (final var mode : values()) {
+            if (mode.value.equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return value;
+    }
+}
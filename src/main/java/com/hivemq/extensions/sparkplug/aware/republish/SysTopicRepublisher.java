@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded asynchronous stage that publishes the NBIRTH and DBIRTH clones to their system topics.
+ * <p>
+ * When many edge nodes reconnect at the same time, e.g. after a network outage, the births are not handed to the
+ * {@link PublishService} all at once. At most the configured number of publishes are in flight, further births wait in
+ * a queue:
+ * <ul>
+ * <li>NBIRTH messages are published before DBIRTH messages.</li>
+ * <li>Births are coalesced per system topic, if a newer birth of the same edge node or device is queued before the
+ * older one is published, only the newest is published.</li>
+ * <li>A birth of a system topic whose previous birth is still in flight waits until the previous publish completed, so
+ * an older birth never overwrites a newer retained birth.</li>
+ * <li>A queued retained birth is not replaced by a newer birth without the retain flag, see {@link DedupMode#LIVE}.
+ * </li>
+ * <li>Births of new system topics are rejected when the configured number of system topics is queued.</li>
+ * </ul>
+ * The failure listener is notified with the system topic of every birth that is rejected or whose publish failed.
+ * The queue is drained by the thread that submits a birth or completes a publish, only one thread drains at a time.
+ */
+public class SysTopicRepublisher {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(SysTopicRepublisher.class);
+
+    private final @NotNull PublishService publishService;
+    private final @NotNull Consumer<String> failureListener;
+    private final @NotNull SparkplugMetrics metrics;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final @NotNull ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final @NotNull ConcurrentLinkedQueue<String> nodeBirths = new ConcurrentLinkedQueue<>();
+    private final @NotNull ConcurrentLinkedQueue<String> deviceBirths = new ConcurrentLinkedQueue<>();
+    private final @NotNull Set<String> inFlightTopics = ConcurrentHashMap.newKeySet();
+    private final @NotNull AtomicInteger inFlight = new AtomicInteger();
+    private final @NotNull AtomicInteger drainRequests = new AtomicInteger();
+    private final @NotNull LongAdder published = new LongAdder();
+    private final @NotNull LongAdder failed = new LongAdder();
+    private final @NotNull LongAdder coalesced = new LongAdder();
+    private final @NotNull LongAdder rejected = new LongAdder();
+    private final @NotNull LongAdder latencyNanos = new LongAdder();
+    private final @NotNull LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param publishService the service that publishes the births
+     * @param maxInFlight    the maximum number of publishes that are not completed yet
+     * @param maxQueued      the maximum number of system topics with a queued birth
+     */
+    public SysTopicRepublisher(
+            final @NotNull PublishService publishService,
+            final int maxInFlight,
+            final int maxQueued) {
+        this(publishService, maxInFlight, maxQueued, topic -> {
+        });
+    }
+
+    /**
+     * @param publishService  the service that publishes the births
+     * @param maxInFlight     the maximum number of publishes that are not completed yet
+     * @param maxQueued       the maximum number of system topics with a queued birth
+     * @param failureListener notified with the system topic of a birth that was rejected or failed
+     */
+    public SysTopicRepublisher(
+            final @NotNull PublishService publishService,
+            final int maxInFlight,
+            final int maxQueued,
+            final @NotNull Consumer<String> failureListener) {
+        this(publishService, maxInFlight, maxQueued, failureListener, SparkplugMetrics.unregistered());
+    }
+
+    /**
+     * @param publishService  the service that publishes the births
+     * @param maxInFlight     the maximum number of publishes that are not completed yet
+     * @param maxQueued       the maximum number of system topics with a queued birth
+     * @param failureListener notified with the system topic of a birth that was rejected or failed
+     * @param metrics         the metrics of the publish latency and of the births that were not published
+     */
+    public SysTopicRepublisher(
+            final @NotNull PublishService publishService,
+            final int maxInFlight,
+            final int maxQueued,
+            final @NotNull Consumer<String> failureListener,
+            final @NotNull SparkplugMetrics metrics) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum number of in-flight sysTopic publishes must be positive");
+        }
+        if (maxQueued < 1) {
+            throw new IllegalArgumentException("Maximum number of queued sysTopic publishes must be positive");
+        }
+        this.publishService = publishService;
+        this.failureListener = failureListener;
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Queues the clone of a birth for publishing to its system topic.
+     *
+     * @param  topic       the system topic of the clone
+     * @param  publish     the clone of the birth
+     * @param  messageType the message type of the birth, NBIRTH messages are published first
+     * @return             {@code false} if the birth was rejected because the queue is full
+     */
+    public boolean submit(
+            final @NotNull String topic,
+            final @NotNull Publish publish,
+            final @NotNull MessageType messageType) {
+        final var nodeBirth = messageType == MessageType.NBIRTH;
+        if (pending.size() >= maxQueued && !pending.containsKey(topic)) {
+            rejected.increment();
+            metrics.sysTopicPublishRejected();
+            LOG.warn("Publish to sysTopic '{}' rejected, {} sysTopic publishes are queued", topic, maxQueued);
+            failureListener.accept(topic);
+            return false;
+        }
+        final var replaced = new boolean[1];
+        pending.merge(topic, new Pending(publish, nodeBirth, System.nanoTime()), (older, newer) -> {
+            // the older birth was not published yet and is coalesced, a retained birth is kept though
+            replaced[0] = true;
+            return older.publish.getRetain() && !newer.publish.getRetain() ? older : newer;
+        });
+        if (replaced[0]) {
+            coalesced.increment();
+        } else {
+            (nodeBirth ? nodeBirths : deviceBirths).offer(topic);
+        }
+        drain();
+        return true;
+    }
+
+    public int getQueued() {
+        return pending.size();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the average time in milliseconds from the submission of a birth until its publish completed
+     */
+    public double getAverageLatencyMillis() {
+        final var completed = published.sum() + failed.sum();
+        return completed == 0 ? 0 : latencyNanos.sum() / 1_000_000.0 / completed;
+    }
+
+    /**
+     * @return the maximum time in milliseconds from the submission of a birth until its publish completed
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            // another thread is draining and will drain again for this request
+            return;
+        }
+        var missed = 1;
+        while (true) {
+            while (inFlight.get() < maxInFlight) {
+                var topic = nodeBirths.poll();
+                if (topic == null) {
+                    topic = deviceBirths.poll();
+                    if (topic == null) {
+                        break;
+                    }
+                }
+                if (!inFlightTopics.add(topic)) {
+                    // queued again when the publish in flight completes
+                    continue;
+                }
+                final var next = pending.remove(topic);
+                if (next == null) {
+                    inFlightTopics.remove(topic);
+                    continue;
+                }
+                inFlight.incrementAndGet();
+                publish(topic, next);
+            }
+            missed = drainRequests.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void publish(final @NotNull String topic, final @NotNull Pending next) {
+        try {
+            publishService.publish(next.publish).whenComplete((aVoid, throwable) -> complete(topic, next, throwable));
+        } catch (final RuntimeException e) {
+            complete(topic, next, e);
+        }
+    }
+
+    private void complete(
+            final @NotNull String topic,
+            final @NotNull Pending completed,
+            final @Nullable Throwable throwable) {
+        final var latency = System.nanoTime() - completed.submitNanos;
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulate(latency);
+        metrics.sysTopicPublishTime(latency);
+        if (throwable == null) {
+            published.increment();
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Published CLONE Msg to '{}'", topic);
+            }
+        } else {
+            failed.increment();
+            metrics.sysTopicPublishFailed();
+            LOG.error("Publish to sysTopic '{}' failed", topic, throwable);
+            failureListener.accept(topic);
+        }
+        inFlightTopics.remove(topic);
+        inFlight.decrementAndGet();
+        final var queued = pending.get(topic);
+        if (queued != null) {
+            // a newer birth arrived while the publish was in flight
+            (queued.nodeBirth ? nodeBirths : deviceBirths).offer(topic);
+        }
+        drain();
+    }
+
+    private static final class Pending {
+
+        private final @NotNull Publish publish;
+        private final boolean nodeBirth;
+        private final long submitNanos;
+
+        private Pending(final @NotNull Publish publish, final boolean nodeBirth, final long submitNanos) {
+            this.publish = publish;
+            this.nodeBirth = nodeBirth;
+            this.submitNanos = submitNanos;
+        }
+    }
+}
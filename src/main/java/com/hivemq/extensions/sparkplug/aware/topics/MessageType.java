@@ -82,6 +82,8 @@ public enum MessageType {
      */
     UNKNOWN;
 
+    private static final @NotNull MessageType @NotNull [] VALUES = values();
+
     /**
      * Converts a string representation to a {@link MessageType} enum constant.
      * <p>
@@ -92,10 +94,32 @@ public enum MessageType {
      * @return   the corresponding {@link MessageType}, or {@link #UNKNOWN} if no match is found
      */
     public static @NotNull MessageType fromString(final @NotNull String s) {
-        try {
-            return valueOf(s);
-        } catch (final IllegalArgumentException | NullPointerException e) {
+        //noinspection ConstantValue
+        if (s == null) {
             return UNKNOWN;
         }
+        return fromTopicLevel(s, 0, s.length());
+    }
+
+    /**
+     * Resolves the {@link MessageType} from a region of a topic string without creating a substring.
+     * <p>
+     * This method performs a case-sensitive match of the region {@code [start, end)} against the enum constant names.
+     * If no match is found, {@link #UNKNOWN} is returned.
+     *
+     * @param  topic the topic containing the message type level
+     * @param  start the index of the first character of the level (inclusive)
+     * @param  end   the index after the last character of the level (exclusive)
+     * @return       the corresponding {@link MessageType}, or {@link #UNKNOWN} if no match is found
+     */
+    public static @NotNull MessageType fromTopicLevel(final @NotNull String topic, final int start, final int end) {
+        final var length = end - start;
+        for (final var messageType : VALUES) {
+            final var name = messageType.name();
+            if (name.length() == length && topic.regionMatches(start, name, 0, length)) {
+                return messageType;
+            }
+        }
+        return UNKNOWN;
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.topics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Prefix trie that maps Sparkplug namespaces (e.g. {@code spAv1.0}, {@code spBv1.0}) to a value, typically the
+ * handling policy of the namespace.
+ * <p>
+ * A topic is classified with a single pass over its first topic level: every character descends one node, and the
+ * first level separator ends the lookup. This way the cost of a lookup only depends on the length of the namespace and
+ * not on the number of configured namespaces. Namespaces are compared literally and must be a single non-empty topic
+ * level.
+ * <p>
+ * The trie is populated once at startup and must not be modified after it has been published to other threads.
+ *
+ * @param <T> the type of the value mapped to a namespace
+ */
+public class NamespaceTrie<T> {
+
+    private final @NotNull Node<T> root = new Node<>();
+    private int size;
+
+    /**
+     * Adds a namespace to the trie.
+     *
+     * @param  namespace                the namespace, a single non-empty topic level
+     * @param  value                    the value for the namespace
+     * @throws IllegalArgumentException if the namespace is invalid or was already added
+     */
+    public void put(final @NotNull String namespace, final @NotNull T value) {
+        if (namespace.isEmpty() || namespace.indexOf('/') >= 0) {
+            throw new IllegalArgumentException("Sparkplug namespace must be a single non-empty topic level, but was '" +
+                    namespace +
+                    "'");
+        }
+        var node = root;
+        for (var i = 0; i < namespace.length(); i++) {
+            node = node.getOrAddChild(namespace.charAt(i));
+        }
+        if (node.value != null) {
+            throw new IllegalArgumentException("Sparkplug namespace '" + namespace + "' is configured twice");
+        }
+        node.value = value;
+        size++;
+    }
+
+    /**
+     * Returns the value of the namespace that is the first level of the given topic.
+     *
+     * @param  topic the MQTT topic
+     * @return       the value of the matching namespace, or {@code null} if the first topic level is no configured
+     *               namespace or the topic has only a single level
+     */
+    public @Nullable T match(final @NotNull String topic) {
+        var node = root;
+        for (var i = 0; i < topic.length(); i++) {
+            final var c = topic.charAt(i);
+            if (c == '/') {
+                return node.value;
+            }
+            node = node.getChild(c);
+            if (node == null) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Node<T> {
+
+        private char @NotNull [] keys = new char[0];
+        @SuppressWarnings("unchecked")
+        private @NotNull Node<T> @NotNull [] children = new Node[0];
+        private @Nullable T value;
+
+        private @Nullable Node<T> getChild(final char c) {
+            final var keys = this.keys;
+            for (var i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private @NotNull Node<T> getOrAddChild(final char c) {
+            final var child = getChild(c);
+            if (child != null) {
+                return child;
+            }
+            final var newChild = new Node<T>();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            keys[keys.length - 1] = c;
+            children = Arrays.copyOf(children, children.length + 1);
+            children[children.length - 1] = newChild;
+            return newChild;
+        }
+    }
+}
@@ -49,7 +49,8 @@ import org.jetbrains.annotations.Nullable;
  */
 public class TopicStructure {
 
-    private final int topicLevels;
+    private static final char SEPARATOR = '/';
+
     private final @NotNull String namespace;
     private final @NotNull String groupId;
     private final @NotNull MessageType messageType;
@@ -57,22 +58,38 @@ public class TopicStructure {
     private final @Nullable String eonId;
     private final @Nullable String deviceId;
 
+    /**
+     * Parses the given topic by scanning for level separators instead of splitting the topic.
+     * <p>
+     * Trailing empty levels are ignored, which matches the semantics of {@link String#split(String)}. Only the levels
+     * that are relevant for Sparkplug are materialized, the message type is resolved without creating a substring.
+     *
+     * @param topic the MQTT topic to parse
+     */
     public TopicStructure(final @NotNull String topic) {
-        final var arr = topic.split("/");
-        topicLevels = arr.length;
-        if (topicLevels >= 4) {
-            namespace = arr[0];
-            groupId = arr[1];
-            messageType = MessageType.fromString(arr[2]);
+        var end = topic.length();
+        while (end > 0 && topic.charAt(end - 1) == SEPARATOR) {
+            end--;
+        }
+        final var first = indexOfSeparator(topic, 0, end);
+        final var second = first < 0 ? -1 : indexOfSeparator(topic, first + 1, end);
+        final var third = second < 0 ? -1 : indexOfSeparator(topic, second + 1, end);
+        if (third >= 0) {
+            final var fourth = indexOfSeparator(topic, third + 1, end);
+            namespace = topic.substring(0, first);
+            groupId = topic.substring(first + 1, second);
+            messageType = MessageType.fromTopicLevel(topic, second + 1, third);
+            final var id = topic.substring(third + 1, fourth < 0 ? end : fourth);
             if (MessageType.STATE == messageType) {
-                scadaId = arr[3];
+                scadaId = id;
                 eonId = null;
             } else {
                 scadaId = null;
-                eonId = arr[3];
+                eonId = id;
             }
-            if (topicLevels > 4) {
-                deviceId = arr[4];
+            if (fourth >= 0) {
+                final var fifth = indexOfSeparator(topic, fourth + 1, end);
+                deviceId = topic.substring(fourth + 1, fifth < 0 ? end : fifth);
             } else {
                 deviceId = null;
             }
@@ -90,6 +107,10 @@ public class TopicStructure {
         return namespace;
     }
 
+    public @NotNull String getGroupId() {
+        return groupId;
+    }
+
     public @NotNull MessageType getMessageType() {
         return messageType;
     }
@@ -114,15 +135,19 @@ public class TopicStructure {
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean isValid(final @NotNull String sparkplugVersion) {
-        return topicLevels > 3 && isValidNamespace(sparkplugVersion) && isValidMessageType() &&
-                (scadaId != null || eonId != null);
+        return isValidNamespace(sparkplugVersion) && isValidMessageType() && (scadaId != null || eonId != null);
     }
 
     private boolean isValidNamespace(final @NotNull String sparkplugVersion) {
-        return sparkplugVersion.matches(namespace);
+        return sparkplugVersion.equals(namespace);
     }
 
     private boolean isValidMessageType() {
         return (messageType != MessageType.UNKNOWN);
     }
+
+    private static int indexOfSeparator(final @NotNull String topic, final int fromIndex, final int end) {
+        final var index = topic.indexOf(SEPARATOR, fromIndex);
+        return index < end ? index : -1;
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.sparkplug.aware.topics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache from MQTT topic strings to their immutable parsed {@link TopicStructure}.
+ * <p>
+ * Sparkplug topics repeat constantly, so the interceptors look up the parsed structure instead of parsing every topic
+ * again. Lookups are lock-free. When the configured maximum size is exceeded, the oldest entries are evicted in
+ * insertion order. A maximum size of {@code 0} disables caching, every lookup parses the topic.
+ * <p>
+ * Hit and miss counters are exposed for monitoring purposes.
+ */
+public class TopicStructureCache {
+
+    private final @NotNull ConcurrentHashMap<String, TopicStructure> cache = new ConcurrentHashMap<>();
+    private final @NotNull ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final @NotNull AtomicInteger size = new AtomicInteger();
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+    private final int maxSize;
+
+    public TopicStructureCache(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximum size of the topic cache must not be negative");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the parsed {@link TopicStructure} for the given topic, parsing and caching it on a miss.
+     *
+     * @param  topic the MQTT topic
+     * @return       the immutable parsed topic structure
+     */
+    public @NotNull TopicStructure get(final @NotNull String topic) {
+        final var cached = cache.get(topic);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        final var topicStructure = new TopicStructure(topic);
+        if (maxSize > 0 && cache.putIfAbsent(topic, topicStructure) == null) {
+            insertionOrder.offer(topic);
+            if (size.incrementAndGet() > maxSize) {
+                evict();
+            }
+        }
+        return topicStructure;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void evict() {
+        while (size.get() > maxSize) {
+            final var eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            if (cache.remove(eldest) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_LENGTH_DELIMITED;
+
+/**
+ * Computes a 64-bit fingerprint of an encoded Sparkplug B birth payload that ignores the fields that change with every
+ * birth.
+ * <p>
+ * The payload timestamp (field {@code 1}), the sequence number (field {@code 3}) and the timestamps of the metrics
+ * (field {@code 3} of a metric) are excluded, all other bytes are hashed as they are, including the metric values and
+ * the {@code bdSeq} metric. Two births with the same fingerprint therefore only differ in their timestamps and sequence
+ * number. The fields are scanned on the protobuf wire level without decoding the payload. If the payload is not valid
+ * protobuf, e.g. because it is compressed, all bytes are hashed.
+ * <p>
+ * The hash is a fast non-cryptographic hash in the style of MurmurHash3, it is not suitable for security purposes.
+ * <p>
+ * This is a utility class with package-private constructor to prevent instantiation.
+ */
+public final class BirthFingerprint {
+
+    private static final int PAYLOAD_TIMESTAMP_FIELD = 1;
+    private static final int PAYLOAD_METRICS_FIELD = 2;
+    private static final int PAYLOAD_SEQ_FIELD = 3;
+    private static final int METRIC_TIMESTAMP_FIELD = 3;
+
+    private static final long C1 = 0x87C3_7B91_1142_53D5L;
+    private static final long C2 = 0x4CF5_AD43_2745_937FL;
+
+    BirthFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of the given encoded Sparkplug B payload. The position of the buffer is not modified.
+     *
+     * @param  payload the encoded Sparkplug B payload
+     * @return         the fingerprint
+     */
+    public static long of(final @NotNull ByteBuffer payload) {
+        try {
+            final var hash = new Hash();
+            final var reader = new WireReader(payload);
+            while (reader.hasRemaining()) {
+                final var fieldStart = reader.position();
+                final var tag = reader.readTag();
+                final var field = tag >>> 3;
+                if (field == PAYLOAD_METRICS_FIELD && (tag & 7) == WIRETYPE_LENGTH_DELIMITED) {
+                    // the length prefix is not hashed, it changes with the size of the metric timestamp
+                    hash.update(payload, fieldStart, reader.position());
+                    final var length = reader.readLength();
+                    final var metricStart = reader.position();
+                    reader.skipBytes(length);
+                    hashMetric(hash, payload, metricStart, reader.position());
+                } else {
+                    reader.skipField(tag & 7);
+                    if (field != PAYLOAD_TIMESTAMP_FIELD && field != PAYLOAD_SEQ_FIELD) {
+                        hash.update(payload, fieldStart, reader.position());
+                    }
+                }
+            }
+            return hash.finish();
+        } catch (final IllegalArgumentException e) {
+            final var hash = new Hash();
+            hash.update(payload, payload.position(), payload.limit());
+            return hash.finish();
+        }
+    }
+
+    private static void hashMetric(
+            final @NotNull Hash hash,
+            final @NotNull ByteBuffer payload,
+            final int start,
+            final int end) {
+        final var reader = new WireReader(payload, start, end);
+        var copyFrom = start;
+        while (reader.hasRemaining()) {
+            final var fieldStart = reader.position();
+            final var tag = reader.readTag();
+            reader.skipField(tag & 7);
+            if (tag >>> 3 == METRIC_TIMESTAMP_FIELD) {
+                hash.update(payload, copyFrom, fieldStart);
+                copyFrom = reader.position();
+            }
+        }
+        hash.update(payload, copyFrom, end);
+    }
+
+    /**
+     * Streaming hash over byte ranges. The bytes of each range are consumed in blocks of 8 bytes, the remaining bytes
+     * and the length of the range are mixed in at the end of the range.
+     */
+    private static final class Hash {
+
+        private long hash = 0x9E37_79B9_7F4A_7C15L;
+        private long length;
+
+        void update(final @NotNull ByteBuffer buffer, final int start, final int end) {
+            var index = start;
+            for (; index + 8 <= end; index += 8) {
+                hash ^= mix(buffer.getLong(index));
+                hash = Long.rotateLeft(hash, 27) * 5 + 0x52DC_E729;
+            }
+            var tail = 0L;
+            for (var shift = 0; index < end; index++, shift += 8) {
+                tail |= (buffer.get(index) & 0xFFL) << shift;
+            }
+            hash ^= mix(tail ^ ((long) (end - start) << 56));
+            hash = Long.rotateLeft(hash, 31) * 5 + 0x3849_5AB5;
+            length += end - start;
+        }
+
+        long finish() {
+            var h = hash ^ length;
+            h ^= h >>> 33;
+            h *= 0xFF51_AFD7_ED55_8CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CE_B9FE_1A85_EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        private static long mix(long k) {
+            k *= C1;
+            k = Long.rotateLeft(k, 31);
+            k *= C2;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Output format of the JSON payload log.
+ */
+public enum JsonLogFormat {
+
+    /**
+     * Human-readable, indented JSON of the payload with the client ID and topic in the log message.
+     */
+    PRETTY,
+
+    /**
+     * One compact JSON object per line that contains the client ID, topic and payload.
+     */
+    NDJSON;
+
+    /**
+     * Returns the format with the given name.
+     *
+     * @param  name the name of the format, case-insensitive
+     * @return      the format or {@code null} if there is no format with the given name
+     */
+    public static @Nullable JsonLogFormat fromString(final @NotNull String name) {
+        for (final var format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressionCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived cache of NDEATH payloads with a rewritten timestamp.
+ * <p>
+ * The outbound interceptor runs once per subscriber, so the same NDEATH is rewritten once for every host application
+ * that receives it. This cache shares one rewritten payload between all subscribers that are served within the same
+ * time bucket. The cache key is the content of the original payload and the compression codec.
+ * <p>
+ * A Sparkplug Aware MQTT Server MUST set the NDEATH timestamp to the time at which it attempts to deliver the message.
+ * With this cache the delivered timestamp is at most one bucket size earlier than the actual delivery attempt. All
+ * entries are dropped as soon as the next bucket starts. A bucket size of {@code 0} disables the cache.
+ */
+public class NdeathPayloadCache {
+
+    private final long bucketMillis;
+    private final @NotNull LongSupplier clock;
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+    private volatile @NotNull Bucket bucket = new Bucket(Long.MIN_VALUE);
+
+    public NdeathPayloadCache(final long bucketMillis) {
+        this(bucketMillis, System::currentTimeMillis);
+    }
+
+    NdeathPayloadCache(final long bucketMillis, final @NotNull LongSupplier clock) {
+        if (bucketMillis < 0) {
+            throw new IllegalArgumentException("NDEATH timestamp bucket must not be negative");
+        }
+        this.bucketMillis = bucketMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the given NDEATH payload with the timestamp set to the current time, reusing the payload that was
+     * rewritten for another subscriber within the current time bucket.
+     * <p>
+     * The position of the given buffer is not modified.
+     *
+     * @param  compression              the codec to compress an uncompressed payload with, or {@code null} to keep the
+     *                                  original encoding
+     * @param  payload                  the original Sparkplug B payload
+     * @return                          a read-only buffer containing the payload with updated timestamp
+     * @throws IllegalArgumentException if the payload is not a valid Sparkplug B payload
+     * @see                             PayloadUtil#modifySparkplugTimestamp(CompressionCodec, ByteBuffer)
+     */
+    public @NotNull ByteBuffer modifySparkplugTimestamp(
+            final @Nullable CompressionCodec compression,
+            final @NotNull ByteBuffer payload) {
+        if (bucketMillis == 0) {
+            misses.increment();
+            return PayloadUtil.modifySparkplugTimestamp(compression, payload.duplicate());
+        }
+        final var bucketId = clock.getAsLong() / bucketMillis;
+        var current = bucket;
+        if (current.id != bucketId) {
+            current = new Bucket(bucketId);
+            bucket = current;
+        }
+        final var key = new Key(payload.asReadOnlyBuffer(), compression);
+        final var cached = current.payloads.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.duplicate();
+        }
+        misses.increment();
+        final var rewritten = PayloadUtil.modifySparkplugTimestamp(compression, payload.duplicate())
+                .asReadOnlyBuffer();
+        final var previous = current.payloads.putIfAbsent(key, rewritten);
+        return previous != null ? previous.duplicate() : rewritten.duplicate();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static final class Bucket {
+
+        private final long id;
+        private final @NotNull ConcurrentHashMap<Key, ByteBuffer> payloads = new ConcurrentHashMap<>();
+
+        private Bucket(final long id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Key {
+
+        private final @NotNull ByteBuffer payload;
+        private final @Nullable CompressionCodec compression;
+        private final int hashCode;
+
+        private Key(final @NotNull ByteBuffer payload, final @Nullable CompressionCodec compression) {
+            this.payload = payload;
+            this.compression = compression;
+            this.hashCode = 31 * payload.hashCode() + Objects.hashCode(compression);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final var key = (Key) o;
+            return compression == key.compression && hashCode == key.hashCode && payload.equals(key.payload);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pre-encoded NDEATH payload with a known position of the timestamp.
+ * <p>
+ * The template is created when an edge node connects with an NDEATH Last Will and Testament. The will payload is
+ * validated and its timestamp is moved to the first field, so the timestamp varint starts at a fixed offset. When the
+ * NDEATH is delivered, the template is copied and only the bytes of the timestamp varint are overwritten. Only if the
+ * new timestamp needs a different number of varint bytes, the template is rewritten by the {@link TimestampRewriter}.
+ */
+public final class NdeathTemplate {
+
+    private static final int TIMESTAMP_OFFSET = 1;
+
+    private final @NotNull ByteBuffer will;
+    private final byte @NotNull [] template;
+    private final int timestampLength;
+
+    private NdeathTemplate(final @NotNull ByteBuffer will, final byte @NotNull [] template, final int timestampLength) {
+        this.will = will;
+        this.template = template;
+        this.timestampLength = timestampLength;
+    }
+
+    /**
+     * Creates a template from the payload of an NDEATH will.
+     * <p>
+     * The position of the given buffer is not modified.
+     *
+     * @param  will                     the encoded Sparkplug B payload of the will
+     * @return                          the template
+     * @throws IllegalArgumentException if the top-level fields of the payload are not valid protobuf
+     */
+    public static @NotNull NdeathTemplate of(final @NotNull ByteBuffer will) {
+        final var timestamp = System.currentTimeMillis();
+        final var rewritten = TimestampRewriter.rewriteTimestamp(will, timestamp);
+        final var template = new byte[rewritten.remaining()];
+        rewritten.get(template);
+        return new NdeathTemplate(will.asReadOnlyBuffer(), template, WireReader.varintSize(timestamp));
+    }
+
+    /**
+     * Checks whether the given payload is the will payload this template was created from.
+     *
+     * @param  payload the payload to compare
+     * @return         {@code true} if the remaining bytes of the payload are equal to the will payload
+     */
+    public boolean matches(final @NotNull ByteBuffer payload) {
+        return will.equals(payload);
+    }
+
+    /**
+     * Creates the NDEATH payload with the given timestamp.
+     *
+     * @param  timestamp the timestamp in milliseconds since epoch
+     * @return           a new heap byte buffer containing the NDEATH payload
+     */
+    public @NotNull ByteBuffer withTimestamp(final long timestamp) {
+        if (WireReader.varintSize(timestamp) != timestampLength) {
+            return TimestampRewriter.rewriteTimestamp(ByteBuffer.wrap(template), timestamp);
+        }
+        final var payload = ByteBuffer.wrap(template.clone());
+        WireReader.writeVarint(payload.position(TIMESTAMP_OFFSET), timestamp);
+        return payload.rewind();
+    }
+}
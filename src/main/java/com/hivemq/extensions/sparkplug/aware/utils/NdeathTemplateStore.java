@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stores the {@link NdeathTemplate} of every edge node by its NDEATH topic.
+ * <p>
+ * Templates are added when an edge node connects with an NDEATH will and replaced on every reconnect. The template
+ * stays after its NDEATH was delivered, because the Last Will is delivered to every subscriber separately.
+ * <p>
+ * The number of templates is bounded, when the bound is exceeded the template of the NDEATH topic that was connected
+ * or delivered least recently is removed, its NDEATH is then rewritten without template. Templates are only used
+ * on connect and on NDEATH delivery, so they are kept in an access-ordered map under a lock.
+ */
+public class NdeathTemplateStore {
+
+    private final @NotNull LinkedHashMap<String, NdeathTemplate> templates;
+    private final @NotNull LongAdder hits = new LongAdder();
+    private final @NotNull LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of stored templates
+     */
+    public NdeathTemplateStore(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum number of NDEATH templates must be positive");
+        }
+        this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final @NotNull Map.Entry<String, NdeathTemplate> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public void put(final @NotNull String topic, final @NotNull NdeathTemplate template) {
+        synchronized (templates) {
+            templates.put(topic, template);
+        }
+    }
+
+    public void remove(final @NotNull String topic) {
+        synchronized (templates) {
+            templates.remove(topic);
+        }
+    }
+
+    /**
+     * Creates the NDEATH payload with the current time from the template of the given topic.
+     *
+     * @param  topic   the NDEATH topic
+     * @param  payload the payload of the NDEATH that is delivered
+     * @return         the payload with the current timestamp, or {@code null} if there is no template for the topic or
+     *                 the payload differs from the will payload of the template
+     */
+    public @Nullable ByteBuffer modifySparkplugTimestamp(
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        final NdeathTemplate template;
+        synchronized (templates) {
+            template = templates.get(topic);
+        }
+        if (template == null || !template.matches(payload)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return template.withTimestamp(System.currentTimeMillis());
+    }
+
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+/**
+ * Writes decoded Sparkplug B payloads as JSON in a single pass.
+ * <p>
+ * The payload is streamed field by field into a {@link JsonGenerator}, so it is neither serialized to an intermediate
+ * JSON string nor parsed again for formatting. The {@link JsonFactory} is shared and thread-safe, the generator and its
+ * output buffer are per call and per thread, so a writer can be used by all interceptor threads at once.
+ * <p>
+ * The JSON contains the {@code timestamp}, {@code metrics}, {@code seq}, {@code uuid} and {@code body} of the
+ * payload. Each metric is written with its {@code name}, {@code alias}, {@code timestamp}, {@code dataType} and
+ * {@code value}. Absent fields are omitted. Metrics of data messages that only carry an alias are written with the
+ * name and datatype of the alias in the {@link AliasTable} of the last birth, if one is given.
+ */
+public class PayloadJsonWriter {
+
+    private static final @NotNull JsonFactory JSON_FACTORY = new JsonFactory();
+    // output buffers that grew larger are not kept for the next payload
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final @NotNull ThreadLocal<StringBuilderWriter> WRITERS =
+            ThreadLocal.withInitial(StringBuilderWriter::new);
+
+    private final @NotNull JsonLogFormat format;
+
+    public PayloadJsonWriter(final @NotNull JsonLogFormat format) {
+        this.format = format;
+    }
+
+    public @NotNull JsonLogFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes the payload as JSON object, indented if the format is {@link JsonLogFormat#PRETTY}.
+     *
+     * @param  payload     the decoded Sparkplug B payload
+     * @return             the JSON string
+     * @throws IOException if the JSON can't be generated
+     */
+    public @NotNull String toJson(final @NotNull SparkplugBPayload payload) throws IOException {
+        return toJson(payload, null);
+    }
+
+    /**
+     * Writes the payload as JSON object, indented if the format is {@link JsonLogFormat#PRETTY}.
+     *
+     * @param  payload     the decoded Sparkplug B payload
+     * @param  aliases     the alias table of the last birth to resolve the metric names or {@code null}
+     * @return             the JSON string
+     * @throws IOException if the JSON can't be generated
+     */
+    public @NotNull String toJson(final @NotNull SparkplugBPayload payload, final @Nullable AliasTable aliases)
+            throws IOException {
+        final var writer = WRITERS.get().reset();
+        try (final var generator = createGenerator(writer)) {
+            writePayload(generator, payload, aliases);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes a single line JSON object with the client ID, the topic and the payload, e.g. for NDJSON output.
+     *
+     * @param  clientId    the MQTT client ID that published the payload
+     * @param  topic       the topic the payload was published to
+     * @param  payload     the decoded Sparkplug B payload
+     * @return             the JSON string without line breaks
+     * @throws IOException if the JSON can't be generated
+     */
+    public @NotNull String toJsonLine(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull SparkplugBPayload payload) throws IOException {
+        return toJsonLine(clientId, topic, payload, null);
+    }
+
+    /**
+     * Writes a single line JSON object with the client ID, the topic and the payload, e.g. for NDJSON output.
+     *
+     * @param  clientId    the MQTT client ID that published the payload
+     * @param  topic       the topic the payload was published to
+     * @param  payload     the decoded Sparkplug B payload
+     * @param  aliases     the alias table of the last birth to resolve the metric names or {@code null}
+     * @return             the JSON string without line breaks
+     * @throws IOException if the JSON can't be generated
+     */
+    public @NotNull String toJsonLine(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull SparkplugBPayload payload,
+            final @Nullable AliasTable aliases) throws IOException {
+        final var writer = WRITERS.get().reset();
+        try (final var generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("clientId", clientId);
+            generator.writeStringField("topic", topic);
+            generator.writeFieldName("payload");
+            writePayload(generator, payload, aliases);
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    private @NotNull JsonGenerator createGenerator(final @NotNull Writer writer) throws IOException {
+        final var generator = JSON_FACTORY.createGenerator(writer);
+        if (format == JsonLogFormat.PRETTY) {
+            generator.useDefaultPrettyPrinter();
+        }
+        return generator;
+    }
+
+    private static void writePayload(
+            final @NotNull JsonGenerator generator,
+            final @NotNull SparkplugBPayload payload,
+            final @Nullable AliasTable aliases) throws IOException {
+        generator.writeStartObject();
+        writeDate(generator, "timestamp", payload.getTimestamp());
+        final var metrics = payload.getMetrics();
+        if (metrics != null) {
+            generator.writeArrayFieldStart("metrics");
+            for (final var metric : metrics) {
+                writeMetric(generator, metric, aliases);
+            }
+            generator.writeEndArray();
+        }
+        if (payload.getSeq() != null) {
+            generator.writeNumberField("seq", payload.getSeq());
+        }
+        if (payload.getUuid() != null) {
+            generator.writeStringField("uuid", payload.getUuid());
+        }
+        if (payload.getBody() != null) {
+            generator.writeBinaryField("body", payload.getBody());
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeMetric(
+            final @NotNull JsonGenerator generator,
+            final @NotNull Metric metric,
+            final @Nullable AliasTable aliases) throws IOException {
+        generator.writeStartObject();
+        final var alias = metric.getAlias();
+        final var index = aliases != null && alias != null && metric.getName() == null ? aliases.indexOf(alias) : -1;
+        if (metric.getName() != null) {
+            generator.writeStringField("name", metric.getName());
+        } else if (index >= 0) {
+            generator.writeStringField("name", aliases.getName(index));
+        }
+        if (alias != null) {
+            generator.writeNumberField("alias", alias);
+        }
+        writeDate(generator, "timestamp", metric.getTimestamp());
+        var dataType = metric.getDataType();
+        if ((dataType == null || dataType == MetricDataType.Unknown) &&
+                index >= 0 &&
+                aliases.getDataType(index) != AliasTable.UNKNOWN_DATATYPE) {
+            // data messages may omit the datatype that was declared in the birth
+            dataType = MetricDataType.fromInteger(aliases.getDataType(index));
+        }
+        if (dataType != null) {
+            generator.writeStringField("dataType", dataType.toString());
+        }
+        generator.writeFieldName("value");
+        writeValue(generator, metric.getValue());
+        generator.writeEndObject();
+    }
+
+    private static void writeDate(
+            final @NotNull JsonGenerator generator,
+            final @NotNull String fieldName,
+            final @Nullable Date date) throws IOException {
+        if (date != null) {
+            generator.writeNumberField(fieldName, date.getTime());
+        }
+    }
+
+    private static void writeValue(final @NotNull JsonGenerator generator, final @Nullable Object value)
+            throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short ||
+                value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Date) {
+            generator.writeNumber(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            generator.writeBinary((byte[]) value);
+        } else if (value instanceof Object[]) {
+            generator.writeStartArray();
+            for (final var element : (Object[]) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            // data sets, templates and files are written with their string representation
+            generator.writeString(value.toString());
+        }
+    }
+
+    /**
+     * Unsynchronized {@link Writer} into a reusable {@link StringBuilder}.
+     */
+    private static final class StringBuilderWriter extends Writer {
+
+        private @NotNull StringBuilder builder = new StringBuilder(1024);
+
+        @NotNull StringBuilderWriter reset() {
+            if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+                builder = new StringBuilder(1024);
+            } else {
+                builder.setLength(0);
+            }
+            return this;
+        }
+
+        @Override
+        public void write(final char @NotNull [] chars, final int offset, final int length) {
+            builder.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(final @NotNull String string, final int offset, final int length) {
+            builder.append(string, offset, offset + length);
+        }
+
+        @Override
+        public void write(final int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return builder.toString();
+        }
+    }
+}
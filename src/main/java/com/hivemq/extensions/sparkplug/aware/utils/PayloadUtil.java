@@ -17,21 +17,19 @@
 package com.hivemq.extensions.sparkplug.aware.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
-import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
-import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressionCodec;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
 import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
-import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
 import org.eclipse.tahu.message.model.SparkplugBPayload;
-import org.eclipse.tahu.util.CompressionAlgorithm;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Date;
 
 /**
  * Utility class for handling Sparkplug B payload operations.
@@ -39,10 +37,10 @@ import java.util.Date;
  * This class provides functionality for:
  * <ul>
  * <li>Parsing and decoding Sparkplug B payloads from byte buffers</li>
- * <li>Modifying timestamps in Sparkplug messages (e.g., for NDEATH messages)</li>
+ * <li>Modifying timestamps in Sparkplug messages (e.g., for NDEATH messages) on the protobuf wire level</li>
  * <li>Converting Sparkplug payloads to JSON format for logging and debugging</li>
  * <li>Extracting individual metrics from Sparkplug payloads</li>
- * <li>Supporting optional GZIP compression for payload encoding</li>
+ * <li>Keeping or applying the GZIP or DEFLATE compression of payloads</li>
  * </ul>
  * <p>
  * This is a utility class with private constructor to prevent instantiation.
@@ -51,9 +49,8 @@ import java.util.Date;
  */
 public final class PayloadUtil {
 
-    private static final @NotNull CompressionAlgorithm COMPRESSION_ALGORITHM = CompressionAlgorithm.GZIP;
+    private static final @NotNull ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
-    private static final @NotNull Logger LOG = LoggerFactory.getLogger(PayloadUtil.class);
     private static final @NotNull Logger JSON_LOG = LoggerFactory.getLogger("com.hivemq.extensions.sparkplug.jsonLog");
 
     PayloadUtil() {
@@ -62,65 +59,78 @@ public final class PayloadUtil {
     /**
      * Modifies the timestamp of a Sparkplug B payload to the current time.
      * <p>
-     * This method decodes a Sparkplug B payload from the provided byte buffer, creates a new payload with an updated
-     * timestamp (current time), and re-encodes it. The method is typically used to update NDEATH message timestamps
-     * from their original Last Will and Testament (LWT) creation time to the actual disconnection time.
+     * The timestamp is replaced on the protobuf wire level by the {@link TimestampRewriter}, so the metrics are copied
+     * unchanged instead of being decoded and re-encoded. A compressed payload (see {@link CompressedEnvelope}) is
+     * decompressed, rewritten and compressed again with its original algorithm. An uncompressed payload is only
+     * compressed if a codec is given. The method is typically used to update NDEATH message timestamps from their
+     * original Last Will and Testament (LWT) creation time to the actual disconnection time.
      * <p>
      * All other payload properties (metrics, sequence number, UUID, body) are preserved unchanged.
      *
-     * @param  useCompression           whether to apply GZIP compression to the re-encoded payload
+     * @param  compression              the codec to compress an uncompressed payload with, or {@code null} to keep the
+     *                                  original encoding
      * @param  byteBuffer               the byte buffer containing the original Sparkplug B payload
      * @return                          a new byte buffer containing the payload with updated timestamp
-     * @throws Exception                if the payload cannot be decoded or encoded
      * @throws IllegalArgumentException if the byte buffer does not contain a valid Sparkplug B payload
      */
-    public static ByteBuffer modifySparkplugTimestamp(boolean useCompression, ByteBuffer byteBuffer) throws Exception {
-        final var inboundPayload = getSparkplugBPayload(byteBuffer);
-        if (inboundPayload == null) {
-            throw new IllegalArgumentException("Unable to get Sparkplug B Payload from byte buffer.");
+    public static @NotNull ByteBuffer modifySparkplugTimestamp(
+            final @Nullable CompressionCodec compression,
+            final @NotNull ByteBuffer byteBuffer) {
+        final var timestamp = System.currentTimeMillis();
+        final var envelope = CompressedEnvelope.parse(byteBuffer);
+        if (envelope != null) {
+            final var codec = envelope.getCodec();
+            final var payload = TimestampRewriter.rewriteTimestamp(codec.decompress(envelope.getBody()), timestamp);
+            return CompressedEnvelope.encode(codec, timestamp, codec.compress(payload));
         }
-        // create the same payload with a new timestamp.
-        final var payload = new SparkplugBPayload(new Date(),
-                inboundPayload.getMetrics(),
-                inboundPayload.getSeq(),
-                inboundPayload.getUuid(),
-                inboundPayload.getBody());
-
-        final var encoder = new SparkplugBPayloadEncoder();
-        byte[] bytes;
-        // compress payload (optional)
-        if (useCompression) {
-            bytes = encoder.getBytes(org.eclipse.tahu.util.PayloadUtil.compress(payload, COMPRESSION_ALGORITHM, false),
-                    false);
-        } else {
-            bytes = encoder.getBytes(payload, false);
+        final var payload = TimestampRewriter.rewriteTimestamp(byteBuffer, timestamp);
+        if (compression == null) {
+            return payload;
         }
-        return ByteBuffer.wrap(bytes);
+        return CompressedEnvelope.encode(compression, timestamp, compression.compress(payload));
+    }
+
+    /**
+     * @return {@code true} if the "com.hivemq.extensions.sparkplug.jsonLog" logger writes the JSON payload log
+     */
+    public static boolean isJsonLogEnabled() {
+        return JSON_LOG.isInfoEnabled();
     }
 
     /**
-     * Logs a Sparkplug payload in formatted JSON for debugging and monitoring purposes.
+     * Logs a Sparkplug payload as JSON for debugging and monitoring purposes.
      * <p>
-     * This method extracts the payload from a PUBLISH packet, converts it to JSON format, and logs it with client and
-     * topic information. STATE messages are excluded from logging as they do not contain Sparkplug B payloads.
+     * This method decodes the payload and writes it with client and topic information in the format of the given
+     * {@link PayloadJsonWriter}. Compressed payloads are decompressed before they are logged. The caller is responsible
+     * for excluding STATE messages, as they do not contain Sparkplug B payloads.
      * <p>
      * The log output is written to the "com.hivemq.extensions.sparkplug.jsonLog" logger.
      *
-     * @param clientId       the MQTT client ID that published the message
-     * @param origin         the original topic on which the message was published
-     * @param publishPacket  the PUBLISH packet containing the Sparkplug payload
-     * @param topicStructure the parsed Sparkplug topic structure
+     * @param jsonWriter the writer for the configured JSON log format
+     * @param clientId   the MQTT client ID that published the message
+     * @param origin     the original topic on which the message was published
+     * @param payload    the Sparkplug B payload, the position is not modified
+     * @param aliases    the alias table of the last birth to resolve the metric names of data messages or
+     *                   {@code null}
      */
     public static void logFormattedPayload(
+            final @NotNull PayloadJsonWriter jsonWriter,
             final @NotNull String clientId,
             final @NotNull String origin,
-            final @NotNull PublishPacket publishPacket,
-            final @NotNull TopicStructure topicStructure) {
-        if (publishPacket.getPayload().isPresent() && topicStructure.getMessageType() != MessageType.STATE) {
-            JSON_LOG.info("JSON Sparkplug MSG: clientId={}, topic={} payload={}",
-                    clientId,
-                    origin,
-                    asJSONFormatted(getPayloadAsJSON(publishPacket.getPayload().get())));
+            final @NotNull ByteBuffer payload,
+            final @Nullable AliasTable aliases) {
+        try {
+            final var sparkplugPayload = decodePayload(payload);
+            if (jsonWriter.getFormat() == JsonLogFormat.NDJSON) {
+                JSON_LOG.info("{}", jsonWriter.toJsonLine(clientId, origin, sparkplugPayload, aliases));
+            } else {
+                JSON_LOG.info("JSON Sparkplug MSG: clientId={}, topic={} payload={}",
+                        clientId,
+                        origin,
+                        jsonWriter.toJson(sparkplugPayload, aliases));
+            }
+        } catch (final Exception e) {
+            JSON_LOG.error("Failed to parse the Sparkplug payload", e);
         }
     }
 
@@ -135,10 +145,9 @@ public final class PayloadUtil {
      */
     @VisibleForTesting
     public static @NotNull String asJSONFormatted(String jsonObject) {
-        final var mapper = new ObjectMapper();
         try {
-            Object json = mapper.readValue(jsonObject, Object.class);
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(json);
+            Object json = OBJECT_MAPPER.readValue(jsonObject, Object.class);
+            return OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(json);
         } catch (final IOException e) {
             return "*** PAYLOAD IS NOT VALID JSON DATA *** \n\n" + e.getMessage();
         }
@@ -157,10 +166,7 @@ public final class PayloadUtil {
     @VisibleForTesting
     public static @NotNull String getPayloadAsJSON(@NotNull ByteBuffer payload) {
         try {
-            final var bytes = getBytesFromBuffer(payload);
-            final var decoder = new SparkplugBPayloadDecoder();
-            final var sparkplugPayload = decoder.buildFromByteArray(bytes, null);
-            return org.eclipse.tahu.util.PayloadUtil.toJsonString(sparkplugPayload);
+            return org.eclipse.tahu.util.PayloadUtil.toJsonString(decodePayload(payload));
         } catch (final Exception e) {
             JSON_LOG.error("Failed to parse the Sparkplug payload", e);
         }
@@ -168,38 +174,33 @@ public final class PayloadUtil {
     }
 
     /**
-     * Decodes a Sparkplug B payload from a byte buffer.
+     * Decodes a Sparkplug B payload from a byte buffer, a compressed payload is decompressed first.
      * <p>
-     * This is a helper method that extracts bytes from the buffer and uses the Tahu library's SparkplugBPayloadDecoder
-     * to parse them into a SparkplugBPayload object. If decoding fails, an error is logged and {@code null} is
-     * returned.
+     * The position of the buffer is not modified.
      *
-     * @param  payload the byte buffer containing the Sparkplug B payload
-     * @return         the decoded SparkplugBPayload, or {@code null} if parsing fails
+     * @param  payload   the byte buffer containing the Sparkplug B payload
+     * @return           the decoded payload
+     * @throws Exception if the payload can't be decompressed or decoded
      */
-    private static SparkplugBPayload getSparkplugBPayload(final @NotNull ByteBuffer payload) {
-        try {
-            final var bytes = getBytesFromBuffer(payload);
-            final var decoder = new SparkplugBPayloadDecoder();
-            return decoder.buildFromByteArray(bytes, null);
-        } catch (final Exception e) {
-            LOG.error("Failed to parse the Sparkplug payload", e);
-        }
-        return null;
+    private static @NotNull SparkplugBPayload decodePayload(final @NotNull ByteBuffer payload) throws Exception {
+        final var envelope = CompressedEnvelope.parse(payload);
+        final var bytes =
+                getBytesFromBuffer(envelope != null ? envelope.getCodec().decompress(envelope.getBody()) : payload);
+        return new SparkplugBPayloadDecoder().buildFromByteArray(bytes, null);
     }
 
     /**
      * Extracts the remaining bytes from a byte buffer into a byte array.
      * <p>
      * This is a helper method that reads all remaining bytes from the buffer's current position to its limit and
-     * returns them as a byte array.
+     * returns them as a byte array. The position of the buffer is not modified.
      *
      * @param  byteBuffer the byte buffer to extract bytes from
      * @return            a byte array containing the remaining bytes from the buffer
      */
     private static byte[] getBytesFromBuffer(final @NotNull ByteBuffer byteBuffer) {
         final var bytes = new byte[byteBuffer.remaining()];
-        byteBuffer.get(bytes);
+        byteBuffer.duplicate().get(bytes);
         return bytes;
     }
 }
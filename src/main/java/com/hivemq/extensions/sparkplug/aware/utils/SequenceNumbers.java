@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_LENGTH_DELIMITED;
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_VARINT;
+
+/**
+ * Reads the sequence number {@code seq} and the birth/death sequence number {@code bdSeq} of a decoded Sparkplug B
+ * payload on the protobuf wire level, a compressed payload is decompressed with {@link CompressedEnvelope#decode}
+ * first.
+ * <p>
+ * The {@code seq} is the top-level field {@code 3} of the payload, the {@code bdSeq} is the value of the metric with
+ * the name {@code bdSeq}. Missing values and malformed payloads result in {@link #UNKNOWN}, the position of the given
+ * buffer is never modified.
+ * <p>
+ * This is a utility class with package-private constructor to prevent instantiation.
+ */
+public final class SequenceNumbers {
+
+    public static final long UNKNOWN = -1;
+
+    private static final int PAYLOAD_METRICS_FIELD = 2;
+    private static final int PAYLOAD_SEQ_FIELD = 3;
+    private static final int METRIC_NAME_FIELD = 1;
+    private static final int METRIC_INT_VALUE_FIELD = 10;
+    private static final int METRIC_LONG_VALUE_FIELD = 11;
+    private static final byte @NotNull [] BD_SEQ_BYTES = "bdSeq".getBytes(StandardCharsets.UTF_8);
+
+    SequenceNumbers() {
+    }
+
+    /**
+     * @param  payload the decoded Sparkplug B payload
+     * @return         the sequence number or {@link #UNKNOWN}
+     */
+    public static long readSeq(final @NotNull ByteBuffer payload) {
+        try {
+            final var reader = new WireReader(payload);
+            var seq = UNKNOWN;
+            while (reader.hasRemaining()) {
+                final var tag = reader.readTag();
+                if (tag >>> 3 == PAYLOAD_SEQ_FIELD && (tag & 7) == WIRETYPE_VARINT) {
+                    seq = reader.readVarint();
+                } else {
+                    reader.skipField(tag & 7);
+                }
+            }
+            return seq;
+        } catch (final IllegalArgumentException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * @param  payload the decoded Sparkplug B payload
+     * @return         the birth/death sequence number or {@link #UNKNOWN}
+     */
+    public static long readBdSeq(final @NotNull ByteBuffer payload) {
+        try {
+            final var reader = new WireReader(payload);
+            while (reader.hasRemaining()) {
+                final var tag = reader.readTag();
+                if (tag >>> 3 == PAYLOAD_METRICS_FIELD && (tag & 7) == WIRETYPE_LENGTH_DELIMITED) {
+                    final var length = reader.readLength();
+                    final var metricStart = reader.position();
+                    reader.skipBytes(length);
+                    final var bdSeq = readBdSeqMetric(payload, metricStart, reader.position());
+                    if (bdSeq != UNKNOWN) {
+                        return bdSeq;
+                    }
+                } else {
+                    reader.skipField(tag & 7);
+                }
+            }
+            return UNKNOWN;
+        } catch (final IllegalArgumentException e) {
+            return UNKNOWN;
+        }
+    }
+
+    private static long readBdSeqMetric(final @NotNull ByteBuffer payload, final int start, final int end) {
+        final var reader = new WireReader(payload, start, end);
+        var bdSeqMetric = false;
+        var value = UNKNOWN;
+        while (reader.hasRemaining()) {
+            final var tag = reader.readTag();
+            final var field = tag >>> 3;
+            if (field == METRIC_NAME_FIELD && (tag & 7) == WIRETYPE_LENGTH_DELIMITED) {
+                final var length = reader.readLength();
+                bdSeqMetric = equalBytes(payload, reader.position(), length);
+                if (!bdSeqMetric) {
+                    return UNKNOWN;
+                }
+                reader.skipBytes(length);
+            } else if ((field == METRIC_INT_VALUE_FIELD || field == METRIC_LONG_VALUE_FIELD) &&
+                    (tag & 7) == WIRETYPE_VARINT) {
+                value = reader.readVarint();
+                if (field == METRIC_INT_VALUE_FIELD) {
+                    value &= 0xFFFF_FFFFL;
+                }
+            } else {
+                reader.skipField(tag & 7);
+            }
+        }
+        return bdSeqMetric ? value : UNKNOWN;
+    }
+
+    private static boolean equalBytes(final @NotNull ByteBuffer payload, final int start, final int length) {
+        if (length != BD_SEQ_BYTES.length) {
+            return false;
+        }
+        for (var i = 0; i < length; i++) {
+            if (payload.get(start + i) != BD_SEQ_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static com.hivemq.extensions.sparkplug.aware.utils.WireReader.WIRETYPE_VARINT;
+
+/**
+ * Rewrites the timestamp of an encoded Sparkplug B payload on the protobuf wire level.
+ * <p>
+ * The timestamp is the top-level field {@code 1} ({@code uint64}) of the Sparkplug B payload. Instead of decoding and
+ * re-encoding the complete payload, the top-level fields are scanned, the new timestamp is written as the first field
+ * and all other fields (metrics, sequence number, UUID, body and extensions) are copied byte by byte. Nested messages
+ * like metrics are skipped by their length prefix and never decoded.
+ * <p>
+ * This is a utility class with package-private constructor to prevent instantiation.
+ */
+public final class TimestampRewriter {
+
+    static final int TIMESTAMP_FIELD = 1;
+    private static final int TIMESTAMP_TAG = (TIMESTAMP_FIELD << 3) | WIRETYPE_VARINT;
+
+    TimestampRewriter() {
+    }
+
+    /**
+     * Replaces the timestamp of the given encoded Sparkplug B payload, or inserts it if the payload has none.
+     * <p>
+     * The position of the given buffer is not modified.
+     *
+     * @param  payload                  the encoded Sparkplug B payload
+     * @param  timestamp                the new timestamp in milliseconds since epoch
+     * @return                          a new heap byte buffer containing the payload with the new timestamp
+     * @throws IllegalArgumentException if the top-level fields of the payload are not valid protobuf
+     */
+    public static @NotNull ByteBuffer rewriteTimestamp(final @NotNull ByteBuffer payload, final long timestamp) {
+        // first pass: validate the top-level fields and sum up the size of existing timestamp fields
+        var removedBytes = 0;
+        var reader = new WireReader(payload);
+        while (reader.hasRemaining()) {
+            final var fieldStart = reader.position();
+            final var tag = reader.readTag();
+            reader.skipField(checkTimestampWireType(tag));
+            if (tag >>> 3 == TIMESTAMP_FIELD) {
+                removedBytes += reader.position() - fieldStart;
+            }
+        }
+        final var output = ByteBuffer.allocate(1 +
+                WireReader.varintSize(timestamp) +
+                payload.remaining() -
+                removedBytes);
+        output.put((byte) TIMESTAMP_TAG);
+        WireReader.writeVarint(output, timestamp);
+        if (removedBytes == 0) {
+            output.put(payload.duplicate());
+        } else {
+            // second pass: copy everything except the existing timestamp fields
+            final var source = payload.duplicate();
+            var copyFrom = payload.position();
+            reader = new WireReader(payload);
+            while (reader.hasRemaining()) {
+                final var fieldStart = reader.position();
+                final var tag = reader.readTag();
+                reader.skipField(tag & 7);
+                if (tag >>> 3 == TIMESTAMP_FIELD) {
+                    copyRange(source, copyFrom, fieldStart, output);
+                    copyFrom = reader.position();
+                }
+            }
+            copyRange(source, copyFrom, payload.limit(), output);
+        }
+        return output.flip();
+    }
+
+    private static int checkTimestampWireType(final int tag) {
+        final var wireType = tag & 7;
+        if (tag >>> 3 == TIMESTAMP_FIELD && wireType != WIRETYPE_VARINT) {
+            throw new IllegalArgumentException("Sparkplug B timestamp has unexpected wire type " + wireType);
+        }
+        return wireType;
+    }
+
+    private static void copyRange(
+            final @NotNull ByteBuffer source,
+            final int from,
+            final int to,
+            final @NotNull ByteBuffer target) {
+        if (from < to) {
+            source.limit(to).position(from);
+            target.put(source);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Minimal reader for the protobuf wire format that works directly on a {@link ByteBuffer}.
+ * <p>
+ * The reader is used to inspect or rewrite single fields of a Sparkplug B payload without decoding the complete
+ * payload. It uses absolute reads, so the position of the underlying buffer is never changed. Malformed input results
+ * in an {@link IllegalArgumentException}.
+ * <p>
+ * Instances are not thread-safe and are meant to be used for a single pass over a payload.
+ */
+public final class WireReader {
+
+    public static final int WIRETYPE_VARINT = 0;
+    public static final int WIRETYPE_FIXED64 = 1;
+    public static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    public static final int WIRETYPE_FIXED32 = 5;
+
+    private final @NotNull ByteBuffer buffer;
+    private final int limit;
+    private int position;
+
+    /**
+     * Creates a reader for the remaining bytes of the given buffer.
+     *
+     * @param buffer the buffer to read, its position and limit are not modified
+     */
+    public WireReader(final @NotNull ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * Creates a reader for the bytes between {@code position} (inclusive) and {@code limit} (exclusive).
+     *
+     * @param buffer   the buffer to read, its position and limit are not modified
+     * @param position the absolute index of the first byte to read
+     * @param limit    the absolute index after the last byte to read
+     */
+    public WireReader(final @NotNull ByteBuffer buffer, final int position, final int limit) {
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Reads a field tag.
+     *
+     * @return the tag, the field number is {@code tag >>> 3} and the wire type is {@code tag & 7}
+     */
+    public int readTag() {
+        final var tag = readVarint();
+        if (tag <= 0 || tag > 0xFFFF_FFFFL || (tag >>> 3) == 0) {
+            throw new IllegalArgumentException("Invalid protobuf field tag " + tag + " at index " + position);
+        }
+        return (int) tag;
+    }
+
+    public long readVarint() {
+        var result = 0L;
+        for (var shift = 0; shift < 64; shift += 7) {
+            final var b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed protobuf varint at index " + position);
+    }
+
+    public long readFixed64() {
+        final var value = Long.reverseBytes(buffer.getLong(checkRemaining(8)));
+        position += 8;
+        return value;
+    }
+
+    public int readFixed32() {
+        final var value = Integer.reverseBytes(buffer.getInt(checkRemaining(4)));
+        position += 4;
+        return value;
+    }
+
+    /**
+     * Reads the length prefix of a length-delimited field and checks that the announced bytes are available.
+     *
+     * @return the length of the field value in bytes
+     */
+    public int readLength() {
+        final var length = readVarint();
+        if (length < 0 || length > limit - position) {
+            throw new IllegalArgumentException("Invalid protobuf length " + length + " at index " + position);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Skips the value of a field with the given wire type.
+     *
+     * @param wireType the wire type of the field
+     */
+    public void skipField(final int wireType) {
+        switch (wireType) {
+            case WIRETYPE_VARINT:
+                readVarint();
+                break;
+            case WIRETYPE_FIXED64:
+                skipBytes(8);
+                break;
+            case WIRETYPE_LENGTH_DELIMITED:
+                skipBytes(readLength());
+                break;
+            case WIRETYPE_FIXED32:
+                skipBytes(4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported protobuf wire type " + wireType + " at index " +
+                        position);
+        }
+    }
+
+    public void skipBytes(final int length) {
+        position = checkRemaining(length) + length;
+    }
+
+    /**
+     * Computes the number of bytes of the varint encoding of the given value.
+     *
+     * @param  value the value
+     * @return       the encoded size in bytes, between 1 and 10
+     */
+    public static int varintSize(final long value) {
+        // one byte per started group of 7 significant bits
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    /**
+     * Writes the varint encoding of the given value at the current position of the buffer.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value
+     */
+    public static void writeVarint(final @NotNull ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private byte readByte() {
+        final var b = buffer.get(checkRemaining(1));
+        position++;
+        return b;
+    }
+
+    private int checkRemaining(final int length) {
+        if (length < 0 || length > limit - position) {
+            throw new IllegalArgumentException("Truncated protobuf message at index " + position);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.replay;
+
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5Client;
+import com.hivemq.extensions.sparkplug.aware.capture.CaptureJournalReader;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a capture journal that was written by the extension with {@code sparkplug.capture=true} against an MQTT
+ * broker.
+ * <p>
+ * The records are published in their original order with QoS 1 by a single client. With a speed of {@code 1} the
+ * original gaps between the records are kept, a speed of {@code n} replays the traffic n times faster and a speed of
+ * {@code 0} publishes as fast as the broker accepts the messages.
+ * <p>
+ * Usage: {@code ./gradlew replay --args="<journal directory> [host] [port] [speed]"}
+ */
+public final class CaptureReplay {
+
+    private static final int MAX_IN_FLIGHT = 1_000;
+
+    private CaptureReplay() {
+    }
+
+    public static void main(final @NotNull String @NotNull [] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: CaptureReplay <journal directory> [host] [port] [speed]");
+            System.exit(1);
+        }
+        final var directory = Path.of(args[0]);
+        final var host = args.length > 1 ? args[1] : "localhost";
+        final var port = args.length > 2 ? Integer.parseInt(args[2]) : 1883;
+        final var speed = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+        if (speed < 0) {
+            throw new IllegalArgumentException("Speed must not be negative");
+        }
+
+        final var client = Mqtt5Client.builder()
+                .identifier("sparkplug-capture-replay")
+                .serverHost(host)
+                .serverPort(port)
+                .buildAsync();
+        client.connect().get(10, TimeUnit.SECONDS);
+
+        final var inFlight = new Semaphore(MAX_IN_FLIGHT);
+        final var failed = new AtomicLong();
+        final var reader = new CaptureJournalReader(directory);
+        final var startNanos = System.nanoTime();
+        var published = 0L;
+        var firstTimestamp = -1L;
+        for (var captured = reader.next(); captured != null; captured = reader.next()) {
+            if (firstTimestamp < 0) {
+                firstTimestamp = captured.getTimestamp();
+            }
+            if (speed > 0) {
+                final var offsetNanos =
+                        (long) (TimeUnit.MILLISECONDS.toNanos(captured.getTimestamp() - firstTimestamp) / speed);
+                final var waitNanos = startNanos + offsetNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            }
+            inFlight.acquire();
+            client.publishWith()
+                    .topic(captured.getTopic())
+                    .qos(MqttQos.AT_LEAST_ONCE)
+                    .payload(captured.getPayload())
+                    .send()
+                    .whenComplete((result, throwable) -> {
+                        if (throwable != null) {
+                            failed.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+            published++;
+        }
+        inFlight.acquire(MAX_IN_FLIGHT);
+        client.disconnect().get(10, TimeUnit.SECONDS);
+
+        final var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        System.out.printf("Replayed %d messages from '%s' in %d ms, %d failed%n",
+                published,
+                directory,
+                elapsedMillis,
+                failed.get());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware;
+
+import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundInput;
+import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundOutput;
+import com.hivemq.extension.sdk.api.packets.connect.ConnectPacket;
+import com.hivemq.extension.sdk.api.packets.connect.WillPublishPacket;
+import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SparkplugConnectInboundInterceptorTest {
+
+    private static final @NotNull String NDEATH_TOPIC = "spBv1.0/group/NDEATH/edgeNode";
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    private final @NotNull ConnectInboundInput connectInboundInput = mock();
+    private final @NotNull ConnectInboundOutput connectInboundOutput = mock();
+    private final @NotNull ConnectPacket connectPacket = mock();
+    private final @NotNull WillPublishPacket willPublishPacket = mock();
+    private final @NotNull ClientInformation clientInformation = mock();
+    private final @NotNull NdeathTemplateStore ndeathTemplateStore = new NdeathTemplateStore(100);
+
+    private byte @NotNull [] encodedNdeath;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(connectInboundInput.getConnectPacket()).thenReturn(connectPacket);
+        when(connectInboundInput.getClientInformation()).thenReturn(clientInformation);
+        when(clientInformation.getClientId()).thenReturn("edgeNode");
+        when(connectPacket.getWillPublish()).thenReturn(Optional.of(willPublishPacket));
+
+        final var bdSeq = new Metric.MetricBuilder("bdSeq", Int64, 1L).createMetric();
+        encodedNdeath = new SparkplugBPayloadEncoder().getBytes(new SparkplugBPayload(new Date(),
+                List.of(bdSeq),
+                null,
+                null,
+                null), false);
+    }
+
+    @Test
+    void ndeath_will_template_stored() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"));
+
+        when(willPublishPacket.getTopic()).thenReturn(NDEATH_TOPIC);
+        when(willPublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedNdeath)));
+
+        interceptor.onConnect(connectInboundInput, connectInboundOutput);
+
+        assertThat(ndeathTemplateStore.size()).isEqualTo(1);
+        assertThat(ndeathTemplateStore.modifySparkplugTimestamp(NDEATH_TOPIC,
+                ByteBuffer.wrap(encodedNdeath))).isNotNull();
+    }
+
+    @Test
+    void invalid_ndeath_will_template_removed() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"));
+
+        when(willPublishPacket.getTopic()).thenReturn(NDEATH_TOPIC);
+        when(willPublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedNdeath)));
+        interceptor.onConnect(connectInboundInput, connectInboundOutput);
+
+        when(willPublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(new byte[]{0x08, (byte) 0x80})));
+        interceptor.onConnect(connectInboundInput, connectInboundOutput);
+
+        assertThat(ndeathTemplateStore.size()).isZero();
+    }
+
+    @Test
+    void compressed_namespace_no_template() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0", "sparkplug.compression=true"));
+
+        when(willPublishPacket.getTopic()).thenReturn(NDEATH_TOPIC);
+        when(willPublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedNdeath)));
+
+        interceptor.onConnect(connectInboundInput, connectInboundOutput);
+
+        assertThat(ndeathTemplateStore.size()).isZero();
+    }
+
+    @Test
+    void non_ndeath_will_ignored() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"));
+
+        when(willPublishPacket.getTopic()).thenReturn("spBv1.0/group/DDEATH/edgeNode/device");
+        when(willPublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedNdeath)));
+
+        interceptor.onConnect(connectInboundInput, connectInboundOutput);
+
+        assertThat(ndeathTemplateStore.size()).isZero();
+    }
+
+    @Test
+    void connect_without_will_ignored() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"));
+
+        when(connectPacket.getWillPublish()).thenReturn(Optional.empty());
+
+        interceptor.onConnect(connectInboundInput, connectInboundOutput);
+
+        assertThat(ndeathTemplateStore.size()).isZero();
+    }
+
+    private @NotNull SparkplugConnectInboundInterceptor createInterceptor(final @NotNull List<String> properties)
+            throws Exception {
+        final var file = tempDir.resolve("config.properties");
+        Files.write(file, properties);
+        final var configuration = new SparkplugConfiguration(file.getParent().toFile(), "config.properties");
+        configuration.readPropertiesFromFile();
+        return new SparkplugConnectInboundInterceptor(configuration, new TopicStructureCache(100), ndeathTemplateStore);
+    }
+}
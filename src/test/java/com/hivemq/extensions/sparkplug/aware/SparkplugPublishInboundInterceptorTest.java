@@ -16,6 +16,9 @@
 
 package com.hivemq.extensions.sparkplug.aware;
 
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
@@ -25,11 +28,31 @@ import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
 import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
 import com.hivemq.extension.sdk.api.services.publish.Publish;
 import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.async.AsyncPublishProcessor;
+import com.hivemq.extensions.sparkplug.aware.async.ClientTaskExecutor;
+import com.hivemq.extensions.sparkplug.aware.capture.CaptureJournal;
+import com.hivemq.extensions.sparkplug.aware.capture.CaptureJournalReader;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugMessage;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueStore;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.log.OverflowPolicy;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthFingerprints;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshots;
+import com.hivemq.extensions.sparkplug.aware.republish.DedupMode;
+import com.hivemq.extensions.sparkplug.aware.republish.SysTopicRepublisher;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.JsonLogFormat;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
 import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
 import org.eclipse.tahu.message.model.Metric;
 import org.eclipse.tahu.message.model.SparkplugBPayload;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -38,17 +61,28 @@ import org.mockito.ArgumentCaptor;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.mockito.Answers.RETURNS_SELF;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -65,6 +99,12 @@ class SparkplugPublishInboundInterceptorTest {
     private final @NotNull PublishService publishService = mock();
     private final @NotNull PublishBuilder publishBuilder = mock();
     private final @NotNull Publish builtPublish = mock();
+    private final @NotNull SparkplugRegistry registry = new SparkplugRegistry();
+    private final @NotNull LastValueStore lastValues = new LastValueStore();
+    private final @NotNull BirthSnapshots birthSnapshots = new BirthSnapshots(1_000);
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull Async<PublishInboundOutput> async = mock();
+    private final @NotNull ArrayDeque<Runnable> asyncTasks = new ArrayDeque<>();
 
     private @NotNull Path file;
     private byte @NotNull [] encodedSparkplugPayload;
@@ -78,6 +118,9 @@ class SparkplugPublishInboundInterceptorTest {
         when(clientInformation.getClientId()).thenReturn("testClient");
 
         when(publishInboundOutput.getPublishPacket()).thenReturn(modifiablePublishPacket);
+        when(publishInboundOutput.async(any(), any())).thenReturn(async);
+        when(async.getOutput()).thenReturn(publishInboundOutput);
+        when(async.getStatus()).thenReturn(Async.Status.RUNNING);
 
         when(publishBuilder.fromPublish(any(PublishPacket.class))).thenReturn(publishBuilder);
         when(publishBuilder.topic(any())).thenReturn(publishBuilder);
@@ -94,7 +137,7 @@ class SparkplugPublishInboundInterceptorTest {
     @Test
     void nbirth_message_republished_to_systopic() throws Exception {
         final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
         when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
@@ -107,12 +150,31 @@ class SparkplugPublishInboundInterceptorTest {
         verify(publishBuilder).qos(Qos.AT_LEAST_ONCE);
         verify(publishBuilder).retain(true);
         verify(publishService).publish(builtPublish);
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".messages.inbound.nbirth").getCount()).isOne();
+        assertThat(metricRegistry.timer(SparkplugMetrics.PREFIX + ".interceptor.publish-inbound.time")
+                .getCount()).isOne();
+    }
+
+    @Test
+    void nbirth_message_kept_as_birth_snapshot() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        assertThat(birthSnapshots.withPrefix("$sparkplug/certificates/").keySet()).containsExactly(
+                "$sparkplug/certificates/spBv1.0/group/NBIRTH/edgeNode");
+        assertThat(birthSnapshots.get("$sparkplug/certificates/spBv1.0/group/NBIRTH/edgeNode").getBirth()).isSameAs(
+                builtPublish);
     }
 
     @Test
     void dbirth_message_republished_to_systopic() throws Exception {
         final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("spBv1.0/group/DBIRTH/edgeNode/device");
         when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
@@ -128,7 +190,7 @@ class SparkplugPublishInboundInterceptorTest {
     @Test
     void ndeath_message_timestamp_modified() throws Exception {
         final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
         when(modifiablePublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
@@ -140,10 +202,66 @@ class SparkplugPublishInboundInterceptorTest {
         verify(publishService, never()).publish(any());
     }
 
+    @Test
+    void ndeath_message_modified_async_and_output_resumed() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration, null, null, createAsyncProcessor());
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(modifiablePublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        verify(publishInboundOutput).async(Duration.ofSeconds(10), TimeoutFallback.SUCCESS);
+        verify(modifiablePublishPacket, never()).setPayload(any());
+        verify(async, never()).resume();
+
+        runAsyncTasks();
+
+        verify(modifiablePublishPacket).setPayload(any(ByteBuffer.class));
+        verify(async).resume();
+    }
+
+    @Test
+    void ndata_message_processed_on_interceptor_thread_with_async_processing() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration, null, null, createAsyncProcessor());
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDATA/edgeNode");
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        verify(publishInboundOutput, never()).async(any(), any());
+        assertThat(asyncTasks).isEmpty();
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".messages.inbound.ndata").getCount()).isOne();
+    }
+
+    @Test
+    void ndata_message_after_pending_nbirth_processed_async_in_order() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration, null, null, createAsyncProcessor());
+        final var edgeNode = SparkplugFleet.builder(7).edgeNodes(1).devices(0).build().getEdgeNode(0);
+
+        publish(interceptor, edgeNode.nbirth());
+        publish(interceptor, edgeNode.ndata());
+
+        verify(publishInboundOutput, times(2)).async(any(), any());
+        assertThat(registry.getEdgeNode(edgeNode.getGroupId(), edgeNode.getEdgeNodeId())).isNull();
+
+        runAsyncTasks();
+
+        verify(async, times(2)).resume();
+        final var state = registry.getEdgeNode(edgeNode.getGroupId(), edgeNode.getEdgeNodeId());
+        assertThat(state).isNotNull();
+        assertThat(state.getLastSeq()).isEqualTo(edgeNode.getSeq());
+        assertThat(registry.getGaps()).isZero();
+    }
+
     @Test
     void non_sparkplug_topic_ignored() throws Exception {
         final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("some/other/topic");
 
@@ -154,10 +272,23 @@ class SparkplugPublishInboundInterceptorTest {
         verify(modifiablePublishPacket, never()).setPayload(any());
     }
 
+    @Test
+    void topic_with_namespace_as_prefix_of_first_level_ignored() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0x/group/NBIRTH/edgeNode");
+
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        verify(publishService, never()).publish(any());
+        verify(publishBuilder, never()).build();
+    }
+
     @Test
     void ddata_message_not_republished() throws Exception {
         final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("spBv1.0/group/DDATA/edgeNode/device");
 
@@ -170,7 +301,7 @@ class SparkplugPublishInboundInterceptorTest {
     @Test
     void ndata_message_not_republished() throws Exception {
         final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDATA/edgeNode");
 
@@ -184,7 +315,7 @@ class SparkplugPublishInboundInterceptorTest {
     void custom_systopic_used() throws Exception {
         final var configuration =
                 getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0", "sparkplug.systopic=$custom/systopic/"));
-        final var interceptor = new SparkplugPublishInboundInterceptor(configuration, publishService, publishBuilder);
+        final var interceptor = createInterceptor(configuration);
 
         when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
         when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
@@ -197,6 +328,304 @@ class SparkplugPublishInboundInterceptorTest {
         assertThat(topicCaptor.getValue()).startsWith("$custom/systopic/");
     }
 
+    @Test
+    void nbirth_of_each_namespace_republished_to_namespace_systopic() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spAv1.0,spBv1.0",
+                "sparkplug.namespace.spAv1.0.systopic=$legacy/certificates/"));
+        final var interceptor = createInterceptor(configuration);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        when(publishPacket.getTopic()).thenReturn("spAv1.0/group/NBIRTH/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        verify(publishBuilder).topic("$legacy/certificates/spAv1.0/group/NBIRTH/edgeNode");
+        verify(publishBuilder).topic("$sparkplug/certificates/spBv1.0/group/NBIRTH/edgeNode");
+    }
+
+    @Test
+    void unchanged_birth_skipped_with_dedup_skip() throws Exception {
+        final var configuration =
+                getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0", "sparkplug.systopic.dedup=skip"));
+        final var interceptor = createInterceptor(configuration);
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        verify(publishService, times(1)).publish(builtPublish);
+    }
+
+    @Test
+    void unchanged_birth_not_retained_with_dedup_live() throws Exception {
+        final var configuration =
+                getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0", "sparkplug.systopic.dedup=live"));
+        final var interceptor = createInterceptor(configuration);
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        verify(publishBuilder).retain(true);
+        verify(publishBuilder).retain(false);
+        verify(publishService, times(2)).publish(builtPublish);
+    }
+
+    @Test
+    void sparkplug_messages_captured_with_original_payload() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var captureDir = tempDir.resolve("capture");
+        final var captureJournal = new CaptureJournal(captureDir, 4096, 1);
+        final var interceptor = createInterceptor(configuration, captureJournal);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+        when(modifiablePublishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        when(publishPacket.getTopic()).thenReturn("some/other/topic");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        captureJournal.close();
+
+        final var reader = new CaptureJournalReader(captureDir);
+        final var record = reader.next();
+        assertThat(record).isNotNull();
+        assertThat(record.getClientId()).isEqualTo("testClient");
+        assertThat(record.getTopic()).isEqualTo("spBv1.0/group/NDEATH/edgeNode");
+        assertThat(record.getPayload()).isEqualTo(ByteBuffer.wrap(encodedSparkplugPayload));
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void births_and_deaths_tracked_in_registry() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/DBIRTH/edgeNode/device");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        final var edgeNode = registry.getEdgeNode("group", "edgeNode");
+        assertThat(edgeNode).isNotNull();
+        assertThat(edgeNode.isOnline()).isTrue();
+        assertThat(edgeNode.getLastSeq()).isEqualTo(1);
+        assertThat(registry.getDevice("group", "edgeNode", "device")).isNotNull()
+                .satisfies(device -> assertThat(device.isOnline()).isTrue());
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/DDEATH/edgeNode/device");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        assertThat(registry.getDevice("group", "edgeNode", "device")).isNotNull()
+                .satisfies(device -> assertThat(device.isOnline()).isFalse());
+        assertThat(edgeNode.isOnline()).isTrue();
+        assertThat(registry.getDeviceCount()).isEqualTo(1);
+    }
+
+    @Test
+    void births_and_data_update_last_values() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        final var data = new SparkplugBPayload(new Date(),
+                List.of(new Metric.MetricBuilder("testMetric", Int32, -7).timestamp(new Date(2_000L)).createMetric()),
+                2L,
+                null,
+                null);
+        final var encodedData = new SparkplugBPayloadEncoder().getBytes(data, false);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedData)));
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDATA/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        final var values = lastValues.get("group", "edgeNode", null);
+        assertThat(values).isNotNull();
+        final var index = values.indexOf("testMetric");
+        assertThat(values.getLong(index)).isEqualTo(-7);
+        assertThat(values.getTimestamp(index)).isEqualTo(2_000L);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+
+        assertThat(lastValues.get("group", "edgeNode", null)).isNull();
+        assertThat(lastValues.getMetricCount()).isZero();
+    }
+
+    @Test
+    void fleet_traffic_tracked_in_registry_and_last_values() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var interceptor = createInterceptor(configuration);
+        final var edgeNode = SparkplugFleet.builder(3).edgeNodes(1).devices(2).build().getEdgeNode(0);
+
+        for (final var birth : edgeNode.births()) {
+            publish(interceptor, birth);
+        }
+        // the sequence number wraps after 255
+        for (var i = 0; i < 300; i++) {
+            publish(interceptor, i % 3 == 0 ? edgeNode.ndata() : edgeNode.ddata(edgeNode.getDeviceIds().get(i % 2)));
+        }
+
+        final var state = registry.getEdgeNode(edgeNode.getGroupId(), edgeNode.getEdgeNodeId());
+        assertThat(state).isNotNull();
+        assertThat(state.isOnline()).isTrue();
+        assertThat(state.getLastSeq()).isEqualTo(edgeNode.getSeq());
+        assertThat(state.getDevices()).hasSize(2);
+        assertThat(lastValues.getUpdates()).isEqualTo(303);
+        assertThat(lastValues.getUnresolved()).isZero();
+        final var values = lastValues.get(edgeNode.getGroupId(), edgeNode.getEdgeNodeId(), "device-1");
+        assertThat(values).isNotNull();
+        assertThat(values.indexOf(edgeNode.getDeviceMetrics("device-1").get(0).getName())).isNotNegative();
+    }
+
+    @Test
+    void concurrent_births_republished_to_their_own_systopic() throws Exception {
+        final var configuration = getSparkplugConfiguration(List.of("sparkplug.version=spBv1.0"));
+        final var publishedTopics = ConcurrentHashMap.<String>newKeySet();
+        final var publishService = mock(PublishService.class);
+        when(publishService.publish(any(Publish.class))).thenAnswer(invocation -> {
+            publishedTopics.add(invocation.<Publish>getArgument(0).getTopic());
+            return CompletableFuture.completedFuture(null);
+        });
+        final var interceptor = new SparkplugPublishInboundInterceptor(configuration,
+                new SysTopicRepublisher(publishService, 16, 10_000),
+                new BirthFingerprints(DedupMode.OFF, 3600, 10_000),
+                null,
+                new TopicStructureCache(100),
+                new NdeathTemplateStore(100),
+                new JsonLogPipeline(new PayloadJsonWriter(JsonLogFormat.PRETTY), 0, OverflowPolicy.DROP_NEWEST, 1),
+                null,
+                new SparkplugRegistry(),
+                null,
+                null,
+                null,
+                SparkplugMetrics.unregistered(),
+                SparkplugPublishInboundInterceptorTest::createRecordingPublishBuilder);
+        final var threads = 8;
+        final var birthsPerThread = 200;
+        final var start = new CountDownLatch(1);
+        final var executor = Executors.newFixedThreadPool(threads);
+        try {
+            final var futures = new ArrayList<Future<?>>();
+            for (var t = 0; t < threads; t++) {
+                final var thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (var i = 0; i < birthsPerThread; i++) {
+                        final var origin = i % 2 == 0 ?
+                                "spBv1.0/group/NBIRTH/node-" + thread + "-" + i :
+                                "spBv1.0/group/DBIRTH/node-" + thread + "/device-" + i;
+                        interceptor.onInboundPublish(createBirthInput(origin), publishInboundOutput);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final var expectedTopics = new HashSet<String>();
+        for (var t = 0; t < threads; t++) {
+            for (var i = 0; i < birthsPerThread; i++) {
+                expectedTopics.add(i % 2 == 0 ?
+                        "$sparkplug/certificates/spBv1.0/group/NBIRTH/node-" + t + "-" + i :
+                        "$sparkplug/certificates/spBv1.0/group/DBIRTH/node-" + t + "/device-" + i);
+            }
+        }
+        assertThat(publishedTopics).isEqualTo(expectedTopics);
+    }
+
+    private void publish(
+            final @NotNull SparkplugPublishInboundInterceptor interceptor,
+            final @NotNull SparkplugMessage message) {
+        when(publishPacket.getTopic()).thenReturn(message.getTopic());
+        when(publishPacket.getPayload()).thenReturn(Optional.of(message.getPayload()));
+        interceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+    }
+
+    private @NotNull PublishInboundInput createBirthInput(final @NotNull String origin) {
+        final var packet = mock(PublishPacket.class);
+        when(packet.getTopic()).thenReturn(origin);
+        final var input = mock(PublishInboundInput.class);
+        when(input.getPublishPacket()).thenReturn(packet);
+        when(input.getClientInformation()).thenReturn(clientInformation);
+        return input;
+    }
+
+    private static @NotNull PublishBuilder createRecordingPublishBuilder() {
+        // records the topic of the builder, so a builder that is shared between threads publishes wrong topics
+        final var topic = new AtomicReference<String>();
+        final var publishBuilder = mock(PublishBuilder.class, RETURNS_SELF);
+        when(publishBuilder.topic(any())).thenAnswer(invocation -> {
+            topic.set(invocation.getArgument(0));
+            return publishBuilder;
+        });
+        when(publishBuilder.build()).thenAnswer(invocation -> {
+            final var builtTopic = topic.get();
+            return mock(Publish.class,
+                    publishInvocation -> "getTopic".equals(publishInvocation.getMethod().getName()) ?
+                            builtTopic :
+                            null);
+        });
+        return publishBuilder;
+    }
+
+    private @NotNull SparkplugPublishInboundInterceptor createInterceptor(
+            final @NotNull SparkplugConfiguration configuration) {
+        return createInterceptor(configuration, null);
+    }
+
+    private @NotNull SparkplugPublishInboundInterceptor createInterceptor(
+            final @NotNull SparkplugConfiguration configuration,
+            final @Nullable CaptureJournal captureJournal) {
+        return createInterceptor(configuration, captureJournal, lastValues, null);
+    }
+
+    private @NotNull SparkplugPublishInboundInterceptor createInterceptor(
+            final @NotNull SparkplugConfiguration configuration,
+            final @Nullable CaptureJournal captureJournal,
+            final @Nullable LastValueStore lastValues,
+            final @Nullable AsyncPublishProcessor asyncProcessor) {
+        return new SparkplugPublishInboundInterceptor(configuration,
+                new SysTopicRepublisher(publishService, 100, 1_000),
+                new BirthFingerprints(configuration.getSysTopicDedupMode(),
+                        configuration.getSparkplugSystopicMsgexpiry(),
+                        1_000),
+                birthSnapshots,
+                new TopicStructureCache(100),
+                new NdeathTemplateStore(100),
+                new JsonLogPipeline(new PayloadJsonWriter(JsonLogFormat.PRETTY), 0, OverflowPolicy.DROP_NEWEST, 1),
+                captureJournal,
+                registry,
+                null,
+                lastValues,
+                asyncProcessor,
+                new SparkplugMetrics(metricRegistry),
+                () -> publishBuilder);
+    }
+
+    private @NotNull AsyncPublishProcessor createAsyncProcessor() {
+        return new AsyncPublishProcessor(new ClientTaskExecutor(asyncTasks::add),
+                Duration.ofSeconds(10),
+                TimeoutFallback.SUCCESS,
+                new SparkplugMetrics(metricRegistry));
+    }
+
+    private void runAsyncTasks() {
+        Runnable task;
+        while ((task = asyncTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
     private SparkplugConfiguration getSparkplugConfiguration(final @NotNull List<String> properties) throws Exception {
         Files.write(file, properties);
         final var configuration = new SparkplugConfiguration(file.getParent().toFile(), "config.properties");
@@ -16,16 +16,41 @@
 
 package com.hivemq.extensions.sparkplug.aware;
 
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundInput;
 import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundOutput;
+import com.hivemq.extension.sdk.api.packets.general.ModifiableUserProperties;
 import com.hivemq.extension.sdk.api.packets.publish.ModifiableOutboundPublish;
+import com.hivemq.extension.sdk.api.packets.publish.ModifiablePublishPacket;
 import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.async.AsyncPublishProcessor;
+import com.hivemq.extensions.sparkplug.aware.async.ClientTaskExecutor;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.log.JsonLogPipeline;
+import com.hivemq.extensions.sparkplug.aware.log.OverflowPolicy;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.registry.SparkplugRegistry;
+import com.hivemq.extensions.sparkplug.aware.registry.StaleDeathPolicy;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthFingerprints;
+import com.hivemq.extensions.sparkplug.aware.republish.DedupMode;
+import com.hivemq.extensions.sparkplug.aware.republish.SysTopicRepublisher;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructureCache;
+import com.hivemq.extensions.sparkplug.aware.utils.JsonLogFormat;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathPayloadCache;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplate;
+import com.hivemq.extensions.sparkplug.aware.utils.NdeathTemplateStore;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
 import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
 import org.eclipse.tahu.message.model.Metric;
 import org.eclipse.tahu.message.model.SparkplugBPayload;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -33,15 +58,22 @@ import org.junit.jupiter.api.io.TempDir;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -56,6 +88,14 @@ class SparkplugPublishOutboundInterceptorTest {
     private final @NotNull ModifiableOutboundPublish modifiableOutboundPublish = mock();
     private final @NotNull ClientInformation clientInformation = mock();
 
+    private final @NotNull ModifiableUserProperties userProperties = mock();
+
+    private final @NotNull NdeathTemplateStore ndeathTemplateStore = new NdeathTemplateStore(100);
+    private final @NotNull SparkplugRegistry registry = new SparkplugRegistry();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull Async<PublishOutboundOutput> async = mock();
+    private final @NotNull ArrayDeque<Runnable> asyncTasks = new ArrayDeque<>();
+
     private @NotNull Path file;
     private byte @NotNull [] encodedSparkplugPayload;
 
@@ -68,6 +108,10 @@ class SparkplugPublishOutboundInterceptorTest {
         when(clientInformation.getClientId()).thenReturn("testClient");
 
         when(publishOutboundOutput.getPublishPacket()).thenReturn(modifiableOutboundPublish);
+        when(modifiableOutboundPublish.getUserProperties()).thenReturn(userProperties);
+        when(publishOutboundOutput.async(any(), any())).thenReturn(async);
+        when(async.getOutput()).thenReturn(publishOutboundOutput);
+        when(async.getStatus()).thenReturn(Async.Status.RUNNING);
 
         encodedSparkplugPayload = createSparkplugBPayload();
     }
@@ -104,6 +148,58 @@ class SparkplugPublishOutboundInterceptorTest {
         interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
 
         verify(modifiableOutboundPublish).setPayload(any(ByteBuffer.class));
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".messages.outbound.ndeath").getCount()).isOne();
+        assertThat(metricRegistry.timer(SparkplugMetrics.PREFIX + ".ndeath.rewrite.time").getCount()).isOne();
+        assertThat(metricRegistry.timer(SparkplugMetrics.PREFIX + ".interceptor.publish-outbound.time")
+                .getCount()).isOne();
+    }
+
+    @Test
+    void ndeath_payload_timestamp_modified_async_and_output_resumed() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"), createAsyncProcessor());
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        verify(modifiableOutboundPublish, never()).setPayload(any());
+        verify(async, never()).resume();
+
+        Runnable task;
+        while ((task = asyncTasks.poll()) != null) {
+            task.run();
+        }
+
+        verify(modifiableOutboundPublish).setPayload(any(ByteBuffer.class));
+        verify(async).resume();
+    }
+
+    @Test
+    void nbirth_processed_on_interceptor_thread_with_async_processing() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"), createAsyncProcessor());
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NBIRTH/edgeNode");
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        verify(publishOutboundOutput, never()).async(any(), any());
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".messages.outbound.nbirth").getCount()).isOne();
+    }
+
+    @Test
+    void ndeath_payload_timestamp_modified_from_template() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"));
+        final var topic = "spBv1.0/group/NDEATH/edgeNode";
+        ndeathTemplateStore.put(topic, NdeathTemplate.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        when(publishPacket.getTopic()).thenReturn(topic);
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(encodedSparkplugPayload)));
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        verify(modifiableOutboundPublish).setPayload(any(ByteBuffer.class));
+        assertThat(ndeathTemplateStore.getHits()).isEqualTo(1);
     }
 
     @Test
@@ -176,12 +272,157 @@ class SparkplugPublishOutboundInterceptorTest {
         verify(modifiableOutboundPublish, never()).setPayload(any());
     }
 
+    @Test
+    void ndeath_edge_node_marked_offline() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spBv1.0"));
+        registry.onNodeBirth("group", "edgeNode", 1, 0, 1_000);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        assertThat(registry.getEdgeNode("group", "edgeNode")).isNotNull()
+                .satisfies(edgeNode -> assertThat(edgeNode.isOnline()).isFalse());
+        verify(publishOutboundOutput, never()).preventPublishDelivery();
+    }
+
+    @Test
+    void stale_ndeath_dropped_with_policy_drop() throws Exception {
+        final var interceptor =
+                createInterceptor(List.of("sparkplug.version=spBv1.0", "sparkplug.ndeath.stale=drop"));
+        registry.onNodeBirth("group", "edgeNode", 2, 0, 1_000);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        verify(publishOutboundOutput).preventPublishDelivery();
+        verify(modifiableOutboundPublish, never()).setPayload(any());
+        assertThat(registry.getEdgeNode("group", "edgeNode")).isNotNull()
+                .satisfies(edgeNode -> assertThat(edgeNode.isOnline()).isTrue());
+        assertThat(registry.getStaleDeaths()).isEqualTo(1);
+    }
+
+    @Test
+    void stale_ndeath_flagged_with_policy_flag() throws Exception {
+        final var interceptor =
+                createInterceptor(List.of("sparkplug.version=spBv1.0", "sparkplug.ndeath.stale=flag"));
+        registry.onNodeBirth("group", "edgeNode", 2, 0, 1_000);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        verify(userProperties).addUserProperty(StaleDeathPolicy.STALE_USER_PROPERTY, "2");
+        verify(publishOutboundOutput, never()).preventPublishDelivery();
+        verify(modifiableOutboundPublish).setPayload(any(ByteBuffer.class));
+    }
+
+    @Test
+    void stale_ndeath_will_counted_once_for_two_subscribers() throws Exception {
+        final var interceptor =
+                createInterceptor(List.of("sparkplug.version=spBv1.0", "sparkplug.ndeath.stale=flag"));
+        registry.onNodeBirth("group", "edgeNode", 2, 0, 1_000);
+
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+        when(userProperties.getFirst(StaleDeathPolicy.STALE_USER_PROPERTY)).thenReturn(Optional.empty());
+
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        assertThat(registry.getStaleDeaths()).isEqualTo(1);
+        verify(userProperties, times(2)).addUserProperty(StaleDeathPolicy.STALE_USER_PROPERTY, "2");
+    }
+
+    @Test
+    void stale_ndeath_published_counted_and_flagged_once_for_two_subscribers() throws Exception {
+        final var properties = List.of("sparkplug.version=spBv1.0", "sparkplug.ndeath.stale=flag");
+        final var inboundInterceptor = createInboundInterceptor(properties);
+        final var interceptor = createInterceptor(properties);
+        registry.onNodeBirth("group", "edgeNode", 2, 0, 1_000);
+        // the user properties that the inbound interceptor adds are delivered to every subscriber
+        final var flags = new ArrayList<String>();
+        doAnswer(invocation -> flags.add(invocation.getArgument(1))).when(userProperties)
+                .addUserProperty(eq(StaleDeathPolicy.STALE_USER_PROPERTY), any());
+        when(userProperties.getFirst(StaleDeathPolicy.STALE_USER_PROPERTY)).thenAnswer(invocation -> flags.stream()
+                .findFirst());
+        final PublishInboundInput publishInboundInput = mock();
+        final PublishInboundOutput publishInboundOutput = mock();
+        final ModifiablePublishPacket modifiablePublishPacket = mock();
+        when(publishInboundInput.getPublishPacket()).thenReturn(publishPacket);
+        when(publishInboundInput.getClientInformation()).thenReturn(clientInformation);
+        when(publishInboundOutput.getPublishPacket()).thenReturn(modifiablePublishPacket);
+        when(modifiablePublishPacket.getUserProperties()).thenReturn(userProperties);
+        when(publishPacket.getTopic()).thenReturn("spBv1.0/group/NDEATH/edgeNode");
+        when(publishPacket.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+        when(modifiablePublishPacket.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+        when(modifiableOutboundPublish.getPayload()).thenReturn(Optional.of(createNdeathPayload(1)));
+
+        inboundInterceptor.onInboundPublish(publishInboundInput, publishInboundOutput);
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+        interceptor.onOutboundPublish(publishOutboundInput, publishOutboundOutput);
+
+        assertThat(registry.getStaleDeaths()).isEqualTo(1);
+        assertThat(flags).containsExactly("2");
+        assertThat(registry.getEdgeNode("group", "edgeNode")).isNotNull()
+                .satisfies(edgeNode -> assertThat(edgeNode.isOnline()).isTrue());
+    }
+
     private SparkplugPublishOutboundInterceptor createInterceptor(final @NotNull List<String> properties)
             throws Exception {
+        return createInterceptor(properties, null);
+    }
+
+    private SparkplugPublishOutboundInterceptor createInterceptor(
+            final @NotNull List<String> properties,
+            final @Nullable AsyncPublishProcessor asyncProcessor) throws Exception {
+        final var configuration = createConfiguration(properties);
+        return new SparkplugPublishOutboundInterceptor(configuration,
+                new TopicStructureCache(100),
+                new NdeathPayloadCache(configuration.getNdeathTimestampBucket()),
+                ndeathTemplateStore,
+                new JsonLogPipeline(new PayloadJsonWriter(JsonLogFormat.PRETTY), 0, OverflowPolicy.DROP_NEWEST, 1),
+                registry,
+                null,
+                asyncProcessor,
+                new SparkplugMetrics(metricRegistry));
+    }
+
+    private @NotNull SparkplugPublishInboundInterceptor createInboundInterceptor(
+            final @NotNull List<String> properties) throws Exception {
+        final var configuration = createConfiguration(properties);
+        return new SparkplugPublishInboundInterceptor(configuration,
+                new SysTopicRepublisher(mock(PublishService.class), 100, 1_000),
+                new BirthFingerprints(DedupMode.OFF, configuration.getSparkplugSystopicMsgexpiry(), 1_000),
+                null,
+                new TopicStructureCache(100),
+                ndeathTemplateStore,
+                new JsonLogPipeline(new PayloadJsonWriter(JsonLogFormat.PRETTY), 0, OverflowPolicy.DROP_NEWEST, 1),
+                null,
+                registry,
+                null,
+                null,
+                null,
+                new SparkplugMetrics(metricRegistry));
+    }
+
+    private @NotNull SparkplugConfiguration createConfiguration(final @NotNull List<String> properties)
+            throws Exception {
         Files.write(file, properties);
         final var configuration = new SparkplugConfiguration(file.getParent().toFile(), "config.properties");
         configuration.readPropertiesFromFile();
-        return new SparkplugPublishOutboundInterceptor(configuration);
+        return configuration;
+    }
+
+    private @NotNull AsyncPublishProcessor createAsyncProcessor() {
+        return new AsyncPublishProcessor(new ClientTaskExecutor(asyncTasks::add),
+                Duration.ofSeconds(10),
+                TimeoutFallback.SUCCESS,
+                new SparkplugMetrics(metricRegistry));
     }
 
     private byte @NotNull [] createSparkplugBPayload() throws Exception {
@@ -190,4 +431,11 @@ class SparkplugPublishOutboundInterceptorTest {
         final var sparkplugBPayload = new SparkplugBPayload(new Date(), metrics, 1L, null, null);
         return new SparkplugBPayloadEncoder().getBytes(sparkplugBPayload, false);
     }
+
+    private static @NotNull ByteBuffer createNdeathPayload(final long bdSeq) throws Exception {
+        final var metrics = new ArrayList<Metric>();
+        metrics.add(new Metric.MetricBuilder("bdSeq", Int64, bdSeq).createMetric());
+        final var sparkplugBPayload = new SparkplugBPayload(new Date(), metrics, null, null, null);
+        return ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(sparkplugBPayload, false));
+    }
 }
@@ -16,12 +16,17 @@
 
 package com.hivemq.extensions.sparkplug.aware;
 
+import com.codahale.metrics.MetricRegistry;
 import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
 import com.hivemq.extension.sdk.api.interceptor.subscribe.parameter.SubscribeInboundInput;
 import com.hivemq.extension.sdk.api.interceptor.subscribe.parameter.SubscribeInboundOutput;
 import com.hivemq.extension.sdk.api.packets.subscribe.ModifiableSubscribePacket;
 import com.hivemq.extension.sdk.api.packets.subscribe.ModifiableSubscription;
+import com.hivemq.extension.sdk.api.packets.subscribe.RetainHandling;
 import com.hivemq.extensions.sparkplug.aware.configuration.SparkplugConfiguration;
+import com.hivemq.extensions.sparkplug.aware.lastvalue.LastValueDelivery;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.republish.BirthSnapshotDelivery;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,6 +39,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -49,6 +55,7 @@ class SparkplugSubscribeInterceptorTest {
     private final @NotNull ModifiableSubscription subscription = mock();
     private final @NotNull ModifiableSubscribePacket subscribePacket = mock();
     private final @NotNull ClientInformation clientInformation = mock();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
 
     private @NotNull Path file;
 
@@ -132,6 +139,22 @@ class SparkplugSubscribeInterceptorTest {
         assertThat(captor.getValue()).isTrue();
     }
 
+    @Test
+    void namespace_systopic_subscription_sets_retain_as_published() throws Exception {
+        final var interceptor = createInterceptor(List.of("sparkplug.version=spAv1.0,spBv1.0",
+                "sparkplug.namespace.spAv1.0.systopic=$legacy/certificates/"));
+
+        final var legacySubscription = mock(ModifiableSubscription.class);
+        when(legacySubscription.getTopicFilter()).thenReturn("$legacy/certificates/#");
+        when(subscription.getTopicFilter()).thenReturn("$sparkplug/certificates/#");
+        when(subscribePacket.getSubscriptions()).thenReturn(List.of(legacySubscription, subscription));
+
+        interceptor.onInboundSubscribe(subscribeInboundInput, subscribeInboundOutput);
+
+        verify(legacySubscription).setRetainAsPublished(true);
+        verify(subscription).setRetainAsPublished(true);
+    }
+
     @Test
     void empty_subscriptions_list_handled() throws Exception {
         final var interceptor = createInterceptor(List.of("sparkplug.systopic=$sparkplug/certificates/"));
@@ -144,11 +167,91 @@ class SparkplugSubscribeInterceptorTest {
         verify(subscription, never()).setRetainAsPublished(true);
     }
 
+    @Test
+    void systopic_subscription_served_from_birth_snapshots() throws Exception {
+        final var snapshotDelivery = mock(BirthSnapshotDelivery.class);
+        final var interceptor = new SparkplugSubscribeInterceptor(createConfiguration(List.of()),
+                snapshotDelivery,
+                null,
+                new SparkplugMetrics(metricRegistry));
+
+        when(subscription.getTopicFilter()).thenReturn("$sparkplug/certificates/#");
+        when(subscription.getRetainHandling()).thenReturn(RetainHandling.SEND);
+        when(subscribePacket.getSubscriptions()).thenReturn(List.of(subscription));
+        when(snapshotDelivery.deliver("testClient", "$sparkplug/certificates/#")).thenReturn(true);
+
+        interceptor.onInboundSubscribe(subscribeInboundInput, subscribeInboundOutput);
+
+        verify(subscription).setRetainAsPublished(true);
+        verify(subscription).setRetainHandling(RetainHandling.DO_NOT_SEND);
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".subscriptions.systopic.snapshot")
+                .getCount()).isOne();
+    }
+
+    @Test
+    void systopic_subscription_served_from_retained_store_if_snapshots_incomplete() throws Exception {
+        final var snapshotDelivery = mock(BirthSnapshotDelivery.class);
+        final var interceptor = new SparkplugSubscribeInterceptor(createConfiguration(List.of()),
+                snapshotDelivery,
+                null,
+                new SparkplugMetrics(metricRegistry));
+
+        when(subscription.getTopicFilter()).thenReturn("$sparkplug/certificates/#");
+        when(subscription.getRetainHandling()).thenReturn(RetainHandling.SEND);
+        when(subscribePacket.getSubscriptions()).thenReturn(List.of(subscription));
+        when(snapshotDelivery.deliver("testClient", "$sparkplug/certificates/#")).thenReturn(false);
+
+        interceptor.onInboundSubscribe(subscribeInboundInput, subscribeInboundOutput);
+
+        verify(subscription, never()).setRetainHandling(any());
+    }
+
+    @Test
+    void systopic_subscription_without_retained_messages_not_served_from_birth_snapshots() throws Exception {
+        final var snapshotDelivery = mock(BirthSnapshotDelivery.class);
+        final var interceptor = new SparkplugSubscribeInterceptor(createConfiguration(List.of()),
+                snapshotDelivery,
+                null,
+                new SparkplugMetrics(metricRegistry));
+
+        when(subscription.getTopicFilter()).thenReturn("$sparkplug/certificates/#");
+        when(subscription.getRetainHandling()).thenReturn(RetainHandling.SEND_IF_NEW_SUBSCRIPTION);
+        when(subscribePacket.getSubscriptions()).thenReturn(List.of(subscription));
+
+        interceptor.onInboundSubscribe(subscribeInboundInput, subscribeInboundOutput);
+
+        verify(snapshotDelivery, never()).deliver(any(), any());
+        verify(subscription, never()).setRetainHandling(any());
+    }
+
+    @Test
+    void lastvalues_subscription_answered_with_last_values() throws Exception {
+        final var lastValueDelivery = mock(LastValueDelivery.class);
+        final var interceptor = new SparkplugSubscribeInterceptor(createConfiguration(List.of()),
+                null,
+                lastValueDelivery,
+                new SparkplugMetrics(metricRegistry));
+
+        when(subscription.getTopicFilter()).thenReturn("$sparkplug/lastvalues/group/#");
+        when(subscribePacket.getSubscriptions()).thenReturn(List.of(subscription));
+        when(lastValueDelivery.deliver("testClient", "$sparkplug/lastvalues/group/#")).thenReturn(true);
+
+        interceptor.onInboundSubscribe(subscribeInboundInput, subscribeInboundOutput);
+
+        verify(lastValueDelivery).deliver("testClient", "$sparkplug/lastvalues/group/#");
+        verify(subscription, never()).setRetainAsPublished(true);
+    }
+
     private @NotNull SparkplugSubscribeInterceptor createInterceptor(final @NotNull List<String> properties)
             throws Exception {
+        return new SparkplugSubscribeInterceptor(createConfiguration(properties));
+    }
+
+    private @NotNull SparkplugConfiguration createConfiguration(final @NotNull List<String> properties)
+            throws Exception {
         Files.write(file, properties);
         final var configuration = new SparkplugConfiguration(file.getParent().toFile(), "config.properties");
         configuration.readPropertiesFromFile();
-        return new SparkplugSubscribeInterceptor(configuration);
+        return configuration;
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.async;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncPublishProcessorTest {
+
+    private static final @NotNull Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final @NotNull ArrayDeque<Runnable> scheduled = new ArrayDeque<>();
+    private final @NotNull PublishInboundOutput output = mock();
+    private final @NotNull Async<PublishInboundOutput> async = mock();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+
+    @BeforeEach
+    void setUp() {
+        when(async.getOutput()).thenReturn(output);
+        when(async.getStatus()).thenReturn(Async.Status.RUNNING);
+    }
+
+    @Test
+    void process_outputResumedAfterProcessing() {
+        final var processor = createProcessor(TimeoutFallback.SUCCESS);
+        final var processed = new ArrayList<PublishInboundOutput>();
+        when(output.async(TIMEOUT, TimeoutFallback.SUCCESS)).thenReturn(async);
+
+        processor.process("client", output, processed::add);
+
+        assertThat(processed).isEmpty();
+        assertThat(processor.hasPending("client")).isTrue();
+        verify(async, never()).resume();
+
+        runScheduled();
+
+        assertThat(processed).containsExactly(output);
+        assertThat(processor.hasPending("client")).isFalse();
+        verify(async).resume();
+        assertThat(metricRegistry.timer(SparkplugMetrics.PREFIX + ".interceptor.async.time").getCount()).isOne();
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".interceptor.async.timeout").getCount()).isZero();
+    }
+
+    @Test
+    void process_timedOutWithSuccessFallback_stillProcessed() {
+        final var processor = createProcessor(TimeoutFallback.SUCCESS);
+        final var processed = new ArrayList<PublishInboundOutput>();
+        when(output.async(TIMEOUT, TimeoutFallback.SUCCESS)).thenReturn(async);
+        when(async.getStatus()).thenReturn(Async.Status.CANCELED);
+
+        processor.process("client", output, processed::add);
+        runScheduled();
+
+        assertThat(processed).containsExactly(output);
+        verify(async, never()).resume();
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".interceptor.async.timeout").getCount()).isOne();
+    }
+
+    @Test
+    void process_timedOutWithFailureFallback_notProcessed() {
+        final var processor = createProcessor(TimeoutFallback.FAILURE);
+        final var processed = new ArrayList<PublishInboundOutput>();
+        when(output.async(TIMEOUT, TimeoutFallback.FAILURE)).thenReturn(async);
+        when(async.getStatus()).thenReturn(Async.Status.CANCELED);
+
+        processor.process("client", output, processed::add);
+        runScheduled();
+
+        assertThat(processed).isEmpty();
+        verify(async, never()).resume();
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".interceptor.async.timeout").getCount()).isOne();
+    }
+
+    @Test
+    void process_processingFails_outputResumed() {
+        final var processor = createProcessor(TimeoutFallback.SUCCESS);
+        when(output.async(TIMEOUT, TimeoutFallback.SUCCESS)).thenReturn(async);
+
+        processor.process("client", output, publishInboundOutput -> {
+            throw new IllegalStateException("failed");
+        });
+        runScheduled();
+
+        verify(async).resume();
+    }
+
+    private @NotNull AsyncPublishProcessor createProcessor(final @NotNull TimeoutFallback fallback) {
+        return new AsyncPublishProcessor(new ClientTaskExecutor(scheduled::add),
+                TIMEOUT,
+                fallback,
+                new SparkplugMetrics(metricRegistry));
+    }
+
+    private void runScheduled() {
+        Runnable runnable;
+        while ((runnable = scheduled.poll()) != null) {
+            runnable.run();
+        }
+    }
+}
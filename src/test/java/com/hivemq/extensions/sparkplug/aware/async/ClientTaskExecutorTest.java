@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.async;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientTaskExecutorTest {
+
+    private final @NotNull ArrayDeque<Runnable> scheduled = new ArrayDeque<>();
+    private final @NotNull ClientTaskExecutor executor = new ClientTaskExecutor(scheduled::add);
+
+    @Test
+    void execute_tasksOfOneClient_runOneAtATimeInOrder() {
+        final var order = new ArrayList<Integer>();
+        executor.execute("client", () -> order.add(1));
+        executor.execute("client", () -> order.add(2));
+        executor.execute("client", () -> order.add(3));
+
+        assertThat(scheduled).hasSize(1);
+        assertThat(executor.hasPending("client")).isTrue();
+
+        runScheduled();
+
+        assertThat(order).containsExactly(1, 2, 3);
+        assertThat(executor.hasPending("client")).isFalse();
+        assertThat(executor.getExecuted()).isEqualTo(3);
+        assertThat(executor.getPendingClients()).isZero();
+    }
+
+    @Test
+    void execute_tasksOfDifferentClients_scheduledIndependently() {
+        executor.execute("client-1", () -> {
+        });
+        executor.execute("client-2", () -> {
+        });
+
+        assertThat(scheduled).hasSize(2);
+        assertThat(executor.getPendingClients()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_afterQueueEmptied_newQueueScheduled() {
+        executor.execute("client", () -> {
+        });
+        runScheduled();
+
+        executor.execute("client", () -> {
+        });
+
+        assertThat(scheduled).hasSize(1);
+        assertThat(executor.hasPending("client")).isTrue();
+    }
+
+    @Test
+    void execute_taskFails_nextTaskStillRuns() {
+        final var order = new ArrayList<Integer>();
+        executor.execute("client", () -> {
+            throw new IllegalStateException("failed");
+        });
+        executor.execute("client", () -> order.add(2));
+
+        runScheduled();
+
+        assertThat(order).containsExactly(2);
+        assertThat(executor.getExecuted()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_executorRejects_tasksRunOnCallingThread() {
+        final var rejecting = new ClientTaskExecutor(runnable -> {
+            throw new RejectedExecutionException("shut down");
+        });
+        final var thread = new ArrayList<Thread>();
+
+        rejecting.execute("client", () -> thread.add(Thread.currentThread()));
+
+        assertThat(thread).containsExactly(Thread.currentThread());
+        assertThat(rejecting.getRejected()).isOne();
+        assertThat(rejecting.hasPending("client")).isFalse();
+    }
+
+    @Test
+    void execute_concurrentClients_orderKeptPerClient() throws Exception {
+        final var clients = 8;
+        final var tasksPerClient = 2_000;
+        final var executorService = Executors.newFixedThreadPool(4);
+        final var concurrent = new ClientTaskExecutor(executorService);
+        final var orders = new ArrayList<List<Integer>>();
+        final var done = new CountDownLatch(clients);
+        try {
+            for (var client = 0; client < clients; client++) {
+                final var order = Collections.synchronizedList(new ArrayList<Integer>());
+                orders.add(order);
+                for (var task = 0; task < tasksPerClient; task++) {
+                    final var value = task;
+                    concurrent.execute("client-" + client, () -> {
+                        order.add(value);
+                        if (order.size() == tasksPerClient) {
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (final var order : orders) {
+            assertThat(order).hasSize(tasksPerClient).isSorted();
+        }
+    }
+
+    private void runScheduled() {
+        Runnable runnable;
+        while ((runnable = scheduled.poll()) != null) {
+            runnable.run();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.capture;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaptureJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    @Test
+    void append_recordsAreReadInOrder() throws Exception {
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 4);
+        assertThat(journal.append(1_000L, "edge", "spBv1.0/group/NBIRTH/edge", payload("birth"))).isTrue();
+        assertThat(journal.append(1_500L, "edge", "spBv1.0/group/NDATA/edge", payload("data"))).isTrue();
+        assertThat(journal.append(2_000L, "host", "spBv1.0/STATE/host", ByteBuffer.allocate(0))).isTrue();
+        journal.close();
+
+        final var records = readAll(tempDir);
+        assertThat(records).hasSize(3);
+        assertThat(records.get(0).getTimestamp()).isEqualTo(1_000L);
+        assertThat(records.get(0).getClientId()).isEqualTo("edge");
+        assertThat(records.get(0).getTopic()).isEqualTo("spBv1.0/group/NBIRTH/edge");
+        assertThat(string(records.get(0).getPayload())).isEqualTo("birth");
+        assertThat(records.get(1).getTopic()).isEqualTo("spBv1.0/group/NDATA/edge");
+        assertThat(string(records.get(1).getPayload())).isEqualTo("data");
+        assertThat(records.get(2).getClientId()).isEqualTo("host");
+        assertThat(records.get(2).getPayload().remaining()).isZero();
+        assertThat(journal.getCaptured()).isEqualTo(3);
+    }
+
+    @Test
+    void append_doesNotModifyPayloadPosition() throws Exception {
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 4);
+        final var payload = payload("payload");
+
+        journal.append(1L, "edge", "topic", payload);
+
+        assertThat(payload.position()).isZero();
+        assertThat(payload.remaining()).isEqualTo(7);
+    }
+
+    @Test
+    void append_segmentFull_rollsAndDeletesOldestSegments() throws Exception {
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 2, Runnable::run);
+        final var payload = new byte[990];
+        for (var i = 0; i < 20; i++) {
+            payload[0] = (byte) i;
+            assertThat(journal.append(i, "edge", "topic", ByteBuffer.wrap(payload))).isTrue();
+        }
+        journal.close();
+
+        assertThat(journal.getSegmentCount()).isEqualTo(2);
+        assertThat(CaptureJournalReader.segments(tempDir)).hasSize(2);
+        final var records = readAll(tempDir);
+        // 4 records fit into a segment of 4096 bytes
+        assertThat(records).hasSize(8);
+        assertThat(records.get(0).getTimestamp()).isEqualTo(12L);
+        assertThat(records.get(7).getTimestamp()).isEqualTo(19L);
+        assertThat(records.get(7).getPayload().get(0)).isEqualTo((byte) 19);
+    }
+
+    @Test
+    void append_nextSegmentNotReady_droppedWithoutBlocking() throws Exception {
+        final var tasks = new ArrayList<Runnable>();
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 2, tasks::add);
+        final var payload = new byte[990];
+        for (var i = 0; i < 4; i++) {
+            assertThat(journal.append(i, "edge", "topic", ByteBuffer.wrap(payload))).isTrue();
+        }
+
+        // the next segment is still being created by the background thread
+        assertThat(journal.append(4L, "edge", "topic", ByteBuffer.wrap(payload))).isFalse();
+        assertThat(journal.getDropped()).isEqualTo(1);
+
+        tasks.remove(0).run();
+        assertThat(journal.append(5L, "edge", "topic", ByteBuffer.wrap(payload))).isTrue();
+        // writing and releasing the full segment and creating the next one are left to the background thread
+        assertThat(tasks).hasSize(2);
+        tasks.forEach(Runnable::run);
+        journal.close();
+
+        final var records = readAll(tempDir);
+        assertThat(records).hasSize(5);
+        assertThat(records.get(4).getTimestamp()).isEqualTo(5L);
+        // the unused next segment is deleted by close
+        assertThat(CaptureJournalReader.segments(tempDir)).hasSize(2);
+    }
+
+    @Test
+    void append_recordLargerThanSegment_dropped() throws Exception {
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 2);
+
+        assertThat(journal.append(1L, "edge", "topic", ByteBuffer.allocate(SEGMENT_SIZE))).isFalse();
+
+        assertThat(journal.getDropped()).isEqualTo(1);
+        assertThat(journal.getCaptured()).isZero();
+    }
+
+    @Test
+    void append_afterClose_dropped() throws Exception {
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 2);
+        journal.close();
+
+        assertThat(journal.append(1L, "edge", "topic", payload("data"))).isFalse();
+        assertThat(journal.getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void newJournal_continuesWithNextSegment() throws Exception {
+        final var first = new CaptureJournal(tempDir, SEGMENT_SIZE, 4);
+        first.append(1L, "edge", "topic", payload("first"));
+        first.close();
+        final var second = new CaptureJournal(tempDir, SEGMENT_SIZE, 4);
+        second.append(2L, "edge", "topic", payload("second"));
+        second.close();
+
+        assertThat(CaptureJournalReader.segments(tempDir)).hasSize(2);
+        final var records = readAll(tempDir);
+        assertThat(records).hasSize(2);
+        assertThat(string(records.get(0).getPayload())).isEqualTo("first");
+        assertThat(string(records.get(1).getPayload())).isEqualTo("second");
+    }
+
+    @Test
+    void reader_ignoresOtherFiles() throws Exception {
+        final var journal = new CaptureJournal(tempDir, SEGMENT_SIZE, 4);
+        journal.append(1L, "edge", "topic", payload("data"));
+        journal.close();
+        Files.writeString(tempDir.resolve("notes.txt"), "not a segment");
+
+        assertThat(readAll(tempDir)).hasSize(1);
+    }
+
+    @Test
+    void reader_unknownSegmentFormat_throws() throws Exception {
+        Files.write(tempDir.resolve("0000000000000000000.spj"), new byte[]{1, 2, 3, 4, 5});
+
+        final var reader = new CaptureJournalReader(tempDir);
+
+        assertThatThrownBy(reader::next).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void reader_missingDirectory_noRecords() throws Exception {
+        assertThat(new CaptureJournalReader(tempDir.resolve("missing")).next()).isNull();
+    }
+
+    private static @NotNull List<CaptureRecord> readAll(final @NotNull Path directory) throws IOException {
+        final var reader = new CaptureJournalReader(directory);
+        final var records = new ArrayList<CaptureRecord>();
+        for (var record = reader.next(); record != null; record = reader.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static @NotNull ByteBuffer payload(final @NotNull String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static @NotNull String string(final @NotNull ByteBuffer buffer) {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
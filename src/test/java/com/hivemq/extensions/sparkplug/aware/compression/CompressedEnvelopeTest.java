@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.eclipse.tahu.util.CompressionAlgorithm;
+import org.eclipse.tahu.util.PayloadUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+
+class CompressedEnvelopeTest {
+
+    @Test
+    void parse_uncompressedPayload_returnsNull() throws Exception {
+        assertThat(CompressedEnvelope.parse(ByteBuffer.wrap(encode(createPayload(), false)))).isNull();
+    }
+
+    @Test
+    void parse_tahuGzipPayload_detectsAlgorithm() throws Exception {
+        final var original = encode(createPayload(), false);
+        final var compressed = encode(PayloadUtil.compress(createPayload(), CompressionAlgorithm.GZIP, false), false);
+
+        final var envelope = CompressedEnvelope.parse(ByteBuffer.wrap(compressed));
+
+        assertThat(envelope).isNotNull();
+        assertThat(envelope.getCodec()).isSameAs(GzipCodec.INSTANCE);
+        assertThat(toBytes(envelope.getCodec().decompress(envelope.getBody()))).isEqualTo(original);
+    }
+
+    @Test
+    void parse_tahuDeflatePayload_detectsAlgorithm() throws Exception {
+        final var original = encode(createPayload(), false);
+        final var compressed =
+                encode(PayloadUtil.compress(createPayload(), CompressionAlgorithm.DEFLATE, false), false);
+
+        final var envelope = CompressedEnvelope.parse(ByteBuffer.wrap(compressed));
+
+        assertThat(envelope).isNotNull();
+        assertThat(envelope.getCodec()).isSameAs(DeflateCodec.INSTANCE);
+        assertThat(toBytes(envelope.getCodec().decompress(envelope.getBody()))).isEqualTo(original);
+    }
+
+    @Test
+    void decode_uncompressedPayload_returnsPayload() throws Exception {
+        final var payload = ByteBuffer.wrap(encode(createPayload(), false));
+
+        assertThat(CompressedEnvelope.decode(payload)).isSameAs(payload);
+    }
+
+    @Test
+    void decode_compressedPayload_decompressed() throws Exception {
+        final var original = encode(createPayload(), false);
+        final var body = GzipCodec.INSTANCE.compress(ByteBuffer.wrap(original));
+        final var compressed = CompressedEnvelope.encode(GzipCodec.INSTANCE, 1_000L, body);
+
+        final var decoded = CompressedEnvelope.decode(compressed);
+
+        assertThat(toBytes(decoded)).isEqualTo(original);
+        assertThat(compressed.position()).isZero();
+    }
+
+    @Test
+    void encode_readableByTahu() throws Exception {
+        final var original = encode(createPayload(), false);
+        final var body = GzipCodec.INSTANCE.compress(ByteBuffer.wrap(original));
+
+        final var envelope = CompressedEnvelope.encode(GzipCodec.INSTANCE, 1_000L, body);
+
+        final var decoded = new SparkplugBPayloadDecoder().buildFromByteArray(toBytes(envelope), null);
+        final var decompressed = PayloadUtil.decompress(decoded);
+        assertThat(decompressed.getTimestamp()).isEqualTo(new Date(1_000L));
+        assertThat(decompressed.getMetrics()).hasSize(1);
+        assertThat(decompressed.getMetrics().get(0).getValue()).isEqualTo(3L);
+    }
+
+    private static @NotNull SparkplugBPayload createPayload() {
+        final var bdSeq = new Metric.MetricBuilder("bdSeq", Int64, 3L).createMetric();
+        return new SparkplugBPayload(new Date(1_000L), List.of(bdSeq), null, null, null);
+    }
+
+    private static byte @NotNull [] encode(final @NotNull SparkplugBPayload payload, final boolean stripDataTypes)
+            throws Exception {
+        return new SparkplugBPayloadEncoder().getBytes(payload, stripDataTypes);
+    }
+
+    private static byte @NotNull [] toBytes(final @NotNull ByteBuffer buffer) {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.compression;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressionCodecTest {
+
+    private final byte @NotNull [] data = createData(100_000);
+
+    @Test
+    void forAlgorithm_ignoresCase() {
+        assertThat(CompressionCodec.forAlgorithm("gzip")).isSameAs(GzipCodec.INSTANCE);
+        assertThat(CompressionCodec.forAlgorithm("DEFLATE")).isSameAs(DeflateCodec.INSTANCE);
+        assertThat(CompressionCodec.forAlgorithm("LZ4")).isNull();
+    }
+
+    @Test
+    void gzip_compress_readableByGzipInputStream() throws Exception {
+        final var compressed = toBytes(GzipCodec.INSTANCE.compress(ByteBuffer.wrap(data)));
+
+        try (final var in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void gzip_decompress_readsGzipOutputStream() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        try (final var gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+
+        assertThat(toBytes(GzipCodec.INSTANCE.decompress(ByteBuffer.wrap(out.toByteArray())))).isEqualTo(data);
+    }
+
+    @Test
+    void gzip_decompress_invalidChecksum_throws() {
+        final var compressed = toBytes(GzipCodec.INSTANCE.compress(ByteBuffer.wrap(data)));
+        compressed[compressed.length - 8] ^= 1;
+
+        assertThatThrownBy(() -> GzipCodec.INSTANCE.decompress(ByteBuffer.wrap(compressed))).isInstanceOf(
+                IllegalArgumentException.class);
+    }
+
+    @Test
+    void deflate_compress_readableByInflaterInputStream() throws Exception {
+        final var compressed = toBytes(DeflateCodec.INSTANCE.compress(ByteBuffer.wrap(data)));
+
+        try (final var in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(in.readAllBytes()).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void deflate_decompress_readsDeflaterOutputStream() throws Exception {
+        final var out = new ByteArrayOutputStream();
+        try (final var deflate = new DeflaterOutputStream(out)) {
+            deflate.write(data);
+        }
+
+        assertThat(toBytes(DeflateCodec.INSTANCE.decompress(ByteBuffer.wrap(out.toByteArray())))).isEqualTo(data);
+    }
+
+    @Test
+    void deflate_decompress_truncated_throws() {
+        final var compressed = toBytes(DeflateCodec.INSTANCE.compress(ByteBuffer.wrap(data)));
+        final var truncated = ByteBuffer.wrap(Arrays.copyOf(compressed, compressed.length / 2));
+
+        assertThatThrownBy(() -> DeflateCodec.INSTANCE.decompress(truncated)).isInstanceOf(
+                IllegalArgumentException.class);
+    }
+
+    @Test
+    void compress_directBufferWithOffset_doesNotModifyPosition() {
+        final var direct = ByteBuffer.allocateDirect(data.length + 4);
+        direct.put(new byte[2]).put(data).put(new byte[2]);
+        direct.position(2).limit(2 + data.length);
+
+        final var compressed = GzipCodec.INSTANCE.compress(direct);
+
+        assertThat(direct.position()).isEqualTo(2);
+        assertThat(toBytes(GzipCodec.INSTANCE.decompress(compressed))).isEqualTo(data);
+    }
+
+    @Test
+    void compress_reusedPerThread_producesSameResult() {
+        final var first = toBytes(GzipCodec.INSTANCE.compress(ByteBuffer.wrap(data)));
+        GzipCodec.INSTANCE.compress(ByteBuffer.wrap(createData(10)));
+        final var second = toBytes(GzipCodec.INSTANCE.compress(ByteBuffer.wrap(data)));
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    private static byte @NotNull [] createData(final int length) {
+        final var data = new byte[length];
+        new Random(42).nextBytes(data);
+        // make the first half compressible
+        for (var i = 0; i < length / 2; i++) {
+            data[i] = (byte) (i % 7);
+        }
+        return data;
+    }
+
+    private static byte @NotNull [] toBytes(final @NotNull ByteBuffer buffer) {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
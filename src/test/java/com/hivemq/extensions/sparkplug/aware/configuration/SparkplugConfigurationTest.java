@@ -16,6 +16,11 @@
 
 package com.hivemq.extensions.sparkplug.aware.configuration;
 
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
+import com.hivemq.extensions.sparkplug.aware.log.OverflowPolicy;
+import com.hivemq.extensions.sparkplug.aware.registry.StaleDeathPolicy;
+import com.hivemq.extensions.sparkplug.aware.republish.DedupMode;
+import com.hivemq.extensions.sparkplug.aware.utils.JsonLogFormat;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -26,6 +31,7 @@ import java.nio.file.Path;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class SparkplugConfigurationTest {
 
@@ -51,6 +57,67 @@ class SparkplugConfigurationTest {
         assertThat(configuration.getSparkplugVersion()).isEqualTo("spBv2.0");
     }
 
+    @Test
+    void shouldReturnMultipleSparkplugVersions() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spAv1.0, spBv1.0,"));
+        assertThat(configuration.getSparkplugVersions()).containsExactly("spAv1.0", "spBv1.0");
+    }
+
+    @Test
+    void shouldReturnNamespacePoliciesWithGlobalDefaults() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spAv1.0,spBv1.0",
+                "sparkplug.systopic=$custom/path/",
+                "sparkplug.compression=true"));
+        final var policies = configuration.getNamespacePolicies();
+        assertThat(policies).hasSize(2);
+        assertThat(policies).allSatisfy(policy -> {
+            assertThat(policy.getSysTopic()).isEqualTo("$custom/path/");
+            assertThat(policy.isCompression()).isTrue();
+            assertThat(policy.isJsonLogEnabled()).isFalse();
+        });
+    }
+
+    @Test
+    void shouldReturnNamespacePoliciesWithOverrides() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spAv1.0,spBv1.0",
+                "sparkplug.namespace.spAv1.0.systopic=$legacy/certificates/",
+                "sparkplug.namespace.spAv1.0.compression=true",
+                "sparkplug.namespace.spBv1.0.json.log=true"));
+        final var trie = configuration.getNamespaceTrie();
+
+        final var legacy = trie.match("spAv1.0/group/NBIRTH/node");
+        assertThat(legacy).isNotNull();
+        assertThat(legacy.getSysTopic()).isEqualTo("$legacy/certificates/");
+        assertThat(legacy.isCompression()).isTrue();
+        assertThat(legacy.isJsonLogEnabled()).isFalse();
+
+        final var current = trie.match("spBv1.0/group/NBIRTH/node");
+        assertThat(current).isNotNull();
+        assertThat(current.getSysTopic()).isEqualTo("$sparkplug/certificates/");
+        assertThat(current.isCompression()).isFalse();
+        assertThat(current.isJsonLogEnabled()).isTrue();
+    }
+
+    @Test
+    void shouldReturnGlobalDefaultsForInvalidNamespaceOverrides() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spAv1.0,spBv1.0",
+                "sparkplug.compression=true",
+                "sparkplug.namespace.spAv1.0.compression=yes",
+                "sparkplug.namespace.spAv1.0.json.log=enabled",
+                "sparkplug.namespace.spBv1.0.compression= FALSE "));
+        final var policies = configuration.getNamespacePolicies();
+
+        assertThat(policies.get(0).isCompression()).isTrue();
+        assertThat(policies.get(0).isJsonLogEnabled()).isFalse();
+        assertThat(policies.get(1).isCompression()).isFalse();
+    }
+
+    @Test
+    void shouldRejectDuplicateNamespaces() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spBv1.0,spBv1.0"));
+        assertThatThrownBy(configuration::getNamespaceTrie).isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void shouldReturnDefaultSysTopic() throws Exception {
         final var configuration = createConfiguration(List.of());
@@ -81,6 +148,88 @@ class SparkplugConfigurationTest {
         assertThat(configuration.getCompression()).isFalse();
     }
 
+    @Test
+    void shouldReturnDefaultCompressionForInvalidValue() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.compression=1"));
+        assertThat(configuration.getCompression()).isFalse();
+    }
+
+    @Test
+    void shouldReturnDefaultCompressionAlgorithm() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getCompressionAlgorithm().getAlgorithm()).isEqualTo("GZIP");
+    }
+
+    @Test
+    void shouldReturnConfiguredCompressionAlgorithm() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.compression.algorithm=deflate"));
+        assertThat(configuration.getCompressionAlgorithm().getAlgorithm()).isEqualTo("DEFLATE");
+    }
+
+    @Test
+    void shouldReturnDefaultCompressionAlgorithmWhenUnsupported() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.compression.algorithm=LZ4"));
+        assertThat(configuration.getCompressionAlgorithm().getAlgorithm()).isEqualTo("GZIP");
+    }
+
+    @Test
+    void shouldReturnNamespacePolicyCompressionAlgorithm() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.version=spAv1.0,spBv1.0",
+                "sparkplug.compression=true",
+                "sparkplug.namespace.spAv1.0.compression.algorithm=DEFLATE"));
+        final var policies = configuration.getNamespacePolicies();
+        assertThat(policies.get(0).getCompression()).isNotNull();
+        assertThat(policies.get(0).getCompression().getAlgorithm()).isEqualTo("DEFLATE");
+        assertThat(policies.get(1).getCompression()).isNotNull();
+        assertThat(policies.get(1).getCompression().getAlgorithm()).isEqualTo("GZIP");
+    }
+
+    @Test
+    void shouldReturnDefaultJsonLogFormat() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getJsonLogFormat()).isEqualTo(JsonLogFormat.PRETTY);
+    }
+
+    @Test
+    void shouldReturnConfiguredJsonLogFormat() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.json.log.format=ndjson"));
+        assertThat(configuration.getJsonLogFormat()).isEqualTo(JsonLogFormat.NDJSON);
+    }
+
+    @Test
+    void shouldReturnDefaultJsonLogFormatWhenUnsupported() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.json.log.format=xml"));
+        assertThat(configuration.getJsonLogFormat()).isEqualTo(JsonLogFormat.PRETTY);
+    }
+
+    @Test
+    void shouldReturnDefaultJsonLogQueueSettings() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getJsonLogQueueSize()).isEqualTo(8192);
+        assertThat(configuration.getJsonLogOverflowPolicy()).isEqualTo(OverflowPolicy.DROP_NEWEST);
+        assertThat(configuration.getJsonLogSampleRate()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldReturnConfiguredJsonLogQueueSettings() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.json.log.queue.size=0",
+                "sparkplug.json.log.overflow=sample",
+                "sparkplug.json.log.sample.rate=100"));
+        assertThat(configuration.getJsonLogQueueSize()).isZero();
+        assertThat(configuration.getJsonLogOverflowPolicy()).isEqualTo(OverflowPolicy.SAMPLE);
+        assertThat(configuration.getJsonLogSampleRate()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldReturnDefaultJsonLogQueueSettingsForInvalidValues() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.json.log.queue.size=-1",
+                "sparkplug.json.log.overflow=block",
+                "sparkplug.json.log.sample.rate=0"));
+        assertThat(configuration.getJsonLogQueueSize()).isEqualTo(8192);
+        assertThat(configuration.getJsonLogOverflowPolicy()).isEqualTo(OverflowPolicy.DROP_NEWEST);
+        assertThat(configuration.getJsonLogSampleRate()).isEqualTo(10);
+    }
+
     @Test
     void shouldReturnDefaultJsonLogEnabled() throws Exception {
         final var configuration = createConfiguration(List.of());
@@ -130,6 +279,203 @@ class SparkplugConfigurationTest {
         assertThat(configuration.getSparkplugSystopicMsgexpiry()).isEqualTo(0L);
     }
 
+    @Test
+    void shouldReturnDefaultNdeathTimestampBucket() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getNdeathTimestampBucket()).isEqualTo(10L);
+    }
+
+    @Test
+    void shouldReturnConfiguredNdeathTimestampBucket() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.ndeath.timestamp.bucket=0"));
+        assertThat(configuration.getNdeathTimestampBucket()).isZero();
+    }
+
+    @Test
+    void shouldReturnDefaultNdeathTemplateSize() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getNdeathTemplateSize()).isEqualTo(100_000);
+    }
+
+    @Test
+    void shouldReturnConfiguredNdeathTemplateSize() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.ndeath.template.size=500"));
+        assertThat(configuration.getNdeathTemplateSize()).isEqualTo(500);
+    }
+
+    @Test
+    void shouldReturnDefaultTopicCacheSize() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getTopicCacheSize()).isEqualTo(100_000);
+    }
+
+    @Test
+    void shouldReturnConfiguredTopicCacheSize() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.topic.cache.size=0"));
+        assertThat(configuration.getTopicCacheSize()).isZero();
+    }
+
+    @Test
+    void shouldReturnDefaultTopicCacheSizeForOutOfRangeValue() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.topic.cache.size=4294967296"));
+        assertThat(configuration.getTopicCacheSize()).isEqualTo(100_000);
+    }
+
+    @Test
+    void shouldReturnDefaultSysTopicPublishLimits() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getSysTopicInFlightMax()).isEqualTo(1_000);
+        assertThat(configuration.getSysTopicQueueSize()).isEqualTo(100_000);
+    }
+
+    @Test
+    void shouldReturnConfiguredSysTopicPublishLimits() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.systopic.inflight.max=10",
+                "sparkplug.systopic.queue.size=500"));
+        assertThat(configuration.getSysTopicInFlightMax()).isEqualTo(10);
+        assertThat(configuration.getSysTopicQueueSize()).isEqualTo(500);
+    }
+
+    @Test
+    void shouldReturnDefaultSysTopicPublishLimitsForZero() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.systopic.inflight.max=0",
+                "sparkplug.systopic.queue.size=0"));
+        assertThat(configuration.getSysTopicInFlightMax()).isEqualTo(1_000);
+        assertThat(configuration.getSysTopicQueueSize()).isEqualTo(100_000);
+    }
+
+    @Test
+    void shouldReturnDefaultSysTopicDedupMode() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getSysTopicDedupMode()).isEqualTo(DedupMode.OFF);
+        assertThat(configuration.getSysTopicDedupSize()).isEqualTo(100_000);
+    }
+
+    @Test
+    void shouldReturnConfiguredSysTopicDedupMode() throws Exception {
+        final var configuration =
+                createConfiguration(List.of("sparkplug.systopic.dedup=LIVE", "sparkplug.systopic.dedup.size=500"));
+        assertThat(configuration.getSysTopicDedupMode()).isEqualTo(DedupMode.LIVE);
+        assertThat(configuration.getSysTopicDedupSize()).isEqualTo(500);
+    }
+
+    @Test
+    void shouldReturnDefaultSysTopicDedupModeWhenUnsupported() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.systopic.dedup=always"));
+        assertThat(configuration.getSysTopicDedupMode()).isEqualTo(DedupMode.OFF);
+    }
+
+    @Test
+    void shouldReturnSysTopicSnapshotSettings() throws Exception {
+        final var defaults = createConfiguration(List.of());
+        assertThat(defaults.getSysTopicSnapshotEnabled()).isFalse();
+        assertThat(defaults.getSysTopicSnapshotSize()).isEqualTo(100_000);
+        assertThat(defaults.getSysTopicSnapshotBatchSize()).isEqualTo(1_000);
+        assertThat(defaults.getSysTopicSnapshotTick()).isEqualTo(10L);
+
+        final var configuration = createConfiguration(List.of("sparkplug.systopic.snapshot=true",
+                "sparkplug.systopic.snapshot.batch.size=0",
+                "sparkplug.systopic.snapshot.tick=50"));
+        assertThat(configuration.getSysTopicSnapshotEnabled()).isTrue();
+        assertThat(configuration.getSysTopicSnapshotBatchSize()).isEqualTo(1_000);
+        assertThat(configuration.getSysTopicSnapshotTick()).isEqualTo(50L);
+    }
+
+    @Test
+    void shouldReturnConfiguredStaleDeathPolicy() throws Exception {
+        assertThat(createConfiguration(List.of()).getStaleDeathPolicy()).isEqualTo(StaleDeathPolicy.DELIVER);
+        assertThat(createConfiguration(List.of("sparkplug.ndeath.stale=DROP")).getStaleDeathPolicy()).isEqualTo(
+                StaleDeathPolicy.DROP);
+        assertThat(createConfiguration(List.of("sparkplug.ndeath.stale=hide")).getStaleDeathPolicy()).isEqualTo(
+                StaleDeathPolicy.DELIVER);
+    }
+
+    @Test
+    void shouldReturnDefaultMetrics2TopicSettings() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getMetrics2TopicEnabled()).isFalse();
+        assertThat(configuration.getMetrics2TopicPrefix()).isEqualTo("$sparkplug/metrics/");
+        assertThat(configuration.getMetrics2TopicInFlightMax()).isEqualTo(10_000);
+    }
+
+    @Test
+    void shouldReturnSeqValidationEnabledByDefault() throws Exception {
+        assertThat(createConfiguration(List.of()).getSeqValidationEnabled()).isTrue();
+        assertThat(createConfiguration(List.of("sparkplug.seq.validation=false")).getSeqValidationEnabled()).isFalse();
+    }
+
+    @Test
+    void shouldReturnAliasResolutionEnabledByDefault() throws Exception {
+        assertThat(createConfiguration(List.of()).getAliasResolutionEnabled()).isTrue();
+        assertThat(createConfiguration(List.of("sparkplug.alias.resolution=false")).getAliasResolutionEnabled())
+                .isFalse();
+    }
+
+    @Test
+    void shouldReturnLastValuesDisabledByDefault() throws Exception {
+        assertThat(createConfiguration(List.of()).getLastValuesEnabled()).isFalse();
+        assertThat(createConfiguration(List.of("sparkplug.lastvalues=true")).getLastValuesEnabled()).isTrue();
+        assertThat(createConfiguration(List.of()).getLastValuesTopic()).isEqualTo("$sparkplug/lastvalues/");
+    }
+
+    @Test
+    void shouldReturnDefaultCaptureSettings() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getCaptureEnabled()).isFalse();
+        assertThat(configuration.getCaptureDirectory()).isEqualTo("capture");
+        assertThat(configuration.getCaptureSegmentSize()).isEqualTo(64 * 1024 * 1024);
+        assertThat(configuration.getCaptureSegmentsMax()).isEqualTo(16);
+    }
+
+    @Test
+    void shouldReturnConfiguredCaptureSettings() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.capture=true",
+                "sparkplug.capture.dir=/var/capture",
+                "sparkplug.capture.segment.size=1048576",
+                "sparkplug.capture.segments.max=4"));
+        assertThat(configuration.getCaptureEnabled()).isTrue();
+        assertThat(configuration.getCaptureDirectory()).isEqualTo("/var/capture");
+        assertThat(configuration.getCaptureSegmentSize()).isEqualTo(1_048_576);
+        assertThat(configuration.getCaptureSegmentsMax()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldReturnDefaultCaptureSegmentSizeWhenTooSmall() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.capture.segment.size=1024"));
+        assertThat(configuration.getCaptureSegmentSize()).isEqualTo(64 * 1024 * 1024);
+    }
+
+    @Test
+    void shouldReturnDefaultAsyncSettings() throws Exception {
+        final var configuration = createConfiguration(List.of());
+        assertThat(configuration.getAsyncEnabled()).isFalse();
+        assertThat(configuration.getAsyncTimeout()).isEqualTo(10_000L);
+        assertThat(configuration.getAsyncTimeoutFallback()).isEqualTo(TimeoutFallback.SUCCESS);
+        assertThat(configuration.getAsyncThreads()).isZero();
+    }
+
+    @Test
+    void shouldReturnConfiguredAsyncSettings() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.async=true",
+                "sparkplug.async.timeout=2000",
+                "sparkplug.async.fallback=FAILURE",
+                "sparkplug.async.threads=4"));
+        assertThat(configuration.getAsyncEnabled()).isTrue();
+        assertThat(configuration.getAsyncTimeout()).isEqualTo(2_000L);
+        assertThat(configuration.getAsyncTimeoutFallback()).isEqualTo(TimeoutFallback.FAILURE);
+        assertThat(configuration.getAsyncThreads()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldReturnDefaultAsyncSettingsWhenInvalid() throws Exception {
+        final var configuration = createConfiguration(List.of("sparkplug.async.timeout=0",
+                "sparkplug.async.fallback=retry",
+                "sparkplug.async.threads=-1"));
+        assertThat(configuration.getAsyncTimeout()).isEqualTo(10_000L);
+        assertThat(configuration.getAsyncTimeoutFallback()).isEqualTo(TimeoutFallback.SUCCESS);
+        assertThat(configuration.getAsyncThreads()).isZero();
+    }
+
     @Test
     void shouldReturnFilename() throws Exception {
         final var configuration = createConfiguration(List.of());
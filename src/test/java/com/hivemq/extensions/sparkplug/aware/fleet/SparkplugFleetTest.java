@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.fleet;
+
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.utils.SequenceNumbers;
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.eclipse.tahu.util.CompressionAlgorithm;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SparkplugFleetTest {
+
+    @Test
+    void sameSeed_generatesSameTraffic() {
+        final var first = SparkplugFleet.builder(7).groups(2).edgeNodes(3).devices(2).build();
+        final var second = SparkplugFleet.builder(7).groups(2).edgeNodes(3).devices(2).build();
+
+        final var firstBirths = first.births();
+        final var secondBirths = second.births();
+        assertThat(firstBirths).hasSize(2 * 3 * 3);
+        for (var i = 0; i < firstBirths.size(); i++) {
+            assertThat(firstBirths.get(i).getTopic()).isEqualTo(secondBirths.get(i).getTopic());
+            assertThat(firstBirths.get(i).getPayloadBytes()).isEqualTo(secondBirths.get(i).getPayloadBytes());
+        }
+        for (var i = 0; i < 100; i++) {
+            final var firstData = first.nextData();
+            final var secondData = second.nextData();
+            assertThat(firstData.getTopic()).isEqualTo(secondData.getTopic());
+            assertThat(firstData.getPayloadBytes()).isEqualTo(secondData.getPayloadBytes());
+        }
+    }
+
+    @Test
+    void births_declareNamesAndUniqueAliasesPerEdgeNode() throws Exception {
+        final var edgeNode = SparkplugFleet.builder(7).edgeNodes(1).devices(2).nodeMetrics(3).deviceMetrics(4).build()
+                .getEdgeNode(0);
+
+        final var births = edgeNode.births();
+
+        assertThat(births).extracting(SparkplugMessage::getTopic)
+                .containsExactly("spBv1.0/group-0/NBIRTH/edge-node-0",
+                        "spBv1.0/group-0/DBIRTH/edge-node-0/device-0",
+                        "spBv1.0/group-0/DBIRTH/edge-node-0/device-1");
+        final var nbirth = decode(births.get(0));
+        assertThat(nbirth.getSeq()).isZero();
+        assertThat(nbirth.getMetrics()).hasSize(4);
+        assertThat(nbirth.getMetrics().get(0).getName()).isEqualTo("bdSeq");
+        assertThat(nbirth.getMetrics().subList(1, 4)).extracting(Metric::getAlias).containsExactly(0L, 1L, 2L);
+        assertThat(decode(births.get(1)).getMetrics()).extracting(Metric::getAlias).containsExactly(3L, 4L, 5L, 6L);
+        assertThat(decode(births.get(2)).getMetrics()).extracting(Metric::getAlias).containsExactly(7L, 8L, 9L, 10L);
+        assertThat(decode(births.get(2)).getSeq()).isEqualTo(2);
+        for (final var birth : births) {
+            assertThat(new TopicStructure(birth.getTopic()).isValid("spBv1.0")).isTrue();
+            assertThat(birth.getClientId()).isEqualTo("group-0-edge-node-0");
+        }
+    }
+
+    @Test
+    void data_addressesMetricsByAlias() throws Exception {
+        final var edgeNode = SparkplugFleet.builder(7).edgeNodes(1).nodeMetrics(10).dataMetrics(4).build()
+                .getEdgeNode(0);
+        edgeNode.nbirth();
+
+        final var ndata = edgeNode.ndata();
+
+        assertThat(ndata.getMessageType()).isEqualTo(MessageType.NDATA);
+        final var payload = decode(ndata);
+        assertThat(payload.getSeq()).isEqualTo(1);
+        assertThat(payload.getMetrics()).hasSize(4).allSatisfy(metric -> {
+            assertThat(metric.getName()).isNullOrEmpty();
+            assertThat(metric.getAlias()).isBetween(0L, 9L);
+        });
+        assertThat(payload.getMetrics()).extracting(Metric::getAlias).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void data_withoutAliases_addressesMetricsByName() throws Exception {
+        final var edgeNode = SparkplugFleet.builder(7).edgeNodes(1).aliases(false).build().getEdgeNode(0);
+
+        final var payload = decode(edgeNode.ndata());
+
+        assertThat(payload.getMetrics()).isNotEmpty().allSatisfy(metric -> {
+            assertThat(metric.getName()).isNotNull();
+            assertThat(metric.getAlias()).isNull();
+        });
+    }
+
+    @Test
+    void seq_wrapsAfter255() {
+        final var edgeNode = SparkplugFleet.builder(7).edgeNodes(1).build().getEdgeNode(0);
+        edgeNode.nbirth();
+        for (var i = 0; i < 254; i++) {
+            edgeNode.ndata();
+        }
+
+        assertThat(SequenceNumbers.readSeq(edgeNode.ndata().getPayload())).isEqualTo(255);
+        assertThat(SequenceNumbers.readSeq(edgeNode.ndata().getPayload())).isZero();
+        assertThat(SequenceNumbers.readSeq(edgeNode.nbirth().getPayload())).isZero();
+        assertThat(SequenceNumbers.readSeq(edgeNode.ndata().getPayload())).isEqualTo(1);
+    }
+
+    @Test
+    void ndeath_carriesBdSeqOfSession() {
+        final var edgeNode = SparkplugFleet.builder(7).edgeNodes(1).build().getEdgeNode(0);
+
+        final var ndeath = edgeNode.ndeath();
+        edgeNode.reconnect();
+
+        assertThat(ndeath.getTopic()).isEqualTo("spBv1.0/group-0/NDEATH/edge-node-0");
+        assertThat(SequenceNumbers.readBdSeq(ndeath.getPayload())).isZero();
+        assertThat(SequenceNumbers.readSeq(ndeath.getPayload())).isEqualTo(SequenceNumbers.UNKNOWN);
+        assertThat(SequenceNumbers.readBdSeq(edgeNode.nbirth().getPayload())).isEqualTo(1);
+        assertThat(SequenceNumbers.readBdSeq(edgeNode.ndeath().getPayload())).isEqualTo(1);
+    }
+
+    @Test
+    void compression_compressesAllPayloads() {
+        final var fleet = SparkplugFleet.builder(7).edgeNodes(1).devices(1).compression(CompressionAlgorithm.GZIP)
+                .build();
+
+        for (final var message : fleet.births()) {
+            final var envelope = CompressedEnvelope.parse(message.getPayload());
+            assertThat(envelope).isNotNull();
+            assertThat(envelope.getCodec().getAlgorithm()).isEqualTo("GZIP");
+        }
+        assertThat(CompressedEnvelope.parse(fleet.nextData().getPayload())).isNotNull();
+        assertThat(CompressedEnvelope.parse(fleet.deaths().get(0).getPayload())).isNotNull();
+    }
+
+    @Test
+    void dataTypes_assignedToMetrics() throws Exception {
+        final var edgeNode = SparkplugFleet.builder(7)
+                .edgeNodes(1)
+                .dataTypes(MetricDataType.UInt64, MetricDataType.DateTime, MetricDataType.Int8)
+                .nodeMetrics(30)
+                .build()
+                .getEdgeNode(0);
+
+        assertThat(edgeNode.getNodeMetrics()).extracting(MetricDefinition::getDataType)
+                .containsOnly(MetricDataType.UInt64, MetricDataType.DateTime, MetricDataType.Int8);
+        assertThat(decode(edgeNode.nbirth()).getMetrics()).hasSize(31);
+    }
+
+    @Test
+    void dataTypes_unsupported_throws() {
+        assertThatThrownBy(() -> SparkplugFleet.builder(7).dataTypes(MetricDataType.DataSet))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static @NotNull SparkplugBPayload decode(final @NotNull SparkplugMessage message) throws Exception {
+        return new SparkplugBPayloadDecoder().buildFromByteArray(message.getPayloadBytes(), null);
+    }
+}
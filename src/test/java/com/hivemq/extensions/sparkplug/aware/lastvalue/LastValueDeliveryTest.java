@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extension.sdk.api.services.publish.PublishToClientResult;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Answers.RETURNS_SELF;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LastValueDeliveryTest {
+
+    private final @NotNull PublishService publishService = mock();
+    private final @NotNull ScheduledExecutorService scheduler = mock();
+    private final @NotNull LastValueStore store = new LastValueStore();
+    private final @NotNull List<String> delivered = new ArrayList<>();
+    private final @NotNull LastValueDelivery delivery = new LastValueDelivery(publishService,
+            store,
+            "$sparkplug/lastvalues/",
+            LastValueDeliveryTest::createRecordingPublishBuilder,
+            scheduler);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(publishService.publishToClient(any(Publish.class), anyString())).thenAnswer(invocation -> {
+            delivered.add(invocation.<Publish>getArgument(0).getTopic() + " -> " + invocation.getArgument(1));
+            return CompletableFuture.completedFuture(PublishToClientResult.SUCCESSFUL);
+        });
+        publish("spBv1.0/g1/NBIRTH/n1");
+        publish("spBv1.0/g1/DBIRTH/n1/d1");
+        publish("spBv1.0/g1/NBIRTH/n2");
+        publish("spBv1.0/g2/NBIRTH/n1");
+    }
+
+    @Test
+    void deliver_otherTopic_notDelivered() {
+        assertThat(delivery.deliver("host", "$sparkplug/metrics/#")).isFalse();
+
+        verifyNoInteractions(scheduler);
+    }
+
+    @Test
+    void deliver_scheduledAfterTheSubscriptionWasAdded() {
+        assertThat(delivery.deliver("host", "$sparkplug/lastvalues/#")).isTrue();
+
+        verify(scheduler).schedule(any(Runnable.class), eq(LastValueDelivery.DELAY_MILLIS), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void publish_matchingEdgeNodesAndDevicesDelivered() {
+        delivery.publish("host", "$sparkplug/lastvalues/g1/+/#");
+
+        assertThat(delivered).containsExactlyInAnyOrder("$sparkplug/lastvalues/g1/n1 -> host",
+                "$sparkplug/lastvalues/g1/n1/d1 -> host",
+                "$sparkplug/lastvalues/g1/n2 -> host");
+        assertThat(delivery.getDelivered()).isEqualTo(3);
+        assertThat(delivery.getFailed()).isZero();
+    }
+
+    @Test
+    void publish_singleDevice() {
+        delivery.publish("host", "$sparkplug/lastvalues/g1/n1/d1");
+
+        assertThat(delivered).containsExactly("$sparkplug/lastvalues/g1/n1/d1 -> host");
+    }
+
+    @Test
+    void publish_notSubscribed_failed() {
+        when(publishService.publishToClient(any(Publish.class), anyString())).thenReturn(CompletableFuture
+                .completedFuture(PublishToClientResult.NOT_SUBSCRIBED));
+
+        delivery.publish("host", "$sparkplug/lastvalues/g2/n1");
+
+        assertThat(delivery.getDelivered()).isZero();
+        assertThat(delivery.getFailed()).isOne();
+    }
+
+    private static @NotNull PublishBuilder createRecordingPublishBuilder() {
+        final var topic = new String[1];
+        final var publishBuilder = mock(PublishBuilder.class, RETURNS_SELF);
+        when(publishBuilder.topic(any())).thenAnswer(invocation -> {
+            topic[0] = invocation.getArgument(0);
+            return publishBuilder;
+        });
+        when(publishBuilder.build()).thenAnswer(invocation -> {
+            final var publish = mock(Publish.class);
+            when(publish.getTopic()).thenReturn(topic[0]);
+            return publish;
+        });
+        return publishBuilder;
+    }
+
+    private void publish(final @NotNull String topic) throws Exception {
+        final var metric = new Metric.MetricBuilder("m", MetricDataType.Int32, 1).alias(1L).createMetric();
+        final var payload = new SparkplugBPayload(new Date(1_000L), List.of(metric), 0L, null, null);
+        store.onPublish(new TopicStructure(topic),
+                ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(payload, false)),
+                null);
+    }
+}
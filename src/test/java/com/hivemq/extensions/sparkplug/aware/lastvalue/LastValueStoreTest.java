@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.lastvalue;
+
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.tahu.message.model.MetricDataType.Boolean;
+import static org.eclipse.tahu.message.model.MetricDataType.Double;
+import static org.eclipse.tahu.message.model.MetricDataType.Float;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+import static org.eclipse.tahu.message.model.MetricDataType.Int8;
+import static org.eclipse.tahu.message.model.MetricDataType.String;
+import static org.eclipse.tahu.message.model.MetricDataType.UInt32;
+
+class LastValueStoreTest {
+
+    private final @NotNull LastValueStore store = new LastValueStore();
+
+    @Test
+    void birth_valuesStoredInTheirColumns() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node",
+                1_000L,
+                metric("int8", 1L, Int8, (byte) -3),
+                metric("uint32", 2L, UInt32, 4_000_000_000L),
+                metric("int64", 3L, Int64, Long.MIN_VALUE),
+                metric("float", 4L, Float, 1.5f),
+                metric("double", 5L, Double, -2.25),
+                metric("boolean", 6L, Boolean, true),
+                metric("string", 7L, String, "text"));
+
+        final var values = store.get("group", "node", null);
+        assertThat(values).isNotNull();
+        assertThat(values.size()).isEqualTo(7);
+        assertThat(values.getLong(values.indexOf("int8"))).isEqualTo(-3);
+        assertThat(values.getLong(values.indexOf("uint32"))).isEqualTo(4_000_000_000L);
+        assertThat(values.getLong(values.indexOf("int64"))).isEqualTo(Long.MIN_VALUE);
+        assertThat(values.getDouble(values.indexOf("float"))).isEqualTo(1.5);
+        assertThat(values.getDouble(values.indexOf("double"))).isEqualTo(-2.25);
+        assertThat(values.getLong(values.indexOf("boolean"))).isEqualTo(1);
+        assertThat(values.getString(values.indexOf("string"))).isEqualTo("text");
+        assertThat(values.getValueType(values.indexOf("string"))).isEqualTo(ValueType.STRING);
+        assertThat(values.getTimestamp(values.indexOf("double"))).isEqualTo(1_000L);
+        assertThat(store.getMetricCount()).isEqualTo(7);
+        assertThatThrownBy(() -> values.getLong(values.indexOf("double"))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void data_aliasesAndNamesResolved() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node", 1_000L, metric("a", 1L, Int32, 1), metric("b", 2L, Double, 1.0));
+        publish("spBv1.0/group/NDATA/node", 2_000L, metric(null, 1L, Int32, 42), metric(null, 3L, Int32, 7));
+        publish("spBv1.0/group/NDATA/node", 3_000L, metric("b", null, Double, 0.5));
+
+        final var values = store.get("group", "node", null);
+        assertThat(values).isNotNull();
+        assertThat(values.getLong(values.indexOf("a"))).isEqualTo(42);
+        assertThat(values.getTimestamp(values.indexOf("a"))).isEqualTo(2_000L);
+        assertThat(values.getDouble(values.indexOf("b"))).isEqualTo(0.5);
+        assertThat(values.getTimestamp(values.indexOf("b"))).isEqualTo(3_000L);
+        assertThat(store.getUnresolved()).isEqualTo(1);
+        assertThat(store.getUpdates()).isEqualTo(3);
+    }
+
+    @Test
+    void data_nullValue_hasNoValue() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node", 1_000L, metric("s", 1L, String, "text"));
+        publish("spBv1.0/group/NDATA/node", 2_000L, metric(null, 1L, String, null));
+
+        final var values = store.get("group", "node", null);
+        assertThat(values).isNotNull();
+        assertThat(values.isNull(0)).isTrue();
+        assertThat(values.hasValue(0)).isFalse();
+        assertThat(values.getString(0)).isNull();
+    }
+
+    @Test
+    void snapshot_notChangedByLaterData() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node", 1_000L, metric("a", 1L, Int32, 1));
+        final var snapshot = store.get("group", "node", null);
+        publish("spBv1.0/group/NDATA/node", 2_000L, metric(null, 1L, Int32, 2));
+
+        assertThat(snapshot).isNotNull();
+        assertThat(snapshot.getLong(0)).isEqualTo(1);
+        assertThat(store.get("group", "node", null)).isNotNull().satisfies(values -> assertThat(values.getLong(0))
+                .isEqualTo(2));
+    }
+
+    @Test
+    void deathsAndRebirths_releaseValues() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node", 1_000L, metric("a", 1L, Int32, 1));
+        publish("spBv1.0/group/DBIRTH/node/device", 1_000L, metric("b", 1L, Int32, 2), metric("c", 2L, Int32, 3));
+        assertThat(store.getMetricCount()).isEqualTo(3);
+
+        publish("spBv1.0/group/DDEATH/node/device", 2_000L);
+        assertThat(store.get("group", "node", "device")).isNull();
+        assertThat(store.getMetricCount()).isEqualTo(1);
+
+        publish("spBv1.0/group/DBIRTH/node/device", 3_000L, metric("b", 1L, Int32, 2));
+        publish("spBv1.0/group/NBIRTH/node", 4_000L, metric("a", 1L, Int32, 5), metric("d", 2L, Int32, 6));
+        // the devices of the previous session have to be born again
+        assertThat(store.get("group", "node", "device")).isNull();
+        assertThat(store.getMetricCount()).isEqualTo(2);
+
+        store.onNodeDeath("group", "node");
+        assertThat(store.get("group", "node", null)).isNull();
+        assertThat(store.getMetricCount()).isZero();
+    }
+
+    @Test
+    void data_withoutBirth_unresolved() throws Exception {
+        publish("spBv1.0/group/DDATA/node/device", 1_000L, metric("a", 1L, Int32, 1));
+
+        assertThat(store.get("group", "node", "device")).isNull();
+        assertThat(store.getUnresolved()).isEqualTo(1);
+    }
+
+    @Test
+    void encode_readableSparkplugPayload() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node",
+                1_000L,
+                metric("int8", 1L, Int8, (byte) -3),
+                metric("uint32", 2L, UInt32, 4_000_000_000L),
+                metric("int64", 3L, Int64, Long.MIN_VALUE),
+                metric("float", 4L, Float, 1.5f),
+                metric("double", 5L, Double, -2.25),
+                metric("boolean", 6L, Boolean, true),
+                metric("string", 7L, String, "text"));
+        publish("spBv1.0/group/NDATA/node", 2_000L, metric(null, 7L, String, null));
+
+        final var values = store.get("group", "node", null);
+        assertThat(values).isNotNull();
+        final var encoded = values.encode(3_000L);
+        final var bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        final var payload = new SparkplugBPayloadDecoder().buildFromByteArray(bytes, null);
+
+        assertThat(payload.getTimestamp().getTime()).isEqualTo(3_000L);
+        final var metrics = payload.getMetrics();
+        assertThat(metrics).hasSize(7);
+        assertThat(metrics.get(0).getName()).isEqualTo("int8");
+        assertThat(metrics.get(0).getValue()).isEqualTo((byte) -3);
+        assertThat(metrics.get(1).getValue()).isEqualTo(4_000_000_000L);
+        assertThat(metrics.get(2).getValue()).isEqualTo(Long.MIN_VALUE);
+        assertThat(metrics.get(3).getValue()).isEqualTo(1.5f);
+        assertThat(metrics.get(4).getValue()).isEqualTo(-2.25);
+        assertThat(metrics.get(4).getTimestamp().getTime()).isEqualTo(1_000L);
+        assertThat(metrics.get(5).getValue()).isEqualTo(true);
+        assertThat(metrics.get(6).getName()).isEqualTo("string");
+        assertThat(metrics.get(6).getValue()).isNull();
+        assertThat(metrics.get(6).getTimestamp().getTime()).isEqualTo(2_000L);
+    }
+
+    @Test
+    void ids_listOnlineEdgeNodesAndDevices() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node", 1_000L, metric("a", 1L, Int32, 1));
+        publish("spBv1.0/group/DBIRTH/node/device", 1_000L, metric("b", 1L, Int32, 2));
+
+        assertThat(store.getGroupIds()).containsExactly("group");
+        assertThat(store.getEdgeNodeIds("group")).containsExactly("node");
+        assertThat(store.getDeviceIds("group", "node")).containsExactly("device");
+        assertThat(store.getEdgeNodeIds("other")).isEmpty();
+
+        publish("spBv1.0/group/DDEATH/node/device", 2_000L);
+        assertThat(store.getDeviceIds("group", "node")).isEmpty();
+    }
+
+    @Test
+    void concurrentReadsAndWrites_snapshotsConsistent() throws Exception {
+        publish("spBv1.0/group/NBIRTH/node", 0L, metric("a", 1L, Int64, 0L), metric("b", 2L, Int64, 0L));
+        final var payloads = new ArrayList<ByteBuffer>();
+        for (var i = 1L; i <= 100; i++) {
+            payloads.add(encode(i, metric(null, 1L, Int64, i), metric(null, 2L, Int64, i)));
+        }
+        final var topicStructure = new TopicStructure("spBv1.0/group/NDATA/node");
+        final var running = new AtomicBoolean(true);
+        final var writer = new Thread(() -> {
+            while (running.get()) {
+                for (final var payload : payloads) {
+                    store.onPublish(topicStructure, payload, null);
+                }
+            }
+        });
+        writer.start();
+        try {
+            for (var i = 0; i < 10_000; i++) {
+                final var values = store.get("group", "node", null);
+                assertThat(values).isNotNull();
+                // both metrics are written by the same message
+                assertThat(values.getLong(1)).isEqualTo(values.getLong(0));
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    private void publish(final @NotNull String topic, final long timestamp, final @NotNull Metric... metrics)
+            throws Exception {
+        store.onPublish(new TopicStructure(topic), encode(timestamp, metrics), null);
+    }
+
+    private static @NotNull ByteBuffer encode(final long timestamp, final @NotNull Metric... metrics) throws Exception {
+        final var payload = new SparkplugBPayload(new Date(timestamp), List.of(metrics), 0L, null, null);
+        return ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(payload, false));
+    }
+
+    private static @NotNull Metric metric(
+            final @Nullable String name,
+            final @Nullable Long alias,
+            final @NotNull MetricDataType dataType,
+            final @Nullable Object value) throws Exception {
+        final var builder = new Metric.MetricBuilder(name, dataType, value);
+        if (alias != null) {
+            builder.alias(alias);
+        }
+        return builder.createMetric();
+    }
+}
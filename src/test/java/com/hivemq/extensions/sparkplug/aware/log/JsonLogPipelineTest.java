@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.log;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import com.hivemq.extensions.sparkplug.aware.utils.JsonLogFormat;
+import com.hivemq.extensions.sparkplug.aware.utils.PayloadJsonWriter;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JsonLogPipelineTest {
+
+    // the writer thread is never started, so the queue is only filled
+    private static final @NotNull ThreadFactory NOT_DRAINING = runnable -> new Thread(() -> {
+    });
+
+    private final @NotNull PayloadJsonWriter jsonWriter = new PayloadJsonWriter(JsonLogFormat.NDJSON);
+    private final @NotNull PublishPacket publishPacket = mock();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull SparkplugMetrics sparkplugMetrics = new SparkplugMetrics(metricRegistry);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final var metrics = List.of(new Metric.MetricBuilder("metric", Int32, 42).createMetric());
+        final var payload = new SparkplugBPayloadEncoder().getBytes(new SparkplugBPayload(new Date(),
+                metrics,
+                1L,
+                null,
+                null), false);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(payload)));
+    }
+
+    @Test
+    void log_synchronous_writesImmediately() {
+        final var pipeline = new JsonLogPipeline(jsonWriter, 0, OverflowPolicy.DROP_NEWEST, 1, null, sparkplugMetrics);
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 3);
+
+        assertThat(pipeline.getWritten()).isEqualTo(3);
+        assertThat(pipeline.getQueued()).isZero();
+        assertThat(metricRegistry.timer(SparkplugMetrics.PREFIX + ".json-log.encode.time").getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void log_stateMessage_ignored() {
+        final var pipeline = new JsonLogPipeline(jsonWriter, 0, OverflowPolicy.DROP_NEWEST, 1);
+
+        log(pipeline, "spBv1.0/STATE/scada", 1);
+
+        assertThat(pipeline.getWritten()).isZero();
+    }
+
+    @Test
+    void log_asynchronous_writesAllRecords() throws Exception {
+        final var pipeline = new JsonLogPipeline(jsonWriter, 16, OverflowPolicy.DROP_NEWEST, 1);
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 10);
+        pipeline.stop();
+
+        assertThat(pipeline.getWritten()).isEqualTo(10);
+        assertThat(pipeline.getDropped()).isZero();
+    }
+
+    @Test
+    void log_idleWriter_parkedUntilNextRecord() throws Exception {
+        final var writer = new AtomicReference<Thread>();
+        final var pipeline = new JsonLogPipeline(jsonWriter,
+                16,
+                OverflowPolicy.DROP_NEWEST,
+                1,
+                null,
+                sparkplugMetrics,
+                runnable -> {
+                    final var thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    writer.set(thread);
+                    return thread;
+                });
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 1);
+        await(() -> pipeline.getWritten() == 1);
+        // parked without a timeout, so an idle writer does not wake up
+        await(() -> writer.get().getState() == Thread.State.WAITING);
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 1);
+        await(() -> pipeline.getWritten() == 2);
+        pipeline.stop();
+
+        assertThat(writer.get().isAlive()).isFalse();
+    }
+
+    @Test
+    void log_afterStop_dropped() {
+        final var pipeline = new JsonLogPipeline(jsonWriter, 16, OverflowPolicy.DROP_NEWEST, 1);
+        pipeline.stop();
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 1);
+
+        assertThat(pipeline.getDropped()).isEqualTo(1);
+    }
+
+    @Test
+    void log_dropNewest_keepsQueuedRecords() {
+        final var pipeline = new JsonLogPipeline(jsonWriter,
+                4,
+                OverflowPolicy.DROP_NEWEST,
+                1,
+                null,
+                sparkplugMetrics,
+                NOT_DRAINING);
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 10);
+
+        assertThat(pipeline.getQueued()).isEqualTo(4);
+        assertThat(pipeline.getDropped()).isEqualTo(6);
+    }
+
+    @Test
+    void log_dropOldest_replacesQueuedRecords() {
+        final var pipeline = new JsonLogPipeline(jsonWriter,
+                4,
+                OverflowPolicy.DROP_OLDEST,
+                1,
+                null,
+                sparkplugMetrics,
+                NOT_DRAINING);
+
+        log(pipeline, "spBv1.0/group/NDATA/edgeNode", 10);
+
+        assertThat(pipeline.getQueued()).isEqualTo(4);
+        assertThat(pipeline.getDropped()).isEqualTo(6);
+    }
+
+    @Test
+    void log_sample_keepsEveryNthRecordPerEdgeNode() {
+        final var pipeline = new JsonLogPipeline(jsonWriter,
+                4,
+                OverflowPolicy.SAMPLE,
+                5,
+                null,
+                sparkplugMetrics,
+                NOT_DRAINING);
+        log(pipeline, "spBv1.0/group/NDATA/busyNode", 4);
+
+        // 10 overflowing records of the busy node: the 1st and 6th replace the oldest records
+        log(pipeline, "spBv1.0/group/NDATA/busyNode", 10);
+        // the 1st overflowing record of another edge node is always sampled
+        log(pipeline, "spBv1.0/group/NDATA/quietNode", 1);
+
+        assertThat(pipeline.getQueued()).isEqualTo(4);
+        assertThat(pipeline.getDropped()).isEqualTo(8 + 3);
+    }
+
+    private static void await(final @NotNull BooleanSupplier condition) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private void log(final @NotNull JsonLogPipeline pipeline, final @NotNull String topic, final int count) {
+        final var topicStructure = new TopicStructure(topic);
+        for (var i = 0; i < count; i++) {
+            pipeline.log("client", topic, publishPacket, topicStructure);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MpmcRingBufferTest {
+
+    @Test
+    void constructor_roundsCapacityToPowerOfTwo() {
+        assertThat(new MpmcRingBuffer<String>(5).capacity()).isEqualTo(8);
+        assertThat(new MpmcRingBuffer<String>(8).capacity()).isEqualTo(8);
+        assertThatThrownBy(() -> new MpmcRingBuffer<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void offer_full_returnsFalse() {
+        final var buffer = new MpmcRingBuffer<Integer>(2);
+
+        assertThat(buffer.offer(1)).isTrue();
+        assertThat(buffer.offer(2)).isTrue();
+        assertThat(buffer.offer(3)).isFalse();
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+
+    @Test
+    void poll_returnsElementsInOrder() {
+        final var buffer = new MpmcRingBuffer<Integer>(4);
+        for (var lap = 0; lap < 3; lap++) {
+            for (var i = 0; i < 4; i++) {
+                buffer.offer(i);
+            }
+            for (var i = 0; i < 4; i++) {
+                assertThat(buffer.poll()).isEqualTo(i);
+            }
+        }
+        assertThat(buffer.poll()).isNull();
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void concurrentProducersAndConsumers_deliverEveryElementOnce() throws Exception {
+        final var buffer = new MpmcRingBuffer<Integer>(64);
+        final var producers = 2;
+        final var consumers = 2;
+        final var elementsPerProducer = 10_000;
+        final var consumed = ConcurrentHashMap.<Integer>newKeySet();
+        final var remaining = new AtomicInteger(producers * elementsPerProducer);
+        final var start = new CountDownLatch(1);
+        final var threads = new ArrayList<Thread>();
+        for (var p = 0; p < producers; p++) {
+            final var offset = p * elementsPerProducer;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (var i = 0; i < elementsPerProducer; i++) {
+                    while (!buffer.offer(offset + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (var c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (remaining.get() > 0) {
+                    final var element = buffer.poll();
+                    if (element == null) {
+                        Thread.yield();
+                    } else {
+                        assertThat(consumed.add(element)).isTrue();
+                        remaining.decrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (final var thread : threads) {
+            thread.join(30_000);
+        }
+
+        assertThat(consumed).hasSize(producers * elementsPerProducer);
+        assertThat(buffer.poll()).isNull();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
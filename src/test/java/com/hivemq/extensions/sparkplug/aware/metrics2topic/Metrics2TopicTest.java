@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.metrics2topic;
+
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.topics.TopicStructure;
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.mockito.Answers.RETURNS_SELF;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class Metrics2TopicTest {
+
+    private final @NotNull PublishService publishService = mock();
+    private final @NotNull Map<String, ByteBuffer> published = new LinkedHashMap<>();
+
+    private @NotNull Metrics2Topic metrics2Topic;
+
+    @BeforeEach
+    void setUp() {
+        when(publishService.publish(any(Publish.class))).thenAnswer(invocation -> {
+            final Publish publish = invocation.getArgument(0);
+            published.put(publish.getTopic(), publish.getPayload().orElseThrow());
+            return CompletableFuture.completedFuture(null);
+        });
+        metrics2Topic = new Metrics2Topic("$sparkplug/metrics/",
+                new Metrics2TopicPublisher(publishService, 100),
+                Metrics2TopicTest::createRecordingPublishBuilder);
+    }
+
+    @Test
+    void ndata_aliases_resolved_and_published_per_metric() throws Exception {
+        onPublish("spBv1.0/group/NBIRTH/node",
+                List.of(metric("temperature", 1L, 20), metric("Node Control/Rebirth", 2L, 0)), 0L);
+
+        onPublish("spBv1.0/group/NDATA/node", List.of(metric(null, 1L, 21), metric(null, 2L, 1)), 1L);
+
+        assertThat(published).containsOnlyKeys("$sparkplug/metrics/spBv1.0/group/node/temperature",
+                "$sparkplug/metrics/spBv1.0/group/node/Node Control/Rebirth");
+        final var temperature = decode(published.get("$sparkplug/metrics/spBv1.0/group/node/temperature"));
+        assertThat(temperature.getSeq()).isEqualTo(1);
+        assertThat(temperature.getMetrics()).hasSize(1);
+        assertThat(temperature.getMetrics().get(0).getName()).isEqualTo("temperature");
+        assertThat(temperature.getMetrics().get(0).getValue()).isEqualTo(21);
+    }
+
+    @Test
+    void ddata_names_published_to_device_topic() throws Exception {
+        onPublish("spBv1.0/group/DBIRTH/node/device", List.of(metric("pressure", 1L, 1)), 1L);
+
+        onPublish("spBv1.0/group/DDATA/node/device", List.of(metric("pressure", null, 2)), 2L);
+
+        final var pressure = decode(published.get("$sparkplug/metrics/spBv1.0/group/node/device/pressure"));
+        assertThat(pressure.getMetrics().get(0).getValue()).isEqualTo(2);
+    }
+
+    @Test
+    void unknown_alias_and_data_without_birth_not_published() throws Exception {
+        onPublish("spBv1.0/group/DDATA/node/device", List.of(metric("pressure", null, 2)), 2L);
+        onPublish("spBv1.0/group/NBIRTH/node", List.of(metric("temperature", 1L, 20)), 0L);
+
+        onPublish("spBv1.0/group/NDATA/node", List.of(metric(null, 7L, 21)), 1L);
+
+        assertThat(published).isEmpty();
+        assertThat(metrics2Topic.getUnresolved()).isEqualTo(2);
+    }
+
+    @Test
+    void metric_not_declared_in_birth_not_published() throws Exception {
+        onPublish("spBv1.0/group/NBIRTH/node", List.of(metric("temperature", null, 20)), 0L);
+
+        onPublish("spBv1.0/group/NDATA/node", List.of(metric("humidity", null, 50), metric("other", null, 1)), 1L);
+
+        assertThat(published).isEmpty();
+        assertThat(metrics2Topic.getUnresolved()).isEqualTo(2);
+    }
+
+    @Test
+    void data_metric_without_datatype_published_with_datatype_of_birth() throws Exception {
+        onPublish("spBv1.0/group/NBIRTH/node", List.of(metric("temperature", 1L, 20)), 0L);
+
+        // metric with alias 1 and int_value 21 but without datatype, seq 1
+        onPublish("spBv1.0/group/NDATA/node", new byte[]{0x12, 0x04, 0x10, 0x01, 0x50, 0x15, 0x18, 0x01});
+
+        final var temperature = decode(published.get("$sparkplug/metrics/spBv1.0/group/node/temperature"));
+        assertThat(temperature.getSeq()).isEqualTo(1);
+        assertThat(temperature.getMetrics().get(0).getName()).isEqualTo("temperature");
+        assertThat(temperature.getMetrics().get(0).getDataType()).isEqualTo(Int32);
+        assertThat(temperature.getMetrics().get(0).getValue()).isEqualTo(21);
+    }
+
+    @Test
+    void death_removes_aliases() throws Exception {
+        onPublish("spBv1.0/group/NBIRTH/node", List.of(metric("temperature", 1L, 20)), 0L);
+        onPublish("spBv1.0/group/NDEATH/node", List.of(), null);
+
+        onPublish("spBv1.0/group/NDATA/node", List.of(metric(null, 1L, 21)), 1L);
+
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void metric_with_wildcard_in_name_not_published() throws Exception {
+        onPublish("spBv1.0/group/NBIRTH/node", List.of(metric("level+1", 1L, 20)), 0L);
+
+        onPublish("spBv1.0/group/NDATA/node", List.of(metric(null, 1L, 21)), 1L);
+
+        assertThat(published).isEmpty();
+        assertThat(metrics2Topic.getUnresolved()).isEqualTo(1);
+    }
+
+    @Test
+    void batch_dropped_when_too_many_publishes_in_flight() {
+        final var pending = new CompletableFuture<Void>();
+        final var slowPublishService = mock(PublishService.class);
+        when(slowPublishService.publish(any(Publish.class))).thenReturn(pending);
+        final var publisher = new Metrics2TopicPublisher(slowPublishService, 3);
+
+        assertThat(publisher.publish(List.of(mock(Publish.class), mock(Publish.class)))).isTrue();
+        assertThat(publisher.publish(List.of(mock(Publish.class), mock(Publish.class)))).isFalse();
+        assertThat(publisher.getDropped()).isEqualTo(2);
+
+        pending.complete(null);
+
+        assertThat(publisher.getInFlight()).isZero();
+        assertThat(publisher.getPublished()).isEqualTo(2);
+        assertThat(publisher.publish(List.of(mock(Publish.class), mock(Publish.class)))).isTrue();
+    }
+
+    private void onPublish(final @NotNull String topic, final @NotNull List<Metric> metrics, final @Nullable Long seq)
+            throws Exception {
+        final var payload = new SparkplugBPayload(new Date(), new ArrayList<>(metrics), seq, null, null);
+        onPublish(topic, new SparkplugBPayloadEncoder().getBytes(payload, false));
+    }
+
+    private void onPublish(final @NotNull String topic, final byte @NotNull [] bytes) {
+        final var publishPacket = mock(PublishPacket.class);
+        when(publishPacket.getTopic()).thenReturn(topic);
+        when(publishPacket.getPayload()).thenReturn(Optional.of(ByteBuffer.wrap(bytes).asReadOnlyBuffer()));
+        metrics2Topic.onPublish(new TopicStructure(topic), publishPacket, ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+    }
+
+    private static @NotNull Metric metric(final @Nullable String name, final @Nullable Long alias, final int value)
+            throws Exception {
+        final var builder = new Metric.MetricBuilder(name, Int32, value);
+        if (alias != null) {
+            builder.alias(alias);
+        }
+        return builder.createMetric();
+    }
+
+    private static @NotNull SparkplugBPayload decode(final ByteBuffer payload) throws Exception {
+        final var bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new SparkplugBPayloadDecoder().buildFromByteArray(bytes, null);
+    }
+
+    private static @NotNull PublishBuilder createRecordingPublishBuilder() {
+        final var topic = new String[1];
+        final var payload = new ByteBuffer[1];
+        final var publishBuilder = mock(PublishBuilder.class, RETURNS_SELF);
+        when(publishBuilder.topic(any())).thenAnswer(invocation -> {
+            topic[0] = invocation.getArgument(0);
+            return publishBuilder;
+        });
+        when(publishBuilder.payload(any())).thenAnswer(invocation -> {
+            payload[0] = invocation.getArgument(0);
+            return publishBuilder;
+        });
+        when(publishBuilder.build()).thenAnswer(invocation -> {
+            final var publish = mock(Publish.class);
+            when(publish.getTopic()).thenReturn(topic[0]);
+            when(publish.getPayload()).thenReturn(Optional.of(payload[0]));
+            return publish;
+        });
+        return publishBuilder;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.tahu.message.model.MetricDataType.Double;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+
+class AliasTableTest {
+
+    @Test
+    void fromBirth_aliasedMetrics_resolvedByAlias() throws Exception {
+        final var table = AliasTable.fromBirth(encode(List.of(
+                new Metric.MetricBuilder("bdSeq", Int64, 0L).createMetric(),
+                new Metric.MetricBuilder("temperature", Double, 21.5).alias(1L).createMetric(),
+                new Metric.MetricBuilder("pressure", Int32, 3).alias(1_000_000_000_000L).createMetric())));
+
+        assertThat(table.size()).isEqualTo(3);
+        final var temperature = table.indexOf(1L);
+        assertThat(table.getName(temperature)).isEqualTo("temperature");
+        assertThat(table.getDataType(temperature)).isEqualTo(Double.toIntValue());
+        final var pressure = table.indexOf(1_000_000_000_000L);
+        assertThat(table.getName(pressure)).isEqualTo("pressure");
+        assertThat(table.getDataType(pressure)).isEqualTo(Int32.toIntValue());
+        assertThat(table.indexOf(0L)).isEqualTo(-1);
+        assertThat(table.indexOf(2L)).isEqualTo(-1);
+    }
+
+    @Test
+    void fromBirth_manyMetrics_everyAliasResolved() throws Exception {
+        final var metrics = new ArrayList<Metric>();
+        for (var i = 0; i < 1_000; i++) {
+            metrics.add(new Metric.MetricBuilder("metric/" + i, Int32, i).alias((long) i * 17).createMetric());
+        }
+
+        final var table = AliasTable.fromBirth(encode(metrics));
+
+        assertThat(table.size()).isEqualTo(1_000);
+        for (var i = 0; i < 1_000; i++) {
+            assertThat(table.getName(table.indexOf((long) i * 17))).isEqualTo("metric/" + i);
+        }
+        assertThat(table.indexOf(1L)).isEqualTo(-1);
+    }
+
+    @Test
+    void fromBirth_malformed_throws() {
+        assertThatThrownBy(() -> AliasTable.fromBirth(ByteBuffer.wrap(new byte[]{0x12, 0x05, 0x0A})))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static @NotNull ByteBuffer encode(final @NotNull List<Metric> metrics) throws Exception {
+        final var payload = new SparkplugBPayload(new Date(1_000L), metrics, 0L, null, null);
+        return ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(payload, false));
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.registry;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SparkplugRegistryTest {
+
+    private final SparkplugRegistry registry = new SparkplugRegistry();
+
+    @Test
+    void onNodeBirth_unknownEdgeNode_created() {
+        registry.onNodeBirth("group", "node", 3, 0, 1_000);
+
+        final var edgeNode = registry.getEdgeNode("group", "node");
+        assertThat(edgeNode).isNotNull();
+        assertThat(edgeNode.isOnline()).isTrue();
+        assertThat(edgeNode.getBdSeq()).isEqualTo(3);
+        assertThat(edgeNode.getLastSeq()).isZero();
+        assertThat(edgeNode.getLastBirth()).isEqualTo(1_000);
+        assertThat(registry.getGroupIds()).containsExactly("group");
+        assertThat(registry.getEdgeNodeCount()).isEqualTo(1);
+        assertThat(registry.getEdgeNode("group", "other")).isNull();
+    }
+
+    @Test
+    void onNodeDeath_matchingBdSeq_edgeNodeAndDevicesOffline() {
+        registry.onNodeBirth("group", "node", 3, 0, 1_000);
+        registry.onDeviceBirth("group", "node", "device", 1, 1_001);
+
+        assertThat(registry.onNodeDeath("group", "node", 3, 2_000)).isTrue();
+
+        final var edgeNode = registry.getEdgeNode("group", "node");
+        assertThat(edgeNode).isNotNull();
+        assertThat(edgeNode.isOnline()).isFalse();
+        assertThat(edgeNode.getLastDeath()).isEqualTo(2_000);
+        final var device = registry.getDevice("group", "node", "device");
+        assertThat(device).isNotNull();
+        assertThat(device.isOnline()).isFalse();
+        assertThat(device.getLastDeath()).isEqualTo(2_000);
+        // repeated deaths, e.g. the Last Will delivered to several subscribers, are ignored
+        assertThat(registry.onNodeDeath("group", "node", 3, 3_000)).isFalse();
+        assertThat(edgeNode.getLastDeath()).isEqualTo(2_000);
+    }
+
+    @Test
+    void getAliases_releasedOnDeathAndReplacedOnRebirth() {
+        final var nodeAliases = AliasTable.fromBirth(ByteBuffer.allocate(0));
+        final var deviceAliases = AliasTable.fromBirth(ByteBuffer.allocate(0));
+        registry.onNodeBirth("group", "node", 3, 0, 1_000, nodeAliases);
+        registry.onDeviceBirth("group", "node", "device", 1, 1_001, deviceAliases);
+
+        assertThat(registry.getAliases("group", "node", null)).isSameAs(nodeAliases);
+        assertThat(registry.getAliases("group", "node", "device")).isSameAs(deviceAliases);
+        assertThat(registry.getAliases("group", "other", null)).isNull();
+
+        final var rebirthAliases = AliasTable.fromBirth(ByteBuffer.allocate(0));
+        registry.onNodeBirth("group", "node", 4, 0, 2_000, rebirthAliases);
+        assertThat(registry.getAliases("group", "node", null)).isSameAs(rebirthAliases);
+        // the devices of the previous session have to be born again
+        assertThat(registry.getAliases("group", "node", "device")).isNull();
+
+        registry.onDeviceBirth("group", "node", "device", 1, 2_001, deviceAliases);
+        registry.onDeviceDeath("group", "node", "device", 2, 2_002);
+        assertThat(registry.getAliases("group", "node", "device")).isNull();
+
+        registry.onNodeDeath("group", "node", 4, 3_000);
+        assertThat(registry.getAliases("group", "node", null)).isNull();
+    }
+
+    @Test
+    void onNodeDeath_staleBdSeq_ignored() {
+        registry.onNodeBirth("group", "node", 4, 0, 1_000);
+
+        assertThat(registry.onNodeDeath("group", "node", 3, 2_000)).isFalse();
+        assertThat(registry.onNodeDeath("other", "node", 4, 2_000)).isFalse();
+
+        final var edgeNode = registry.getEdgeNode("group", "node");
+        assertThat(edgeNode).isNotNull();
+        assertThat(edgeNode.isOnline()).isTrue();
+        assertThat(registry.getStaleDeaths()).isEqualTo(1);
+    }
+
+    @Test
+    void onNodeDeath_sameDeathPerSubscriber_countedOnce() {
+        registry.onNodeBirth("group", "node", 4, 0, 1_000);
+
+        registry.onNodeDeath("group", "node", 3, 2_000);
+        registry.onNodeDeath("group", "node", 3, 2_001);
+        assertThat(registry.getStaleDeaths()).isEqualTo(1);
+
+        registry.onNodeDeath("group", "node", 2, 2_002);
+        assertThat(registry.getStaleDeaths()).isEqualTo(2);
+
+        assertThat(registry.onNodeDeath("group", "node", 4, 3_000)).isTrue();
+        assertThat(registry.onNodeDeath("group", "node", 4, 3_001)).isFalse();
+    }
+
+    @Test
+    void isStaleDeath_bdSeqOfPreviousSession_stale() {
+        registry.onNodeBirth("group", "node", 5, 0, 1_000);
+
+        assertThat(registry.isStaleDeath("group", "node", 4)).isTrue();
+        assertThat(registry.isStaleDeath("group", "node", 5)).isFalse();
+        assertThat(registry.isStaleDeath("group", "node", SparkplugRegistry.UNKNOWN)).isFalse();
+        assertThat(registry.isStaleDeath("group", "unknown", 4)).isFalse();
+        assertThat(registry.getStaleDeaths()).isZero();
+    }
+
+    @Test
+    void onNodeBirth_rebirth_devicesOfflineUntilDeviceBirth() {
+        registry.onNodeBirth("group", "node", 0, 0, 1_000);
+        registry.onDeviceBirth("group", "node", "device", 1, 1_001);
+
+        registry.onNodeBirth("group", "node", 1, 0, 2_000);
+
+        final var device = registry.getDevice("group", "node", "device");
+        assertThat(device).isNotNull();
+        assertThat(device.isOnline()).isFalse();
+
+        registry.onDeviceBirth("group", "node", "device", 1, 2_001);
+
+        assertThat(device.isOnline()).isTrue();
+        assertThat(device.getLastBirth()).isEqualTo(2_001);
+        assertThat(registry.getDeviceCount()).isEqualTo(1);
+    }
+
+    @Test
+    void onDeviceDeath_deviceOffline_edgeNodeSeqUpdated() {
+        registry.onNodeBirth("group", "node", 0, 0, 1_000);
+        registry.onDeviceBirth("group", "node", "device", 1, 1_001);
+
+        registry.onDeviceDeath("group", "node", "device", 2, 1_002);
+
+        final var edgeNode = registry.getEdgeNode("group", "node");
+        assertThat(edgeNode).isNotNull();
+        assertThat(edgeNode.isOnline()).isTrue();
+        assertThat(edgeNode.getLastSeq()).isEqualTo(2);
+        final var device = edgeNode.getDevice("device");
+        assertThat(device).isNotNull();
+        assertThat(device.isOnline()).isFalse();
+    }
+
+    @Test
+    void onSeq_inOrderAcrossWrap_noViolationsCounted() {
+        registry.onNodeBirth("group", "node", 0, 0, 1_000);
+
+        for (var seq = 1; seq < 600; seq++) {
+            assertThat(registry.onSeq("group", "node", seq % 256)).isEqualTo(SequenceCheck.IN_ORDER);
+        }
+
+        final var group = registry.getGroup("group");
+        assertThat(group).isNotNull();
+        assertThat(group.getGaps()).isZero();
+        assertThat(group.getDuplicates()).isZero();
+        assertThat(group.getOutOfOrder()).isZero();
+        assertThat(registry.getEdgeNode("group", "node")).isNotNull()
+                .satisfies(edgeNode -> assertThat(edgeNode.getLastSeq()).isEqualTo(599 % 256));
+    }
+
+    @Test
+    void onSeq_violations_countedPerGroup() {
+        registry.onNodeBirth("group", "node", 0, 0, 1_000);
+        registry.onNodeBirth("other", "node", 0, 0, 1_000);
+
+        assertThat(registry.onSeq("group", "node", 1)).isEqualTo(SequenceCheck.IN_ORDER);
+        assertThat(registry.onSeq("group", "node", 1)).isEqualTo(SequenceCheck.DUPLICATE);
+        assertThat(registry.onSeq("group", "node", 5)).isEqualTo(SequenceCheck.GAP);
+        assertThat(registry.onSeq("group", "node", 3)).isEqualTo(SequenceCheck.OUT_OF_ORDER);
+        assertThat(registry.onSeq("group", "node", 6)).isEqualTo(SequenceCheck.IN_ORDER);
+        assertThat(registry.onSeq("other", "node", 2)).isEqualTo(SequenceCheck.GAP);
+
+        final var group = registry.getGroup("group");
+        assertThat(group).isNotNull();
+        assertThat(group.getGaps()).isEqualTo(1);
+        assertThat(group.getDuplicates()).isEqualTo(1);
+        assertThat(group.getOutOfOrder()).isEqualTo(1);
+        assertThat(registry.getGaps()).isEqualTo(2);
+    }
+
+    @Test
+    void onSeq_unknownEdgeNodeOrInvalidSeq_unchecked() {
+        registry.onNodeBirth("group", "node", 0, 0, 1_000);
+
+        assertThat(registry.onSeq("group", "unknown", 1)).isEqualTo(SequenceCheck.UNCHECKED);
+        assertThat(registry.onSeq("group", "node", 256)).isEqualTo(SequenceCheck.UNCHECKED);
+        assertThat(registry.onSeq("group", "node", SparkplugRegistry.UNKNOWN)).isEqualTo(SequenceCheck.UNCHECKED);
+        assertThat(new SparkplugRegistry(false).onSeq("group", "node", 1)).isEqualTo(SequenceCheck.UNCHECKED);
+    }
+
+    @Test
+    void getEdgeNodes_iteratesEdgeNodesOfGroup() {
+        registry.onNodeBirth("group", "node-1", 0, 0, 1_000);
+        registry.onNodeBirth("group", "node-2", 0, 0, 1_000);
+        registry.onNodeBirth("other", "node-3", 0, 0, 1_000);
+
+        assertThat(registry.getEdgeNodes("group")).extracting(EdgeNodeState::getEdgeNodeId)
+                .containsExactlyInAnyOrder("node-1", "node-2");
+        assertThat(registry.getEdgeNodes("unknown")).isEmpty();
+        assertThat(registry.getGroupCount()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentDeviceBirths_everyDeviceCountedOnce() throws Exception {
+        final var threads = new ArrayList<Thread>();
+        final var start = new CountDownLatch(1);
+        for (var t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (var i = 0; i < 1_000; i++) {
+                    registry.onDeviceBirth("group", "node-" + i % 10, "device-" + i, i, i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (final var thread : threads) {
+            thread.join(30_000);
+        }
+
+        assertThat(registry.getEdgeNodeCount()).isEqualTo(10);
+        assertThat(registry.getDeviceCount()).isEqualTo(1_000);
+    }
+}
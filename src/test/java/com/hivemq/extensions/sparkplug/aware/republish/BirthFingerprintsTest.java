@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BirthFingerprintsTest {
+
+    private static final ByteBuffer BIRTH = ByteBuffer.wrap(new byte[]{0x08, 0x01, 0x18, 0x00});
+    private static final ByteBuffer CHANGED_BIRTH = ByteBuffer.wrap(new byte[]{0x08, 0x01, 0x28, 0x01});
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    @Test
+    void check_off_alwaysPublished() {
+        final var fingerprints = new BirthFingerprints(DedupMode.OFF, 3600, 10, clock::get);
+
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.size()).isZero();
+    }
+
+    @Test
+    void check_skip_unchangedBirthSkipped() {
+        final var fingerprints = new BirthFingerprints(DedupMode.SKIP, 3600, 10, clock::get);
+
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.SKIP);
+        assertThat(fingerprints.check("sys/other", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.check("sys/node", CHANGED_BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.getSkipped()).isEqualTo(1);
+    }
+
+    @Test
+    void check_live_unchangedBirthNotRetained() {
+        final var fingerprints = new BirthFingerprints(DedupMode.LIVE, 3600, 10, clock::get);
+
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH_NOT_RETAINED);
+        assertThat(fingerprints.getDowngraded()).isEqualTo(1);
+        assertThat(fingerprints.getSkipped()).isZero();
+    }
+
+    @Test
+    void check_halfOfMessageExpiryElapsed_publishedAgain() {
+        final var fingerprints = new BirthFingerprints(DedupMode.SKIP, 60, 10, clock::get);
+        fingerprints.check("sys/node", BIRTH);
+
+        clock.addAndGet(29_999L);
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.SKIP);
+        clock.addAndGet(1L);
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.SKIP);
+    }
+
+    @Test
+    void check_invalidated_publishedAgain() {
+        final var fingerprints = new BirthFingerprints(DedupMode.SKIP, 3600, 10, clock::get);
+        fingerprints.check("sys/node", BIRTH);
+
+        fingerprints.invalidate("sys/node");
+
+        assertThat(fingerprints.check("sys/node", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+    }
+
+    @Test
+    void check_maxSizeExceeded_leastRecentlyCheckedForgotten() {
+        final var fingerprints = new BirthFingerprints(DedupMode.SKIP, 3600, 2, clock::get);
+        fingerprints.check("sys/node-1", BIRTH);
+        fingerprints.check("sys/node-2", BIRTH);
+        fingerprints.check("sys/node-1", BIRTH);
+
+        fingerprints.check("sys/node-3", BIRTH);
+
+        assertThat(fingerprints.size()).isEqualTo(2);
+        assertThat(fingerprints.check("sys/node-1", BIRTH)).isEqualTo(BirthFingerprints.Action.SKIP);
+        assertThat(fingerprints.check("sys/node-3", BIRTH)).isEqualTo(BirthFingerprints.Action.SKIP);
+        assertThat(fingerprints.check("sys/node-2", BIRTH)).isEqualTo(BirthFingerprints.Action.PUBLISH);
+    }
+}
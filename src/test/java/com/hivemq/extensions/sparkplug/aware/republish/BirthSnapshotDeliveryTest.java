@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extension.sdk.api.services.publish.PublishToClientResult;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Answers.RETURNS_SELF;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BirthSnapshotDeliveryTest {
+
+    private final @NotNull PublishService publishService = mock();
+    private final @NotNull PublishBuilder publishBuilder = mock(PublishBuilder.class, RETURNS_SELF);
+    private long now;
+    private final @NotNull BirthSnapshots snapshots = new BirthSnapshots(100, () -> now);
+    private final @NotNull List<String> delivered = new ArrayList<>();
+    private final @NotNull List<CompletableFuture<PublishToClientResult>> futures = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(publishService.publishToClient(any(Publish.class), anyString())).thenAnswer(invocation -> {
+            delivered.add(invocation.<Publish>getArgument(0).getTopic() + " -> " + invocation.getArgument(1));
+            final var future = new CompletableFuture<PublishToClientResult>();
+            futures.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    void deliver_snapshotsNotLoaded_servedByRetainedStore() {
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 10, 10);
+
+        assertThat(delivery.deliver("host", "sys/#")).isFalse();
+        assertThat(delivery.getActive()).isZero();
+    }
+
+    @Test
+    void tick_matchingBirthsDeliveredInTopicOrderAndBatches() {
+        put("sys/spBv1.0/g2/NBIRTH/n1", "sys/spBv1.0/g1/NBIRTH/n2", "sys/spBv1.0/g1/DBIRTH/n1/d1",
+                "sys/spBv1.0/g1/NBIRTH/n1", "sys/spBv1.0/g1/NBIRTH/n3");
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 2, 10);
+
+        assertThat(delivery.deliver("host", "sys/spBv1.0/g1/NBIRTH/+")).isTrue();
+        // the subscription is not added by the broker before the next tick
+        delivery.tick();
+        assertThat(delivered).isEmpty();
+
+        delivery.tick();
+        assertThat(delivered).containsExactly("sys/spBv1.0/g1/NBIRTH/n1 -> host", "sys/spBv1.0/g1/NBIRTH/n2 -> host");
+
+        // the batch is still in flight
+        delivery.tick();
+        assertThat(delivered).hasSize(2);
+
+        completeAll(PublishToClientResult.SUCCESSFUL);
+        delivery.tick();
+        assertThat(delivered).endsWith("sys/spBv1.0/g1/NBIRTH/n3 -> host");
+        assertThat(delivery.getActive()).isZero();
+
+        completeAll(PublishToClientResult.SUCCESSFUL);
+        assertThat(delivery.getDelivered()).isEqualTo(3);
+    }
+
+    @Test
+    void tick_subscriptionsServedRoundRobin() {
+        put("sys/a", "sys/b", "sys/c");
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 2, 10);
+        delivery.deliver("first", "sys/#");
+        delivery.deliver("second", "sys/#");
+        delivery.tick();
+
+        delivery.tick();
+        completeAll(PublishToClientResult.SUCCESSFUL);
+        delivery.tick();
+        completeAll(PublishToClientResult.SUCCESSFUL);
+
+        assertThat(delivered).containsExactly("sys/a -> first",
+                "sys/b -> first",
+                "sys/a -> second",
+                "sys/b -> second");
+    }
+
+    @Test
+    void tick_clientNotSubscribed_deliveryCancelled() {
+        put("sys/a", "sys/b", "sys/c");
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 1, 10);
+        delivery.deliver("host", "sys/#");
+        delivery.tick();
+        delivery.tick();
+
+        completeAll(PublishToClientResult.NOT_SUBSCRIBED);
+        delivery.tick();
+
+        assertThat(delivered).containsExactly("sys/a -> host");
+        assertThat(delivery.getCancelled()).isEqualTo(1);
+        assertThat(delivery.getActive()).isZero();
+    }
+
+    @Test
+    void tick_birthStoredAfterDeliveryStarted_skipped() {
+        put("sys/a");
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 1, 10);
+        delivery.deliver("host", "sys/#");
+        delivery.tick();
+        delivery.tick();
+        // the subscriber receives the birth live
+        put("sys/b");
+
+        completeAll(PublishToClientResult.SUCCESSFUL);
+        delivery.tick();
+
+        assertThat(delivered).containsExactly("sys/a -> host");
+        assertThat(delivery.getActive()).isZero();
+    }
+
+    @Test
+    void complete_birthReplacedWhileDelivered_replacementDeliveredAgain() {
+        put("sys/a");
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 1, 10);
+        delivery.deliver("host", "sys/#");
+        delivery.tick();
+        delivery.tick();
+        final var replacement = mock(Publish.class);
+        when(replacement.getTopic()).thenReturn("sys/a (replacement)");
+        snapshots.put("sys/a", replacement);
+
+        completeAll(PublishToClientResult.SUCCESSFUL);
+
+        assertThat(delivered).containsExactly("sys/a -> host", "sys/a (replacement) -> host");
+    }
+
+    @Test
+    void tick_birthWithMessageExpiry_deliveredWithRemainingExpiryUntilExpired() {
+        final var birth = mock(Publish.class);
+        when(birth.getMessageExpiryInterval()).thenReturn(Optional.of(60L));
+        final var copy = mock(Publish.class);
+        when(copy.getTopic()).thenReturn("sys/a");
+        when(publishBuilder.build()).thenReturn(copy);
+        snapshots.put("sys/a", birth);
+        snapshots.setLoaded();
+        final var delivery = new BirthSnapshotDelivery(publishService, snapshots, () -> publishBuilder, 1, 10);
+
+        now = 20_000;
+        delivery.deliver("first", "sys/#");
+        delivery.tick();
+        delivery.tick();
+        verify(publishBuilder).messageExpiryInterval(40L);
+        assertThat(delivered).containsExactly("sys/a -> first");
+        completeAll(PublishToClientResult.SUCCESSFUL);
+
+        now = 60_000;
+        delivery.deliver("second", "sys/#");
+        delivery.tick();
+        delivery.tick();
+        assertThat(delivered).containsExactly("sys/a -> first");
+        assertThat(snapshots.size()).isZero();
+    }
+
+    @Test
+    void matches_wildcards() {
+        assertThat(BirthSnapshotDelivery.matches("sys/#", "sys/spBv1.0/g/NBIRTH/n")).isTrue();
+        assertThat(BirthSnapshotDelivery.matches("sys/spBv1.0/+/NBIRTH/+", "sys/spBv1.0/g/NBIRTH/n")).isTrue();
+        assertThat(BirthSnapshotDelivery.matches("sys/spBv1.0/+/NBIRTH/+", "sys/spBv1.0/g/DBIRTH/n/d")).isFalse();
+        assertThat(BirthSnapshotDelivery.matches("sys/spBv1.0/g/+", "sys/spBv1.0/g/NBIRTH/n")).isFalse();
+        assertThat(BirthSnapshotDelivery.matches("sys/spBv1.0/g/NBIRTH/n", "sys/spBv1.0/g/NBIRTH/n")).isTrue();
+        assertThat(BirthSnapshotDelivery.matches("sys/spBv1.0/g/NBIRTH/n", "sys/spBv1.0/g/NBIRTH/n2")).isFalse();
+        assertThat(BirthSnapshotDelivery.matches("sys/spBv1.0/g/#", "sys/spBv1.0/g")).isTrue();
+    }
+
+    private void put(final @NotNull String... topics) {
+        for (final var topic : topics) {
+            final var birth = mock(Publish.class);
+            when(birth.getTopic()).thenReturn(topic);
+            snapshots.put(topic, birth);
+        }
+        snapshots.setLoaded();
+    }
+
+    private void completeAll(final @NotNull PublishToClientResult result) {
+        for (final var future : new ArrayList<>(futures)) {
+            future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BirthSnapshotsTest {
+
+    @Test
+    void load_newerBirthKept() {
+        final var snapshots = new BirthSnapshots(10);
+        final var live = mock(Publish.class);
+        final var retained = mock(Publish.class);
+        snapshots.put("sys/node", live);
+        snapshots.load("sys/node", retained);
+
+        assertThat(snapshots.withPrefix("sys/").get("sys/node").getBirth()).isSameAs(live);
+        assertThat(snapshots.size()).isEqualTo(1);
+    }
+
+    @Test
+    void isComplete_onlyAfterLoadedAndWithinSize() {
+        final var snapshots = new BirthSnapshots(2);
+        snapshots.put("sys/a", mock(Publish.class));
+        assertThat(snapshots.isComplete()).isFalse();
+
+        snapshots.setLoaded();
+        snapshots.put("sys/b", mock(Publish.class));
+        snapshots.put("sys/b", mock(Publish.class));
+        assertThat(snapshots.isComplete()).isTrue();
+
+        snapshots.put("sys/c", mock(Publish.class));
+        assertThat(snapshots.isComplete()).isFalse();
+        assertThat(snapshots.size()).isEqualTo(2);
+    }
+
+    @Test
+    void withPrefix_sortedByTopic() {
+        final var snapshots = new BirthSnapshots(10);
+        snapshots.put("sys/b", mock(Publish.class));
+        snapshots.put("other/a", mock(Publish.class));
+        snapshots.put("sys/a", mock(Publish.class));
+
+        assertThat(snapshots.withPrefix("sys/").keySet()).containsExactly("sys/a", "sys/b");
+    }
+
+    @Test
+    void put_sequenceNumbersIncreasing() {
+        final var snapshots = new BirthSnapshots(10);
+        snapshots.put("sys/a", mock(Publish.class));
+        snapshots.put("sys/b", mock(Publish.class));
+        snapshots.put("sys/a", mock(Publish.class));
+
+        assertThat(snapshots.get("sys/b").getSequence()).isEqualTo(2);
+        assertThat(snapshots.get("sys/a").getSequence()).isEqualTo(3);
+        assertThat(snapshots.getSequence()).isEqualTo(3);
+    }
+
+    @Test
+    void expire_birthsPastTheirMessageExpiryDropped() {
+        final var now = new AtomicLong();
+        final var snapshots = new BirthSnapshots(10, now::get);
+        snapshots.put("sys/short", expiring(10));
+        snapshots.put("sys/long", expiring(100));
+        snapshots.put("sys/never", mock(Publish.class));
+
+        now.set(9_999);
+        snapshots.expire();
+        assertThat(snapshots.size()).isEqualTo(3);
+        assertThat(snapshots.getRemainingExpiry(snapshots.get("sys/short"))).isEqualTo(1);
+
+        now.set(10_000);
+        snapshots.expire();
+        assertThat(snapshots.withPrefix("sys/").keySet()).containsExactly("sys/long", "sys/never");
+        assertThat(snapshots.size()).isEqualTo(2);
+        assertThat(snapshots.getRemainingExpiry(snapshots.get("sys/long"))).isEqualTo(90);
+    }
+
+    private static @NotNull Publish expiring(final long messageExpiry) {
+        final var birth = mock(Publish.class);
+        when(birth.getMessageExpiryInterval()).thenReturn(Optional.of(messageExpiry));
+        return birth;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.republish;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extensions.sparkplug.aware.metrics.SparkplugMetrics;
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SysTopicRepublisherTest {
+
+    private final @NotNull PublishService publishService = mock();
+    private final @NotNull List<Publish> published = new ArrayList<>();
+    private final @NotNull List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(publishService.publish(any(Publish.class))).thenAnswer(invocation -> {
+            published.add(invocation.getArgument(0));
+            final var future = new CompletableFuture<Void>();
+            futures.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    void submit_inFlightLimitReached_queuedUntilCompleted() {
+        final var republisher = new SysTopicRepublisher(publishService, 2, 100);
+        final var births = births(5);
+        for (var i = 0; i < births.size(); i++) {
+            republisher.submit("sys/node-" + i, births.get(i), MessageType.NBIRTH);
+        }
+
+        assertThat(published).containsExactlyElementsOf(births.subList(0, 2));
+        assertThat(republisher.getInFlight()).isEqualTo(2);
+        assertThat(republisher.getQueued()).isEqualTo(3);
+
+        futures.get(0).complete(null);
+
+        assertThat(published).containsExactlyElementsOf(births.subList(0, 3));
+        assertThat(republisher.getPublished()).isEqualTo(1);
+        assertThat(republisher.getQueued()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_nodeBirthsPublishedBeforeDeviceBirths() {
+        final var republisher = new SysTopicRepublisher(publishService, 1, 100);
+        final var births = births(4);
+        republisher.submit("sys/first", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/device-1", births.get(1), MessageType.DBIRTH);
+        republisher.submit("sys/device-2", births.get(2), MessageType.DBIRTH);
+        republisher.submit("sys/node", births.get(3), MessageType.NBIRTH);
+
+        completeAll();
+
+        assertThat(published).containsExactly(births.get(0), births.get(3), births.get(1), births.get(2));
+    }
+
+    @Test
+    void submit_newerBirthQueued_olderBirthCoalesced() {
+        final var republisher = new SysTopicRepublisher(publishService, 1, 100);
+        final var births = births(3);
+        republisher.submit("sys/first", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/node", births.get(1), MessageType.NBIRTH);
+        republisher.submit("sys/node", births.get(2), MessageType.NBIRTH);
+
+        completeAll();
+
+        assertThat(published).containsExactly(births.get(0), births.get(2));
+        assertThat(republisher.getCoalesced()).isEqualTo(1);
+        assertThat(republisher.getPublished()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_birthOfSameTopicInFlight_waitsForCompletion() {
+        final var republisher = new SysTopicRepublisher(publishService, 10, 100);
+        final var births = births(2);
+        republisher.submit("sys/node", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/node", births.get(1), MessageType.NBIRTH);
+
+        assertThat(published).containsExactly(births.get(0));
+        assertThat(republisher.getQueued()).isEqualTo(1);
+
+        futures.get(0).complete(null);
+
+        assertThat(published).containsExactly(births.get(0), births.get(1));
+        assertThat(republisher.getCoalesced()).isZero();
+    }
+
+    @Test
+    void submit_queueFull_rejected() {
+        final var republisher = new SysTopicRepublisher(publishService, 1, 1);
+        final var births = births(4);
+
+        assertThat(republisher.submit("sys/in-flight", births.get(0), MessageType.NBIRTH)).isTrue();
+        assertThat(republisher.submit("sys/queued", births.get(1), MessageType.NBIRTH)).isTrue();
+        assertThat(republisher.submit("sys/rejected", births.get(2), MessageType.NBIRTH)).isFalse();
+        // a newer birth of a queued topic is still accepted
+        assertThat(republisher.submit("sys/queued", births.get(3), MessageType.NBIRTH)).isTrue();
+
+        completeAll();
+
+        assertThat(published).containsExactly(births.get(0), births.get(3));
+        assertThat(republisher.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_publishFailed_countedAndQueueDrained() {
+        final var republisher = new SysTopicRepublisher(publishService, 1, 100);
+        final var births = births(2);
+        republisher.submit("sys/node-1", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/node-2", births.get(1), MessageType.NBIRTH);
+
+        futures.get(0).completeExceptionally(new IllegalStateException("failed"));
+        futures.get(1).complete(null);
+
+        assertThat(published).containsExactlyElementsOf(births);
+        assertThat(republisher.getFailed()).isEqualTo(1);
+        assertThat(republisher.getPublished()).isEqualTo(1);
+        assertThat(republisher.getInFlight()).isZero();
+        assertThat(republisher.getMaxLatencyMillis()).isGreaterThanOrEqualTo(republisher.getAverageLatencyMillis());
+    }
+
+    @Test
+    void submit_notRetainedBirthQueuedAfterRetainedBirth_retainedBirthKept() {
+        final var republisher = new SysTopicRepublisher(publishService, 1, 100);
+        final var births = births(3);
+        when(births.get(1).getRetain()).thenReturn(true);
+        republisher.submit("sys/first", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/node", births.get(1), MessageType.NBIRTH);
+        republisher.submit("sys/node", births.get(2), MessageType.NBIRTH);
+
+        completeAll();
+
+        assertThat(published).containsExactly(births.get(0), births.get(1));
+        assertThat(republisher.getCoalesced()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_rejectedOrFailed_failureListenerNotified() {
+        final var failedTopics = new ArrayList<String>();
+        final var republisher = new SysTopicRepublisher(publishService, 1, 1, failedTopics::add);
+        final var births = births(3);
+        republisher.submit("sys/failed", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/queued", births.get(1), MessageType.NBIRTH);
+        republisher.submit("sys/rejected", births.get(2), MessageType.NBIRTH);
+
+        futures.get(0).completeExceptionally(new IllegalStateException("failed"));
+        completeAll();
+
+        assertThat(failedTopics).containsExactly("sys/rejected", "sys/failed");
+    }
+
+    @Test
+    void submit_publishLatencyAndFailuresInMetrics() {
+        final var metricRegistry = new MetricRegistry();
+        final var republisher = new SysTopicRepublisher(publishService,
+                1,
+                1,
+                topic -> {
+                },
+                new SparkplugMetrics(metricRegistry));
+        final var births = births(3);
+        republisher.submit("sys/failed", births.get(0), MessageType.NBIRTH);
+        republisher.submit("sys/queued", births.get(1), MessageType.NBIRTH);
+        republisher.submit("sys/rejected", births.get(2), MessageType.NBIRTH);
+
+        futures.get(0).completeExceptionally(new IllegalStateException("failed"));
+        completeAll();
+
+        assertThat(metricRegistry.timer(SparkplugMetrics.PREFIX + ".systopic.publish.time").getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".systopic.publish.failed").getCount()).isOne();
+        assertThat(metricRegistry.counter(SparkplugMetrics.PREFIX + ".systopic.publish.rejected").getCount()).isOne();
+    }
+
+    @Test
+    void submit_completedSynchronously_drainsWholeQueue() {
+        final var completedService = mock(PublishService.class);
+        when(completedService.publish(any(Publish.class))).thenReturn(CompletableFuture.completedFuture(null));
+        final var republisher = new SysTopicRepublisher(completedService, 1, 100_000);
+        final var birth = mock(Publish.class);
+
+        // completions run on the submitting thread, which must not recurse once per queued birth
+        for (var i = 0; i < 10_000; i++) {
+            republisher.submit("sys/node-" + i, birth, MessageType.DBIRTH);
+        }
+
+        assertThat(republisher.getPublished()).isEqualTo(10_000);
+        assertThat(republisher.getQueued()).isZero();
+    }
+
+    private void completeAll() {
+        for (var i = 0; i < futures.size(); i++) {
+            futures.get(i).complete(null);
+        }
+    }
+
+    private static @NotNull List<Publish> births(final int count) {
+        final var births = new ArrayList<Publish>();
+        for (var i = 0; i < count; i++) {
+            births.add(mock(Publish.class));
+        }
+        return births;
+    }
+}
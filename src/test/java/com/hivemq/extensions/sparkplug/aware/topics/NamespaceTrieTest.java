@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.sparkplug.aware.topics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NamespaceTrieTest {
+
+    private final NamespaceTrie<String> trie = new NamespaceTrie<>();
+
+    @BeforeEach
+    void setUp() {
+        trie.put("spAv1.0", "A");
+        trie.put("spBv1.0", "B");
+        trie.put("spBv1.0-custom", "custom");
+    }
+
+    @Test
+    void match_returnsValueOfFirstTopicLevel() {
+        assertThat(trie.match("spAv1.0/group1/NBIRTH/edge1")).isEqualTo("A");
+        assertThat(trie.match("spBv1.0/group1/NBIRTH/edge1")).isEqualTo("B");
+        assertThat(trie.match("spBv1.0-custom/group1/NBIRTH/edge1")).isEqualTo("custom");
+        assertThat(trie.size()).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "spBv1.0", "spBv1/group1/NBIRTH/edge1", "spBv1.0-/group1/NBIRTH/edge1",
+            "spBv1.0x/group1/NBIRTH/edge1", "spCv1.0/group1/NBIRTH/edge1", "/spBv1.0/group1/NBIRTH/edge1",
+            "some/other/topic"})
+    void match_withoutConfiguredNamespace_returnsNull(final String topic) {
+        assertThat(trie.match(topic)).isNull();
+    }
+
+    @Test
+    void match_namespaceIsMatchedLiterally() {
+        final var regexLike = new NamespaceTrie<String>();
+        regexLike.put("spB.*", "regex");
+
+        assertThat(regexLike.match("spBv1.0/group1/NBIRTH/edge1")).isNull();
+        assertThat(regexLike.match("spB.*/group1/NBIRTH/edge1")).isEqualTo("regex");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "spBv1.0/group"})
+    void put_withInvalidNamespace_throws(final String namespace) {
+        assertThatThrownBy(() -> trie.put(namespace, "invalid")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void put_withDuplicateNamespace_throws() {
+        assertThatThrownBy(() -> trie.put("spBv1.0", "duplicate")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.sparkplug.aware.topics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TopicStructureCacheTest {
+
+    @Test
+    void get_sameTopicTwice_returnsCachedInstance() {
+        final var cache = new TopicStructureCache(10);
+
+        final var first = cache.get("spBv1.0/group1/NBIRTH/edge1");
+        final var second = cache.get("spBv1.0/group1/NBIRTH/edge1");
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void get_parsesTopic() {
+        final var cache = new TopicStructureCache(10);
+
+        final var topicStructure = cache.get("spBv1.0/group1/DBIRTH/edge1/device1");
+
+        assertThat(topicStructure.getMessageType()).isEqualTo(MessageType.DBIRTH);
+        assertThat(topicStructure.getGroupId()).isEqualTo("group1");
+        assertThat(topicStructure.getEonId()).isEqualTo("edge1");
+        assertThat(topicStructure.getDeviceId()).isEqualTo("device1");
+    }
+
+    @Test
+    void get_moreTopicsThanMaxSize_evictsOldestEntries() {
+        final var cache = new TopicStructureCache(2);
+
+        final var first = cache.get("spBv1.0/group1/NBIRTH/edge1");
+        cache.get("spBv1.0/group1/NBIRTH/edge2");
+        cache.get("spBv1.0/group1/NBIRTH/edge3");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("spBv1.0/group1/NBIRTH/edge1")).isNotSameAs(first);
+        assertThat(cache.getMisses()).isEqualTo(4);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void get_maxSizeZero_cachingDisabled() {
+        final var cache = new TopicStructureCache(0);
+
+        final var first = cache.get("spBv1.0/group1/NBIRTH/edge1");
+        final var second = cache.get("spBv1.0/group1/NBIRTH/edge1");
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void constructor_negativeMaxSize_throws() {
+        assertThatThrownBy(() -> new TopicStructureCache(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
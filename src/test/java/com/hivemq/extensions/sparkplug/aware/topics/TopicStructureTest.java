@@ -193,6 +193,13 @@ class TopicStructureTest {
         assertThat(topicStructure.isValid(SPARKPLUG_VERSION)).isFalse();
     }
 
+    @Test
+    void isValid_withRegexNamespace_doesNotMatchAsPattern() {
+        final var topicStructure = new TopicStructure("spB.*/group1/NBIRTH/edge1");
+
+        assertThat(topicStructure.isValid(SPARKPLUG_VERSION)).isFalse();
+    }
+
     @ParameterizedTest
     @MethodSource("provideAllMessageTypes")
     void constructor_withAllMessageTypes_parsesCorrectly(final String messageType, final MessageType expected) {
@@ -280,4 +287,37 @@ class TopicStructureTest {
 
         assertThat(topicStructure.isValid(SPARKPLUG_VERSION)).isTrue();
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"spBv1.0/group1/NBIRTH/", "spBv1.0/group1/NBIRTH//", "spBv1.0/group1/NBIRTH"})
+    void constructor_withTrailingEmptyLevels_ignoresThem(final String topic) {
+        final var topicStructure = new TopicStructure(topic);
+
+        assertThat(topicStructure.getMessageType()).isEqualTo(MessageType.UNKNOWN);
+        assertThat(topicStructure.isValid(SPARKPLUG_VERSION)).isFalse();
+    }
+
+    @Test
+    void constructor_withTrailingSeparatorAfterEdgeNode_parsesCorrectly() {
+        final var topicStructure = new TopicStructure("spBv1.0/group1/NBIRTH/edge1/");
+
+        assertThat(topicStructure.getEonId()).isEqualTo("edge1");
+        assertThat(topicStructure.getDeviceId()).isNull();
+        assertThat(topicStructure.isValid(SPARKPLUG_VERSION)).isTrue();
+    }
+
+    @Test
+    void constructor_withEmptyDeviceLevel_parsesEmptyDeviceId() {
+        final var topicStructure = new TopicStructure("spBv1.0/group1/DDATA/edge1//extra");
+
+        assertThat(topicStructure.getEonId()).isEqualTo("edge1");
+        assertThat(topicStructure.getDeviceId()).isEmpty();
+    }
+
+    @Test
+    void getGroupId_returnsGroupLevel() {
+        final var topicStructure = new TopicStructure("spBv1.0/group-123/NDATA/edge1");
+
+        assertThat(topicStructure.getGroupId()).isEqualTo("group-123");
+    }
 }
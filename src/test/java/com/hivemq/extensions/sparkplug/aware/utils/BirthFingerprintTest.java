@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+
+class BirthFingerprintTest {
+
+    @Test
+    void of_timestampsAndSeqChanged_sameFingerprint() throws Exception {
+        final var first = encode(1_000L, 0L, 1_000L, 3L, 42);
+        final var second = encode(1_700_000_000_000L, 17L, 1_700_000_000_001L, 3L, 42);
+
+        assertThat(BirthFingerprint.of(second)).isEqualTo(BirthFingerprint.of(first));
+    }
+
+    @Test
+    void of_metricValueChanged_differentFingerprint() throws Exception {
+        final var first = encode(1_000L, 0L, 1_000L, 3L, 42);
+        final var second = encode(1_000L, 0L, 1_000L, 3L, 43);
+
+        assertThat(BirthFingerprint.of(second)).isNotEqualTo(BirthFingerprint.of(first));
+    }
+
+    @Test
+    void of_bdSeqChanged_differentFingerprint() throws Exception {
+        final var first = encode(1_000L, 0L, 1_000L, 3L, 42);
+        final var second = encode(1_000L, 0L, 1_000L, 4L, 42);
+
+        assertThat(BirthFingerprint.of(second)).isNotEqualTo(BirthFingerprint.of(first));
+    }
+
+    @Test
+    void of_metricAdded_differentFingerprint() throws Exception {
+        final var metrics = new ArrayList<Metric>();
+        metrics.add(new Metric.MetricBuilder("bdSeq", Int64, 3L).createMetric());
+        metrics.add(new Metric.MetricBuilder("temperature", Int32, 42).createMetric());
+        final var encoder = new SparkplugBPayloadEncoder();
+        final var first = encoder.getBytes(new SparkplugBPayload(new Date(1_000L), metrics, 0L, null, null), false);
+        metrics.add(new Metric.MetricBuilder("unit", MetricDataType.String, "C").createMetric());
+        final var second = encoder.getBytes(new SparkplugBPayload(new Date(1_000L), metrics, 0L, null, null), false);
+
+        final var firstFingerprint = BirthFingerprint.of(ByteBuffer.wrap(first));
+        assertThat(BirthFingerprint.of(ByteBuffer.wrap(second))).isNotEqualTo(firstFingerprint);
+    }
+
+    @Test
+    void of_doesNotModifyPosition() throws Exception {
+        final var payload = encode(1_000L, 0L, 1_000L, 3L, 42);
+        final var position = payload.position();
+
+        BirthFingerprint.of(payload);
+
+        assertThat(payload.position()).isEqualTo(position);
+    }
+
+    @Test
+    void of_invalidProtobuf_hashesAllBytes() {
+        final var first = ByteBuffer.wrap(new byte[]{(byte) 0xFF, 0x01, 0x02});
+        final var second = ByteBuffer.wrap(new byte[]{(byte) 0xFF, 0x01, 0x03});
+
+        assertThat(BirthFingerprint.of(first)).isEqualTo(BirthFingerprint.of(first.duplicate()));
+        assertThat(BirthFingerprint.of(first)).isNotEqualTo(BirthFingerprint.of(second));
+    }
+
+    private static @NotNull ByteBuffer encode(
+            final long timestamp,
+            final long seq,
+            final long metricTimestamp,
+            final long bdSeq,
+            final int value) throws Exception {
+        final var metrics = new ArrayList<Metric>();
+        metrics.add(new Metric.MetricBuilder("bdSeq", Int64, bdSeq).timestamp(new Date(metricTimestamp))
+                .createMetric());
+        metrics.add(new Metric.MetricBuilder("temperature", Int32, value).timestamp(new Date(metricTimestamp))
+                .createMetric());
+        final var payload = new SparkplugBPayload(new Date(timestamp), metrics, seq, null, null);
+        return ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(payload, false));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+
+class NdeathPayloadCacheTest {
+
+    private final @NotNull AtomicLong clock = new AtomicLong(1_000L);
+
+    @Test
+    void modifySparkplugTimestamp_sameBucket_sharesRewrittenPayload() throws Exception {
+        final var cache = new NdeathPayloadCache(10, clock::get);
+        final var payload = createNdeath(1L);
+
+        final var first = cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+        clock.addAndGet(9);
+        final var second = cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload.clone()));
+
+        assertThat(second).isEqualTo(first);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void modifySparkplugTimestamp_returnsIndependentBuffers() throws Exception {
+        final var cache = new NdeathPayloadCache(10, clock::get);
+        final var payload = createNdeath(1L);
+
+        final var first = cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+        final var second = cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+        first.get(new byte[first.remaining()]);
+
+        assertThat(first.remaining()).isZero();
+        assertThat(second.position()).isZero();
+        assertThat(second.remaining()).isPositive();
+    }
+
+    @Test
+    void modifySparkplugTimestamp_nextBucket_rewritesAgain() throws Exception {
+        final var cache = new NdeathPayloadCache(10, clock::get);
+        final var payload = createNdeath(1L);
+
+        cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+        clock.addAndGet(10);
+        cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void modifySparkplugTimestamp_differentPayloads_notShared() throws Exception {
+        final var cache = new NdeathPayloadCache(10, clock::get);
+
+        cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(createNdeath(1L)));
+        cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(createNdeath(2L)));
+
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void modifySparkplugTimestamp_bucketZero_cacheDisabled() throws Exception {
+        final var cache = new NdeathPayloadCache(0, clock::get);
+        final var payload = createNdeath(1L);
+
+        cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+        cache.modifySparkplugTimestamp(null, ByteBuffer.wrap(payload));
+
+        assertThat(cache.getMisses()).isEqualTo(2);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void modifySparkplugTimestamp_doesNotModifyPositionOfOriginal() throws Exception {
+        final var cache = new NdeathPayloadCache(10, clock::get);
+        final var original = ByteBuffer.wrap(createNdeath(1L));
+
+        cache.modifySparkplugTimestamp(null, original);
+
+        assertThat(original.position()).isZero();
+    }
+
+    @Test
+    void constructor_negativeBucket_throws() {
+        assertThatThrownBy(() -> new NdeathPayloadCache(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte @NotNull [] createNdeath(final long bdSeq) throws Exception {
+        final var metrics = List.of(new Metric.MetricBuilder("bdSeq", Int64, bdSeq).createMetric());
+        return new SparkplugBPayloadEncoder().getBytes(new SparkplugBPayload(new Date(1L), metrics, null, null, null),
+                false);
+    }
+}
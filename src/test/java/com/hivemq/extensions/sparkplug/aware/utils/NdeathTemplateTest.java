@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+
+class NdeathTemplateTest {
+
+    @Test
+    void withTimestamp_replacesTimestampAndKeepsMetrics() throws Exception {
+        final var template = NdeathTemplate.of(ByteBuffer.wrap(createNdeath(new Date(1_000L))));
+
+        final var decoded = decode(template.withTimestamp(1_700_000_000_000L));
+
+        assertThat(decoded.getTimestamp()).isEqualTo(new Date(1_700_000_000_000L));
+        assertThat(decoded.getMetrics()).hasSize(1);
+        assertThat(decoded.getMetrics().get(0).getName()).isEqualTo("bdSeq");
+        assertThat(decoded.getMetrics().get(0).getValue()).isEqualTo(7L);
+    }
+
+    @Test
+    void withTimestamp_differentVarintSize_rewritesTemplate() throws Exception {
+        final var template = NdeathTemplate.of(ByteBuffer.wrap(createNdeath(null)));
+
+        final var decoded = decode(template.withTimestamp(1L));
+
+        assertThat(decoded.getTimestamp()).isEqualTo(new Date(1L));
+        assertThat(decoded.getMetrics()).hasSize(1);
+    }
+
+    @Test
+    void withTimestamp_returnsIndependentBuffers() throws Exception {
+        final var template = NdeathTemplate.of(ByteBuffer.wrap(createNdeath(new Date(1_000L))));
+
+        final var first = template.withTimestamp(1_700_000_000_000L);
+        final var second = template.withTimestamp(1_700_000_000_001L);
+
+        assertThat(decode(first).getTimestamp()).isEqualTo(new Date(1_700_000_000_000L));
+        assertThat(decode(second).getTimestamp()).isEqualTo(new Date(1_700_000_000_001L));
+    }
+
+    @Test
+    void matches_comparesWillPayload() throws Exception {
+        final var will = createNdeath(new Date(1_000L));
+        final var template = NdeathTemplate.of(ByteBuffer.wrap(will));
+
+        assertThat(template.matches(ByteBuffer.wrap(will.clone()))).isTrue();
+        assertThat(template.matches(ByteBuffer.wrap(createNdeath(new Date(2_000L))))).isFalse();
+    }
+
+    @Test
+    void of_invalidPayload_throwsException() {
+        final var invalid = ByteBuffer.wrap(new byte[]{0x08, (byte) 0x80});
+
+        assertThatThrownBy(() -> NdeathTemplate.of(invalid)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void store_withoutTemplate_returnsNull() throws Exception {
+        final var store = new NdeathTemplateStore(100);
+        final var will = createNdeath(new Date(1_000L));
+
+        assertThat(store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode", ByteBuffer.wrap(will))).isNull();
+        assertThat(store.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void store_withTemplate_returnsPayloadWithNewTimestamp() throws Exception {
+        final var store = new NdeathTemplateStore(100);
+        final var will = createNdeath(new Date(1_000L));
+        store.put("spBv1.0/group/NDEATH/edgeNode", NdeathTemplate.of(ByteBuffer.wrap(will)));
+
+        final var before = System.currentTimeMillis();
+        final var payload = store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode", ByteBuffer.wrap(will));
+
+        assertThat(payload).isNotNull();
+        assertThat(decode(payload).getTimestamp().getTime()).isGreaterThanOrEqualTo(before);
+        assertThat(store.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void store_withChangedPayload_returnsNull() throws Exception {
+        final var store = new NdeathTemplateStore(100);
+        store.put("spBv1.0/group/NDEATH/edgeNode", NdeathTemplate.of(ByteBuffer.wrap(createNdeath(new Date(1_000L)))));
+
+        final var payload = store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode",
+                ByteBuffer.wrap(createNdeath(new Date(2_000L))));
+
+        assertThat(payload).isNull();
+        assertThat(store.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void store_maxSizeExceeded_leastRecentlyUsedTemplateRemoved() throws Exception {
+        final var store = new NdeathTemplateStore(2);
+        final var will = createNdeath(new Date(1_000L));
+        store.put("spBv1.0/group/NDEATH/edgeNode1", NdeathTemplate.of(ByteBuffer.wrap(will)));
+        store.put("spBv1.0/group/NDEATH/edgeNode2", NdeathTemplate.of(ByteBuffer.wrap(will)));
+        store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode1", ByteBuffer.wrap(will));
+
+        store.put("spBv1.0/group/NDEATH/edgeNode3", NdeathTemplate.of(ByteBuffer.wrap(will)));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode1", ByteBuffer.wrap(will))).isNotNull();
+        assertThat(store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode2", ByteBuffer.wrap(will))).isNull();
+        assertThat(store.modifySparkplugTimestamp("spBv1.0/group/NDEATH/edgeNode3", ByteBuffer.wrap(will))).isNotNull();
+    }
+
+    @Test
+    void store_invalidMaxSize_throwsException() {
+        assertThatThrownBy(() -> new NdeathTemplateStore(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte @NotNull [] createNdeath(final Date timestamp) throws Exception {
+        final var bdSeq = new Metric.MetricBuilder("bdSeq", Int64, 7L).createMetric();
+        return new SparkplugBPayloadEncoder().getBytes(new SparkplugBPayload(timestamp, List.of(bdSeq), null, null,
+                null), false);
+    }
+
+    private static @NotNull SparkplugBPayload decode(final @NotNull ByteBuffer buffer) throws Exception {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new SparkplugBPayloadDecoder().buildFromByteArray(bytes, null);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hivemq.extensions.sparkplug.aware.registry.AliasTable;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Boolean;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.eclipse.tahu.message.model.MetricDataType.Text;
+
+class PayloadJsonWriterTest {
+
+    private final @NotNull ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void toJson_writesPayloadFields() throws Exception {
+        final var json = new PayloadJsonWriter(JsonLogFormat.NDJSON).toJson(createPayload());
+
+        final var tree = objectMapper.readTree(json);
+        assertThat(tree.get("timestamp").asLong()).isEqualTo(1_000L);
+        assertThat(tree.get("seq").asLong()).isEqualTo(5L);
+        assertThat(tree.get("metrics")).hasSize(3);
+        final var metric = tree.get("metrics").get(0);
+        assertThat(metric.get("name").asText()).isEqualTo("a number metric");
+        assertThat(metric.get("alias").asLong()).isEqualTo(1L);
+        assertThat(metric.get("timestamp").asLong()).isEqualTo(2_000L);
+        assertThat(metric.get("dataType").asText()).isEqualTo("Int32");
+        assertThat(metric.get("value").asInt()).isEqualTo(42);
+        assertThat(tree.get("metrics").get(1).get("value").asText()).isEqualTo("Hello \"quoted\"\n");
+        assertThat(tree.get("metrics").get(2).get("value").asBoolean()).isTrue();
+    }
+
+    @Test
+    void toJson_ndjson_isSingleLine() throws Exception {
+        final var json = new PayloadJsonWriter(JsonLogFormat.NDJSON).toJson(createPayload());
+
+        assertThat(json).doesNotContain("\n");
+    }
+
+    @Test
+    void toJson_pretty_isIndented() throws Exception {
+        final var pretty = new PayloadJsonWriter(JsonLogFormat.PRETTY).toJson(createPayload());
+        final var compact = new PayloadJsonWriter(JsonLogFormat.NDJSON).toJson(createPayload());
+
+        assertThat(pretty).contains("\n  \"timestamp\" : 1000");
+        assertThat(objectMapper.readTree(pretty)).isEqualTo(objectMapper.readTree(compact));
+    }
+
+    @Test
+    void toJsonLine_containsClientIdAndTopic() throws Exception {
+        final var json = new PayloadJsonWriter(JsonLogFormat.PRETTY).toJsonLine("client",
+                "spBv1.0/group/NBIRTH/edgeNode",
+                createPayload());
+
+        assertThat(json).doesNotContain("\n");
+        final var tree = objectMapper.readTree(json);
+        assertThat(tree.get("clientId").asText()).isEqualTo("client");
+        assertThat(tree.get("topic").asText()).isEqualTo("spBv1.0/group/NBIRTH/edgeNode");
+        assertThat(tree.get("payload").get("metrics")).hasSize(3);
+    }
+
+    @Test
+    void toJson_reusedWriter_doesNotMixPayloads() throws Exception {
+        final var writer = new PayloadJsonWriter(JsonLogFormat.NDJSON);
+
+        final var first = writer.toJson(createPayload());
+        final var second = writer.toJson(new SparkplugBPayload(new Date(3_000L), List.of(), null, null, null));
+
+        assertThat(first).contains("a number metric");
+        assertThat(objectMapper.readTree(second).get("timestamp").asLong()).isEqualTo(3_000L);
+        assertThat(second).doesNotContain("a number metric");
+    }
+
+    @Test
+    void toJson_aliasOnlyMetric_resolvedFromAliasTable() throws Exception {
+        final var birth = new SparkplugBPayload(new Date(1_000L),
+                List.of(new Metric.MetricBuilder("a number metric", Int32, 0).alias(1L).createMetric()),
+                0L,
+                null,
+                null);
+        final var aliases =
+                AliasTable.fromBirth(ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(birth, false)));
+        final var data = new SparkplugBPayload(new Date(2_000L),
+                List.of(new Metric.MetricBuilder(null, Int32, 42).alias(1L).createMetric(),
+                        new Metric.MetricBuilder(null, Int32, 43).alias(2L).createMetric()),
+                1L,
+                null,
+                null);
+
+        final var tree = objectMapper.readTree(new PayloadJsonWriter(JsonLogFormat.NDJSON).toJson(data, aliases));
+
+        final var resolved = tree.get("metrics").get(0);
+        assertThat(resolved.get("name").asText()).isEqualTo("a number metric");
+        assertThat(resolved.get("alias").asLong()).isEqualTo(1L);
+        assertThat(resolved.get("dataType").asText()).isEqualTo("Int32");
+        assertThat(tree.get("metrics").get(1).has("name")).isFalse();
+    }
+
+    @Test
+    void jsonLogFormat_fromString() {
+        assertThat(JsonLogFormat.fromString("ndjson")).isEqualTo(JsonLogFormat.NDJSON);
+        assertThat(JsonLogFormat.fromString(" PRETTY ")).isEqualTo(JsonLogFormat.PRETTY);
+        assertThat(JsonLogFormat.fromString("xml")).isNull();
+    }
+
+    private static @NotNull SparkplugBPayload createPayload() throws Exception {
+        final var metrics = List.of(new Metric.MetricBuilder("a number metric", Int32, 42).alias(1L)
+                        .timestamp(new Date(2_000L))
+                        .createMetric(),
+                new Metric.MetricBuilder("a text metric", Text, "Hello \"quoted\"\n").createMetric(),
+                new Metric.MetricBuilder("a boolean metric", Boolean, true).createMetric());
+        return new SparkplugBPayload(new Date(1_000L), metrics, 5L, null, null);
+    }
+}
@@ -16,10 +16,15 @@
 
 package com.hivemq.extensions.sparkplug.aware.utils;
 
+import com.hivemq.extensions.sparkplug.aware.compression.CompressedEnvelope;
+import com.hivemq.extensions.sparkplug.aware.compression.CompressionCodec;
+import com.hivemq.extensions.sparkplug.aware.fleet.SparkplugFleet;
 import org.eclipse.tahu.SparkplugInvalidTypeException;
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
 import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
 import org.eclipse.tahu.message.model.Metric;
 import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.eclipse.tahu.util.CompressionAlgorithm;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -33,6 +38,7 @@ import java.util.List;
 
 import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.asJSONFormatted;
 import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.getPayloadAsJSON;
+import static com.hivemq.extensions.sparkplug.aware.utils.PayloadUtil.modifySparkplugTimestamp;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.eclipse.tahu.message.model.MetricDataType.Int32;
 import static org.eclipse.tahu.message.model.MetricDataType.Text;
@@ -59,6 +65,53 @@ class PayloadUtilTest {
         assertThat(json).isNotEmpty();
     }
 
+    @Test
+    void modifySparkplugTimestamp_compressedPayload_keepsAlgorithm() throws Exception {
+        final var edgeNode = SparkplugFleet.builder(1).edgeNodes(1).compression(CompressionAlgorithm.DEFLATE).build()
+                .getEdgeNode(0);
+        final var compressed = edgeNode.nbirth().getPayload();
+
+        final var modified = modifySparkplugTimestamp(null, compressed);
+
+        final var envelope = CompressedEnvelope.parse(modified);
+        assertThat(envelope).isNotNull();
+        assertThat(envelope.getCodec().getAlgorithm()).isEqualTo("DEFLATE");
+        final var original = decompress(compressed);
+        final var decoded = decompress(modified);
+        assertThat(decoded.getTimestamp()).isAfter(original.getTimestamp());
+        assertThat(decoded.getSeq()).isZero();
+        assertThat(decoded.getMetrics()).hasSameSizeAs(original.getMetrics());
+    }
+
+    @Test
+    void modifySparkplugTimestamp_withCodec_compressesPayload() throws Exception {
+        final var modified = modifySparkplugTimestamp(CompressionCodec.forAlgorithm("GZIP"),
+                ByteBuffer.wrap(createSparkplugBPayload()));
+
+        final var envelope = CompressedEnvelope.parse(modified);
+        assertThat(envelope).isNotNull();
+        assertThat(envelope.getCodec().getAlgorithm()).isEqualTo("GZIP");
+        assertThat(getPayloadAsJSON(modified)).contains("a text metric");
+    }
+
+    @Test
+    void modifySparkplugTimestamp_withoutCodec_keepsPayloadUncompressed() throws Exception {
+        final var modified = modifySparkplugTimestamp(null, ByteBuffer.wrap(createSparkplugBPayload()));
+
+        assertThat(CompressedEnvelope.parse(modified)).isNull();
+    }
+
+    private static @NotNull SparkplugBPayload decompress(final @NotNull ByteBuffer payload) throws Exception {
+        final var envelope = new SparkplugBPayloadDecoder().buildFromByteArray(toBytes(payload), null);
+        return org.eclipse.tahu.util.PayloadUtil.decompress(envelope);
+    }
+
+    private static byte @NotNull [] toBytes(final @NotNull ByteBuffer buffer) {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
     private byte @NotNull [] createSparkplugBPayload() throws IOException, SparkplugInvalidTypeException {
         // add a 'real time' metric
         metrics.add(new Metric.MetricBuilder("a number metric", Int32, 42).timestamp(new Date()).createMetric());
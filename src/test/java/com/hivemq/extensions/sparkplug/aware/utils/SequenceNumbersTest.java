@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.tahu.message.model.MetricDataType.Int32;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+
+class SequenceNumbersTest {
+
+    @Test
+    void readSeq_returnsSeqOfPayload() throws Exception {
+        final var payload = encode(17L, null);
+
+        assertThat(SequenceNumbers.readSeq(payload)).isEqualTo(17);
+        assertThat(payload.position()).isZero();
+    }
+
+    @Test
+    void readBdSeq_returnsValueOfBdSeqMetric() throws Exception {
+        assertThat(SequenceNumbers.readBdSeq(encode(0L, 42L))).isEqualTo(42);
+    }
+
+    @Test
+    void readBdSeq_withoutBdSeqMetric_returnsUnknown() throws Exception {
+        assertThat(SequenceNumbers.readBdSeq(encode(0L, null))).isEqualTo(SequenceNumbers.UNKNOWN);
+    }
+
+    @Test
+    void malformedPayload_returnsUnknown() {
+        final var payload = ByteBuffer.wrap(new byte[]{0x18, (byte) 0xFF});
+
+        assertThat(SequenceNumbers.readSeq(payload)).isEqualTo(SequenceNumbers.UNKNOWN);
+        assertThat(SequenceNumbers.readBdSeq(payload)).isEqualTo(SequenceNumbers.UNKNOWN);
+    }
+
+    private static ByteBuffer encode(final Long seq, final Long bdSeq) throws Exception {
+        final var metrics = new ArrayList<Metric>();
+        metrics.add(new Metric.MetricBuilder("temperature", Int32, 21).timestamp(new Date()).createMetric());
+        if (bdSeq != null) {
+            metrics.add(new Metric.MetricBuilder("bdSeq", Int64, bdSeq).createMetric());
+        }
+        final var payload = new SparkplugBPayload(new Date(), metrics, seq, null, null);
+        return ByteBuffer.wrap(new SparkplugBPayloadEncoder().getBytes(payload, false));
+    }
+}
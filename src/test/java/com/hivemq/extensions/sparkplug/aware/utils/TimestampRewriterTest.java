@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.utils;
+
+import org.eclipse.tahu.message.SparkplugBPayloadDecoder;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.tahu.message.model.MetricDataType.Int64;
+import static org.eclipse.tahu.message.model.MetricDataType.Text;
+
+class TimestampRewriterTest {
+
+    private static final long NEW_TIMESTAMP = 1_700_000_000_000L;
+
+    @Test
+    void rewriteTimestamp_replacesTimestampAndKeepsMetrics() throws Exception {
+        final var original = createPayload(new Date(1_000L), 100);
+
+        final var rewritten = TimestampRewriter.rewriteTimestamp(ByteBuffer.wrap(original), NEW_TIMESTAMP);
+
+        final var decoded = decode(rewritten);
+        assertThat(decoded.getTimestamp()).isEqualTo(new Date(NEW_TIMESTAMP));
+        assertThat(decoded.getSeq()).isEqualTo(5L);
+        assertThat(decoded.getMetrics()).hasSize(101);
+        assertThat(decoded.getMetrics().get(0).getName()).isEqualTo("bdSeq");
+        assertThat(decoded.getMetrics().get(0).getValue()).isEqualTo(42L);
+        assertThat(decoded.getMetrics().get(100).getValue()).isEqualTo("value 99");
+    }
+
+    @Test
+    void rewriteTimestamp_withoutTimestamp_insertsTimestamp() throws Exception {
+        final var original = createPayload(null, 1);
+
+        final var rewritten = TimestampRewriter.rewriteTimestamp(ByteBuffer.wrap(original), NEW_TIMESTAMP);
+
+        final var decoded = decode(rewritten);
+        assertThat(decoded.getTimestamp()).isEqualTo(new Date(NEW_TIMESTAMP));
+        assertThat(decoded.getMetrics()).hasSize(2);
+    }
+
+    @Test
+    void rewriteTimestamp_onlyChangesTimestampBytes() throws Exception {
+        final var original = createPayload(new Date(NEW_TIMESTAMP), 10);
+
+        final var rewritten = TimestampRewriter.rewriteTimestamp(ByteBuffer.wrap(original), NEW_TIMESTAMP);
+
+        assertThat(toBytes(rewritten)).isEqualTo(original);
+    }
+
+    @Test
+    void rewriteTimestamp_withDirectBufferAndOffset_doesNotModifyPosition() throws Exception {
+        final var original = createPayload(new Date(1_000L), 3);
+        final var direct = ByteBuffer.allocateDirect(original.length + 4);
+        direct.put(new byte[2]).put(original).put(new byte[2]);
+        direct.position(2).limit(2 + original.length);
+
+        final var rewritten = TimestampRewriter.rewriteTimestamp(direct, NEW_TIMESTAMP);
+
+        assertThat(direct.position()).isEqualTo(2);
+        assertThat(decode(rewritten).getTimestamp()).isEqualTo(new Date(NEW_TIMESTAMP));
+    }
+
+    @Test
+    void rewriteTimestamp_withTruncatedPayload_throws() throws Exception {
+        final var original = createPayload(new Date(1_000L), 3);
+        final var truncated = ByteBuffer.wrap(original, 0, original.length - 1);
+
+        assertThatThrownBy(() -> TimestampRewriter.rewriteTimestamp(truncated, NEW_TIMESTAMP)).isInstanceOf(
+                IllegalArgumentException.class);
+    }
+
+    @Test
+    void rewriteTimestamp_withInvalidTimestampWireType_throws() {
+        // field 1 with wire type 2 (length-delimited)
+        final var invalid = ByteBuffer.wrap(new byte[]{0x0A, 0x01, 0x00});
+
+        assertThatThrownBy(() -> TimestampRewriter.rewriteTimestamp(invalid, NEW_TIMESTAMP)).isInstanceOf(
+                IllegalArgumentException.class);
+    }
+
+    private static byte @NotNull [] createPayload(final Date timestamp, final int metricCount) throws Exception {
+        final var metrics = new ArrayList<Metric>();
+        metrics.add(new Metric.MetricBuilder("bdSeq", Int64, 42L).createMetric());
+        for (var i = 0; i < metricCount; i++) {
+            metrics.add(new Metric.MetricBuilder("metric " + i, Text, "value " + i).timestamp(new Date())
+                    .createMetric());
+        }
+        return new SparkplugBPayloadEncoder().getBytes(new SparkplugBPayload(timestamp, metrics, 5L, null, null),
+                false);
+    }
+
+    private static @NotNull SparkplugBPayload decode(final @NotNull ByteBuffer buffer) throws Exception {
+        return new SparkplugBPayloadDecoder().buildFromByteArray(toBytes(buffer), null);
+    }
+
+    private static byte @NotNull [] toBytes(final @NotNull ByteBuffer buffer) {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
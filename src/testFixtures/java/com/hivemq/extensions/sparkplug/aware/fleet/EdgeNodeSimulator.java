@@ -0,0 +1,326 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.fleet;
+
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import org.eclipse.tahu.message.SparkplugBPayloadEncoder;
+import org.eclipse.tahu.message.model.Metric;
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.message.model.SparkplugBPayload;
+import org.eclipse.tahu.util.CompressionAlgorithm;
+import org.eclipse.tahu.util.PayloadUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates the messages of one Sparkplug edge node and its devices.
+ * <p>
+ * The simulator keeps the state of a real edge node: the sequence number starts at {@code 0} with every NBIRTH and
+ * wraps from {@code 255} to {@code 0}, the NBIRTH and the NDEATH will carry the {@code bdSeq} of the current session
+ * and {@link #reconnect()} starts the next session. The births declare all metrics with names and aliases, the data
+ * messages only contain a random selection of metrics with new values, addressed by alias.
+ * <p>
+ * All values and timestamps are derived from the seed, so the same seed always generates the same payloads. A
+ * simulator is not thread-safe.
+ */
+public final class EdgeNodeSimulator {
+
+    static final long START_TIMESTAMP = 1_700_000_000_000L;
+    static final long TIMESTAMP_INTERVAL = 100;
+
+    private static final @NotNull String BD_SEQ = "bdSeq";
+
+    private final @NotNull String namespace;
+    private final @NotNull String groupId;
+    private final @NotNull String edgeNodeId;
+    private final @NotNull List<MetricDefinition> nodeMetrics;
+    private final @NotNull Map<String, List<MetricDefinition>> deviceMetrics;
+    private final int dataMetrics;
+    private final boolean aliases;
+    private final @Nullable CompressionAlgorithm compression;
+    private final @NotNull Random random;
+    private long timestamp = START_TIMESTAMP;
+    private int seq;
+    private int bdSeq;
+
+    EdgeNodeSimulator(
+            final @NotNull String namespace,
+            final @NotNull String groupId,
+            final @NotNull String edgeNodeId,
+            final @NotNull List<MetricDefinition> nodeMetrics,
+            final @NotNull Map<String, List<MetricDefinition>> deviceMetrics,
+            final int dataMetrics,
+            final boolean aliases,
+            final @Nullable CompressionAlgorithm compression,
+            final long seed) {
+        this.namespace = namespace;
+        this.groupId = groupId;
+        this.edgeNodeId = edgeNodeId;
+        this.nodeMetrics = List.copyOf(nodeMetrics);
+        this.deviceMetrics = Collections.unmodifiableMap(new LinkedHashMap<>(deviceMetrics));
+        this.dataMetrics = dataMetrics;
+        this.aliases = aliases;
+        this.compression = compression;
+        this.random = new Random(seed);
+    }
+
+    public @NotNull String getClientId() {
+        return groupId + '-' + edgeNodeId;
+    }
+
+    public @NotNull String getGroupId() {
+        return groupId;
+    }
+
+    public @NotNull String getEdgeNodeId() {
+        return edgeNodeId;
+    }
+
+    public @NotNull List<String> getDeviceIds() {
+        return List.copyOf(deviceMetrics.keySet());
+    }
+
+    public @NotNull List<MetricDefinition> getNodeMetrics() {
+        return nodeMetrics;
+    }
+
+    public @NotNull List<MetricDefinition> getDeviceMetrics(final @NotNull String deviceId) {
+        return metricsOf(deviceId);
+    }
+
+    /**
+     * @return the sequence number of the last message
+     */
+    public int getSeq() {
+        return seq;
+    }
+
+    /**
+     * @return the birth/death sequence number of the current session
+     */
+    public int getBdSeq() {
+        return bdSeq;
+    }
+
+    /**
+     * @return the NBIRTH followed by the DBIRTH of every device
+     */
+    public @NotNull List<SparkplugMessage> births() {
+        final var births = new ArrayList<SparkplugMessage>();
+        births.add(nbirth());
+        for (final var deviceId : getDeviceIds()) {
+            births.add(dbirth(deviceId));
+        }
+        return births;
+    }
+
+    public @NotNull SparkplugMessage nbirth() {
+        seq = 0;
+        final var timestamp = nextTimestamp();
+        final var metrics = new ArrayList<Metric>();
+        metrics.add(createMetric(BD_SEQ, null, MetricDataType.Int64, (long) bdSeq, timestamp));
+        addBirthMetrics(metrics, nodeMetrics, timestamp);
+        return createMessage(MessageType.NBIRTH, null, metrics, (long) seq, timestamp);
+    }
+
+    public @NotNull SparkplugMessage dbirth(final @NotNull String deviceId) {
+        final var timestamp = nextTimestamp();
+        final var metrics = new ArrayList<Metric>();
+        addBirthMetrics(metrics, metricsOf(deviceId), timestamp);
+        return createMessage(MessageType.DBIRTH, deviceId, metrics, nextSeq(), timestamp);
+    }
+
+    public @NotNull SparkplugMessage ndata() {
+        return ndata(dataMetrics);
+    }
+
+    /**
+     * @param metricCount the number of metrics with new values, at most all metrics of the edge node
+     */
+    public @NotNull SparkplugMessage ndata(final int metricCount) {
+        final var timestamp = nextTimestamp();
+        final var metrics = createDataMetrics(nodeMetrics, metricCount, timestamp);
+        return createMessage(MessageType.NDATA, null, metrics, nextSeq(), timestamp);
+    }
+
+    public @NotNull SparkplugMessage ddata(final @NotNull String deviceId) {
+        return ddata(deviceId, dataMetrics);
+    }
+
+    /**
+     * @param metricCount the number of metrics with new values, at most all metrics of the device
+     */
+    public @NotNull SparkplugMessage ddata(final @NotNull String deviceId, final int metricCount) {
+        final var timestamp = nextTimestamp();
+        final var metrics = createDataMetrics(metricsOf(deviceId), metricCount, timestamp);
+        return createMessage(MessageType.DDATA, deviceId, metrics, nextSeq(), timestamp);
+    }
+
+    public @NotNull SparkplugMessage ddeath(final @NotNull String deviceId) {
+        metricsOf(deviceId);
+        final var timestamp = nextTimestamp();
+        return createMessage(MessageType.DDEATH, deviceId, List.of(), nextSeq(), timestamp);
+    }
+
+    /**
+     * @return the NDEATH of the current session, as it is registered as will in the CONNECT packet
+     */
+    public @NotNull SparkplugMessage ndeath() {
+        final var timestamp = nextTimestamp();
+        final var metrics = List.of(createMetric(BD_SEQ, null, MetricDataType.Int64, (long) bdSeq, timestamp));
+        return createMessage(MessageType.NDEATH, null, metrics, null, timestamp);
+    }
+
+    /**
+     * Starts the next session of the edge node, the following NBIRTH and NDEATH carry the next {@code bdSeq}.
+     */
+    public void reconnect() {
+        bdSeq = (bdSeq + 1) & 0xFF;
+    }
+
+    private @NotNull List<MetricDefinition> metricsOf(final @NotNull String deviceId) {
+        final var metrics = deviceMetrics.get(deviceId);
+        if (metrics == null) {
+            throw new IllegalArgumentException("Unknown device '" + deviceId + "' of edge node '" + edgeNodeId + "'");
+        }
+        return metrics;
+    }
+
+    private long nextTimestamp() {
+        timestamp += TIMESTAMP_INTERVAL;
+        return timestamp;
+    }
+
+    private long nextSeq() {
+        seq = (seq + 1) & 0xFF;
+        return seq;
+    }
+
+    private void addBirthMetrics(
+            final @NotNull List<Metric> metrics,
+            final @NotNull List<MetricDefinition> definitions,
+            final long timestamp) {
+        for (final var definition : definitions) {
+            metrics.add(createMetric(definition.getName(),
+                    aliases ? definition.getAlias() : null,
+                    definition.getDataType(),
+                    createValue(definition.getDataType(), timestamp),
+                    timestamp));
+        }
+    }
+
+    private @NotNull List<Metric> createDataMetrics(
+            final @NotNull List<MetricDefinition> definitions,
+            final int metricCount,
+            final long timestamp) {
+        // a partial Fisher-Yates shuffle selects distinct metrics
+        final var selection = new ArrayList<>(definitions);
+        final var count = Math.min(metricCount, selection.size());
+        final var metrics = new ArrayList<Metric>(count);
+        for (var i = 0; i < count; i++) {
+            final var index = i + random.nextInt(selection.size() - i);
+            final var definition = selection.set(index, selection.get(i));
+            metrics.add(createMetric(aliases ? null : definition.getName(),
+                    aliases ? definition.getAlias() : null,
+                    definition.getDataType(),
+                    createValue(definition.getDataType(), timestamp),
+                    timestamp));
+        }
+        return metrics;
+    }
+
+    private @NotNull Object createValue(final @NotNull MetricDataType dataType, final long timestamp) {
+        switch (dataType) {
+            case Int8:
+                return (byte) random.nextInt();
+            case Int16:
+                return (short) random.nextInt();
+            case Int32:
+                return random.nextInt();
+            case Int64:
+                return random.nextLong();
+            case UInt8:
+                return (short) random.nextInt(1 << 8);
+            case UInt16:
+                return random.nextInt(1 << 16);
+            case UInt32:
+                return random.nextLong() & 0xFFFF_FFFFL;
+            case UInt64:
+                return new BigInteger(64, random);
+            case Float:
+                return random.nextFloat() * 100;
+            case Double:
+                return random.nextDouble() * 100;
+            case Boolean:
+                return random.nextBoolean();
+            case String:
+            case Text:
+                return "value-" + random.nextInt(1_000);
+            case DateTime:
+                return new Date(timestamp - random.nextInt(60_000));
+            default:
+                throw new IllegalArgumentException("Unsupported metric datatype " + dataType);
+        }
+    }
+
+    private static @NotNull Metric createMetric(
+            final @Nullable String name,
+            final @Nullable Long alias,
+            final @NotNull MetricDataType dataType,
+            final @NotNull Object value,
+            final long timestamp) {
+        try {
+            final var builder = new Metric.MetricBuilder(name, dataType, value).timestamp(new Date(timestamp));
+            if (alias != null) {
+                builder.alias(alias);
+            }
+            return builder.createMetric();
+        } catch (final Exception e) {
+            throw new IllegalStateException("Failed to create metric '" + name + "' of type " + dataType, e);
+        }
+    }
+
+    private @NotNull SparkplugMessage createMessage(
+            final @NotNull MessageType messageType,
+            final @Nullable String deviceId,
+            final @NotNull List<Metric> metrics,
+            final @Nullable Long seq,
+            final long timestamp) {
+        final var topic = namespace + '/' + groupId + '/' + messageType + '/' + edgeNodeId +
+                (deviceId != null ? '/' + deviceId : "");
+        try {
+            var payload = new SparkplugBPayload(new Date(timestamp), new ArrayList<>(metrics), seq, null, null);
+            if (compression != null) {
+                payload = PayloadUtil.compress(payload, compression, false);
+            }
+            return new SparkplugMessage(getClientId(),
+                    topic,
+                    messageType,
+                    new SparkplugBPayloadEncoder().getBytes(payload, false));
+        } catch (final Exception e) {
+            throw new IllegalStateException("Failed to encode the payload of '" + topic + "'", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.fleet;
+
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A metric of a generated edge node or device, declared with its name and alias in the births.
+ */
+public final class MetricDefinition {
+
+    private final @NotNull String name;
+    private final long alias;
+    private final @NotNull MetricDataType dataType;
+
+    MetricDefinition(final @NotNull String name, final long alias, final @NotNull MetricDataType dataType) {
+        this.name = name;
+        this.alias = alias;
+        this.dataType = dataType;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public long getAlias() {
+        return alias;
+    }
+
+    public @NotNull MetricDataType getDataType() {
+        return dataType;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "MetricDefinition{name='" + name + "', alias=" + alias + ", dataType=" + dataType + "}";
+    }
+}
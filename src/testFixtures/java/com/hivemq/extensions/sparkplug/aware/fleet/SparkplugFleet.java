@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.fleet;
+
+import org.eclipse.tahu.message.model.MetricDataType;
+import org.eclipse.tahu.util.CompressionAlgorithm;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the Sparkplug B traffic of a synthetic fleet of edge nodes and devices from a deterministic seed.
+ * <p>
+ * The fleet consists of the given number of groups with the given number of {@link EdgeNodeSimulator edge nodes}
+ * each, every edge node has the given number of devices. The metrics of the edge nodes and devices get a random
+ * datatype of the configured datatypes and unique aliases per edge node. The same seed and shape always generate the
+ * same topics and payloads, so unit tests, benchmarks and load tests can share the same traffic:
+ *
+ * <pre>{@code
+ * final var fleet = SparkplugFleet.builder(42).groups(2).edgeNodes(10).devices(5).build();
+ * final var births = fleet.births();
+ * final var data = fleet.nextData();
+ * }</pre>
+ * <p>
+ * A fleet is not thread-safe.
+ */
+public final class SparkplugFleet {
+
+    private final @NotNull List<EdgeNodeSimulator> edgeNodes;
+    private final @NotNull Random random;
+
+    private SparkplugFleet(final @NotNull Builder builder) {
+        final var random = new Random(builder.seed);
+        final var edgeNodes = new ArrayList<EdgeNodeSimulator>(builder.groups * builder.edgeNodes);
+        final var dataTypes = List.copyOf(builder.dataTypes);
+        for (var group = 0; group < builder.groups; group++) {
+            for (var edgeNode = 0; edgeNode < builder.edgeNodes; edgeNode++) {
+                final var nodeMetrics = createMetrics("Node", 0, builder.nodeMetrics, dataTypes, random);
+                final var deviceMetrics = new LinkedHashMap<String, List<MetricDefinition>>();
+                for (var device = 0; device < builder.devices; device++) {
+                    final var firstAlias = builder.nodeMetrics + (long) device * builder.deviceMetrics;
+                    deviceMetrics.put("device-" + device,
+                            createMetrics("Device", firstAlias, builder.deviceMetrics, dataTypes, random));
+                }
+                edgeNodes.add(new EdgeNodeSimulator(builder.namespace,
+                        "group-" + group,
+                        "edge-node-" + edgeNode,
+                        nodeMetrics,
+                        deviceMetrics,
+                        builder.dataMetrics,
+                        builder.aliases,
+                        builder.compression,
+                        random.nextLong()));
+            }
+        }
+        this.edgeNodes = List.copyOf(edgeNodes);
+        this.random = new Random(random.nextLong());
+    }
+
+    /**
+     * @param  seed the seed of all generated names, datatypes, values and selections
+     * @return      a builder of a fleet with one group of ten edge nodes without devices
+     */
+    public static @NotNull Builder builder(final long seed) {
+        return new Builder(seed);
+    }
+
+    public @NotNull List<EdgeNodeSimulator> getEdgeNodes() {
+        return edgeNodes;
+    }
+
+    public @NotNull EdgeNodeSimulator getEdgeNode(final int index) {
+        return edgeNodes.get(index);
+    }
+
+    /**
+     * @return the NBIRTH and DBIRTH messages of all edge nodes, every NBIRTH is followed by the DBIRTHs of its devices
+     */
+    public @NotNull List<SparkplugMessage> births() {
+        final var births = new ArrayList<SparkplugMessage>();
+        for (final var edgeNode : edgeNodes) {
+            births.addAll(edgeNode.births());
+        }
+        return births;
+    }
+
+    /**
+     * @return the NDEATH wills of all edge nodes
+     */
+    public @NotNull List<SparkplugMessage> deaths() {
+        final var deaths = new ArrayList<SparkplugMessage>(edgeNodes.size());
+        for (final var edgeNode : edgeNodes) {
+            deaths.add(edgeNode.ndeath());
+        }
+        return deaths;
+    }
+
+    /**
+     * @return an NDATA or DDATA message of a random edge node or device of the fleet
+     */
+    public @NotNull SparkplugMessage nextData() {
+        final var edgeNode = edgeNodes.get(random.nextInt(edgeNodes.size()));
+        final var deviceIds = edgeNode.getDeviceIds();
+        final var device = random.nextInt(deviceIds.size() + 1);
+        return device == deviceIds.size() ? edgeNode.ndata() : edgeNode.ddata(deviceIds.get(device));
+    }
+
+    private static @NotNull List<MetricDefinition> createMetrics(
+            final @NotNull String prefix,
+            final long firstAlias,
+            final int count,
+            final @NotNull List<MetricDataType> dataTypes,
+            final @NotNull Random random) {
+        final var metrics = new ArrayList<MetricDefinition>(count);
+        for (var i = 0; i < count; i++) {
+            final var dataType = dataTypes.get(random.nextInt(dataTypes.size()));
+            metrics.add(new MetricDefinition(prefix + " Area " + i / 10 + "/" + dataType + " " + i,
+                    firstAlias + i,
+                    dataType));
+        }
+        return metrics;
+    }
+
+    public static final class Builder {
+
+        private static final @NotNull EnumSet<MetricDataType> SUPPORTED_DATA_TYPES = EnumSet.of(MetricDataType.Int8,
+                MetricDataType.Int16,
+                MetricDataType.Int32,
+                MetricDataType.Int64,
+                MetricDataType.UInt8,
+                MetricDataType.UInt16,
+                MetricDataType.UInt32,
+                MetricDataType.UInt64,
+                MetricDataType.Float,
+                MetricDataType.Double,
+                MetricDataType.Boolean,
+                MetricDataType.String,
+                MetricDataType.DateTime,
+                MetricDataType.Text);
+
+        private final long seed;
+        private @NotNull String namespace = "spBv1.0";
+        private int groups = 1;
+        private int edgeNodes = 10;
+        private int devices;
+        private int nodeMetrics = 10;
+        private int deviceMetrics = 10;
+        private int dataMetrics = 5;
+        private @NotNull EnumSet<MetricDataType> dataTypes = EnumSet.of(MetricDataType.Int32,
+                MetricDataType.Int64,
+                MetricDataType.Float,
+                MetricDataType.Double,
+                MetricDataType.Boolean,
+                MetricDataType.String);
+        private boolean aliases = true;
+        private @Nullable CompressionAlgorithm compression;
+
+        private Builder(final long seed) {
+            this.seed = seed;
+        }
+
+        public @NotNull Builder namespace(final @NotNull String namespace) {
+            this.namespace = namespace;
+            return this;
+        }
+
+        public @NotNull Builder groups(final int groups) {
+            this.groups = positive(groups, "groups");
+            return this;
+        }
+
+        /**
+         * @param edgeNodes the number of edge nodes per group
+         */
+        public @NotNull Builder edgeNodes(final int edgeNodes) {
+            this.edgeNodes = positive(edgeNodes, "edge nodes");
+            return this;
+        }
+
+        /**
+         * @param devices the number of devices per edge node
+         */
+        public @NotNull Builder devices(final int devices) {
+            this.devices = notNegative(devices, "devices");
+            return this;
+        }
+
+        /**
+         * @param nodeMetrics the number of metrics of every edge node, in addition to the {@code bdSeq}
+         */
+        public @NotNull Builder nodeMetrics(final int nodeMetrics) {
+            this.nodeMetrics = notNegative(nodeMetrics, "node metrics");
+            return this;
+        }
+
+        public @NotNull Builder deviceMetrics(final int deviceMetrics) {
+            this.deviceMetrics = notNegative(deviceMetrics, "device metrics");
+            return this;
+        }
+
+        /**
+         * @param dataMetrics the number of metrics with new values in every NDATA and DDATA message
+         */
+        public @NotNull Builder dataMetrics(final int dataMetrics) {
+            this.dataMetrics = notNegative(dataMetrics, "data metrics");
+            return this;
+        }
+
+        /**
+         * @param dataTypes the datatypes the metrics are randomly assigned, only scalar datatypes are supported
+         */
+        public @NotNull Builder dataTypes(final @NotNull MetricDataType... dataTypes) {
+            if (dataTypes.length == 0) {
+                throw new IllegalArgumentException("At least one metric datatype is required");
+            }
+            final var set = EnumSet.noneOf(MetricDataType.class);
+            for (final var dataType : dataTypes) {
+                if (!SUPPORTED_DATA_TYPES.contains(dataType)) {
+                    throw new IllegalArgumentException("Unsupported metric datatype " + dataType);
+                }
+                set.add(dataType);
+            }
+            this.dataTypes = set;
+            return this;
+        }
+
+        /**
+         * @param aliases {@code false} to address the metrics of data messages by name instead of alias
+         */
+        public @NotNull Builder aliases(final boolean aliases) {
+            this.aliases = aliases;
+            return this;
+        }
+
+        /**
+         * @param compression the algorithm to compress all payloads with, or {@code null} for uncompressed payloads
+         */
+        public @NotNull Builder compression(final @Nullable CompressionAlgorithm compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public @NotNull SparkplugFleet build() {
+            return new SparkplugFleet(this);
+        }
+
+        private static int positive(final int value, final @NotNull String name) {
+            if (value < 1) {
+                throw new IllegalArgumentException("Number of " + name + " must be positive");
+            }
+            return value;
+        }
+
+        private static int notNegative(final int value, final @NotNull String name) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Number of " + name + " must not be negative");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.fleet;
+
+import com.hivemq.extensions.sparkplug.aware.topics.MessageType;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A generated Sparkplug message with the MQTT client ID of the edge node that publishes it.
+ */
+public final class SparkplugMessage {
+
+    private final @NotNull String clientId;
+    private final @NotNull String topic;
+    private final @NotNull MessageType messageType;
+    private final byte @NotNull [] payload;
+
+    SparkplugMessage(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull MessageType messageType,
+            final byte @NotNull [] payload) {
+        this.clientId = clientId;
+        this.topic = topic;
+        this.messageType = messageType;
+        this.payload = payload;
+    }
+
+    public @NotNull String getClientId() {
+        return clientId;
+    }
+
+    public @NotNull String getTopic() {
+        return topic;
+    }
+
+    public @NotNull MessageType getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return a new read-only buffer of the encoded Sparkplug B payload, like the payload of a PUBLISH packet
+     */
+    public @NotNull ByteBuffer getPayload() {
+        return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+
+    public byte @NotNull [] getPayloadBytes() {
+        return payload.clone();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "SparkplugMessage{clientId='" + clientId + "', topic='" + topic + "', size=" + payload.length + "}";
+    }
+}
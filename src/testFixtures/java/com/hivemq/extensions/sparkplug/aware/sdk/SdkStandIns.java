@@ -0,0 +1,406 @@
+/*
+ * Copyright 2018-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.sparkplug.aware.sdk;
+
+import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundInput;
+import com.hivemq.extension.sdk.api.interceptor.connect.parameter.ConnectInboundOutput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishInboundOutput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundInput;
+import com.hivemq.extension.sdk.api.interceptor.publish.parameter.PublishOutboundOutput;
+import com.hivemq.extension.sdk.api.packets.connect.ConnectPacket;
+import com.hivemq.extension.sdk.api.packets.connect.WillPublishPacket;
+import com.hivemq.extension.sdk.api.packets.general.ModifiableUserProperties;
+import com.hivemq.extension.sdk.api.packets.general.Qos;
+import com.hivemq.extension.sdk.api.packets.publish.ModifiableOutboundPublish;
+import com.hivemq.extension.sdk.api.packets.publish.ModifiablePublishPacket;
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extension.sdk.api.services.builder.PublishBuilder;
+import com.hivemq.extension.sdk.api.services.publish.Publish;
+import com.hivemq.extension.sdk.api.services.publish.PublishService;
+import com.hivemq.extension.sdk.api.services.publish.PublishToClientResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Lightweight stand-ins for the SDK inputs and services of the interceptors, so the interceptors can be benchmarked and
+ * load tested without a broker and without the recording overhead of mocks.
+ * <p>
+ * The stand-ins are dynamic proxies that only answer the methods the interceptors call and throw an
+ * {@link UnsupportedOperationException} for all others, so a benchmark fails instead of measuring a different path if
+ * an interceptor starts to use more of the SDK. Calls with arguments allocate the argument array of the proxy, which is
+ * included in the allocation rates of the interceptor benchmarks.
+ * <p>
+ * The modifiable packets accept a new payload but keep returning the original one, so every invocation of a benchmark
+ * processes the same message. Outputs that are created with an {@link Outcome} record the new payload and whether the
+ * delivery was prevented instead, so a broker stand-in can deliver what the interceptors left.
+ */
+public final class SdkStandIns {
+
+    private static final @NotNull Object UNSUPPORTED = new Object();
+    private static final @NotNull Object SELF = new Object();
+    private static final @NotNull CompletableFuture<Void> PUBLISHED = CompletableFuture.completedFuture(null);
+    private static final @NotNull CompletableFuture<PublishToClientResult> PUBLISHED_TO_CLIENT =
+            CompletableFuture.completedFuture(PublishToClientResult.SUCCESSFUL);
+
+    private SdkStandIns() {
+    }
+
+    public static @NotNull PublishInboundInput inboundInput(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        final var clientInformation = clientInformation(clientId);
+        final var publishPacket = publishPacket(PublishPacket.class, topic, payload);
+        return standIn(PublishInboundInput.class, (method, args) -> {
+            switch (method) {
+                case "getClientInformation":
+                    return clientInformation;
+                case "getPublishPacket":
+                    return publishPacket;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    public static @NotNull PublishInboundOutput inboundOutput(
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        return inboundOutput(topic, payload, null);
+    }
+
+    public static @NotNull PublishInboundOutput inboundOutput(
+            final @NotNull String topic,
+            final @NotNull Outcome outcome) {
+        return inboundOutput(topic, outcome.payload, outcome);
+    }
+
+    public static @NotNull PublishOutboundInput outboundInput(
+            final @NotNull String clientId,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        final var clientInformation = clientInformation(clientId);
+        final var publishPacket = publishPacket(PublishPacket.class, topic, payload);
+        return standIn(PublishOutboundInput.class, (method, args) -> {
+            switch (method) {
+                case "getClientInformation":
+                    return clientInformation;
+                case "getPublishPacket":
+                    return publishPacket;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    public static @NotNull PublishOutboundOutput outboundOutput(
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        return outboundOutput(topic, payload, null);
+    }
+
+    public static @NotNull PublishOutboundOutput outboundOutput(
+            final @NotNull String topic,
+            final @NotNull Outcome outcome) {
+        return outboundOutput(topic, outcome.payload, outcome);
+    }
+
+    /**
+     * @param willTopic   the topic of the Last Will or {@code null} if the client has no Last Will
+     * @param willPayload the payload of the Last Will
+     */
+    public static @NotNull ConnectInboundInput connectInput(
+            final @NotNull String clientId,
+            final @Nullable String willTopic,
+            final @NotNull ByteBuffer willPayload) {
+        final var clientInformation = clientInformation(clientId);
+        final var willPublish = willTopic != null ?
+                Optional.of(publishPacket(WillPublishPacket.class, willTopic, willPayload)) :
+                Optional.empty();
+        final var connectPacket = standIn(ConnectPacket.class, (method, args) -> {
+            switch (method) {
+                case "getClientId":
+                    return clientId;
+                case "getWillPublish":
+                    return willPublish;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+        return standIn(ConnectInboundInput.class, (method, args) -> {
+            switch (method) {
+                case "getClientInformation":
+                    return clientInformation;
+                case "getConnectPacket":
+                    return connectPacket;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    /**
+     * @return a connect output that does not support any modification of the CONNECT
+     */
+    public static @NotNull ConnectInboundOutput connectOutput() {
+        return standIn(ConnectInboundOutput.class, (method, args) -> UNSUPPORTED);
+    }
+
+    private static @NotNull PublishInboundOutput inboundOutput(
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload,
+            final @Nullable Outcome outcome) {
+        final var publishPacket = modifiablePacket(ModifiablePublishPacket.class, topic, payload, outcome);
+        return standIn(PublishInboundOutput.class, (method, args) -> {
+            switch (method) {
+                case "getPublishPacket":
+                    return publishPacket;
+                case "preventPublishDelivery":
+                    if (outcome != null) {
+                        outcome.prevented = true;
+                    }
+                    return null;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+
+    private static @NotNull PublishOutboundOutput outboundOutput(
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload,
+            final @Nullable Outcome outcome) {
+        final var publishPacket = modifiablePacket(ModifiableOutboundPublish.class, topic, payload, outcome);
+        return standIn(PublishOutboundOutput.class, (method, args) -> {
+            switch (method) {
+                case "getPublishPacket":
+                    return publishPacket;
+                case "preventPublishDelivery":
+                    if (outcome != null) {
+                        outcome.prevented = true;
+                    }
+                    return null;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    /**
+     * @return a publish service that completes every publish immediately
+     */
+    public static @NotNull PublishService publishService() {
+        return publishService(publish -> PUBLISHED);
+    }
+
+    /**
+     * @param publisher delivers a publish and returns the future of the delivery
+     * @return a publish service that hands every publish to the given publisher
+     */
+    public static @NotNull PublishService publishService(
+            final @NotNull Function<Publish, CompletableFuture<Void>> publisher) {
+        return standIn(PublishService.class, (method, args) -> {
+            switch (method) {
+                case "publish":
+                    return publisher.apply((Publish) args[0]);
+                case "publishToClient":
+                    return PUBLISHED_TO_CLIENT;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    /**
+     * @return a new publish builder, the builders are mutable and must not be shared between threads
+     */
+    public static @NotNull PublishBuilder publishBuilder() {
+        final var builder = new Object() {
+            @NotNull String topic = "";
+            @NotNull Optional<ByteBuffer> payload = Optional.empty();
+            boolean retain;
+        };
+        return standIn(PublishBuilder.class, (method, args) -> {
+            switch (method) {
+                case "fromPublish":
+                    final var publishPacket = (PublishPacket) args[0];
+                    builder.topic = publishPacket.getTopic();
+                    builder.payload = publishPacket.getPayload();
+                    builder.retain = publishPacket.getRetain();
+                    return SELF;
+                case "topic":
+                    builder.topic = (String) args[0];
+                    return SELF;
+                case "retain":
+                    builder.retain = (Boolean) args[0];
+                    return SELF;
+                case "qos":
+                case "messageExpiryInterval":
+                    return SELF;
+                case "build":
+                    return publish(builder.topic, builder.payload, builder.retain);
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    private static @NotNull ClientInformation clientInformation(final @NotNull String clientId) {
+        return standIn(ClientInformation.class,
+                (method, args) -> "getClientId".equals(method) ? clientId : UNSUPPORTED);
+    }
+
+    private static <T extends PublishPacket> @NotNull T publishPacket(
+            final @NotNull Class<T> type,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload) {
+        final var optionalPayload = Optional.of(payload);
+        return standIn(type, (method, args) -> {
+            switch (method) {
+                case "getTopic":
+                    return topic;
+                case "getPayload":
+                    return optionalPayload;
+                case "getQos":
+                    return Qos.AT_LEAST_ONCE;
+                case "getRetain":
+                    return false;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    private static <T extends PublishPacket> @NotNull T modifiablePacket(
+            final @NotNull Class<T> type,
+            final @NotNull String topic,
+            final @NotNull ByteBuffer payload,
+            final @Nullable Outcome outcome) {
+        final var optionalPayload = Optional.of(payload);
+        final var userProperties = standIn(ModifiableUserProperties.class, (method, args) -> {
+            if (!"addUserProperty".equals(method)) {
+                return UNSUPPORTED;
+            }
+            if (outcome != null) {
+                outcome.userProperties++;
+            }
+            return null;
+        });
+        return standIn(type, (method, args) -> {
+            switch (method) {
+                case "getTopic":
+                    return topic;
+                case "getPayload":
+                    return outcome != null ? Optional.of(outcome.payload) : optionalPayload;
+                case "getUserProperties":
+                    return userProperties;
+                case "setPayload":
+                    if (outcome != null) {
+                        outcome.payload = (ByteBuffer) args[0];
+                    }
+                    return null;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    private static @NotNull Publish publish(
+            final @NotNull String topic,
+            final @NotNull Optional<ByteBuffer> payload,
+            final boolean retain) {
+        return standIn(Publish.class, (method, args) -> {
+            switch (method) {
+                case "getTopic":
+                    return topic;
+                case "getPayload":
+                    return payload;
+                case "getRetain":
+                    return retain;
+                default:
+                    return UNSUPPORTED;
+            }
+        });
+    }
+
+    private static <T> @NotNull T standIn(final @NotNull Class<T> type, final @NotNull Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + " stand-in";
+                default:
+            }
+            final var result = answer.answer(method.getName(), args);
+            if (result == UNSUPPORTED) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return result == SELF ? proxy : result;
+        }));
+    }
+
+    /**
+     * The effect of an interceptor on a modifiable PUBLISH packet. An outcome belongs to a single delivery and must not
+     * be shared between threads.
+     */
+    public static final class Outcome {
+
+        private @NotNull ByteBuffer payload;
+        private boolean prevented;
+        private int userProperties;
+
+        public Outcome(final @NotNull ByteBuffer payload) {
+            this.payload = payload;
+        }
+
+        /**
+         * @return the payload that is delivered, either the original or the one set by the interceptor
+         */
+        public @NotNull ByteBuffer getPayload() {
+            return payload;
+        }
+
+        public boolean isPrevented() {
+            return prevented;
+        }
+
+        public int getUserProperties() {
+            return userProperties;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+
+        /**
+         * @return the result of the call, {@code UNSUPPORTED} if the method is not supported or {@code SELF} to
+         *         return the stand-in itself
+         */
+        @Nullable Object answer(@NotNull String method, @Nullable Object @Nullable [] args);
+    }
+}